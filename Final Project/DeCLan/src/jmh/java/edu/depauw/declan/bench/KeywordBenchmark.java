@@ -0,0 +1,96 @@
+package edu.depauw.declan.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import edu.depauw.declan.common.Position;
+import edu.depauw.declan.common.ReservedWords;
+import edu.depauw.declan.common.Token;
+import edu.depauw.declan.common.TokenType;
+
+/**
+ * Compares keyword recognition in Token.createId, using the perfect hash in
+ * ReservedWords on the lexer's StringBuilder, against the previous approach of
+ * building a String and probing TokenType.reserved twice (containsKey, then
+ * get). The words are a mix of reserved words and identifiers, roughly as they
+ * occur in DeCLan programs.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class KeywordBenchmark {
+	private static final String[] WORDS = { "BEGIN", "x", "END", "IF", "answer", "THEN", "temp", "ELSE", "i",
+			"PROCEDURE", "gcd", "VAR", "INTEGER", "WHILE", "DO", "PrintInt", "REPEAT", "UNTIL", "FOR", "TO", "BY",
+			"CONST", "six", "seven", "RETURN", "TRUE", "FALSE", "OR", "DIV", "MOD", "PrintLn", "ELSIF" };
+
+	private StringBuilder[] lexemes;
+	private Position position;
+
+	@Setup
+	public void setup() {
+		lexemes = new StringBuilder[WORDS.length];
+		for (int i = 0; i < WORDS.length; i++) {
+			lexemes[i] = new StringBuilder(WORDS[i]);
+		}
+		position = new Position(1, 1);
+	}
+
+	/**
+	 * The original Token.createId: always build the String, then look it up in
+	 * the HashMap twice. (Token's constructor is package-private, so createNum
+	 * stands in for building an ID token; it allocates the same object.)
+	 */
+	@Benchmark
+	public void hashMapCreateId(Blackhole bh) {
+		for (StringBuilder lexeme : lexemes) {
+			String s = lexeme.toString();
+			if (TokenType.reserved.containsKey(s)) {
+				bh.consume(Token.create(TokenType.reserved.get(s), position));
+			} else {
+				bh.consume(Token.createNum(s, position));
+			}
+		}
+	}
+
+	/**
+	 * The current Token.createId, which only builds a String for identifiers.
+	 */
+	@Benchmark
+	public void perfectHashCreateId(Blackhole bh) {
+		for (StringBuilder lexeme : lexemes) {
+			bh.consume(Token.createId(lexeme, 0, position));
+		}
+	}
+
+	/**
+	 * Keyword recognition alone, without creating Tokens.
+	 */
+	@Benchmark
+	public void hashMapLookup(Blackhole bh) {
+		for (StringBuilder lexeme : lexemes) {
+			String s = lexeme.toString();
+			bh.consume(TokenType.reserved.containsKey(s) ? TokenType.reserved.get(s) : TokenType.ID);
+		}
+	}
+
+	@Benchmark
+	public void perfectHashLookup(Blackhole bh) {
+		for (StringBuilder lexeme : lexemes) {
+			bh.consume(ReservedWords.lookup(lexeme));
+		}
+	}
+}
@@ -0,0 +1,256 @@
+package edu.depauw.declan.bench;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import edu.depauw.declan.common.ByteBufferText;
+import edu.depauw.declan.common.CharSequenceSource;
+import edu.depauw.declan.common.ErrorLog;
+import edu.depauw.declan.common.Lexer;
+import edu.depauw.declan.common.LexerCursor;
+import edu.depauw.declan.common.SymbolInterner;
+import edu.depauw.declan.common.TokenBuffer;
+import edu.depauw.declan.main.MyLexer;
+import edu.depauw.declan.main.ParallelLexer;
+import edu.depauw.declan.main.TableLexer;
+import edu.depauw.declan.model.ReferenceLexer;
+
+/**
+ * Measures the lexers on generated inputs of three sizes (about 1 KB, 1 MB and
+ * 100 MB) and three mixes of tokens: mostly comments, mostly identifiers and
+ * reserved words, and mostly numeric literals (decimal, hex and real). The
+ * input is held in memory and read through a CharSequenceSource, so no I/O is
+ * timed. TableLexerBytes reads a copy of the input held one byte per character
+ * in a direct ByteBuffer, as a mapped file would be, so whitespace, comments
+ * and identifiers are skipped a word at a time (see CharRun).
+ * 
+ * One operation lexes the whole input. The "tokens" counter gives tokens/sec.
+ * For allocation, run with the GC profiler:
+ * 
+ * <pre>
+ * java -jar benchmarks.jar LexerBenchmark -prof gc
+ * </pre>
+ * 
+ * and divide gc.alloc.rate.norm (bytes per operation) by the number of tokens
+ * per input, which is printed during setup. MyLexer is still incomplete, so on
+ * the comment and numeric mixes much of its time goes to logging errors.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = { "-Xms4g", "-Xmx4g" })
+public class LexerBenchmark {
+	@Param({ "MyLexer", "ReferenceLexer", "TableLexer", "TokenBuffer", "LexerCursor", "ParallelLexer",
+			"TableLexerBytes" })
+	public String lexer;
+
+	@Param({ "small", "medium", "large" })
+	public String size;
+
+	@Param({ "comments", "identifiers", "numbers" })
+	public String mix;
+
+	private String input;
+	private ByteBuffer bytes;
+
+	private static final String[] WORDS = { "x", "y", "count", "total", "answer", "temp", "i", "j", "gcd",
+			"value1", "result", "PrintInt", "PrintLn", "Factorial", "sum", "n" };
+
+	private static final String[] KEYWORDS = { "IF", "THEN", "ELSE", "END", "WHILE", "DO", "BEGIN", "VAR",
+			"RETURN", "FOR", "TO", "BY", "REPEAT", "UNTIL", "DIV", "MOD" };
+
+	/**
+	 * Counts the tokens lexed, reported by JMH as a rate alongside the score.
+	 */
+	@State(Scope.Thread)
+	@AuxCounters(AuxCounters.Type.OPERATIONS)
+	public static class Counters {
+		public long tokens;
+
+		@Setup(Level.Iteration)
+		public void reset() {
+			tokens = 0;
+		}
+	}
+
+	@Setup(Level.Trial)
+	public void setup() {
+		int target;
+		switch (size) {
+		case "small":
+			target = 1 << 10;
+			break;
+		case "medium":
+			target = 1 << 20;
+			break;
+		default:
+			target = 100 << 20;
+			break;
+		}
+
+		Random random = new Random(42);
+		StringBuilder text = new StringBuilder(target + 200);
+		while (text.length() < target) {
+			switch (mix) {
+			case "comments":
+				appendCommentLine(text, random);
+				break;
+			case "identifiers":
+				appendIdentifierLine(text, random);
+				break;
+			default:
+				appendNumericLine(text, random);
+				break;
+			}
+		}
+		input = text.toString();
+		bytes = ByteBuffer.allocateDirect(input.length());
+		bytes.put(input.getBytes(StandardCharsets.ISO_8859_1));
+
+		Consumer<Object> ignore = token -> {
+		};
+		System.out.println();
+		System.out.println(input.length() + " chars, " + lex(ignore) + " tokens per input");
+	}
+
+	private static void appendCommentLine(StringBuilder text, Random random) {
+		text.append("(* ");
+		int words = 6 + random.nextInt(10);
+		for (int i = 0; i < words; i++) {
+			if (random.nextInt(8) == 0) {
+				text.append("(* nested *) ");
+			} else {
+				text.append(WORDS[random.nextInt(WORDS.length)]).append(' ');
+			}
+		}
+		text.append("*)\n");
+		if (random.nextInt(4) == 0) {
+			text.append(WORDS[random.nextInt(WORDS.length)]).append(" := ").append(random.nextInt(100))
+					.append(";\n");
+		}
+	}
+
+	private static void appendIdentifierLine(StringBuilder text, Random random) {
+		int words = 4 + random.nextInt(8);
+		for (int i = 0; i < words; i++) {
+			if (random.nextInt(3) == 0) {
+				text.append(KEYWORDS[random.nextInt(KEYWORDS.length)]);
+			} else {
+				text.append(WORDS[random.nextInt(WORDS.length)]);
+			}
+			text.append(random.nextBoolean() ? " " : " := ");
+		}
+		text.append("z;\n");
+	}
+
+	private static void appendNumericLine(StringBuilder text, Random random) {
+		int numbers = 4 + random.nextInt(8);
+		for (int i = 0; i < numbers; i++) {
+			switch (random.nextInt(3)) {
+			case 0:
+				text.append(random.nextInt(1000000));
+				break;
+			case 1:
+				text.append('0').append(Integer.toHexString(random.nextInt(65536)).toUpperCase()).append('H');
+				break;
+			default:
+				text.append(random.nextInt(1000)).append('.').append(random.nextInt(1000)).append("E+")
+						.append(random.nextInt(20));
+				break;
+			}
+			text.append(" + ");
+		}
+		text.append("0;\n");
+	}
+
+	/**
+	 * Lex the whole input with the selected lexer, adding the number of tokens to
+	 * the counter.
+	 */
+	@Benchmark
+	public void lex(Counters counters, Blackhole bh) {
+		counters.tokens += lex(bh::consume);
+	}
+
+	/**
+	 * @param sink receives each token (or the TokenBuffer) and the ErrorLog
+	 * @return the number of tokens the selected lexer finds in the input
+	 */
+	private long lex(Consumer<Object> sink) {
+		ErrorLog errorLog = new ErrorLog();
+		SymbolInterner symbols = new SymbolInterner();
+		long count = 0;
+		switch (lexer) {
+		case "TokenBuffer": {
+			TokenBuffer tokens = new TableLexer(new CharSequenceSource(input), errorLog, symbols).lexAll();
+			count = tokens.size();
+			sink.accept(tokens);
+			break;
+		}
+
+		case "LexerCursor":
+			try (LexerCursor cursor = new TableLexer(new CharSequenceSource(input), errorLog, symbols).cursor()) {
+				while (cursor.advance()) {
+					count = count + 1;
+				}
+				sink.accept(cursor);
+			}
+			break;
+
+		case "ParallelLexer": {
+			TokenBuffer tokens = new ParallelLexer().lex(input, errorLog, symbols);
+			count = tokens.size();
+			sink.accept(tokens);
+			break;
+		}
+
+		default:
+			try (Lexer tokens = createLexer(errorLog, symbols)) {
+				while (tokens.hasNext()) {
+					sink.accept(tokens.next());
+					count = count + 1;
+				}
+			}
+			break;
+		}
+		sink.accept(errorLog);
+		return count;
+	}
+
+	private Lexer createLexer(ErrorLog errorLog, SymbolInterner symbols) {
+		CharSequenceSource source = new CharSequenceSource(input);
+		switch (lexer) {
+		case "MyLexer":
+			return new MyLexer(source, errorLog, symbols);
+		case "ReferenceLexer":
+			return new ReferenceLexer(source, errorLog);
+		case "TableLexer":
+			return new TableLexer(source, errorLog, symbols);
+		case "TableLexerBytes":
+			return new TableLexer(new CharSequenceSource(new ByteBufferText(bytes, 0, bytes.capacity())), errorLog,
+					symbols);
+		default:
+			throw new IllegalArgumentException("Unknown lexer " + lexer);
+		}
+	}
+}
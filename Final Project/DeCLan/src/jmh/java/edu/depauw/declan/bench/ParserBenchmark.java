@@ -0,0 +1,174 @@
+package edu.depauw.declan.bench;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import edu.depauw.declan.common.CharSequenceSource;
+import edu.depauw.declan.common.ErrorLog;
+import edu.depauw.declan.common.SymbolInterner;
+import edu.depauw.declan.common.ast.HashConsingExpressionFactory;
+import edu.depauw.declan.common.ast.Program;
+import edu.depauw.declan.main.IncrementalParser;
+import edu.depauw.declan.main.MyParser;
+import edu.depauw.declan.main.ParallelParser;
+import edu.depauw.declan.main.ReachableProcedures;
+import edu.depauw.declan.main.TableLexer;
+
+/**
+ * Measures the latency of parsing a generated program of about 50,000 lines,
+ * made of 1,000 procedures followed by a main body that calls the first 100
+ * of them. The program is held in memory, so no I/O is timed.
+ * 
+ * fullParse lexes the whole text with a TableLexer and parses it with
+ * MyParser, as a compiler would after every change. incrementalEdit changes
+ * one line in the middle of one procedure (flipping a constant between two
+ * values of the same length, so the text does not grow) and then parses the
+ * program again with an IncrementalParser, which relexes the edited line and
+ * reparses only that procedure. parallelParse lexes the whole text as
+ * fullParse does, then parses it with a ParallelParser on the common
+ * ForkJoinPool, so the difference from fullParse shows the speedup from
+ * parsing the procedures on all available cores. lazyParse lexes as fullParse
+ * does, but parses procedure bodies lazily, then finds the procedures reachable
+ * from the main body; the other 900 procedures are never parsed past their
+ * declarations. hashConsedParse is fullParse with a
+ * HashConsingExpressionFactory, which shares the expressions that each
+ * procedure body repeats.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = { "-Xms2g", "-Xmx2g" })
+public class ParserBenchmark {
+	private static final int PROCEDURES = 1000;
+
+	private String input;
+	private IncrementalParser incremental;
+	private int editOffset;
+	private boolean edited;
+
+	@Setup
+	public void setup() {
+		Random random = new Random(42);
+		StringBuilder text = new StringBuilder();
+		text.append("VAR total : INTEGER;\n");
+		for (int p = 0; p < PROCEDURES; p++) {
+			appendProcedure(text, p, random);
+		}
+		text.append("BEGIN\n");
+		for (int p = 0; p < PROCEDURES / 10; p++) {
+			text.append("  Proc").append(p).append("(").append(p).append(");\n");
+		}
+		text.append("  PrintInt(total)\nEND.\n");
+		input = text.toString();
+
+		// The edit changes "10" to "99" and back, in the middle procedure
+		editOffset = input.indexOf("count := 10;", input.indexOf("PROCEDURE Proc" + (PROCEDURES / 2) + "("))
+				+ "count := ".length();
+		edited = false;
+
+		incremental = new IncrementalParser(input, new ErrorLog(), new SymbolInterner());
+		incremental.parseProgram();
+
+		long lines = input.chars().filter(c -> c == '\n').count();
+		System.out.println();
+		System.out.println(lines + " lines, " + input.length() + " chars");
+	}
+
+	private static void appendProcedure(StringBuilder text, int p, Random random) {
+		text.append("PROCEDURE Proc").append(p).append("(n : INTEGER);\n");
+		text.append("  CONST limit = ").append(random.nextInt(100)).append(";\n");
+		text.append("  VAR count, i : INTEGER; x : REAL;\n");
+		text.append("  BEGIN\n");
+		text.append("    count := 10;\n");
+		text.append("    i := 0;\n");
+		text.append("    x := 1.5 * n;\n");
+		for (int k = 0; k < 4; k++) {
+			text.append("    WHILE i < limit DO\n");
+			text.append("      IF i MOD ").append(2 + random.nextInt(5)).append(" = 0 THEN\n");
+			text.append("        count := count + i * ").append(random.nextInt(10)).append("\n");
+			text.append("      ELSIF i > n THEN\n");
+			text.append("        count := count - (i DIV 2)\n");
+			text.append("      ELSE\n");
+			text.append("        x := x / 2.0 + i\n");
+			text.append("      END;\n");
+			text.append("      i := i + 1\n");
+			text.append("    END;\n");
+		}
+		text.append("    total := total + count\n");
+		text.append("  END Proc").append(p).append(";\n");
+	}
+
+	/**
+	 * Lex and parse the whole program from scratch.
+	 */
+	@Benchmark
+	public Program fullParse() {
+		ErrorLog errorLog = new ErrorLog();
+		TableLexer lexer = new TableLexer(new CharSequenceSource(input), errorLog);
+		try (MyParser parser = new MyParser(lexer.lexAll(), errorLog)) {
+			return parser.parseProgram();
+		}
+	}
+
+	/**
+	 * Lex the whole program, then parse its procedures in parallel.
+	 */
+	@Benchmark
+	public Program parallelParse() {
+		ErrorLog errorLog = new ErrorLog();
+		TableLexer lexer = new TableLexer(new CharSequenceSource(input), errorLog);
+		try (ParallelParser parser = new ParallelParser(lexer.lexAll(), errorLog)) {
+			return parser.parseProgram();
+		}
+	}
+
+	/**
+	 * Lex and parse the whole program, sharing repeated subexpressions.
+	 */
+	@Benchmark
+	public Program hashConsedParse() {
+		ErrorLog errorLog = new ErrorLog();
+		TableLexer lexer = new TableLexer(new CharSequenceSource(input), errorLog);
+		try (MyParser parser = new MyParser(lexer.lexAll(), errorLog)) {
+			parser.setExpressionFactory(new HashConsingExpressionFactory());
+			return parser.parseProgram();
+		}
+	}
+
+	/**
+	 * Lex the whole program, then parse only the bodies of the procedures that
+	 * the main body can reach.
+	 */
+	@Benchmark
+	public ReachableProcedures lazyParse() {
+		ErrorLog errorLog = new ErrorLog();
+		TableLexer lexer = new TableLexer(new CharSequenceSource(input), errorLog);
+		try (MyParser parser = new MyParser(lexer.lexAll(), errorLog)) {
+			parser.setLazyBodies(true);
+			return new ReachableProcedures(parser.parseProgram());
+		}
+	}
+
+	/**
+	 * Edit one line, then parse the program again incrementally.
+	 */
+	@Benchmark
+	public Program incrementalEdit() {
+		edited = !edited;
+		incremental.edit(editOffset, 2, edited ? "99" : "10");
+		return incremental.parseProgram();
+	}
+}
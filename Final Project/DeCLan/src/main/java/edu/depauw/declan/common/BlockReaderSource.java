@@ -0,0 +1,145 @@
+package edu.depauw.declan.common;
+
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * A BlockReaderSource is a Source over a Reader that pulls characters in
+ * blocks, filling a reusable char array with read(char[], int, int) and then
+ * walking it with an index. It tracks line and column numbers exactly as
+ * ReaderSource does, but avoids one Reader call per character, so the Reader
+ * does not need to be wrapped in a BufferedReader.
+ */
+public class BlockReaderSource implements Source {
+	/**
+	 * Default number of characters requested from the Reader at a time.
+	 */
+	public static final int DEFAULT_BLOCK_SIZE = 8192;
+
+	private Reader in;
+	private char[] block;
+	private int index, count;
+	private char current;
+	private boolean atEOF;
+	private int line, column;
+	private int offset;
+	private LineMap lineMap;
+
+	/**
+	 * Construct a Source wrapping the given Reader, using the default block size.
+	 * Once constructed, the first character of the source (at line 1, column 1)
+	 * will be available via current(), or else atEOF() will be true.
+	 * 
+	 * @param in
+	 */
+	public BlockReaderSource(Reader in) {
+		this(in, DEFAULT_BLOCK_SIZE);
+	}
+
+	/**
+	 * Construct a Source wrapping the given Reader, reading up to blockSize
+	 * characters at a time.
+	 * 
+	 * @param in
+	 * @param blockSize
+	 */
+	public BlockReaderSource(Reader in, int blockSize) {
+		this.in = in;
+		this.block = new char[blockSize];
+		this.index = 0;
+		this.count = 0;
+		this.line = 0;
+		this.column = 0;
+		this.offset = -1;
+		this.lineMap = new LineMap();
+		this.current = '\n';
+		this.atEOF = false;
+
+		advance();
+	}
+
+	@Override
+	public void advance() {
+		if (atEOF)
+			return;
+
+		if (current == '\n') {
+			line = line + 1;
+			column = 1;
+			if (offset >= 0) {
+				lineMap.addLineStart(offset + 1);
+			}
+		} else {
+			column = column + 1;
+		}
+		offset = offset + 1;
+
+		if (index == count && !fill()) {
+			atEOF = true;
+		} else {
+			current = block[index];
+			index = index + 1;
+		}
+	}
+
+	/**
+	 * Refill the block from the Reader, blocking until at least one character is
+	 * available or the end of input is reached.
+	 * 
+	 * @return false if there are no more characters
+	 */
+	private boolean fill() {
+		try {
+			int n;
+			do {
+				n = in.read(block, 0, block.length);
+			} while (n == 0);
+
+			if (n == -1) {
+				return false;
+			}
+			index = 0;
+			count = n;
+			return true;
+		} catch (IOException e) {
+			System.err.println("Error reading input: " + e);
+			System.exit(1);
+			return false;
+		}
+	}
+
+	@Override
+	public void close() {
+		try {
+			in.close();
+		} catch (IOException e) {
+			System.err.println("Error closing input: " + e);
+			System.exit(1);
+		}
+	}
+
+	@Override
+	public char current() {
+		return current;
+	}
+
+	@Override
+	public boolean atEOF() {
+		return atEOF;
+	}
+
+	@Override
+	public Position getPosition() {
+		return new Position(line, column);
+	}
+
+	@Override
+	public int getOffset() {
+		return offset;
+	}
+
+	@Override
+	public LineMap getLineMap() {
+		return lineMap;
+	}
+}
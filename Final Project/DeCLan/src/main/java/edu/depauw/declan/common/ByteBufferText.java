@@ -0,0 +1,72 @@
+package edu.depauw.declan.common;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A ByteBufferText is a read-only CharSequence view of a range of a
+ * ByteBuffer, taking each byte as one character (ISO-8859-1). This agrees with
+ * MappedFileSource for ASCII text, which is all that it is used for. It only
+ * uses absolute reads, so several threads may read it at once.
+ */
+public class ByteBufferText implements CharSequence {
+	private final ByteBuffer buffer;
+	private final int start;
+	private final int length;
+
+	/**
+	 * Construct a view of length bytes of the buffer, starting at index start.
+	 * 
+	 * @param buffer
+	 * @param start
+	 * @param length
+	 */
+	public ByteBufferText(ByteBuffer buffer, int start, int length) {
+		this.buffer = buffer;
+		this.start = start;
+		this.length = length;
+	}
+
+	/**
+	 * @return the underlying buffer
+	 */
+	ByteBuffer getBuffer() {
+		return buffer;
+	}
+
+	/**
+	 * @return the index in the buffer of the first character of this text
+	 */
+	int getStart() {
+		return start;
+	}
+
+	@Override
+	public int length() {
+		return length;
+	}
+
+	@Override
+	public char charAt(int index) {
+		if (index < 0 || index >= length) {
+			throw new IndexOutOfBoundsException("index " + index + ", length " + length);
+		}
+		return (char) (buffer.get(start + index) & 0xFF);
+	}
+
+	@Override
+	public CharSequence subSequence(int from, int to) {
+		if (from < 0 || to > length || from > to) {
+			throw new IndexOutOfBoundsException("range " + from + ".." + to + ", length " + length);
+		}
+		return new ByteBufferText(buffer, start + from, to - from);
+	}
+
+	@Override
+	public String toString() {
+		char[] chars = new char[length];
+		for (int i = 0; i < length; i++) {
+			chars[i] = (char) (buffer.get(start + i) & 0xFF);
+		}
+		return new String(chars);
+	}
+}
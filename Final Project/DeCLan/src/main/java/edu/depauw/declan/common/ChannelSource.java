@@ -0,0 +1,232 @@
+package edu.depauw.declan.common;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A ChannelSource is a Source that streams UTF-8 text from a
+ * ReadableByteChannel, such as a FileChannel, a SocketChannel, a Pipe or
+ * standard input, without first collecting it into a String.
+ *
+ * Bytes are read in blocks into a direct ByteBuffer. ASCII bytes (all of a
+ * DeCLan program outside of strings and comments) are turned into characters
+ * directly; each run of non-ASCII bytes is passed to a single reused
+ * CharsetDecoder, which replaces malformed input with U+FFFD, as a UTF-8
+ * InputStreamReader does. A character outside the Basic Multilingual Plane
+ * shows up as two chars (a surrogate pair). No objects are allocated per
+ * character or per block.
+ *
+ * The channel should be in blocking mode.
+ */
+public class ChannelSource implements Source {
+	/**
+	 * Default number of bytes requested from the channel at a time.
+	 */
+	public static final int DEFAULT_BLOCK_SIZE = 8192;
+
+	/**
+	 * The longest UTF-8 encoding of a code point; a smaller block could not hold
+	 * a sequence that was split across reads.
+	 */
+	private static final int MIN_BLOCK_SIZE = 4;
+
+	private ReadableByteChannel in;
+	private ByteBuffer bytes;
+	private CharBuffer chars;
+	private CharsetDecoder decoder;
+	private boolean inputDone;
+	private char current;
+	private boolean atEOF;
+	private int line, column;
+	private int offset;
+	private LineMap lineMap;
+
+	/**
+	 * Construct a Source reading UTF-8 text from the given channel, using the
+	 * default block size. Once constructed, the first character of the source (at
+	 * line 1, column 1) will be available via current(), or else atEOF() will be
+	 * true.
+	 *
+	 * @param in
+	 */
+	public ChannelSource(ReadableByteChannel in) {
+		this(in, DEFAULT_BLOCK_SIZE);
+	}
+
+	/**
+	 * Construct a Source reading UTF-8 text from the given channel, up to
+	 * blockSize bytes at a time.
+	 *
+	 * @param in
+	 * @param blockSize
+	 */
+	public ChannelSource(ReadableByteChannel in, int blockSize) {
+		blockSize = Math.max(blockSize, MIN_BLOCK_SIZE);
+		this.in = in;
+		this.bytes = ByteBuffer.allocateDirect(blockSize);
+		this.bytes.flip();
+		this.chars = CharBuffer.allocate(blockSize);
+		this.chars.flip();
+		this.decoder = StandardCharsets.UTF_8.newDecoder().onMalformedInput(CodingErrorAction.REPLACE)
+				.onUnmappableCharacter(CodingErrorAction.REPLACE);
+		this.inputDone = false;
+		this.line = 0;
+		this.column = 0;
+		this.offset = -1;
+		this.lineMap = new LineMap();
+		this.current = '\n';
+		this.atEOF = false;
+
+		advance();
+	}
+
+	@Override
+	public void advance() {
+		if (atEOF)
+			return;
+
+		if (current == '\n') {
+			line = line + 1;
+			column = 1;
+			if (offset >= 0) {
+				lineMap.addLineStart(offset + 1);
+			}
+		} else {
+			column = column + 1;
+		}
+		offset = offset + 1;
+
+		if (!nextChar()) {
+			atEOF = true;
+		}
+	}
+
+	/**
+	 * Set current to the next character of the input.
+	 *
+	 * @return false if there are no more characters
+	 */
+	private boolean nextChar() {
+		while (true) {
+			if (chars.hasRemaining()) {
+				// Left over from decoding a non-ASCII run
+				current = chars.get();
+				return true;
+			}
+
+			if (bytes.hasRemaining()) {
+				int position = bytes.position();
+				byte b = bytes.get(position);
+				if (b >= 0) {
+					// ASCII fast path
+					bytes.position(position + 1);
+					current = (char) b;
+					return true;
+				}
+
+				if (decodeRun()) {
+					continue;
+				}
+				// Only the start of a sequence is buffered; read the rest
+			}
+
+			if (!fill()) {
+				return false;
+			}
+		}
+	}
+
+	/**
+	 * Decode the run of non-ASCII bytes at the current position into chars. A
+	 * sequence cut off by the end of the buffered bytes is left for the next
+	 * fill, unless there is no more input.
+	 *
+	 * @return true if any characters were decoded
+	 */
+	private boolean decodeRun() {
+		int limit = bytes.limit();
+		int end = bytes.position();
+		while (end < limit && bytes.get(end) < 0) {
+			end = end + 1;
+		}
+
+		// An ASCII byte after the run means that no sequence in it continues
+		boolean complete = end < limit || inputDone;
+		bytes.limit(end);
+		chars.clear();
+		decoder.reset();
+		decoder.decode(bytes, chars, complete);
+		bytes.limit(limit);
+		chars.flip();
+		return chars.hasRemaining();
+	}
+
+	/**
+	 * Read another block from the channel, keeping any bytes not yet decoded.
+	 *
+	 * @return false if the end of input has already been reached
+	 */
+	private boolean fill() {
+		if (inputDone) {
+			return false;
+		}
+
+		try {
+			bytes.compact();
+			int n;
+			do {
+				n = in.read(bytes);
+			} while (n == 0);
+			bytes.flip();
+
+			if (n == -1) {
+				inputDone = true;
+			}
+			return true;
+		} catch (IOException e) {
+			System.err.println("Error reading input: " + e);
+			System.exit(1);
+			return false;
+		}
+	}
+
+	@Override
+	public void close() {
+		try {
+			in.close();
+		} catch (IOException e) {
+			System.err.println("Error closing input: " + e);
+			System.exit(1);
+		}
+	}
+
+	@Override
+	public char current() {
+		return current;
+	}
+
+	@Override
+	public boolean atEOF() {
+		return atEOF;
+	}
+
+	@Override
+	public Position getPosition() {
+		return new Position(line, column);
+	}
+
+	@Override
+	public int getOffset() {
+		return offset;
+	}
+
+	@Override
+	public LineMap getLineMap() {
+		return lineMap;
+	}
+}
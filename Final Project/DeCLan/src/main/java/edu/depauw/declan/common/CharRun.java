@@ -0,0 +1,184 @@
+package edu.depauw.declan.common;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * A CharRun is a set of ASCII characters that a lexer may skip over in bulk,
+ * such as whitespace or the body of a comment. Non-ASCII characters are never
+ * in a run, so a lexer that skips a run still sees them one at a time.
+ * 
+ * Sources whose text is a ByteBuffer of one byte per character (such as
+ * MappedFileSource) can find the end of a run eight bytes at a time: each byte
+ * of a long is tested in parallel with a few shifts and masks ("SIMD within a
+ * register"), and four longs are tested per step.
+ */
+public enum CharRun {
+	/**
+	 * ASCII whitespace, as defined by Character.isWhitespace.
+	 */
+	WHITESPACE {
+		@Override
+		long outside(long word) {
+			return ~(between(word, '\t', '\r') | between(word, '\u001C', ' ')) & HIGHS;
+		}
+	},
+
+	/**
+	 * ASCII letters and digits.
+	 */
+	WORD {
+		@Override
+		long outside(long word) {
+			return ~(between(word, '0', '9') | between(word, 'A', 'Z') | between(word, 'a', 'z')) & HIGHS;
+		}
+	},
+
+	/**
+	 * ASCII digits.
+	 */
+	DIGITS {
+		@Override
+		long outside(long word) {
+			return ~between(word, '0', '9') & HIGHS;
+		}
+	},
+
+	/**
+	 * Every ASCII character except those that may start or end a comment,
+	 * ( and *.
+	 */
+	COMMENT_TEXT {
+		@Override
+		long outside(long word) {
+			return (between(word, '(', '(') | between(word, '*', '*')) & HIGHS;
+		}
+	};
+
+	private static final long ONES = 0x0101010101010101L;
+	private static final long HIGHS = 0x8080808080808080L;
+
+	/**
+	 * Test the eight bytes of word at once. Bytes of 0x80 and above may give any
+	 * answer; callers mask them out.
+	 * 
+	 * @param word
+	 * @return a mask with the high bit set in each byte of word that is outside
+	 *         this run
+	 */
+	abstract long outside(long word);
+
+	/**
+	 * Setting the high bit of every byte first keeps each subtraction from
+	 * borrowing across bytes, so the high bit of each byte of the result is
+	 * exactly the comparison for that byte.
+	 * 
+	 * @param word
+	 * @param lo
+	 * @param hi   at most 0x7F
+	 * @return a mask with the high bit set in each byte (below 0x80) of word
+	 *         that is between lo and hi, inclusive
+	 */
+	private static long between(long word, char lo, char hi) {
+		long x = word | HIGHS;
+		return (x - lo * ONES) & ~(x - (hi + 1) * ONES) & HIGHS;
+	}
+
+	/**
+	 * @param c
+	 * @return true if c is in this run
+	 */
+	public boolean contains(char c) {
+		return c < 0x80 && (outside(c) & 0x80) == 0;
+	}
+
+	/**
+	 * Find the end of the run that starts at index from of the given bytes, each
+	 * of which is one character. Only absolute reads are used, so the buffer's
+	 * position and limit are not changed.
+	 * 
+	 * @param bytes
+	 * @param from
+	 * @param limit index just past the last byte to examine
+	 * @return the index of the first byte at or after from that is not in this
+	 *         run, or limit if there is none
+	 */
+	public int end(ByteBuffer bytes, int from, int limit) {
+		boolean reverse = bytes.order() == ByteOrder.BIG_ENDIAN;
+		int i = from;
+		while (i + 32 <= limit) {
+			long m0 = mask(bytes, i, reverse);
+			long m1 = mask(bytes, i + 8, reverse);
+			long m2 = mask(bytes, i + 16, reverse);
+			long m3 = mask(bytes, i + 24, reverse);
+			if ((m0 | m1 | m2 | m3) != 0) {
+				if (m0 != 0) {
+					return i + firstByte(m0);
+				} else if (m1 != 0) {
+					return i + 8 + firstByte(m1);
+				} else if (m2 != 0) {
+					return i + 16 + firstByte(m2);
+				} else {
+					return i + 24 + firstByte(m3);
+				}
+			}
+			i = i + 32;
+		}
+		while (i + 8 <= limit) {
+			long m = mask(bytes, i, reverse);
+			if (m != 0) {
+				return i + firstByte(m);
+			}
+			i = i + 8;
+		}
+		while (i < limit && contains((char) (bytes.get(i) & 0xFF))) {
+			i = i + 1;
+		}
+		return i;
+	}
+
+	/**
+	 * Find the next newline in the given bytes, eight bytes at a time.
+	 * 
+	 * @param bytes
+	 * @param from
+	 * @param limit index just past the last byte to examine
+	 * @return the index of the first '\n' at or after from, or limit if there is
+	 *         none
+	 */
+	public static int nextNewline(ByteBuffer bytes, int from, int limit) {
+		boolean reverse = bytes.order() == ByteOrder.BIG_ENDIAN;
+		int i = from;
+		while (i + 8 <= limit) {
+			long word = bytes.getLong(i);
+			if (reverse) {
+				word = Long.reverseBytes(word);
+			}
+			long m = between(word, '\n', '\n') & ~word;
+			if (m != 0) {
+				return i + firstByte(m);
+			}
+			i = i + 8;
+		}
+		while (i < limit && bytes.get(i) != '\n') {
+			i = i + 1;
+		}
+		return i;
+	}
+
+	/**
+	 * Read eight bytes starting at index i, so that the byte at i is the least
+	 * significant.
+	 */
+	private long mask(ByteBuffer bytes, int i, boolean reverse) {
+		long word = bytes.getLong(i);
+		if (reverse) {
+			word = Long.reverseBytes(word);
+		}
+		return outside(word) | (word & HIGHS);
+	}
+
+	private static int firstByte(long mask) {
+		return Long.numberOfTrailingZeros(mask) >>> 3;
+	}
+}
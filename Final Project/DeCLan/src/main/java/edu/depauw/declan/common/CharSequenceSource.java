@@ -0,0 +1,110 @@
+package edu.depauw.declan.common;
+
+/**
+ * A CharSequenceSource is a Source over text that is already in memory, such
+ * as an editor buffer. It may start at any offset of the text, in which case
+ * it is given a LineMap that already covers the whole text, and line and
+ * column numbers are looked up in that map rather than counted.
+ */
+public class CharSequenceSource implements Source {
+	private CharSequence text;
+	private int offset;
+	private LineMap lineMap;
+	private boolean trackLines;
+
+	/**
+	 * Construct a Source over the whole of the given text, building its LineMap
+	 * as characters are read.
+	 * 
+	 * @param text
+	 */
+	public CharSequenceSource(CharSequence text) {
+		this.text = text;
+		this.offset = 0;
+		this.lineMap = new LineMap();
+		this.trackLines = true;
+	}
+
+	/**
+	 * Construct a Source over the given text starting at the given offset. The
+	 * LineMap must already record every line start of the text.
+	 * 
+	 * @param text
+	 * @param start
+	 * @param lineMap
+	 */
+	public CharSequenceSource(CharSequence text, int start, LineMap lineMap) {
+		this.text = text;
+		this.offset = start;
+		this.lineMap = lineMap;
+		this.trackLines = false;
+	}
+
+	@Override
+	public void advance() {
+		if (atEOF())
+			return;
+
+		if (trackLines && text.charAt(offset) == '\n') {
+			lineMap.addLineStart(offset + 1);
+		}
+		offset = offset + 1;
+	}
+
+	@Override
+	public void advanceWhile(CharRun run, StringBuilder text) {
+		if (!(this.text instanceof ByteBufferText)) {
+			Source.super.advanceWhile(run, text);
+			return;
+		}
+		if (atEOF() || !run.contains(current())) {
+			return;
+		}
+
+		// Bytes of the underlying buffer can be tested many at a time
+		ByteBufferText bytes = (ByteBufferText) this.text;
+		int base = bytes.getStart();
+		int end = run.end(bytes.getBuffer(), base + offset, base + bytes.length());
+		if (text != null) {
+			text.append(bytes, offset, end - base);
+		}
+		if (trackLines) {
+			int newline = CharRun.nextNewline(bytes.getBuffer(), base + offset, end);
+			while (newline < end) {
+				lineMap.addLineStart(newline - base + 1);
+				newline = CharRun.nextNewline(bytes.getBuffer(), newline + 1, end);
+			}
+		}
+		offset = end - base;
+	}
+
+	@Override
+	public void close() {
+		// Nothing to close
+	}
+
+	@Override
+	public char current() {
+		return text.charAt(offset);
+	}
+
+	@Override
+	public boolean atEOF() {
+		return offset >= text.length();
+	}
+
+	@Override
+	public Position getPosition() {
+		return lineMap.getPosition(offset);
+	}
+
+	@Override
+	public int getOffset() {
+		return offset;
+	}
+
+	@Override
+	public LineMap getLineMap() {
+		return lineMap;
+	}
+}
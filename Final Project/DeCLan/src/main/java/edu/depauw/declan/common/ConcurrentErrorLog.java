@@ -0,0 +1,146 @@
+package edu.depauw.declan.common;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A ConcurrentErrorLog is an ErrorLog that may be shared by several threads,
+ * such as the tasks of a parallel lexer or checker. Each thread appends to its
+ * own buffer, which only that thread writes, so adding an error takes no lock.
+ * The buffers are merged and sorted by position only when the log is
+ * iterated. As with ErrorLog, only the first error logged at any one position
+ * is kept; a concurrent set of the positions seen so far drops the others as
+ * they are added.
+ * 
+ * Iteration gives a snapshot of the errors added so far; to see them all,
+ * iterate after the adding threads have finished (for example, after joining
+ * their tasks).
+ * 
+ * The log may also be given a maximum number of errors. Adding the error that
+ * reaches that number throws an ErrorLimitException, aborting compilation; the
+ * errors logged so far are kept. Errors that are dropped as duplicates do not
+ * count toward the limit.
+ */
+public class ConcurrentErrorLog extends ErrorLog {
+	private final int maxErrors;
+	private final AtomicInteger count;
+	private final Set<Position> positions;
+	private final Queue<Buffer> buffers;
+	private final ThreadLocal<Buffer> local;
+
+	/**
+	 * Construct a log with no limit on the number of errors.
+	 */
+	public ConcurrentErrorLog() {
+		this(Integer.MAX_VALUE);
+	}
+
+	/**
+	 * Construct a log that aborts compilation once maxErrors errors have been
+	 * added.
+	 * 
+	 * @param maxErrors
+	 */
+	public ConcurrentErrorLog(int maxErrors) {
+		if (maxErrors <= 0) {
+			throw new IllegalArgumentException("maxErrors must be positive: " + maxErrors);
+		}
+		this.maxErrors = maxErrors;
+		this.count = new AtomicInteger();
+		this.positions = ConcurrentHashMap.newKeySet();
+		this.buffers = new ConcurrentLinkedQueue<>();
+		this.local = ThreadLocal.withInitial(() -> {
+			Buffer buffer = new Buffer();
+			buffers.add(buffer);
+			return buffer;
+		});
+	}
+
+	/**
+	 * Add an error message associated with the given source position to the
+	 * calling thread's buffer.
+	 * 
+	 * @param message
+	 * @param position
+	 * @throws ErrorLimitException if this is the maxErrors'th error
+	 */
+	@Override
+	public void add(String message, Position position) {
+		if (count.get() >= maxErrors) {
+			throw new ErrorLimitException(maxErrors);
+		}
+		if (!positions.add(position)) {
+			// Not kept, as in ErrorLog
+			return;
+		}
+
+		int n = count.incrementAndGet();
+		if (n > maxErrors) {
+			// Another thread has already reached the limit
+			throw new ErrorLimitException(maxErrors);
+		}
+
+		local.get().add(new LogItem(message, position));
+
+		if (n == maxErrors) {
+			throw new ErrorLimitException(maxErrors);
+		}
+	}
+
+	/**
+	 * @return the maximum number of errors before compilation is aborted
+	 */
+	public int getMaxErrors() {
+		return maxErrors;
+	}
+
+	@Override
+	public Iterator<LogItem> iterator() {
+		List<LogItem> all = new ArrayList<>();
+		for (Buffer buffer : buffers) {
+			buffer.copyTo(all);
+		}
+
+		// Each position occurs at most once
+		LogItem[] items = all.toArray(new LogItem[all.size()]);
+		Arrays.sort(items);
+		return Collections.unmodifiableList(Arrays.asList(items)).iterator();
+	}
+
+	/**
+	 * An append-only array of LogItems, written by a single thread. The writer
+	 * stores the item before publishing the new size, so a reader that sees a
+	 * size also sees that many items.
+	 */
+	private static class Buffer {
+		private volatile LogItem[] items = new LogItem[16];
+		private volatile int size = 0;
+
+		void add(LogItem item) {
+			LogItem[] array = items;
+			int n = size;
+			if (n == array.length) {
+				array = Arrays.copyOf(array, n * 2);
+				items = array;
+			}
+			array[n] = item;
+			size = n + 1;
+		}
+
+		void copyTo(List<LogItem> list) {
+			int n = size;
+			LogItem[] array = items;
+			for (int i = 0; i < n; i++) {
+				list.add(array[i]);
+			}
+		}
+	}
+}
@@ -0,0 +1,14 @@
+package edu.depauw.declan.common;
+
+/**
+ * An unchecked exception class that is thrown when a ConcurrentErrorLog
+ * reaches its maximum number of errors. It extends ParseException, so that
+ * drivers which already stop on a parse error also stop here, in whichever
+ * phase the limit was reached.
+ */
+@SuppressWarnings("serial")
+public class ErrorLimitException extends ParseException {
+	public ErrorLimitException(int maxErrors) {
+		super("Too many errors (limit " + maxErrors + "); compilation aborted");
+	}
+}
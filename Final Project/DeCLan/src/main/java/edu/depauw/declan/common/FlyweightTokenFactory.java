@@ -0,0 +1,72 @@
+package edu.depauw.declan.common;
+
+import java.util.Arrays;
+
+/**
+ * A FlyweightTokenFactory shares everything about a token except its position.
+ * Operators, punctuation and keywords use one shared Kind per TokenType, and
+ * each identifier uses one shared Kind per interned name, so a token of any of
+ * these types is only an offset, a Locator and a reference. Only numeric and
+ * string literals get a Kind of their own.
+ * 
+ * A token still has to report its own Position, so one small object per token
+ * remains; what is saved is the lexeme, value and type fields of every fixed
+ * token and every repeated identifier. A factory should only be used by one
+ * lexer at a time.
+ */
+public class FlyweightTokenFactory implements TokenFactory {
+	private final SymbolInterner symbols;
+	private Token.Kind[] idKinds;
+
+	/**
+	 * Construct a factory that interns identifier names in the given
+	 * SymbolInterner.
+	 * 
+	 * @param symbols
+	 */
+	public FlyweightTokenFactory(SymbolInterner symbols) {
+		this.symbols = symbols;
+		this.idKinds = new Token.Kind[64];
+	}
+
+	/**
+	 * @return the SymbolInterner holding the names of identifiers
+	 */
+	public SymbolInterner getSymbolInterner() {
+		return symbols;
+	}
+
+	@Override
+	public Token makeToken(TokenType type, int offset, Locator locator) {
+		return new Token(offset, locator, Token.Kind.fixed(type));
+	}
+
+	@Override
+	public Token makeIdToken(CharSequence lexeme, int offset, Locator locator) {
+		TokenType type = ReservedWords.lookup(lexeme);
+		if (type != null) {
+			return new Token(offset, locator, Token.Kind.fixed(type));
+		}
+
+		int id = symbols.intern(lexeme);
+		if (id >= idKinds.length) {
+			idKinds = Arrays.copyOf(idKinds, Math.max(idKinds.length * 2, id + 1));
+		}
+		Token.Kind kind = idKinds[id];
+		if (kind == null) {
+			kind = new Token.Kind(TokenType.ID, symbols.getName(id), id, 0, false);
+			idKinds[id] = kind;
+		}
+		return new Token(offset, locator, kind);
+	}
+
+	@Override
+	public Token makeNumToken(String lexeme, int offset, Locator locator, long numValue, boolean real) {
+		return Token.createNum(lexeme, offset, locator, numValue, real);
+	}
+
+	@Override
+	public Token makeStringToken(String lexeme, int offset, Locator locator) {
+		return Token.createString(lexeme, offset, locator);
+	}
+}
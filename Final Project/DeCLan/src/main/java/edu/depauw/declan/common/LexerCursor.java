@@ -0,0 +1,77 @@
+package edu.depauw.declan.common;
+
+/**
+ * A LexerCursor is a view of the current token of a lexer, for clients that do
+ * not need a Token object for each token. The lexer keeps a single cursor and
+ * overwrites its fields on each call to advance(), so scanning allocates
+ * nothing per token. Unlike Lexer.hasNext(), nothing is scanned until
+ * advance() is called.
+ * 
+ * Before the first call to advance(), and after it has returned false, there is
+ * no current token and the other methods are not meaningful.
+ */
+public interface LexerCursor extends AutoCloseable {
+	/**
+	 * Scan the next token and make it current.
+	 * 
+	 * @return false if there are no more tokens
+	 */
+	boolean advance();
+
+	/**
+	 * @return the TokenType of the current token
+	 */
+	TokenType type();
+
+	/**
+	 * @return the offset in the Source of the first character of the current token
+	 */
+	int startOffset();
+
+	/**
+	 * @return the number of characters in the current token
+	 */
+	int length();
+
+	/**
+	 * @return the id in symbols() of the current token, if it is an identifier, or
+	 *         else SymbolInterner.NO_SYMBOL
+	 */
+	int symbolId();
+
+	/**
+	 * The lexeme of the current token (for a string literal, just its contents).
+	 * This is the lexer's own buffer: it is only valid until the next call to
+	 * advance(), and must be copied to be kept.
+	 * 
+	 * @return
+	 */
+	CharSequence lexeme();
+
+	/**
+	 * @return the decoded value of a current integer literal, or the raw bits of a
+	 *         real
+	 */
+	long numValue();
+
+	/**
+	 * @return true if the current token is a real literal
+	 */
+	boolean isReal();
+
+	/**
+	 * @return the Locator that converts token offsets into Positions
+	 */
+	Locator locator();
+
+	/**
+	 * @return the SymbolInterner that holds the names of identifiers
+	 */
+	SymbolInterner symbols();
+
+	/**
+	 * Specialized declaration of close() that guarantees no exceptions are thrown.
+	 */
+	@Override
+	void close();
+}
@@ -0,0 +1,112 @@
+package edu.depauw.declan.common;
+
+import java.util.Arrays;
+
+/**
+ * A LineMap records the offset at which each line of a Source starts, so that
+ * any offset can later be turned back into a line:column Position by binary
+ * search. The Source adds a line start each time it moves past a newline.
+ */
+public class LineMap implements Locator {
+	private int[] lineStarts;
+	private int lineCount;
+
+	/**
+	 * Construct a LineMap containing only the first line, starting at offset 0.
+	 */
+	public LineMap() {
+		this.lineStarts = new int[64];
+		this.lineStarts[0] = 0;
+		this.lineCount = 1;
+	}
+
+	/**
+	 * Record that a new line starts at the given offset. Offsets must be added in
+	 * increasing order.
+	 * 
+	 * @param offset
+	 */
+	public void addLineStart(int offset) {
+		if (lineCount == lineStarts.length) {
+			lineStarts = Arrays.copyOf(lineStarts, lineCount * 2);
+		}
+		lineStarts[lineCount] = offset;
+		lineCount = lineCount + 1;
+	}
+
+	/**
+	 * @return the number of lines recorded so far
+	 */
+	public int getLineCount() {
+		return lineCount;
+	}
+
+	/**
+	 * @param line a line number, starting from 1
+	 * @return the offset of the first character on that line
+	 */
+	public int getLineStart(int line) {
+		return lineStarts[line - 1];
+	}
+
+	/**
+	 * @param offset
+	 * @return the line number (starting from 1) containing the given offset
+	 */
+	public int getLine(int offset) {
+		// Find the last line start that is <= offset
+		int low = 0;
+		int high = lineCount - 1;
+		while (low < high) {
+			int mid = (low + high + 1) >>> 1;
+			if (lineStarts[mid] <= offset) {
+				low = mid;
+			} else {
+				high = mid - 1;
+			}
+		}
+		return low + 1;
+	}
+
+	/**
+	 * Build the LineMap for the text that results from replacing removedLength
+	 * characters at the given offset with the inserted text. Line starts before
+	 * the edit are kept, those whose newline was removed are dropped, newlines in
+	 * the inserted text are added, and those after the edit are shifted.
+	 * 
+	 * @param offset
+	 * @param removedLength
+	 * @param inserted
+	 * @return the new LineMap; this one is unchanged
+	 */
+	public LineMap splice(int offset, int removedLength, CharSequence inserted) {
+		LineMap result = new LineMap();
+		int delta = inserted.length() - removedLength;
+
+		// lineStarts[0] is always 0, already present in result
+		int line = 1;
+		while (line < lineCount && lineStarts[line] <= offset) {
+			result.addLineStart(lineStarts[line]);
+			line = line + 1;
+		}
+		for (int i = 0; i < inserted.length(); i++) {
+			if (inserted.charAt(i) == '\n') {
+				result.addLineStart(offset + i + 1);
+			}
+		}
+		while (line < lineCount && lineStarts[line] <= offset + removedLength) {
+			line = line + 1;
+		}
+		while (line < lineCount) {
+			result.addLineStart(lineStarts[line] + delta);
+			line = line + 1;
+		}
+		return result;
+	}
+
+	@Override
+	public Position getPosition(int offset) {
+		int line = getLine(offset);
+		return new Position(line, offset - lineStarts[line - 1] + 1);
+	}
+}
@@ -0,0 +1,15 @@
+package edu.depauw.declan.common;
+
+/**
+ * A Locator converts a character offset in a Source (counting from 0) into the
+ * corresponding line:column Position. Tokens and AST nodes store just an
+ * offset and a shared Locator, so that a Position object only needs to be
+ * created when one is actually asked for, such as when reporting an error.
+ */
+public interface Locator {
+	/**
+	 * @param offset
+	 * @return the Position of the character at the given offset
+	 */
+	Position getPosition(int offset);
+}
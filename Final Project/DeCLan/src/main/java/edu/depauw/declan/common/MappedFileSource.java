@@ -0,0 +1,250 @@
+package edu.depauw.declan.common;
+
+import java.io.IOException;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A MappedFileSource is a Source that memory-maps an entire file and scans its
+ * bytes directly, instead of pulling one character at a time through a
+ * Reader. The file is read as UTF-8, as ChannelSource reads standard input.
+ * Each ASCII byte (all of a DeCLan program outside of strings and comments) is
+ * taken directly as one character; each run of non-ASCII bytes is passed to a
+ * CharsetDecoder, which replaces malformed input with U+FFFD. Offsets count
+ * characters, not bytes.
+ * 
+ * Files are limited to Integer.MAX_VALUE bytes, the most that can be mapped
+ * into a single buffer.
+ */
+public class MappedFileSource implements Source {
+	private FileChannel channel;
+	private MappedByteBuffer buffer;
+	private int limit;
+	private int position;
+	private CharsetDecoder decoder;
+	private CharBuffer chars;
+	private CharSequence text;
+	private int offset;
+	private char current;
+	private boolean atEOF;
+	private int line, column;
+	private LineMap lineMap;
+
+	/**
+	 * Construct a Source by mapping the named file into memory. Once constructed,
+	 * the first character of the file (at line 1, column 1) will be available via
+	 * current(), or else atEOF() will be true.
+	 * 
+	 * @param fileName
+	 * @throws IOException if the file cannot be opened or is too large to map
+	 */
+	public MappedFileSource(String fileName) throws IOException {
+		this(Paths.get(fileName));
+	}
+
+	/**
+	 * Construct a Source by mapping the file at the given path into memory.
+	 * 
+	 * @param path
+	 * @throws IOException if the file cannot be opened or is too large to map
+	 */
+	public MappedFileSource(Path path) throws IOException {
+		this.channel = FileChannel.open(path, StandardOpenOption.READ);
+		long size = channel.size();
+		if (size > Integer.MAX_VALUE) {
+			channel.close();
+			throw new IOException("File too large to map: " + path);
+		}
+		this.buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+		this.limit = (int) size;
+		this.position = 0;
+		this.decoder = StandardCharsets.UTF_8.newDecoder().onMalformedInput(CodingErrorAction.REPLACE)
+				.onUnmappableCharacter(CodingErrorAction.REPLACE);
+		this.chars = CharBuffer.allocate(0);
+		this.text = null;
+		this.offset = -1;
+		this.line = 0;
+		this.column = 0;
+		this.lineMap = new LineMap();
+		this.current = '\n';
+		this.atEOF = false;
+
+		advance();
+	}
+
+	@Override
+	public void advance() {
+		if (atEOF)
+			return;
+
+		if (current == '\n') {
+			line = line + 1;
+			column = 1;
+			if (offset >= 0) {
+				lineMap.addLineStart(offset + 1);
+			}
+		} else {
+			column = column + 1;
+		}
+
+		offset = offset + 1;
+		if (!nextChar()) {
+			atEOF = true;
+		}
+	}
+
+	/**
+	 * Set current to the next character of the input.
+	 * 
+	 * @return false if there are no more characters
+	 */
+	private boolean nextChar() {
+		if (chars.hasRemaining()) {
+			// Left over from decoding a non-ASCII run
+			current = chars.get();
+			return true;
+		}
+		if (position >= limit) {
+			return false;
+		}
+
+		byte b = buffer.get(position);
+		if (b >= 0) {
+			current = (char) b;
+			position = position + 1;
+			return true;
+		}
+
+		// ASCII bytes never occur within a multi-byte sequence, so the run up to
+		// the next one decodes the same way on its own
+		int end = position + 1;
+		while (end < limit && buffer.get(end) < 0) {
+			end = end + 1;
+		}
+		chars = decode(position, end);
+		position = end;
+		current = chars.get();
+		return true;
+	}
+
+	private CharBuffer decode(int from, int to) {
+		try {
+			decoder.reset();
+			return decoder.decode(buffer.slice(from, to - from));
+		} catch (CharacterCodingException e) {
+			// Not possible, since malformed input is replaced
+			throw new IllegalStateException(e);
+		}
+	}
+
+	@Override
+	public void advanceWhile(CharRun run, StringBuilder text) {
+		if (atEOF || !run.contains(current)) {
+			return;
+		}
+
+		// A run is all ASCII, so current came straight from the byte before
+		// position, and each byte of the run is one character
+		int from = position - 1;
+		int end = run.end(buffer, from, limit);
+		if (text != null) {
+			for (int i = from; i < end; i++) {
+				text.append((char) (buffer.get(i) & 0xFF));
+			}
+		}
+
+		// Record the lines that start within the run
+		int newline = CharRun.nextNewline(buffer, from, end);
+		if (newline == end) {
+			column = column + (end - from);
+		} else {
+			while (newline < end) {
+				line = line + 1;
+				lineMap.addLineStart(offset + (newline - from) + 1);
+				column = end - newline;
+				newline = CharRun.nextNewline(buffer, newline + 1, end);
+			}
+		}
+
+		offset = offset + (end - from);
+		position = end;
+		if (!nextChar()) {
+			atEOF = true;
+		}
+	}
+
+	@Override
+	public void close() {
+		try {
+			channel.close();
+		} catch (IOException e) {
+			System.err.println("Error closing input: " + e);
+			System.exit(1);
+		}
+	}
+
+	@Override
+	public char current() {
+		return current;
+	}
+
+	@Override
+	public boolean atEOF() {
+		return atEOF;
+	}
+
+	@Override
+	public Position getPosition() {
+		return new Position(line, column);
+	}
+
+	@Override
+	public int getOffset() {
+		return offset;
+	}
+
+	@Override
+	public LineMap getLineMap() {
+		return lineMap;
+	}
+
+	/**
+	 * @return the whole file as a CharSequence, for clients that need random
+	 *         access (such as ParallelLexer); reading it does not move this
+	 *         Source. An ASCII file is viewed in place; any other file is
+	 *         decoded once, so that its offsets agree with this Source.
+	 */
+	public CharSequence getText() {
+		if (text == null) {
+			if (isAscii()) {
+				text = new ByteBufferText(buffer, 0, limit);
+			} else {
+				text = decode(0, limit).asReadOnlyBuffer();
+			}
+		}
+		return text;
+	}
+
+	private boolean isAscii() {
+		int i = 0;
+		for (; i + Long.BYTES <= limit; i += Long.BYTES) {
+			if ((buffer.getLong(i) & 0x8080808080808080L) != 0) {
+				return false;
+			}
+		}
+		for (; i < limit; i++) {
+			if (buffer.get(i) < 0) {
+				return false;
+			}
+		}
+		return true;
+	}
+}
@@ -0,0 +1,100 @@
+package edu.depauw.declan.common;
+
+/**
+ * Decoding of DeCLan numeric literals: decimal integers (123), hexadecimal
+ * integers (0AH, with a trailing H) and reals (3.14E+2, recognized by their
+ * decimal point). Lexers decode each literal once, so that the value can be
+ * carried on the Token and the NumValue node instead of being parsed again from
+ * the lexeme by every later phase.
+ */
+public final class NumLiteral {
+	private NumLiteral() {
+		// Not instantiable
+	}
+
+	/**
+	 * @param lexeme
+	 * @return true if the numeric literal is a real (contains a decimal point)
+	 */
+	public static boolean isReal(CharSequence lexeme) {
+		for (int i = 0; i < lexeme.length(); i++) {
+			if (lexeme.charAt(i) == '.') {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Decode a decimal or hexadecimal integer literal. Values too large for a
+	 * long are returned as Long.MAX_VALUE; callers check the result against the
+	 * range they need (for DeCLan INTEGER, fitsInteger).
+	 * 
+	 * @param lexeme
+	 * @return the value of the literal
+	 */
+	public static long decodeInteger(CharSequence lexeme) {
+		int length = lexeme.length();
+		int radix = 10;
+		if (length > 0 && lexeme.charAt(length - 1) == 'H') {
+			radix = 16;
+			length = length - 1;
+		}
+
+		long limit = Long.MAX_VALUE / radix;
+		long value = 0;
+		for (int i = 0; i < length; i++) {
+			int digit = Character.digit(lexeme.charAt(i), radix);
+			if (value > limit || value * radix > Long.MAX_VALUE - digit) {
+				return Long.MAX_VALUE;
+			}
+			value = value * radix + digit;
+		}
+		return value;
+	}
+
+	/**
+	 * Decode a real literal. Values too large for a double are returned as
+	 * positive infinity. Digits from other scripts, which the lexer accepts as
+	 * Character.isDigit does, are first replaced by ASCII digits.
+	 * 
+	 * @param lexeme
+	 * @return the value of the literal
+	 */
+	public static double decodeReal(CharSequence lexeme) {
+		StringBuilder ascii = new StringBuilder(lexeme.length());
+		for (int i = 0; i < lexeme.length(); i++) {
+			char c = lexeme.charAt(i);
+			if (c >= 128 && Character.isDigit(c)) {
+				c = (char) ('0' + Character.digit(c, 10));
+			}
+			ascii.append(c);
+		}
+		return Double.parseDouble(ascii.toString());
+	}
+
+	/**
+	 * @param value
+	 * @return true if the decoded integer literal is in range for a DeCLan
+	 *         INTEGER
+	 */
+	public static boolean fitsInteger(long value) {
+		return value <= Integer.MAX_VALUE;
+	}
+
+	/**
+	 * Decode a numeric literal into the primitive payload carried by Tokens and
+	 * NumValues: the value of an integer, or the bits of a real as given by
+	 * Double.doubleToRawLongBits.
+	 * 
+	 * @param lexeme
+	 * @return
+	 */
+	public static long decode(CharSequence lexeme) {
+		if (isReal(lexeme)) {
+			return Double.doubleToRawLongBits(decodeReal(lexeme));
+		} else {
+			return decodeInteger(lexeme);
+		}
+	}
+}
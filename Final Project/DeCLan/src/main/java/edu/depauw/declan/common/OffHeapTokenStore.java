@@ -0,0 +1,447 @@
+package edu.depauw.declan.common;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * An OffHeapTokenStore holds the tokens of a Source outside of the Java heap,
+ * for machine-generated programs too large to keep as heap objects. Each token
+ * is a packed 16-byte record (start, length, type and value, where the value
+ * is an interned symbol id or the number of a literal), so the garbage
+ * collector never sees more than the list of pages, however many tokens there
+ * are. Numeric and string literals keep their decoded value and lexeme in a
+ * second off-heap area. Identifier names stay in the (heap) SymbolInterner,
+ * since each is only stored once.
+ * 
+ * Memory is allocated in pages of direct ByteBuffers. Once a given number of
+ * bytes has been allocated, further pages are instead mapped from a temporary
+ * file, which is deleted when the store is closed; the operating system then
+ * decides how much of it to keep in memory. Pages are only released when the
+ * store itself is garbage collected, as for any direct buffer.
+ * 
+ * The store is filled by one thread and may then be read by others.
+ */
+public class OffHeapTokenStore implements TokenSequence {
+	/**
+	 * Default size of each page, in bytes (as a power of two).
+	 */
+	public static final int DEFAULT_PAGE_BITS = 22;
+
+	/**
+	 * A suggested number of bytes of direct memory to use before spilling.
+	 */
+	public static final long DEFAULT_SPILL_THRESHOLD = 256L << 20;
+
+	private static final TokenType[] TYPES = TokenType.values();
+
+	// Layout of a token record
+	private static final int RECORD_SIZE = 16;
+	private static final int START = 0;
+	private static final int LENGTH = 4;
+	private static final int VALUE = 8;
+	private static final int TYPE = 12;
+
+	// Layout of a literal: a header, followed by its characters and padding to a
+	// multiple of 8 bytes
+	private static final int NUM_VALUE = 0;
+	private static final int TEXT_LENGTH = 8;
+	private static final int REAL = 12;
+	private static final int TEXT = 16;
+
+	private final Locator locator;
+	private final SymbolInterner symbols;
+	private final Area records;
+	private final Area literalIndex;
+	private final Area literals;
+	private int size;
+	private int literalCount;
+
+	/**
+	 * Construct an empty store whose offsets are interpreted by the given
+	 * Locator, and whose identifiers are interned in the given SymbolInterner.
+	 * All pages are allocated as direct buffers.
+	 * 
+	 * @param locator
+	 * @param symbols
+	 */
+	public OffHeapTokenStore(Locator locator, SymbolInterner symbols) {
+		this(locator, symbols, Long.MAX_VALUE, DEFAULT_PAGE_BITS);
+	}
+
+	/**
+	 * Construct an empty store that spills to a temporary memory-mapped file once
+	 * spillThreshold bytes of direct memory have been allocated.
+	 * 
+	 * @param locator
+	 * @param symbols
+	 * @param spillThreshold
+	 */
+	public OffHeapTokenStore(Locator locator, SymbolInterner symbols, long spillThreshold) {
+		this(locator, symbols, spillThreshold, DEFAULT_PAGE_BITS);
+	}
+
+	/**
+	 * Construct an empty store with pages of 2^pageBits bytes, which must be
+	 * large enough to hold a token record.
+	 * 
+	 * @param locator
+	 * @param symbols
+	 * @param spillThreshold
+	 * @param pageBits
+	 */
+	public OffHeapTokenStore(Locator locator, SymbolInterner symbols, long spillThreshold, int pageBits) {
+		if (pageBits < 4 || pageBits > 30) {
+			throw new IllegalArgumentException("pageBits out of range: " + pageBits);
+		}
+		this.locator = locator;
+		this.symbols = symbols;
+		Spill spill = new Spill(spillThreshold, pageBits);
+		this.records = new Area(pageBits, spill);
+		this.literalIndex = new Area(pageBits, spill);
+		this.literals = new Area(pageBits, spill);
+		this.size = 0;
+		this.literalCount = 0;
+	}
+
+	/**
+	 * Append a token of a type where the lexeme is always the same.
+	 * 
+	 * @param type
+	 * @param start  offset of the first character of the token
+	 * @param length number of characters in the token
+	 */
+	public void add(TokenType type, int start, int length) {
+		append(type, start, length, SymbolInterner.NO_SYMBOL);
+	}
+
+	/**
+	 * Append a token that looks like an identifier. If the lexeme matches one of
+	 * the reserved words, the corresponding keyword is appended instead;
+	 * otherwise the name is interned and its id recorded.
+	 * 
+	 * @param lexeme
+	 * @param start  offset of the first character of the token
+	 * @param length number of characters in the token
+	 */
+	public void addId(CharSequence lexeme, int start, int length) {
+		TokenType type = ReservedWords.lookup(lexeme);
+		if (type != null) {
+			append(type, start, length, SymbolInterner.NO_SYMBOL);
+		} else {
+			append(TokenType.ID, start, length, symbols.intern(lexeme));
+		}
+	}
+
+	/**
+	 * Append a numeric literal together with its decoded value.
+	 * 
+	 * @param lexeme
+	 * @param start    offset of the first character of the token
+	 * @param length   number of characters in the token
+	 * @param numValue the value of an integer literal, or the raw bits of a real
+	 * @param real     true if the literal is a real
+	 */
+	public void addNum(CharSequence lexeme, int start, int length, long numValue, boolean real) {
+		append(TokenType.NUM, start, length, addLiteral(lexeme, numValue, real));
+	}
+
+	/**
+	 * Append a string literal; the lexeme is just its contents (without quotes),
+	 * while the length covers the whole token.
+	 * 
+	 * @param lexeme
+	 * @param start  offset of the first character of the token
+	 * @param length number of characters in the token
+	 */
+	public void addString(CharSequence lexeme, int start, int length) {
+		append(TokenType.STRING, start, length, addLiteral(lexeme, 0, false));
+	}
+
+	/**
+	 * Append a copy of the current token of a LexerCursor, which should share
+	 * this store's Locator and SymbolInterner.
+	 * 
+	 * @param cursor
+	 */
+	public void add(LexerCursor cursor) {
+		TokenType type = cursor.type();
+		switch (type) {
+		case ID:
+			append(type, cursor.startOffset(), cursor.length(), cursor.symbolId());
+			break;
+		case NUM:
+			addNum(cursor.lexeme(), cursor.startOffset(), cursor.length(), cursor.numValue(), cursor.isReal());
+			break;
+		case STRING:
+			addString(cursor.lexeme(), cursor.startOffset(), cursor.length());
+			break;
+		default:
+			add(type, cursor.startOffset(), cursor.length());
+			break;
+		}
+	}
+
+	private void append(TokenType type, int start, int length, int value) {
+		long record = records.allocate(RECORD_SIZE);
+		records.putInt(record + START, start);
+		records.putInt(record + LENGTH, length);
+		records.putInt(record + VALUE, value);
+		records.putInt(record + TYPE, type.ordinal());
+		size = size + 1;
+	}
+
+	private int addLiteral(CharSequence lexeme, long numValue, boolean real) {
+		int n = lexeme.length();
+		long literal = literals.allocate((TEXT + 2 * n + 7) & ~7);
+		literals.putLong(literal + NUM_VALUE, numValue);
+		literals.putInt(literal + TEXT_LENGTH, n);
+		literals.putInt(literal + REAL, real ? 1 : 0);
+		for (int i = 0; i < n; i++) {
+			literals.putChar(literal + TEXT + 2 * i, lexeme.charAt(i));
+		}
+
+		literalIndex.putLong(literalIndex.allocate(8), literal);
+		literalCount = literalCount + 1;
+		return literalCount - 1;
+	}
+
+	/**
+	 * @param i
+	 * @return the position in the literal area of the literal of token i
+	 */
+	private long literal(int i) {
+		return literalIndex.getLong(8L * records.getInt(record(i) + VALUE));
+	}
+
+	private static long record(int i) {
+		return (long) i * RECORD_SIZE;
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+	@Override
+	public SymbolInterner getSymbolInterner() {
+		return symbols;
+	}
+
+	@Override
+	public TokenType getType(int i) {
+		return TYPES[records.getInt(record(i) + TYPE)];
+	}
+
+	@Override
+	public int getStart(int i) {
+		return records.getInt(record(i) + START);
+	}
+
+	@Override
+	public int getLength(int i) {
+		return records.getInt(record(i) + LENGTH);
+	}
+
+	@Override
+	public int getSymbolId(int i) {
+		return getType(i) == TokenType.ID ? records.getInt(record(i) + VALUE) : SymbolInterner.NO_SYMBOL;
+	}
+
+	@Override
+	public String getLexeme(int i) {
+		switch (getType(i)) {
+		case ID:
+			return symbols.getName(records.getInt(record(i) + VALUE));
+		case NUM:
+		case STRING:
+			long literal = literal(i);
+			int n = literals.getInt(literal + TEXT_LENGTH);
+			char[] text = new char[n];
+			for (int j = 0; j < n; j++) {
+				text[j] = literals.getChar(literal + TEXT + 2 * j);
+			}
+			return new String(text);
+		default:
+			return null;
+		}
+	}
+
+	@Override
+	public boolean isReal(int i) {
+		return getType(i) == TokenType.NUM && literals.getInt(literal(i) + REAL) != 0;
+	}
+
+	@Override
+	public long getIntValue(int i) {
+		return getType(i) == TokenType.NUM ? literals.getLong(literal(i) + NUM_VALUE) : 0;
+	}
+
+	@Override
+	public Locator getLocator(int i) {
+		return locator;
+	}
+
+	/**
+	 * @return the number of bytes allocated so far, on- and off-heap, for tokens
+	 *         and literals
+	 */
+	public long getAllocatedBytes() {
+		return records.capacity() + literalIndex.capacity() + literals.capacity();
+	}
+
+	/**
+	 * @return true if some pages have been spilled to a temporary file
+	 */
+	public boolean hasSpilled() {
+		return records.spill.channel != null;
+	}
+
+	/**
+	 * @return true once the store has been closed
+	 */
+	public boolean isClosed() {
+		return records.spill.closed;
+	}
+
+	/**
+	 * Close and delete the temporary file, if any. The store must not be used
+	 * afterwards.
+	 */
+	@Override
+	public void close() {
+		records.spill.close();
+	}
+
+	/**
+	 * Decides where new pages come from, shared by the areas of a store: direct
+	 * buffers until the threshold is reached, and then consecutive regions of a
+	 * temporary file.
+	 */
+	private static class Spill {
+		private final long threshold;
+		private final int pageSize;
+		private long direct;
+		private FileChannel channel;
+		private long fileSize;
+		private boolean closed;
+
+		Spill(long threshold, int pageBits) {
+			this.threshold = threshold;
+			this.pageSize = 1 << pageBits;
+			this.direct = 0;
+			this.channel = null;
+			this.fileSize = 0;
+			this.closed = false;
+		}
+
+		ByteBuffer newPage() {
+			if (direct + pageSize <= threshold) {
+				direct = direct + pageSize;
+				return ByteBuffer.allocateDirect(pageSize).order(ByteOrder.nativeOrder());
+			}
+
+			try {
+				if (channel == null) {
+					Path file = Files.createTempFile("declan-tokens", ".bin");
+					channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE,
+							StandardOpenOption.DELETE_ON_CLOSE);
+				}
+				ByteBuffer page = channel.map(FileChannel.MapMode.READ_WRITE, fileSize, pageSize);
+				fileSize = fileSize + pageSize;
+				return page.order(ByteOrder.nativeOrder());
+			} catch (IOException e) {
+				System.err.println("Unable to spill tokens to disk: " + e);
+				System.exit(1);
+				return null;
+			}
+		}
+
+		void close() {
+			closed = true;
+			if (channel != null) {
+				try {
+					channel.close();
+				} catch (IOException e) {
+					System.err.println("Error closing token file: " + e);
+					System.exit(1);
+				}
+			}
+		}
+	}
+
+	/**
+	 * A growable region of off-heap memory, addressed by a long position and made
+	 * up of equal-sized pages. Values are always aligned to their size, and pages
+	 * are a power of two in size, so no value crosses a page boundary.
+	 */
+	private static class Area {
+		private final int pageBits;
+		private final int pageMask;
+		private final Spill spill;
+		private final List<ByteBuffer> pages;
+		private long used;
+
+		Area(int pageBits, Spill spill) {
+			this.pageBits = pageBits;
+			this.pageMask = (1 << pageBits) - 1;
+			this.spill = spill;
+			this.pages = new ArrayList<>();
+			this.used = 0;
+		}
+
+		/**
+		 * Reserve the given number of bytes, which must be a multiple of 8 (or of
+		 * the record size), at the end of the area.
+		 * 
+		 * @param bytes
+		 * @return the position of the first reserved byte
+		 */
+		long allocate(int bytes) {
+			long position = used;
+			used = used + bytes;
+			while (used > capacity()) {
+				pages.add(spill.newPage());
+			}
+			return position;
+		}
+
+		long capacity() {
+			return (long) pages.size() << pageBits;
+		}
+
+		private ByteBuffer page(long position) {
+			return pages.get((int) (position >>> pageBits));
+		}
+
+		int getInt(long position) {
+			return page(position).getInt((int) position & pageMask);
+		}
+
+		void putInt(long position, int value) {
+			page(position).putInt((int) position & pageMask, value);
+		}
+
+		long getLong(long position) {
+			return page(position).getLong((int) position & pageMask);
+		}
+
+		void putLong(long position, long value) {
+			page(position).putLong((int) position & pageMask, value);
+		}
+
+		char getChar(long position) {
+			return page(position).getChar((int) position & pageMask);
+		}
+
+		void putChar(long position, char value) {
+			page(position).putChar((int) position & pageMask, value);
+		}
+	}
+}
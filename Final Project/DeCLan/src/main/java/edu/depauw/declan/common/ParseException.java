@@ -1,13 +1,39 @@
 package edu.depauw.declan.common;
 
+import edu.depauw.declan.common.ast.Program;
+
 /**
- * An unchecked exception class that may be thrown during parsing.
+ * An unchecked exception class that may be thrown during parsing. A parser
+ * that recovers from syntax errors may attach the partial Program it was able
+ * to build.
+ * 
+ * ParseExceptions do not record a stack trace, since they report errors in
+ * the source being parsed rather than in the parser, and a recovering parser
+ * may throw and catch one for every syntax error.
  * 
  * @author bhoward
  */
 @SuppressWarnings("serial")
 public class ParseException extends RuntimeException {
+	private final Program partialProgram;
+
 	public ParseException(String message) {
-		super(message);
+		this(message, null);
+	}
+
+	/**
+	 * @param message
+	 * @param partialProgram the tree built in spite of the errors, or null
+	 */
+	public ParseException(String message, Program partialProgram) {
+		super(message, null, false, false);
+		this.partialProgram = partialProgram;
+	}
+
+	/**
+	 * @return the Program built in spite of the errors, or null if there is none
+	 */
+	public Program getPartialProgram() {
+		return partialProgram;
 	}
 }
@@ -4,11 +4,12 @@ import java.util.Objects;
 
 /**
  * A Position records a combination of line:column numbers (each starting from
- * 1) in a Source.
+ * 1) in a Source. A Position may also serve as a Locator that places every
+ * offset at itself, for tokens and nodes whose Position is already known.
  * 
  * @author bhoward
  */
-public class Position implements Comparable<Position> {
+public class Position implements Comparable<Position>, Locator {
 	private final int line, column;
 
 	/**
@@ -30,6 +31,11 @@ public class Position implements Comparable<Position> {
 		return column;
 	}
 
+	@Override
+	public Position getPosition(int offset) {
+		return this;
+	}
+
 	@Override
 	public String toString() {
 		return line + ":" + column;
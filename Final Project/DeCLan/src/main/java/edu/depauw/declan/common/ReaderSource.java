@@ -16,6 +16,8 @@ public class ReaderSource implements Source {
 	private char current;
 	private boolean atEOF;
 	private int line, column;
+	private int offset;
+	private LineMap lineMap;
 
 	/**
 	 * Construct a Source wrapping the given Reader. Once constructed, the first
@@ -28,6 +30,8 @@ public class ReaderSource implements Source {
 		this.in = in;
 		this.line = 0;
 		this.column = 0;
+		this.offset = -1;
+		this.lineMap = new LineMap();
 		this.current = '\n';
 		this.atEOF = false;
 
@@ -42,9 +46,13 @@ public class ReaderSource implements Source {
 		if (current() == '\n') {
 			line = line + 1;
 			column = 1;
+			if (offset >= 0) {
+				lineMap.addLineStart(offset + 1);
+			}
 		} else {
 			column = column + 1;
 		}
+		offset = offset + 1;
 
 		try {
 			int next = in.read();
@@ -83,4 +91,14 @@ public class ReaderSource implements Source {
 	public Position getPosition() {
 		return new Position(line, column);
 	}
+
+	@Override
+	public int getOffset() {
+		return offset;
+	}
+
+	@Override
+	public LineMap getLineMap() {
+		return lineMap;
+	}
 }
@@ -0,0 +1,128 @@
+package edu.depauw.declan.common;
+
+import java.util.Arrays;
+
+/**
+ * Recognizes the DeCLan reserved words with a minimal perfect hash, directly on
+ * a range of characters, so that keywords can be identified before (or
+ * without) building a String for the lexeme.
+ * 
+ * The hash of a candidate word is its length plus FIRST[first character] plus
+ * LAST[last character]. The tables were generated by a search so that the 22
+ * reserved words hash to exactly the slots 0 through 21 of WORDS, with no
+ * modulus needed. Characters that never start (or end) a reserved word map to
+ * a large value that pushes the hash out of range, so most identifiers are
+ * rejected before any character comparison. A word that lands on a slot is
+ * then compared character by character against the reserved word stored
+ * there.
+ * 
+ * If the set of reserved words in TokenType changes, these tables must be
+ * regenerated; ReservedWordsTest checks them against TokenType.reserved.
+ */
+public final class ReservedWords {
+	private ReservedWords() {
+	}
+
+	private static final int MIN_LENGTH = 2;
+	private static final int MAX_LENGTH = 9;
+
+	/**
+	 * Hash value for characters that cannot occur in that place in any reserved
+	 * word; any sum including it is out of range.
+	 */
+	private static final int NONE = 64;
+
+	private static final TokenType[] TYPES = { TokenType.ELSE, TokenType.REPEAT, TokenType.ELSIF, TokenType.END,
+			TokenType.TRUE, TokenType.RETURN, TokenType.TO, TokenType.THEN, TokenType.MOD, TokenType.DO, TokenType.OR,
+			TokenType.BEGIN, TokenType.WHILE, TokenType.UNTIL, TokenType.PROCEDURE, TokenType.DIV, TokenType.FALSE,
+			TokenType.IF, TokenType.FOR, TokenType.BY, TokenType.VAR, TokenType.CONST };
+
+	private static final String[] WORDS = new String[TYPES.length];
+
+	private static final int[] FIRST = new int[128];
+	private static final int[] LAST = new int[128];
+
+	static {
+		for (int i = 0; i < TYPES.length; i++) {
+			WORDS[i] = TYPES[i].toString();
+		}
+
+		Arrays.fill(FIRST, NONE);
+		FIRST['B'] = 7;
+		FIRST['C'] = 21;
+		FIRST['D'] = 7;
+		FIRST['E'] = 0;
+		FIRST['F'] = 15;
+		FIRST['I'] = 18;
+		FIRST['M'] = 5;
+		FIRST['O'] = 8;
+		FIRST['P'] = 9;
+		FIRST['R'] = 0;
+		FIRST['T'] = 4;
+		FIRST['U'] = 13;
+		FIRST['V'] = 17;
+		FIRST['W'] = 11;
+
+		Arrays.fill(LAST, NONE);
+		LAST['D'] = 0;
+		LAST['E'] = -4;
+		LAST['F'] = -3;
+		LAST['L'] = -5;
+		LAST['N'] = -1;
+		LAST['O'] = 0;
+		LAST['R'] = 0;
+		LAST['T'] = -5;
+		LAST['V'] = 5;
+		LAST['Y'] = 10;
+	}
+
+	/**
+	 * Look up the given range of characters as a reserved word.
+	 * 
+	 * @param chars
+	 * @param start  index of the first character
+	 * @param length number of characters
+	 * @return the TokenType of the reserved word, or null if it is not reserved
+	 */
+	public static TokenType lookup(CharSequence chars, int start, int length) {
+		if (length < MIN_LENGTH || length > MAX_LENGTH) {
+			return null;
+		}
+
+		char first = chars.charAt(start);
+		char last = chars.charAt(start + length - 1);
+		if (first >= 128 || last >= 128) {
+			return null;
+		}
+
+		int slot = length + FIRST[first] + LAST[last];
+		if (slot < 0 || slot >= WORDS.length) {
+			return null;
+		}
+
+		String word = WORDS[slot];
+		if (word.length() != length) {
+			return null;
+		}
+		for (int i = 1; i < length - 1; i++) {
+			if (chars.charAt(start + i) != word.charAt(i)) {
+				return null;
+			}
+		}
+		// First and last characters determined the slot, but may still differ
+		if (first != word.charAt(0) || last != word.charAt(length - 1)) {
+			return null;
+		}
+		return TYPES[slot];
+	}
+
+	/**
+	 * Look up the given characters as a reserved word.
+	 * 
+	 * @param chars
+	 * @return the TokenType of the reserved word, or null if it is not reserved
+	 */
+	public static TokenType lookup(CharSequence chars) {
+		return lookup(chars, 0, chars.length());
+	}
+}
@@ -36,4 +36,33 @@ public interface Source extends AutoCloseable {
 	 * @return the Position of the current character
 	 */
 	Position getPosition();
+
+	/**
+	 * @return the offset (counting from 0) of the current character
+	 */
+	int getOffset();
+
+	/**
+	 * @return the LineMap recording the start of each line read so far, which can
+	 *         convert any offset up to the current one into a Position
+	 */
+	LineMap getLineMap();
+
+	/**
+	 * Advance past the characters of the given run, starting with the current
+	 * one, appending them to text unless it is null. Afterwards the current
+	 * character (if any) is not in the run. Sources that can see more than one
+	 * character at a time override this to skip the run in bulk.
+	 * 
+	 * @param run
+	 * @param text
+	 */
+	default void advanceWhile(CharRun run, StringBuilder text) {
+		while (!atEOF() && run.contains(current())) {
+			if (text != null) {
+				text.append(current());
+			}
+			advance();
+		}
+	}
 }
\ No newline at end of file
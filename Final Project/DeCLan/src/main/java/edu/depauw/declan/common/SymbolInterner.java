@@ -0,0 +1,159 @@
+package edu.depauw.declan.common;
+
+import java.util.Arrays;
+
+/**
+ * A SymbolInterner assigns each distinct identifier name a dense int id
+ * (0, 1, 2, ...) and keeps one shared String per name. Lookups hash the
+ * characters in place, so a name that has been seen before costs no
+ * allocation; only the first occurrence of a name creates its String.
+ * 
+ * A single SymbolInterner is shared by the lexer and the later phases, so that
+ * ids from different phases agree and can be used to index arrays. It is not
+ * thread-safe.
+ */
+public class SymbolInterner {
+	/**
+	 * The id reported for names that were not interned, such as identifiers
+	 * produced by the reference implementations.
+	 */
+	public static final int NO_SYMBOL = -1;
+
+	private String[] names;
+	private int[] hashes;
+	private int size;
+
+	// Open-addressing hash table holding id + 1 in each slot (0 means empty)
+	private int[] table;
+	private int mask;
+
+	public SymbolInterner() {
+		this.names = new String[64];
+		this.hashes = new int[64];
+		this.size = 0;
+		this.table = new int[128];
+		this.mask = table.length - 1;
+	}
+
+	/**
+	 * Find the id of the given range of characters, adding it as a new name if it
+	 * has not been seen before.
+	 * 
+	 * @param chars
+	 * @param start  index of the first character
+	 * @param length number of characters
+	 * @return the id of the name
+	 */
+	public int intern(CharSequence chars, int start, int length) {
+		int hash = hash(chars, start, length);
+		int slot = hash & mask;
+		while (table[slot] != 0) {
+			int id = table[slot] - 1;
+			if (hashes[id] == hash && matches(names[id], chars, start, length)) {
+				return id;
+			}
+			slot = (slot + 1) & mask;
+		}
+
+		int id = add(chars.subSequence(start, start + length).toString(), hash);
+		table[slot] = id + 1;
+		if (size * 2 > table.length) {
+			rehash();
+		}
+		return id;
+	}
+
+	/**
+	 * Find the id of the given characters, adding them as a new name if they have
+	 * not been seen before.
+	 * 
+	 * @param chars
+	 * @return the id of the name
+	 */
+	public int intern(CharSequence chars) {
+		return intern(chars, 0, chars.length());
+	}
+
+	/**
+	 * Find the id of the given name without adding it.
+	 * 
+	 * @param chars
+	 * @return the id of the name, or NO_SYMBOL if it has not been interned
+	 */
+	public int lookup(CharSequence chars) {
+		int length = chars.length();
+		int hash = hash(chars, 0, length);
+		int slot = hash & mask;
+		while (table[slot] != 0) {
+			int id = table[slot] - 1;
+			if (hashes[id] == hash && matches(names[id], chars, 0, length)) {
+				return id;
+			}
+			slot = (slot + 1) & mask;
+		}
+		return NO_SYMBOL;
+	}
+
+	/**
+	 * @param id
+	 * @return the shared String for the name with the given id
+	 */
+	public String getName(int id) {
+		return names[id];
+	}
+
+	/**
+	 * @return the number of distinct names interned so far; ids run from 0 up to
+	 *         (but not including) this number
+	 */
+	public int size() {
+		return size;
+	}
+
+	private int add(String name, int hash) {
+		if (size == names.length) {
+			names = Arrays.copyOf(names, size * 2);
+			hashes = Arrays.copyOf(hashes, size * 2);
+		}
+		names[size] = name;
+		hashes[size] = hash;
+		size = size + 1;
+		return size - 1;
+	}
+
+	private void rehash() {
+		table = new int[table.length * 2];
+		mask = table.length - 1;
+		for (int id = 0; id < size; id++) {
+			int slot = hashes[id] & mask;
+			while (table[slot] != 0) {
+				slot = (slot + 1) & mask;
+			}
+			table[slot] = id + 1;
+		}
+	}
+
+	/**
+	 * Compute the same hash as String.hashCode() would for these characters,
+	 * spread so that the low bits used for the table index are well mixed.
+	 */
+	private static int hash(CharSequence chars, int start, int length) {
+		int h = 0;
+		for (int i = start; i < start + length; i++) {
+			h = 31 * h + chars.charAt(i);
+		}
+		return h ^ (h >>> 16);
+	}
+
+	private static boolean matches(String name, CharSequence chars, int start, int length) {
+		if (name.length() != length) {
+			return false;
+		}
+		for (int i = 0; i < length; i++) {
+			if (name.charAt(i) != chars.charAt(start + i)) {
+				return false;
+			}
+		}
+		return true;
+	}
+}
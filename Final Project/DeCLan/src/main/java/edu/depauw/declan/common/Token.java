@@ -4,60 +4,145 @@ import java.util.Objects;
 
 /**
  * A Token represents one lexical unit of a DeCLan source program. A Token
- * object stores a position (line and column numbers, each starting from 1), a
- * TokenType, and a lexeme (string value -- for the fixed tokens, this would be
- * redundant and should be null, but for identifiers and numbers it specifies
- * which particular one it is).
+ * object stores a position, a TokenType, and a lexeme (string value -- for the
+ * fixed tokens, this would be redundant and should be null, but for
+ * identifiers and numbers it specifies which particular one it is).
+ * 
+ * The position is kept as an offset into the Source plus a shared Locator
+ * (normally the Source's LineMap), so the line and column numbers (each
+ * starting from 1) are only computed when getPosition() is called. Tokens
+ * created from an explicit Position use that Position as their Locator.
+ * 
+ * Everything else about a token is kept in a separate Kind object. Tokens of a
+ * type where the lexeme is always the same share one Kind per TokenType, so
+ * each of them costs just its position and a reference.
  * 
  * @author bhoward
  */
 public class Token {
-	private final TokenType type;
-	private final String lexeme;
-	private final Position position;
+	private final Kind kind;
+	private final int offset;
+	private final Locator locator;
 
 	/**
 	 * Construct a Token object given its components. This is package-private;
 	 * tokens should be created using the Token static factory methods.
 	 * 
-	 * @param line   the line number (starting from 1) where the token was found
-	 * @param column the column number (starting from 1) where the token started
-	 * @param type   the TokenType of the token
-	 * @param lexeme the string value of the token
+	 * @param offset  the offset in the Source where the token started
+	 * @param locator converts the offset into a line and column Position
+	 * @param type    the TokenType of the token
+	 * @param lexeme  the string value of the token
+	 */
+	Token(int offset, Locator locator, TokenType type, String lexeme) {
+		this(offset, locator, type, lexeme, SymbolInterner.NO_SYMBOL);
+	}
+
+	/**
+	 * Construct an identifier Token that also records the id of its name in a
+	 * SymbolInterner.
+	 * 
+	 * @param offset   the offset in the Source where the token started
+	 * @param locator  converts the offset into a line and column Position
+	 * @param type     the TokenType of the token
+	 * @param lexeme   the string value of the token
+	 * @param symbolId the interned id of the lexeme
+	 */
+	Token(int offset, Locator locator, TokenType type, String lexeme, int symbolId) {
+		this(offset, locator, type, lexeme, symbolId, 0, false);
+	}
+
+	/**
+	 * Construct a Token that also carries the decoded value of a numeric literal.
+	 * 
+	 * @param offset   the offset in the Source where the token started
+	 * @param locator  converts the offset into a line and column Position
+	 * @param type     the TokenType of the token
+	 * @param lexeme   the string value of the token
+	 * @param symbolId the interned id of the lexeme
+	 * @param numValue the value of an integer literal, or the raw bits of a real
+	 * @param real     true if the literal is a real
 	 */
-	Token(Position position, TokenType type, String lexeme) {
-		this.position = position;
-		this.type = type;
-		this.lexeme = lexeme;
+	Token(int offset, Locator locator, TokenType type, String lexeme, int symbolId, long numValue, boolean real) {
+		this(offset, locator, Kind.of(type, lexeme, symbolId, numValue, real));
+	}
+
+	/**
+	 * Construct a Token at the given offset that shares an existing Kind.
+	 * 
+	 * @param offset  the offset in the Source where the token started
+	 * @param locator converts the offset into a line and column Position
+	 * @param kind    everything about the token except its position
+	 */
+	Token(int offset, Locator locator, Kind kind) {
+		this.offset = offset;
+		this.locator = locator;
+		this.kind = kind;
 	}
 
 	public TokenType getType() {
-		return type;
+		return kind.type;
 	}
 
 	public String getLexeme() {
-		return lexeme;
+		return kind.lexeme;
 	}
 
 	public Position getPosition() {
-		return position;
+		return locator.getPosition(offset);
+	}
+
+	public int getOffset() {
+		return offset;
+	}
+
+	public Locator getLocator() {
+		return locator;
+	}
+
+	/**
+	 * @return the SymbolInterner id of an identifier's name, or
+	 *         SymbolInterner.NO_SYMBOL if it was not interned
+	 */
+	public int getSymbolId() {
+		return kind.symbolId;
+	}
+
+	/**
+	 * @return true if this is a real (rather than integer) numeric literal
+	 */
+	public boolean isReal() {
+		return kind.real;
+	}
+
+	/**
+	 * @return the value of an integer literal, decoded by the lexer
+	 */
+	public long getIntValue() {
+		return kind.numValue;
+	}
+
+	/**
+	 * @return the value of a real literal, decoded by the lexer
+	 */
+	public double getRealValue() {
+		return Double.longBitsToDouble(kind.numValue);
 	}
 
 	// Override the default toString(), hashCode(), and equals() for use in
 	// development and debugging.
 	@Override
 	public String toString() {
-		StringBuilder result = new StringBuilder(type.toString());
-		if (lexeme != null) {
-			result.append(" ").append(lexeme);
+		StringBuilder result = new StringBuilder(kind.type.toString());
+		if (kind.lexeme != null) {
+			result.append(" ").append(kind.lexeme);
 		}
-		result.append(" ").append(position);
+		result.append(" ").append(getPosition());
 		return result.toString();
 	}
 
 	@Override
 	public int hashCode() {
-		return Objects.hash(lexeme, position, type);
+		return Objects.hash(kind.lexeme, getPosition(), kind.type);
 	}
 
 	@Override
@@ -69,11 +154,61 @@ public class Token {
 		if (getClass() != obj.getClass())
 			return false;
 		Token other = (Token) obj;
-		return Objects.equals(lexeme, other.lexeme) && Objects.equals(position, other.position) && type == other.type;
+		return Objects.equals(kind.lexeme, other.kind.lexeme)
+				&& Objects.equals(getPosition(), other.getPosition()) && kind.type == other.kind.type;
+	}
+
+	/**
+	 * The parts of a Token other than its position. Kinds never change, so they
+	 * may be shared by any number of tokens.
+	 */
+	static final class Kind {
+		private static final Kind[] FIXED;
+
+		static {
+			TokenType[] types = TokenType.values();
+			FIXED = new Kind[types.length];
+			for (TokenType type : types) {
+				FIXED[type.ordinal()] = new Kind(type, null, SymbolInterner.NO_SYMBOL, 0, false);
+			}
+		}
+
+		final TokenType type;
+		final String lexeme;
+		final int symbolId;
+		final long numValue;
+		final boolean real;
+
+		Kind(TokenType type, String lexeme, int symbolId, long numValue, boolean real) {
+			this.type = type;
+			this.lexeme = lexeme;
+			this.symbolId = symbolId;
+			this.numValue = numValue;
+			this.real = real;
+		}
+
+		/**
+		 * @param type
+		 * @return the shared Kind for tokens of the given type with no lexeme
+		 */
+		static Kind fixed(TokenType type) {
+			return FIXED[type.ordinal()];
+		}
+
+		/**
+		 * Find a Kind with the given components, reusing the shared one when there
+		 * is no lexeme or value.
+		 */
+		static Kind of(TokenType type, String lexeme, int symbolId, long numValue, boolean real) {
+			if (lexeme == null && symbolId == SymbolInterner.NO_SYMBOL && numValue == 0 && !real) {
+				return FIXED[type.ordinal()];
+			}
+			return new Kind(type, lexeme, symbolId, numValue, real);
+		}
 	}
 
 	// Static factory methods
-	
+
 	/**
 	 * Create a Token for a string literal. The lexeme is just the contents of the
 	 * string (without surrounding quotes).
@@ -84,7 +219,42 @@ public class Token {
 	 * @return
 	 */
 	public static Token createString(String lexeme, Position position) {
-		return new Token(position, TokenType.STRING, lexeme);
+		return createString(lexeme, 0, position);
+	}
+
+	/**
+	 * Create a Token for a string literal starting at the given offset.
+	 * 
+	 * @param lexeme
+	 * @param offset
+	 * @param locator
+	 * @return
+	 */
+	public static Token createString(String lexeme, int offset, Locator locator) {
+		return new Token(offset, locator, TokenType.STRING, lexeme);
+	}
+
+	/**
+	 * Create a Token that looks like an identifier, starting at the given offset.
+	 * If the lexeme matches one of the reserved words, create the corresponding
+	 * keyword token instead. Otherwise the name is interned in the given
+	 * SymbolInterner, and the token shares its String and records its id, so a
+	 * name that has been seen before does not allocate a new lexeme.
+	 * 
+	 * @param lexeme
+	 * @param offset
+	 * @param locator
+	 * @param symbols
+	 * @return
+	 */
+	public static Token createId(CharSequence lexeme, int offset, Locator locator, SymbolInterner symbols) {
+		TokenType type = ReservedWords.lookup(lexeme);
+		if (type != null) {
+			return new Token(offset, locator, type, null);
+		} else {
+			int id = symbols.intern(lexeme);
+			return new Token(offset, locator, TokenType.ID, symbols.getName(id), id);
+		}
 	}
 
 	/**
@@ -96,7 +266,35 @@ public class Token {
 	 * @return
 	 */
 	public static Token createNum(String lexeme, Position position) {
-		return new Token(position, TokenType.NUM, lexeme);
+		return createNum(lexeme, 0, position);
+	}
+
+	/**
+	 * Create a Token for a numeric literal starting at the given offset, decoding
+	 * its value from the lexeme.
+	 * 
+	 * @param lexeme
+	 * @param offset
+	 * @param locator
+	 * @return
+	 */
+	public static Token createNum(String lexeme, int offset, Locator locator) {
+		boolean real = NumLiteral.isReal(lexeme);
+		return createNum(lexeme, offset, locator, NumLiteral.decode(lexeme), real);
+	}
+
+	/**
+	 * Create a Token for a numeric literal that the lexer has already decoded.
+	 * 
+	 * @param lexeme
+	 * @param offset
+	 * @param locator
+	 * @param numValue the value of an integer literal, or the raw bits of a real
+	 * @param real     true if the literal is a real
+	 * @return
+	 */
+	public static Token createNum(String lexeme, int offset, Locator locator, long numValue, boolean real) {
+		return new Token(offset, locator, TokenType.NUM, lexeme, SymbolInterner.NO_SYMBOL, numValue, real);
 	}
 
 	/**
@@ -109,10 +307,27 @@ public class Token {
 	 * @return
 	 */
 	public static Token createId(String lexeme, Position position) {
-		if (TokenType.reserved.containsKey(lexeme)) {
-			return new Token(position, TokenType.reserved.get(lexeme), null);
+		return createId(lexeme, 0, position);
+	}
+
+	/**
+	 * Create a Token that looks like an identifier, starting at the given offset.
+	 * If the lexeme matches one of the reserved words, create the corresponding
+	 * keyword token instead. The lexeme may be the lexer's own character buffer
+	 * (such as a StringBuilder); it is only copied into a String when the token
+	 * is an identifier, so keywords never allocate a lexeme.
+	 * 
+	 * @param lexeme
+	 * @param offset
+	 * @param locator
+	 * @return
+	 */
+	public static Token createId(CharSequence lexeme, int offset, Locator locator) {
+		TokenType type = ReservedWords.lookup(lexeme);
+		if (type != null) {
+			return new Token(offset, locator, type, null);
 		} else {
-			return new Token(position, TokenType.ID, lexeme);
+			return new Token(offset, locator, TokenType.ID, lexeme.toString());
 		}
 	}
 
@@ -125,6 +340,19 @@ public class Token {
 	 * @return
 	 */
 	public static Token create(TokenType type, Position position) {
-		return new Token(position, type, null);
+		return create(type, 0, position);
+	}
+
+	/**
+	 * Create a Token of a type where the lexeme is always the same, starting at
+	 * the given offset.
+	 * 
+	 * @param type
+	 * @param offset
+	 * @param locator
+	 * @return
+	 */
+	public static Token create(TokenType type, int offset, Locator locator) {
+		return new Token(offset, locator, type, null);
 	}
 }
@@ -0,0 +1,472 @@
+package edu.depauw.declan.common;
+
+import java.util.Arrays;
+
+/**
+ * A TokenBuffer holds the tokens of a whole Source as parallel primitive
+ * arrays rather than as one Token object per token: for token i, types[i] is
+ * the ordinal of its TokenType, starts[i] and lengths[i] give its extent in the
+ * Source, and values[i] is the SymbolInterner id of an identifier or the index
+ * of a numeric or string literal in the literal pool (which also holds the
+ * decoded value of each numeric literal). Filling the buffer only
+ * grows a few arrays, and a parser can look any number of tokens ahead, or
+ * back up, just by changing an index.
+ * 
+ * Offsets are converted to line:column Positions by the buffer's Locator
+ * (normally the Source's LineMap). Tokens copied in from a Lexer that does not
+ * use that Locator keep their own, in a side array that is only created when
+ * needed.
+ */
+public class TokenBuffer implements TokenSequence {
+	private static final TokenType[] TYPES = TokenType.values();
+	private static final byte NUM = (byte) TokenType.NUM.ordinal();
+	private static final byte STRING = (byte) TokenType.STRING.ordinal();
+
+	private final Locator locator;
+	private final SymbolInterner symbols;
+
+	private byte[] types;
+	private int[] starts;
+	private int[] lengths;
+	private int[] values;
+	private Locator[] locators;
+	private int size;
+
+	// Pool of literal lexemes; literal k is literalText[literalStarts[k] ..
+	// literalStarts[k + 1])
+	private char[] literalText;
+	private int literalLength;
+	private int[] literalStarts;
+	private int literalCount;
+
+	// Decoded values of numeric literals, indexed like literalStarts: the value
+	// of an integer, or the raw bits of a real
+	private long[] literalValues;
+	private boolean[] literalReals;
+
+	/**
+	 * Construct an empty TokenBuffer whose offsets are interpreted by the given
+	 * Locator, and whose identifiers are interned in the given SymbolInterner.
+	 * 
+	 * @param locator
+	 * @param symbols
+	 */
+	public TokenBuffer(Locator locator, SymbolInterner symbols) {
+		this.locator = locator;
+		this.symbols = symbols;
+		this.types = new byte[256];
+		this.starts = new int[256];
+		this.lengths = new int[256];
+		this.values = new int[256];
+		this.locators = null;
+		this.size = 0;
+		this.literalText = new char[256];
+		this.literalLength = 0;
+		this.literalStarts = new int[65];
+		this.literalCount = 0;
+		this.literalValues = new long[64];
+		this.literalReals = new boolean[64];
+	}
+
+	/**
+	 * Append a token of a type where the lexeme is always the same.
+	 * 
+	 * @param type
+	 * @param start  offset of the first character of the token
+	 * @param length number of characters in the token
+	 */
+	public void add(TokenType type, int start, int length) {
+		append(type, start, length, SymbolInterner.NO_SYMBOL);
+	}
+
+	/**
+	 * Append a token that looks like an identifier. If the lexeme matches one of
+	 * the reserved words, the corresponding keyword is appended instead;
+	 * otherwise the name is interned and its id recorded. The lexeme may be the
+	 * lexer's own character buffer; it is not retained.
+	 * 
+	 * @param lexeme
+	 * @param start  offset of the first character of the token
+	 * @param length number of characters in the token
+	 */
+	public void addId(CharSequence lexeme, int start, int length) {
+		TokenType type = ReservedWords.lookup(lexeme);
+		if (type != null) {
+			append(type, start, length, SymbolInterner.NO_SYMBOL);
+		} else {
+			append(TokenType.ID, start, length, symbols.intern(lexeme));
+		}
+	}
+
+	/**
+	 * Append a numeric or string literal, copying its lexeme into the literal
+	 * pool. For a string, the lexeme is just the contents (without quotes), while
+	 * the length covers the whole token. A numeric literal is decoded here; a
+	 * lexer that has already decoded it should use addNum instead.
+	 * 
+	 * @param type   NUM or STRING
+	 * @param lexeme
+	 * @param start  offset of the first character of the token
+	 * @param length number of characters in the token
+	 */
+	public void addLiteral(TokenType type, CharSequence lexeme, int start, int length) {
+		if (type == TokenType.NUM) {
+			addNum(lexeme, start, length, NumLiteral.decode(lexeme), NumLiteral.isReal(lexeme));
+		} else {
+			append(type, start, length, addLiteralText(lexeme));
+		}
+	}
+
+	/**
+	 * Append a numeric literal together with its decoded value.
+	 * 
+	 * @param lexeme
+	 * @param start    offset of the first character of the token
+	 * @param length   number of characters in the token
+	 * @param numValue the value of an integer literal, or the raw bits of a real
+	 * @param real     true if the literal is a real
+	 */
+	public void addNum(CharSequence lexeme, int start, int length, long numValue, boolean real) {
+		int k = addLiteralText(lexeme);
+		literalValues[k] = numValue;
+		literalReals[k] = real;
+		append(TokenType.NUM, start, length, k);
+	}
+
+	/**
+	 * Append a copy of a Token produced by some other Lexer. Since a Token does
+	 * not record how many characters it covered, its length is recorded as -1.
+	 * 
+	 * @param token
+	 */
+	public void add(Token token) {
+		TokenType type = token.getType();
+		int value;
+		if (type == TokenType.ID) {
+			value = symbols.intern(token.getLexeme());
+		} else if (type == TokenType.NUM) {
+			value = addLiteralText(token.getLexeme());
+			literalValues[value] = token.getIntValue();
+			literalReals[value] = token.isReal();
+		} else if (type == TokenType.STRING) {
+			value = addLiteralText(token.getLexeme());
+		} else {
+			value = SymbolInterner.NO_SYMBOL;
+		}
+		append(type, token.getOffset(), -1, value);
+
+		if (token.getLocator() != locator) {
+			if (locators == null) {
+				locators = new Locator[types.length];
+			}
+			locators[size - 1] = token.getLocator();
+		}
+	}
+
+	/**
+	 * Append a copy of the current token of a LexerCursor. Its lexeme is copied
+	 * only for a literal, into the literal pool, so nothing is allocated per
+	 * token. Identifiers keep their ids when the cursor shares this buffer's
+	 * SymbolInterner.
+	 * 
+	 * @param cursor
+	 */
+	public void add(LexerCursor cursor) {
+		TokenType type = cursor.type();
+		int start = cursor.startOffset();
+		int length = cursor.length();
+		switch (type) {
+		case ID:
+			int id = cursor.symbolId();
+			if (cursor.symbols() != symbols) {
+				id = symbols.intern(cursor.lexeme());
+			}
+			append(type, start, length, id);
+			break;
+		case NUM:
+			addNum(cursor.lexeme(), start, length, cursor.numValue(), cursor.isReal());
+			break;
+		case STRING:
+			append(type, start, length, addLiteralText(cursor.lexeme()));
+			break;
+		default:
+			append(type, start, length, SymbolInterner.NO_SYMBOL);
+			break;
+		}
+
+		if (cursor.locator() != locator) {
+			if (locators == null) {
+				locators = new Locator[types.length];
+			}
+			locators[size - 1] = cursor.locator();
+		}
+	}
+
+	/**
+	 * Append copies of tokens from..to-1 of another buffer, with their start
+	 * offsets moved by shift. Identifiers keep their ids when both buffers share
+	 * a SymbolInterner.
+	 * 
+	 * @param other
+	 * @param from
+	 * @param to
+	 * @param shift
+	 */
+	public void addRange(TokenBuffer other, int from, int to, int shift) {
+		reserve(size + (to - from));
+		if (other.symbols == symbols && other.locators == null) {
+			addRangeInBulk(other, from, to, shift);
+			return;
+		}
+		for (int i = from; i < to; i++) {
+			TokenType type = other.getType(i);
+			int value = other.values[i];
+			if (type == TokenType.ID && other.symbols != symbols) {
+				value = symbols.intern(other.getLexeme(i));
+			} else if (type == TokenType.NUM || type == TokenType.STRING) {
+				value = copyLiteral(other, other.values[i]);
+			}
+			append(type, other.starts[i] + shift, other.lengths[i], value);
+
+			if (other.getLocator(i) != other.locator) {
+				if (locators == null) {
+					locators = new Locator[types.length];
+				}
+				locators[size - 1] = other.getLocator(i);
+			}
+		}
+	}
+
+	/**
+	 * The usual case of addRange, where every token keeps its identifier id and
+	 * uses this buffer's Locator: the arrays are copied whole, and only literals
+	 * are copied one at a time.
+	 */
+	private void addRangeInBulk(TokenBuffer other, int from, int to, int shift) {
+		int n = to - from;
+		System.arraycopy(other.types, from, types, size, n);
+		System.arraycopy(other.lengths, from, lengths, size, n);
+		System.arraycopy(other.values, from, values, size, n);
+		for (int i = size; i < size + n; i++) {
+			starts[i] = other.starts[i - size + from] + shift;
+			if (types[i] == NUM || types[i] == STRING) {
+				values[i] = copyLiteral(other, values[i]);
+			}
+		}
+		size = size + n;
+	}
+
+	/**
+	 * Make room for at least the given number of tokens, so that a bulk copy grows
+	 * the arrays at most once.
+	 * 
+	 * @param capacity
+	 */
+	private void reserve(int capacity) {
+		if (capacity > types.length) {
+			types = Arrays.copyOf(types, capacity);
+			starts = Arrays.copyOf(starts, capacity);
+			lengths = Arrays.copyOf(lengths, capacity);
+			values = Arrays.copyOf(values, capacity);
+			if (locators != null) {
+				locators = Arrays.copyOf(locators, capacity);
+			}
+		}
+	}
+
+	/**
+	 * Copy literal k of another buffer, with its decoded value, into the pool.
+	 * 
+	 * @param other
+	 * @param k
+	 * @return the index of the copy
+	 */
+	private int copyLiteral(TokenBuffer other, int k) {
+		int from = other.literalStarts[k];
+		int n = other.literalStarts[k + 1] - from;
+		if (literalLength + n > literalText.length) {
+			literalText = Arrays.copyOf(literalText, Math.max(literalText.length * 2, literalLength + n));
+		}
+		System.arraycopy(other.literalText, from, literalText, literalLength, n);
+		literalLength = literalLength + n;
+
+		int copy = newLiteral();
+		literalValues[copy] = other.literalValues[k];
+		literalReals[copy] = other.literalReals[k];
+		return copy;
+	}
+
+	private void append(TokenType type, int start, int length, int value) {
+		if (size == types.length) {
+			int capacity = size * 2;
+			types = Arrays.copyOf(types, capacity);
+			starts = Arrays.copyOf(starts, capacity);
+			lengths = Arrays.copyOf(lengths, capacity);
+			values = Arrays.copyOf(values, capacity);
+			if (locators != null) {
+				locators = Arrays.copyOf(locators, capacity);
+			}
+		}
+		types[size] = (byte) type.ordinal();
+		starts[size] = start;
+		lengths[size] = length;
+		values[size] = value;
+		size = size + 1;
+	}
+
+	private int addLiteralText(CharSequence lexeme) {
+		int n = lexeme.length();
+		if (literalLength + n > literalText.length) {
+			literalText = Arrays.copyOf(literalText, Math.max(literalText.length * 2, literalLength + n));
+		}
+		for (int i = 0; i < n; i++) {
+			literalText[literalLength + i] = lexeme.charAt(i);
+		}
+		literalLength = literalLength + n;
+		return newLiteral();
+	}
+
+	/**
+	 * End the literal whose text was just added to the pool.
+	 * 
+	 * @return its index
+	 */
+	private int newLiteral() {
+		if (literalCount + 1 == literalStarts.length) {
+			literalStarts = Arrays.copyOf(literalStarts, literalStarts.length * 2);
+			literalValues = Arrays.copyOf(literalValues, literalStarts.length - 1);
+			literalReals = Arrays.copyOf(literalReals, literalStarts.length - 1);
+		}
+		literalCount = literalCount + 1;
+		literalStarts[literalCount] = literalLength;
+		return literalCount - 1;
+	}
+
+	/**
+	 * Discard all tokens from index newSize on.
+	 * 
+	 * @param newSize
+	 */
+	public void truncate(int newSize) {
+		size = newSize;
+	}
+
+	/**
+	 * @return the number of tokens in the buffer
+	 */
+	@Override
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * @return the SymbolInterner holding the names of identifiers
+	 */
+	@Override
+	public SymbolInterner getSymbolInterner() {
+		return symbols;
+	}
+
+	@Override
+	public TokenType getType(int i) {
+		return TYPES[types[i]];
+	}
+
+	/**
+	 * @param i
+	 * @return the offset of the first character of token i
+	 */
+	@Override
+	public int getStart(int i) {
+		return starts[i];
+	}
+
+	/**
+	 * @param i
+	 * @return the number of characters in token i, or -1 if not known
+	 */
+	@Override
+	public int getLength(int i) {
+		return lengths[i];
+	}
+
+	/**
+	 * @param i
+	 * @return the SymbolInterner id of identifier token i, or
+	 *         SymbolInterner.NO_SYMBOL if it is not an identifier
+	 */
+	@Override
+	public int getSymbolId(int i) {
+		return getType(i) == TokenType.ID ? values[i] : SymbolInterner.NO_SYMBOL;
+	}
+
+	/**
+	 * @param i
+	 * @return the lexeme of token i, or null for tokens where the lexeme is
+	 *         always the same
+	 */
+	@Override
+	public String getLexeme(int i) {
+		switch (getType(i)) {
+		case ID:
+			return symbols.getName(values[i]);
+		case NUM:
+		case STRING:
+			int k = values[i];
+			return new String(literalText, literalStarts[k], literalStarts[k + 1] - literalStarts[k]);
+		default:
+			return null;
+		}
+	}
+
+	/**
+	 * @param i
+	 * @return true if token i is a real (rather than integer) numeric literal
+	 */
+	@Override
+	public boolean isReal(int i) {
+		return getType(i) == TokenType.NUM && literalReals[values[i]];
+	}
+
+	/**
+	 * @param i
+	 * @return the decoded value of integer literal token i
+	 */
+	@Override
+	public long getIntValue(int i) {
+		return getType(i) == TokenType.NUM ? literalValues[values[i]] : 0;
+	}
+
+	/**
+	 * @param i
+	 * @return the Locator that converts the start offset of token i into a
+	 *         Position
+	 */
+	@Override
+	public Locator getLocator(int i) {
+		if (locators != null && locators[i] != null) {
+			return locators[i];
+		}
+		return locator;
+	}
+
+	/**
+	 * Find the first token that starts at or after the given offset.
+	 * 
+	 * @param offset
+	 * @return the index of that token, or size() if there is none
+	 */
+	public int indexAtOrAfter(int offset) {
+		int low = 0;
+		int high = size;
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+			if (starts[mid] < offset) {
+				low = mid + 1;
+			} else {
+				high = mid;
+			}
+		}
+		return low;
+	}
+}
@@ -0,0 +1,52 @@
+package edu.depauw.declan.common;
+
+/**
+ * A TokenFactory collects factory methods for making Token objects, so that a
+ * lexer does not have to know how tokens are represented or shared. Each token
+ * starts at an offset that is converted to a Position by the given Locator.
+ */
+public interface TokenFactory {
+	/**
+	 * Create a Token of a type where the lexeme is always the same.
+	 * 
+	 * @param type
+	 * @param offset
+	 * @param locator
+	 * @return
+	 */
+	Token makeToken(TokenType type, int offset, Locator locator);
+
+	/**
+	 * Create a Token that looks like an identifier. If the lexeme matches one of
+	 * the reserved words, create the corresponding keyword token instead.
+	 * 
+	 * @param lexeme
+	 * @param offset
+	 * @param locator
+	 * @return
+	 */
+	Token makeIdToken(CharSequence lexeme, int offset, Locator locator);
+
+	/**
+	 * Create a Token for a numeric literal that the lexer has already decoded.
+	 * 
+	 * @param lexeme
+	 * @param offset
+	 * @param locator
+	 * @param numValue the value of an integer literal, or the raw bits of a real
+	 * @param real     true if the literal is a real
+	 * @return
+	 */
+	Token makeNumToken(String lexeme, int offset, Locator locator, long numValue, boolean real);
+
+	/**
+	 * Create a Token for a string literal. The lexeme is just the contents of the
+	 * string (without surrounding quotes).
+	 * 
+	 * @param lexeme
+	 * @param offset
+	 * @param locator
+	 * @return
+	 */
+	Token makeStringToken(String lexeme, int offset, Locator locator);
+}
@@ -0,0 +1,143 @@
+package edu.depauw.declan.common;
+
+import java.util.NoSuchElementException;
+
+/**
+ * A TokenSequence gives indexed, read-only access to the lexed tokens of a
+ * Source, without a Token object per token. Token i is described by its type,
+ * its extent in the Source, and (depending on its type) an interned symbol id
+ * or a literal's lexeme and decoded value. This is what a parser needs to look
+ * ahead or back up by changing an index, whether the tokens are held on the
+ * heap (TokenBuffer) or off it (OffHeapTokenStore).
+ * 
+ * A TokenSequence that holds resources outside the heap releases them when it
+ * is closed. Whoever reads the tokens last (normally a Parser) closes them.
+ */
+public interface TokenSequence extends AutoCloseable {
+	/**
+	 * @return the number of tokens
+	 */
+	int size();
+
+	/**
+	 * @return the SymbolInterner holding the names of identifiers
+	 */
+	SymbolInterner getSymbolInterner();
+
+	TokenType getType(int i);
+
+	/**
+	 * @param i
+	 * @return the offset of the first character of token i
+	 */
+	int getStart(int i);
+
+	/**
+	 * @param i
+	 * @return the number of characters in token i, or -1 if not known
+	 */
+	int getLength(int i);
+
+	/**
+	 * @param i
+	 * @return the SymbolInterner id of identifier token i, or
+	 *         SymbolInterner.NO_SYMBOL if it is not an identifier
+	 */
+	int getSymbolId(int i);
+
+	/**
+	 * @param i
+	 * @return the lexeme of token i, or null for tokens where the lexeme is
+	 *         always the same
+	 */
+	String getLexeme(int i);
+
+	/**
+	 * @param i
+	 * @return true if token i is a real (rather than integer) numeric literal
+	 */
+	boolean isReal(int i);
+
+	/**
+	 * @param i
+	 * @return the decoded value of integer literal token i (or the raw bits of a
+	 *         real)
+	 */
+	long getIntValue(int i);
+
+	/**
+	 * @param i
+	 * @return the Locator that converts the start offset of token i into a
+	 *         Position
+	 */
+	Locator getLocator(int i);
+
+	/**
+	 * @param i
+	 * @return the offset just past the last character of token i
+	 */
+	default int getEnd(int i) {
+		return getStart(i) + getLength(i);
+	}
+
+	/**
+	 * @param i
+	 * @return the decoded value of real literal token i
+	 */
+	default double getRealValue(int i) {
+		return Double.longBitsToDouble(getIntValue(i));
+	}
+
+	default Position getPosition(int i) {
+		return getLocator(i).getPosition(getStart(i));
+	}
+
+	/**
+	 * Build a Token object for token i, for clients that need one.
+	 * 
+	 * @param i
+	 * @return
+	 */
+	default Token getToken(int i) {
+		return new Token(getStart(i), getLocator(i), getType(i), getLexeme(i), getSymbolId(i), getIntValue(i),
+				isReal(i));
+	}
+
+	/**
+	 * Release any resources held by the tokens; by default, there are none. The
+	 * tokens must not be read afterwards.
+	 */
+	@Override
+	default void close() {
+	}
+
+	/**
+	 * @return a Lexer that hands out the tokens in order, for clients that expect
+	 *         an Iterator of Tokens; closing it closes this TokenSequence
+	 */
+	default Lexer lexer() {
+		return new Lexer() {
+			private int next = 0;
+
+			@Override
+			public boolean hasNext() {
+				return next < size();
+			}
+
+			@Override
+			public Token next() {
+				if (next >= size()) {
+					throw new NoSuchElementException("No more tokens");
+				}
+				Token result = getToken(next);
+				next = next + 1;
+				return result;
+			}
+
+			@Override
+			public void close() {
+				TokenSequence.this.close();
+			}
+		};
+	}
+}
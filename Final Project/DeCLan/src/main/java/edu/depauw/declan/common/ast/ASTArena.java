@@ -0,0 +1,1119 @@
+package edu.depauw.declan.common.ast;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.RandomAccess;
+import java.util.function.IntFunction;
+
+import edu.depauw.declan.common.Locator;
+import edu.depauw.declan.common.Position;
+import edu.depauw.declan.common.SymbolInterner;
+
+/**
+ * An ASTArena stores a whole abstract syntax tree in one int array, instead of
+ * as an object per node. Each node is a record of its Kind, its start offset,
+ * and a few fields that hold the indices of its children (or of lists of
+ * children) and small payloads such as operators; a node is identified by the
+ * index of its record. Identifier names are SymbolInterner ids, and the
+ * lexemes of literals are kept in a side table. All nodes share one Locator,
+ * so no Position is stored.
+ * 
+ * Trees are built bottom-up, either with the builder methods (each child must
+ * be added before its parent) or by copying an existing tree with add(). For
+ * code written against the ASTNode classes, getProgram() and getNode() return
+ * views: objects of the usual node classes (so they work with ASTVisitor,
+ * ExpressionVisitor, etc.) that read their children from the arena when asked.
+ * While anything still refers to the view of a record, asking for the record
+ * again gives the same view, so that a node has one identity however it is
+ * reached; clients such as a Checker record what they find about a node by its
+ * identity. The arena itself only holds its views weakly, so a walk over the
+ * whole tree does not leave an object for every node behind.
+ * 
+ * An arena is built by one thread and may then be read by others.
+ */
+public class ASTArena {
+	/**
+	 * The types of records in the arena.
+	 */
+	public enum Kind {
+		PROGRAM, PROCEDURE_HEAD, FORMAL_PARAMETERS, FP_SECTION, PROCEDURE_BODY, CONST_DECLARATION, VAR_DECLARATION,
+		PROCEDURE_DECLARATION, PROCEDURE_CALL, ASSIGNMENT, IF_STATEMENT, WHILE_STATEMENT, REPEAT_STATEMENT,
+		FOR_STATEMENT, EMPTY_STATEMENT, RELATIONAL_OPERATION, UNARY_OPERATION, BINARY_OPERATION, NUM_VALUE,
+		IDENTIFIER, STRING_VALUE, BOOLEAN_VALUE, CLAUSE, LIST
+	}
+
+	/**
+	 * The index used for a missing child, such as the step of a ForStatement
+	 * without one.
+	 */
+	public static final int NONE = -1;
+
+	private static final Kind[] KINDS = Kind.values();
+	private static final BinaryOperation.OpType[] BINARY_OPS = BinaryOperation.OpType.values();
+	private static final RelationalOperation.OpType[] RELATIONAL_OPS = RelationalOperation.OpType.values();
+	private static final UnaryOperation.OpType[] UNARY_OPS = UnaryOperation.OpType.values();
+
+	// Layout of a node record; fields follow the header
+	private static final int KIND = 0;
+	private static final int START = 1;
+	private static final int FIELDS = 2;
+
+	private final Locator locator;
+	private final SymbolInterner symbols;
+	private final List<String> strings;
+	private final List<Position> positions;
+	private int[] data;
+	private int size;
+
+	/**
+	 * The index in data of each record, in order, so that a record's position
+	 * in this array numbers the records densely
+	 */
+	private int[] records;
+	private int recordCount;
+
+	/**
+	 * The view of each record that may still be in use, by record number;
+	 * allocated when the first view is asked for
+	 */
+	private ViewReference[] views;
+
+	/**
+	 * Where the references in views go once their views have been collected
+	 */
+	private final ReferenceQueue<ASTNode> collected;
+
+	/**
+	 * Construct an empty arena whose start offsets are interpreted by the given
+	 * Locator, and whose identifiers are interned in the given SymbolInterner.
+	 * 
+	 * @param locator
+	 * @param symbols
+	 */
+	public ASTArena(Locator locator, SymbolInterner symbols) {
+		this.locator = locator;
+		this.symbols = symbols;
+		this.strings = new ArrayList<>();
+		this.positions = new ArrayList<>();
+		this.data = new int[1024];
+		this.size = 0;
+		this.records = new int[256];
+		this.recordCount = 0;
+		this.views = new ViewReference[0];
+		this.collected = new ReferenceQueue<>();
+	}
+
+	// Builder methods; each returns the index of the new record
+
+	public int program(int start, int declarations, int statements) {
+		return node(Kind.PROGRAM, start, declarations, statements);
+	}
+
+	public int procedureHead(int start, int id, int formalParameters) {
+		return node(Kind.PROCEDURE_HEAD, start, id, formalParameters);
+	}
+
+	public int formalParameters(int start, int fpSections) {
+		return node(Kind.FORMAL_PARAMETERS, start, fpSections);
+	}
+
+	public int fpSection(int start, int ids, int type) {
+		return node(Kind.FP_SECTION, start, ids, type);
+	}
+
+	public int procedureBody(int start, int declarations, int statements) {
+		return node(Kind.PROCEDURE_BODY, start, declarations, statements);
+	}
+
+	public int constDeclaration(int start, int id, int value) {
+		return node(Kind.CONST_DECLARATION, start, id, value);
+	}
+
+	public int varDeclaration(int start, int ids, int type) {
+		return node(Kind.VAR_DECLARATION, start, ids, type);
+	}
+
+	public int procedureDeclaration(int start, int head, int body) {
+		return node(Kind.PROCEDURE_DECLARATION, start, head, body);
+	}
+
+	public int procedureCall(int start, int procedureName, int arguments) {
+		return node(Kind.PROCEDURE_CALL, start, procedureName, arguments);
+	}
+
+	public int assignment(int start, int id, int rhs) {
+		return node(Kind.ASSIGNMENT, start, id, rhs);
+	}
+
+	public int ifStatement(int start, int clauses, int elseClause) {
+		return node(Kind.IF_STATEMENT, start, clauses, elseClause);
+	}
+
+	public int whileStatement(int start, int clauses) {
+		return node(Kind.WHILE_STATEMENT, start, clauses);
+	}
+
+	public int repeatStatement(int start, int body, int test) {
+		return node(Kind.REPEAT_STATEMENT, start, body, test);
+	}
+
+	/**
+	 * @param start
+	 * @param index
+	 * @param from
+	 * @param to
+	 * @param step  the step expression, or NONE
+	 * @param body
+	 * @return
+	 */
+	public int forStatement(int start, int index, int from, int to, int step, int body) {
+		return node(Kind.FOR_STATEMENT, start, index, from, to, step, body);
+	}
+
+	public int emptyStatement(int start) {
+		return node(Kind.EMPTY_STATEMENT, start);
+	}
+
+	public int relationalOperation(int start, int left, RelationalOperation.OpType operator, int right) {
+		return node(Kind.RELATIONAL_OPERATION, start, left, operator.ordinal(), right);
+	}
+
+	public int unaryOperation(int start, UnaryOperation.OpType operator, int expression) {
+		return node(Kind.UNARY_OPERATION, start, operator.ordinal(), expression);
+	}
+
+	public int binaryOperation(int start, int left, BinaryOperation.OpType operator, int right) {
+		return node(Kind.BINARY_OPERATION, start, left, operator.ordinal(), right);
+	}
+
+	/**
+	 * @param start
+	 * @param lexeme
+	 * @param value  the value of an integer literal, or the raw bits of a real
+	 * @param real   true if the literal is a real
+	 * @return
+	 */
+	public int numValue(int start, String lexeme, long value, boolean real) {
+		return node(Kind.NUM_VALUE, start, addString(lexeme), (int) (value >>> 32), (int) value, real ? 1 : 0);
+	}
+
+	/**
+	 * @param start
+	 * @param lexeme the name, which is interned
+	 * @return
+	 */
+	public int identifier(int start, String lexeme) {
+		return node(Kind.IDENTIFIER, start, symbols.intern(lexeme));
+	}
+
+	public int stringValue(int start, String contents) {
+		return node(Kind.STRING_VALUE, start, addString(contents));
+	}
+
+	public int booleanValue(int start, boolean value) {
+		return node(Kind.BOOLEAN_VALUE, start, value ? 1 : 0);
+	}
+
+	public int clause(int test, int statements) {
+		return node(Kind.CLAUSE, 0, test, statements);
+	}
+
+	/**
+	 * Add a list of nodes, such as the statements of a body.
+	 * 
+	 * @param nodes
+	 * @return the index of the list
+	 */
+	public int list(int... nodes) {
+		return list(nodes, nodes.length);
+	}
+
+	/**
+	 * Add a list of the first count of the given nodes.
+	 * 
+	 * @param nodes
+	 * @param count
+	 * @return the index of the list
+	 */
+	public int list(int[] nodes, int count) {
+		int list = reserve(FIELDS + count);
+		data[list + KIND] = Kind.LIST.ordinal();
+		data[list + START] = count;
+		System.arraycopy(nodes, 0, data, list + FIELDS, count);
+		return list;
+	}
+
+	private int node(Kind kind, int start, int... fields) {
+		int node = reserve(FIELDS + fields.length);
+		data[node + KIND] = kind.ordinal();
+		data[node + START] = start;
+		System.arraycopy(fields, 0, data, node + FIELDS, fields.length);
+		return node;
+	}
+
+	private int reserve(int length) {
+		if (size + length > data.length) {
+			data = Arrays.copyOf(data, Math.max(data.length * 2, size + length));
+		}
+		int result = size;
+		size = size + length;
+
+		// Every record is reserved once, in order
+		if (recordCount == records.length) {
+			records = Arrays.copyOf(records, recordCount * 2);
+		}
+		records[recordCount] = result;
+		recordCount = recordCount + 1;
+		return result;
+	}
+
+	int addString(String s) {
+		strings.add(s);
+		return strings.size() - 1;
+	}
+
+	// Reading the records
+
+	public Kind getKind(int node) {
+		return KINDS[data[node + KIND]];
+	}
+
+	/**
+	 * @param node
+	 * @return the offset in the Source of the start of the node
+	 */
+	public int getStartOffset(int node) {
+		return data[node + START];
+	}
+
+	/**
+	 * @param node
+	 * @return the Position of the start of the node
+	 */
+	public Position getStart(int node) {
+		int start = data[node + START];
+		return (start >= 0) ? locator.getPosition(start) : positions.get(-start - 1);
+	}
+
+	/**
+	 * @param node
+	 * @param i
+	 * @return field i of the node: a child index, a list index, or a payload
+	 */
+	public int getField(int node, int i) {
+		return data[node + FIELDS + i];
+	}
+
+	public int getListSize(int list) {
+		return data[list + START];
+	}
+
+	public int getListElement(int list, int i) {
+		return data[list + FIELDS + i];
+	}
+
+	/**
+	 * @return the number of ints used by the records so far
+	 */
+	public int getDataSize() {
+		return size;
+	}
+
+	public Locator getLocator() {
+		return locator;
+	}
+
+	public SymbolInterner getSymbolInterner() {
+		return symbols;
+	}
+
+	// Raw access to the side tables and records, for ASTSerializer
+
+	String getString(int i) {
+		return strings.get(i);
+	}
+
+	int getPositionCount() {
+		return positions.size();
+	}
+
+	Position getPosition(int i) {
+		return positions.get(i);
+	}
+
+	/**
+	 * Append a record as it was read back, without interpreting its fields.
+	 * 
+	 * @param kind
+	 * @param start  the start offset, or the length of a LIST
+	 * @param fields
+	 * @param count  the number of fields
+	 * @return the index of the record
+	 */
+	int addRecord(Kind kind, int start, int[] fields, int count) {
+		int node = reserve(FIELDS + count);
+		data[node + KIND] = kind.ordinal();
+		data[node + START] = start;
+		System.arraycopy(fields, 0, data, node + FIELDS, count);
+		return node;
+	}
+
+	void addPosition(Position position) {
+		positions.add(position);
+	}
+
+	// Copying object trees into the arena
+
+	/**
+	 * Copy a Program (or any other node) into the arena. Nodes that were not
+	 * built with this arena's Locator keep their own Position.
+	 * 
+	 * @param node
+	 * @return the index of the copied node
+	 */
+	public int add(ASTNode node) {
+		Copier copier = new Copier();
+		node.accept(copier);
+		return copier.result;
+	}
+
+	/**
+	 * Copies each node it visits into the arena, leaving the index of the copy in
+	 * result.
+	 */
+	private class Copier implements ASTVisitor {
+		int result;
+
+		private int copy(ASTNode node) {
+			node.accept(this);
+			return result;
+		}
+
+		private int copyList(List<? extends ASTNode> nodes) {
+			int[] indices = new int[nodes.size()];
+			int i = 0;
+			for (ASTNode node : nodes) {
+				indices[i] = copy(node);
+				i = i + 1;
+			}
+			return list(indices);
+		}
+
+		private int copyClauses(List<Clause> clauses) {
+			int[] indices = new int[clauses.size()];
+			for (int i = 0; i < indices.length; i++) {
+				Clause clause = clauses.get(i);
+				indices[i] = clause(copy(clause.getTest()), copyList(clause.getStatements()));
+			}
+			return list(indices);
+		}
+
+		/**
+		 * @param node
+		 * @return the start field to record for the given node
+		 */
+		private int start(ASTNode node) {
+			if (node instanceof AbstractASTNode && ((AbstractASTNode) node).getLocator() == locator) {
+				return ((AbstractASTNode) node).getStartOffset();
+			}
+			positions.add(node.getStart());
+			return -positions.size();
+		}
+
+		@Override
+		public void visit(Program program) {
+			int start = start(program);
+			int declarations = copyList(program.getDeclarations());
+			int statements = copyList(new ArrayList<>(program.getStatements()));
+			result = program(start, declarations, statements);
+		}
+
+		@Override
+		public void visit(ProcedureHead procedureHead) {
+			int start = start(procedureHead);
+			result = procedureHead(start, copy(procedureHead.getId()), copy(procedureHead.getFormalParameters()));
+		}
+
+		@Override
+		public void visit(FormalParameters formalParameters) {
+			int start = start(formalParameters);
+			result = formalParameters(start, copyList(formalParameters.getFpSections()));
+		}
+
+		@Override
+		public void visit(FPSection fpSection) {
+			int start = start(fpSection);
+			result = fpSection(start, copyList(fpSection.getIds()), copy(fpSection.getType()));
+		}
+
+		@Override
+		public void visit(ProcedureBody procedureBody) {
+			int start = start(procedureBody);
+			int declarations = copyList(procedureBody.getDeclarations());
+			result = procedureBody(start, declarations, copyList(procedureBody.getStatements()));
+		}
+
+		@Override
+		public void visit(ConstDeclaration constDecl) {
+			int start = start(constDecl);
+			result = constDeclaration(start, copy(constDecl.getIdentifier()), copy(constDecl.getValue()));
+		}
+
+		@Override
+		public void visit(VarDeclaration varDeclaration) {
+			int start = start(varDeclaration);
+			result = varDeclaration(start, copyList(varDeclaration.getIds()), copy(varDeclaration.getType()));
+		}
+
+		@Override
+		public void visit(ProcedureDeclaration procedureDeclaration) {
+			int start = start(procedureDeclaration);
+			int head = copy(procedureDeclaration.getHead());
+			result = procedureDeclaration(start, head, copy(procedureDeclaration.getBody()));
+		}
+
+		@Override
+		public void visit(ProcedureCall procedureCall) {
+			int start = start(procedureCall);
+			int name = copy(procedureCall.getProcedureName());
+			result = procedureCall(start, name, copyList(procedureCall.getArguments()));
+		}
+
+		@Override
+		public void visit(Assignment assignment) {
+			int start = start(assignment);
+			result = assignment(start, copy(assignment.getId()), copy(assignment.getRhs()));
+		}
+
+		@Override
+		public void visit(IfStatement ifStatement) {
+			int start = start(ifStatement);
+			int clauses = copyClauses(ifStatement.getClauses());
+			result = ifStatement(start, clauses, copyList(ifStatement.getElseClause()));
+		}
+
+		@Override
+		public void visit(WhileStatement whileStatement) {
+			int start = start(whileStatement);
+			result = whileStatement(start, copyClauses(whileStatement.getClauses()));
+		}
+
+		@Override
+		public void visit(RepeatStatement repeatStatement) {
+			int start = start(repeatStatement);
+			int body = copyList(repeatStatement.getBody());
+			result = repeatStatement(start, body, copy(repeatStatement.getTest()));
+		}
+
+		@Override
+		public void visit(ForStatement forStatement) {
+			int start = start(forStatement);
+			int index = copy(forStatement.getIndex());
+			int from = copy(forStatement.getFrom());
+			int to = copy(forStatement.getTo());
+			int step = forStatement.getStep().isPresent() ? copy(forStatement.getStep().get()) : NONE;
+			result = forStatement(start, index, from, to, step, copyList(forStatement.getBody()));
+		}
+
+		@Override
+		public void visit(EmptyStatement emptyStatement) {
+			result = emptyStatement(start(emptyStatement));
+		}
+
+		@Override
+		public void visit(RelationalOperation relationalOperation) {
+			int start = start(relationalOperation);
+			int left = copy(relationalOperation.getLeft());
+			int right = copy(relationalOperation.getRight());
+			result = relationalOperation(start, left, relationalOperation.getOperator(), right);
+		}
+
+		@Override
+		public void visit(UnaryOperation unaryOperation) {
+			int start = start(unaryOperation);
+			result = unaryOperation(start, unaryOperation.getOperator(), copy(unaryOperation.getExpression()));
+		}
+
+		@Override
+		public void visit(BinaryOperation binaryOperation) {
+			int start = start(binaryOperation);
+			int left = copy(binaryOperation.getLeft());
+			int right = copy(binaryOperation.getRight());
+			result = binaryOperation(start, left, binaryOperation.getOperator(), right);
+		}
+
+		@Override
+		public void visit(NumValue numValue) {
+			int start = start(numValue);
+			result = numValue(start, numValue.getLexeme(), numValue.getIntValue(), numValue.isReal());
+		}
+
+		@Override
+		public void visit(Identifier identifier) {
+			result = identifier(start(identifier), identifier.getLexeme());
+		}
+
+		@Override
+		public void visit(StringValue stringValue) {
+			result = stringValue(start(stringValue), stringValue.getContents());
+		}
+
+		@Override
+		public void visit(BooleanValue booleanValue) {
+			result = booleanValue(start(booleanValue), booleanValue.getValue());
+		}
+	}
+
+	// Views
+
+	/**
+	 * @param node
+	 * @return a view of the given PROGRAM record
+	 */
+	public Program getProgram(int node) {
+		return (Program) getNode(node);
+	}
+
+	/**
+	 * Get the view of the given record, as an object of the corresponding
+	 * ASTNode class whose children are read from the arena when asked for. As
+	 * long as the view is reachable, every call for the same record returns the
+	 * same object.
+	 * 
+	 * @param node
+	 * @return the view
+	 */
+	public ASTNode getNode(int node) {
+		int number = Arrays.binarySearch(records, 0, recordCount, node);
+		if (number < 0) {
+			throw new IllegalArgumentException("Not the index of a record: " + node);
+		}
+
+		// Views only have final fields, so one read without the lock sees a
+		// complete view if it sees one at all
+		ViewReference[] cache = views;
+		if (number < cache.length && cache[number] != null) {
+			ASTNode view = cache[number].get();
+			if (view != null) {
+				return view;
+			}
+		}
+
+		synchronized (this) {
+			// Forget the references whose views are gone
+			ViewReference ref;
+			while ((ref = (ViewReference) collected.poll()) != null) {
+				if (views[ref.number] == ref) {
+					views[ref.number] = null;
+				}
+			}
+
+			if (number >= views.length) {
+				views = Arrays.copyOf(views, recordCount);
+			}
+			ASTNode view = (views[number] != null) ? views[number].get() : null;
+			if (view == null) {
+				view = createView(node);
+				views[number] = new ViewReference(view, number, collected);
+			}
+			return view;
+		}
+	}
+
+	private ASTNode createView(int node) {
+		switch (getKind(node)) {
+		case PROGRAM:
+			return new ProgramView(this, node);
+		case PROCEDURE_HEAD:
+			return new ProcedureHeadView(this, node);
+		case FORMAL_PARAMETERS:
+			return new FormalParametersView(this, node);
+		case FP_SECTION:
+			return new FPSectionView(this, node);
+		case PROCEDURE_BODY:
+			return new ProcedureBodyView(this, node);
+		case CONST_DECLARATION:
+			return new ConstDeclarationView(this, node);
+		case VAR_DECLARATION:
+			return new VarDeclarationView(this, node);
+		case PROCEDURE_DECLARATION:
+			return new ProcedureDeclarationView(this, node);
+		case PROCEDURE_CALL:
+			return new ProcedureCallView(this, node);
+		case ASSIGNMENT:
+			return new AssignmentView(this, node);
+		case IF_STATEMENT:
+			return new IfStatementView(this, node);
+		case WHILE_STATEMENT:
+			return new WhileStatementView(this, node);
+		case REPEAT_STATEMENT:
+			return new RepeatStatementView(this, node);
+		case FOR_STATEMENT:
+			return new ForStatementView(this, node);
+		case EMPTY_STATEMENT:
+			return new EmptyStatement(viewStart(node), viewLocator(node));
+		case RELATIONAL_OPERATION:
+			return new RelationalOperationView(this, node);
+		case UNARY_OPERATION:
+			return new UnaryOperationView(this, node);
+		case BINARY_OPERATION:
+			return new BinaryOperationView(this, node);
+		case NUM_VALUE:
+			return new NumValue(viewStart(node), viewLocator(node), strings.get(getField(node, 0)),
+					((long) getField(node, 1) << 32) | (getField(node, 2) & 0xFFFFFFFFL), getField(node, 3) != 0);
+		case IDENTIFIER:
+			int id = getField(node, 0);
+			return new Identifier(viewStart(node), viewLocator(node), symbols.getName(id), id);
+		case STRING_VALUE:
+			return new StringValue(viewStart(node), viewLocator(node), strings.get(getField(node, 0)));
+		case BOOLEAN_VALUE:
+			return new BooleanValue(viewStart(node), viewLocator(node), getField(node, 0) != 0);
+		default:
+			throw new IllegalArgumentException("Not an ASTNode record: " + getKind(node));
+		}
+	}
+
+	public Expression getExpression(int node) {
+		return (Expression) getNode(node);
+	}
+
+	public Statement getStatement(int node) {
+		return (Statement) getNode(node);
+	}
+
+	public Declaration getDeclaration(int node) {
+		return (Declaration) getNode(node);
+	}
+
+	public Identifier getIdentifier(int node) {
+		return (Identifier) getNode(node);
+	}
+
+	private Clause getClause(int node) {
+		return new Clause(getExpression(getField(node, 0)), listView(getField(node, 1), this::getStatement));
+	}
+
+	/**
+	 * @param list
+	 * @param element creates the view of each element
+	 * @return a read-only List that gets the view of an element on each get()
+	 */
+	private <T> List<T> listView(int list, IntFunction<T> element) {
+		return new ListView<>(this, list, element);
+	}
+
+	/**
+	 * The start offset to give a view; nodes with their own Position use that as
+	 * their Locator instead.
+	 */
+	private int viewStart(int node) {
+		int start = data[node + START];
+		return (start >= 0) ? start : 0;
+	}
+
+	private Locator viewLocator(int node) {
+		int start = data[node + START];
+		return (start >= 0) ? locator : positions.get(-start - 1);
+	}
+
+	private static class ListView<T> extends AbstractList<T> implements RandomAccess {
+		private final ASTArena arena;
+		private final int list;
+		private final IntFunction<T> element;
+
+		ListView(ASTArena arena, int list, IntFunction<T> element) {
+			this.arena = arena;
+			this.list = list;
+			this.element = element;
+		}
+
+		@Override
+		public T get(int index) {
+			if (index < 0 || index >= size()) {
+				throw new IndexOutOfBoundsException("index " + index + ", size " + size());
+			}
+			return element.apply(arena.getListElement(list, index));
+		}
+
+		@Override
+		public int size() {
+			return arena.getListSize(list);
+		}
+	}
+
+	/**
+	 * A weak reference to a view that remembers which record it was for.
+	 */
+	private static class ViewReference extends WeakReference<ASTNode> {
+		private final int number;
+
+		ViewReference(ASTNode view, int number, ReferenceQueue<ASTNode> queue) {
+			super(view, queue);
+			this.number = number;
+		}
+	}
+
+	private static class ProgramView extends Program {
+		private final ASTArena arena;
+		private final int node;
+
+		ProgramView(ASTArena arena, int node) {
+			super(arena.viewStart(node), arena.viewLocator(node), null, null);
+			this.arena = arena;
+			this.node = node;
+		}
+
+		@Override
+		public List<Declaration> getDeclarations() {
+			return arena.listView(arena.getField(node, 0), arena::getDeclaration);
+		}
+
+		@Override
+		public List<Statement> getStatements() {
+			return arena.listView(arena.getField(node, 1), arena::getStatement);
+		}
+	}
+
+	private static class ProcedureHeadView extends ProcedureHead {
+		private final ASTArena arena;
+		private final int node;
+
+		ProcedureHeadView(ASTArena arena, int node) {
+			super(arena.viewStart(node), arena.viewLocator(node), null, null);
+			this.arena = arena;
+			this.node = node;
+		}
+
+		@Override
+		public Identifier getId() {
+			return arena.getIdentifier(arena.getField(node, 0));
+		}
+
+		@Override
+		public FormalParameters getFormalParameters() {
+			return (FormalParameters) arena.getNode(arena.getField(node, 1));
+		}
+	}
+
+	private static class FormalParametersView extends FormalParameters {
+		private final ASTArena arena;
+		private final int node;
+
+		FormalParametersView(ASTArena arena, int node) {
+			super(arena.viewStart(node), arena.viewLocator(node), null);
+			this.arena = arena;
+			this.node = node;
+		}
+
+		@Override
+		public List<FPSection> getFpSections() {
+			return arena.listView(arena.getField(node, 0), n -> (FPSection) arena.getNode(n));
+		}
+	}
+
+	private static class FPSectionView extends FPSection {
+		private final ASTArena arena;
+		private final int node;
+
+		FPSectionView(ASTArena arena, int node) {
+			super(arena.viewStart(node), arena.viewLocator(node), null, null);
+			this.arena = arena;
+			this.node = node;
+		}
+
+		@Override
+		public List<Identifier> getIds() {
+			return arena.listView(arena.getField(node, 0), arena::getIdentifier);
+		}
+
+		@Override
+		public Identifier getType() {
+			return arena.getIdentifier(arena.getField(node, 1));
+		}
+	}
+
+	private static class ProcedureBodyView extends ProcedureBody {
+		private final ASTArena arena;
+		private final int node;
+
+		ProcedureBodyView(ASTArena arena, int node) {
+			super(arena.viewStart(node), arena.viewLocator(node), null, null);
+			this.arena = arena;
+			this.node = node;
+		}
+
+		@Override
+		public List<Declaration> getDeclarations() {
+			return arena.listView(arena.getField(node, 0), arena::getDeclaration);
+		}
+
+		@Override
+		public List<Statement> getStatements() {
+			return arena.listView(arena.getField(node, 1), arena::getStatement);
+		}
+	}
+
+	private static class ConstDeclarationView extends ConstDeclaration {
+		private final ASTArena arena;
+		private final int node;
+
+		ConstDeclarationView(ASTArena arena, int node) {
+			super(arena.viewStart(node), arena.viewLocator(node), null, null);
+			this.arena = arena;
+			this.node = node;
+		}
+
+		@Override
+		public Identifier getIdentifier() {
+			return arena.getIdentifier(arena.getField(node, 0));
+		}
+
+		@Override
+		public Expression getValue() {
+			return arena.getExpression(arena.getField(node, 1));
+		}
+	}
+
+	private static class VarDeclarationView extends VarDeclaration {
+		private final ASTArena arena;
+		private final int node;
+
+		VarDeclarationView(ASTArena arena, int node) {
+			super(arena.viewStart(node), arena.viewLocator(node), null, null);
+			this.arena = arena;
+			this.node = node;
+		}
+
+		@Override
+		public List<Identifier> getIds() {
+			return arena.listView(arena.getField(node, 0), arena::getIdentifier);
+		}
+
+		@Override
+		public Identifier getType() {
+			return arena.getIdentifier(arena.getField(node, 1));
+		}
+	}
+
+	private static class ProcedureDeclarationView extends ProcedureDeclaration {
+		private final ASTArena arena;
+		private final int node;
+
+		ProcedureDeclarationView(ASTArena arena, int node) {
+			super(arena.viewStart(node), arena.viewLocator(node), null, null);
+			this.arena = arena;
+			this.node = node;
+		}
+
+		@Override
+		public ProcedureHead getHead() {
+			return (ProcedureHead) arena.getNode(arena.getField(node, 0));
+		}
+
+		@Override
+		public ProcedureBody getBody() {
+			return (ProcedureBody) arena.getNode(arena.getField(node, 1));
+		}
+	}
+
+	private static class ProcedureCallView extends ProcedureCall {
+		private final ASTArena arena;
+		private final int node;
+
+		ProcedureCallView(ASTArena arena, int node) {
+			super(arena.viewStart(node), arena.viewLocator(node), null, null);
+			this.arena = arena;
+			this.node = node;
+		}
+
+		@Override
+		public Identifier getProcedureName() {
+			return arena.getIdentifier(arena.getField(node, 0));
+		}
+
+		@Override
+		public List<Expression> getArguments() {
+			return arena.listView(arena.getField(node, 1), arena::getExpression);
+		}
+	}
+
+	private static class AssignmentView extends Assignment {
+		private final ASTArena arena;
+		private final int node;
+
+		AssignmentView(ASTArena arena, int node) {
+			super(arena.viewStart(node), arena.viewLocator(node), null, null);
+			this.arena = arena;
+			this.node = node;
+		}
+
+		@Override
+		public Identifier getId() {
+			return arena.getIdentifier(arena.getField(node, 0));
+		}
+
+		@Override
+		public Expression getRhs() {
+			return arena.getExpression(arena.getField(node, 1));
+		}
+	}
+
+	private static class IfStatementView extends IfStatement {
+		private final ASTArena arena;
+		private final int node;
+
+		IfStatementView(ASTArena arena, int node) {
+			super(arena.viewStart(node), arena.viewLocator(node), null, null);
+			this.arena = arena;
+			this.node = node;
+		}
+
+		@Override
+		public List<Clause> getClauses() {
+			return arena.listView(arena.getField(node, 0), arena::getClause);
+		}
+
+		@Override
+		public List<Statement> getElseClause() {
+			return arena.listView(arena.getField(node, 1), arena::getStatement);
+		}
+	}
+
+	private static class WhileStatementView extends WhileStatement {
+		private final ASTArena arena;
+		private final int node;
+
+		WhileStatementView(ASTArena arena, int node) {
+			super(arena.viewStart(node), arena.viewLocator(node), null);
+			this.arena = arena;
+			this.node = node;
+		}
+
+		@Override
+		public List<Clause> getClauses() {
+			return arena.listView(arena.getField(node, 0), arena::getClause);
+		}
+	}
+
+	private static class RepeatStatementView extends RepeatStatement {
+		private final ASTArena arena;
+		private final int node;
+
+		RepeatStatementView(ASTArena arena, int node) {
+			super(arena.viewStart(node), arena.viewLocator(node), null, null);
+			this.arena = arena;
+			this.node = node;
+		}
+
+		@Override
+		public List<Statement> getBody() {
+			return arena.listView(arena.getField(node, 0), arena::getStatement);
+		}
+
+		@Override
+		public Expression getTest() {
+			return arena.getExpression(arena.getField(node, 1));
+		}
+	}
+
+	private static class ForStatementView extends ForStatement {
+		private final ASTArena arena;
+		private final int node;
+
+		ForStatementView(ASTArena arena, int node) {
+			super(arena.viewStart(node), arena.viewLocator(node), null, null, null, null, null);
+			this.arena = arena;
+			this.node = node;
+		}
+
+		@Override
+		public Identifier getIndex() {
+			return arena.getIdentifier(arena.getField(node, 0));
+		}
+
+		@Override
+		public Expression getFrom() {
+			return arena.getExpression(arena.getField(node, 1));
+		}
+
+		@Override
+		public Expression getTo() {
+			return arena.getExpression(arena.getField(node, 2));
+		}
+
+		@Override
+		public Optional<Expression> getStep() {
+			int step = arena.getField(node, 3);
+			return (step == NONE) ? Optional.empty() : Optional.of(arena.getExpression(step));
+		}
+
+		@Override
+		public List<Statement> getBody() {
+			return arena.listView(arena.getField(node, 4), arena::getStatement);
+		}
+	}
+
+	private static class RelationalOperationView extends RelationalOperation {
+		private final ASTArena arena;
+		private final int node;
+
+		RelationalOperationView(ASTArena arena, int node) {
+			super(arena.viewStart(node), arena.viewLocator(node), null, RELATIONAL_OPS[arena.getField(node, 1)],
+					null);
+			this.arena = arena;
+			this.node = node;
+		}
+
+		@Override
+		public Expression getLeft() {
+			return arena.getExpression(arena.getField(node, 0));
+		}
+
+		@Override
+		public Expression getRight() {
+			return arena.getExpression(arena.getField(node, 2));
+		}
+	}
+
+	private static class UnaryOperationView extends UnaryOperation {
+		private final ASTArena arena;
+		private final int node;
+
+		UnaryOperationView(ASTArena arena, int node) {
+			super(arena.viewStart(node), arena.viewLocator(node), UNARY_OPS[arena.getField(node, 0)], null);
+			this.arena = arena;
+			this.node = node;
+		}
+
+		@Override
+		public Expression getExpression() {
+			return arena.getExpression(arena.getField(node, 1));
+		}
+	}
+
+	private static class BinaryOperationView extends BinaryOperation {
+		private final ASTArena arena;
+		private final int node;
+
+		BinaryOperationView(ASTArena arena, int node) {
+			super(arena.viewStart(node), arena.viewLocator(node), null, BINARY_OPS[arena.getField(node, 1)], null);
+			this.arena = arena;
+			this.node = node;
+		}
+
+		@Override
+		public Expression getLeft() {
+			return arena.getExpression(arena.getField(node, 0));
+		}
+
+		@Override
+		public Expression getRight() {
+			return arena.getExpression(arena.getField(node, 2));
+		}
+	}
+}
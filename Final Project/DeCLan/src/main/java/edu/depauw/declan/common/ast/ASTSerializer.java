@@ -0,0 +1,436 @@
+package edu.depauw.declan.common.ast;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import edu.depauw.declan.common.LineMap;
+import edu.depauw.declan.common.Position;
+import edu.depauw.declan.common.SymbolInterner;
+
+/**
+ * An ASTSerializer writes a Program in a compact binary form, and reads it
+ * back, by way of an ASTArena. The arena's records are written in order, each
+ * as its Kind followed by its fields as varints. A child always comes before
+ * its parent, so a child is written as the (usually small) distance back to
+ * it. Start offsets are written as the difference from the previous record's
+ * start. Identifier names and literal lexemes go in one table of distinct
+ * strings. The LineMap is written too, so positions can be recovered without
+ * the source.
+ * 
+ * The layout is:
+ * 
+ * <pre>
+ * magic version root
+ * lineCount lineStart-deltas...
+ * stringCount (byteLength utf8-bytes)...
+ * positionCount (line column)...
+ * recordCount records...
+ * </pre>
+ * 
+ * where each number after the magic is a varint.
+ */
+public class ASTSerializer {
+	/**
+	 * The first four bytes of every serialized Program ("DCLA")
+	 */
+	public static final int MAGIC = 0x44434C41;
+
+	/**
+	 * Changed whenever the layout or the Kinds change, so that old data is
+	 * rejected
+	 */
+	public static final int VERSION = 1;
+
+	private static final ASTArena.Kind[] KINDS = ASTArena.Kind.values();
+
+	// Roles of the fields of a record
+	private static final byte CHILD = 0;
+	private static final byte SMALL = 1;
+	private static final byte INT = 2;
+	private static final byte STRING = 3;
+	private static final byte SYMBOL = 4;
+
+	/**
+	 * The roles of the fields of each Kind of record (except LIST, whose fields
+	 * are all children)
+	 */
+	private static final byte[][] ROLES = new byte[KINDS.length][];
+
+	static {
+		roles(ASTArena.Kind.PROGRAM, CHILD, CHILD);
+		roles(ASTArena.Kind.PROCEDURE_HEAD, CHILD, CHILD);
+		roles(ASTArena.Kind.FORMAL_PARAMETERS, CHILD);
+		roles(ASTArena.Kind.FP_SECTION, CHILD, CHILD);
+		roles(ASTArena.Kind.PROCEDURE_BODY, CHILD, CHILD);
+		roles(ASTArena.Kind.CONST_DECLARATION, CHILD, CHILD);
+		roles(ASTArena.Kind.VAR_DECLARATION, CHILD, CHILD);
+		roles(ASTArena.Kind.PROCEDURE_DECLARATION, CHILD, CHILD);
+		roles(ASTArena.Kind.PROCEDURE_CALL, CHILD, CHILD);
+		roles(ASTArena.Kind.ASSIGNMENT, CHILD, CHILD);
+		roles(ASTArena.Kind.IF_STATEMENT, CHILD, CHILD);
+		roles(ASTArena.Kind.WHILE_STATEMENT, CHILD);
+		roles(ASTArena.Kind.REPEAT_STATEMENT, CHILD, CHILD);
+		roles(ASTArena.Kind.FOR_STATEMENT, CHILD, CHILD, CHILD, CHILD, CHILD);
+		roles(ASTArena.Kind.EMPTY_STATEMENT);
+		roles(ASTArena.Kind.RELATIONAL_OPERATION, CHILD, SMALL, CHILD);
+		roles(ASTArena.Kind.UNARY_OPERATION, SMALL, CHILD);
+		roles(ASTArena.Kind.BINARY_OPERATION, CHILD, SMALL, CHILD);
+		roles(ASTArena.Kind.NUM_VALUE, STRING, INT, INT, SMALL);
+		roles(ASTArena.Kind.IDENTIFIER, SYMBOL);
+		roles(ASTArena.Kind.STRING_VALUE, STRING);
+		roles(ASTArena.Kind.BOOLEAN_VALUE, SMALL);
+		roles(ASTArena.Kind.CLAUSE, CHILD, CHILD);
+	}
+
+	private static void roles(ASTArena.Kind kind, byte... roles) {
+		ROLES[kind.ordinal()] = roles;
+	}
+
+	/**
+	 * @return one more than the largest SMALL field of the given Kind of record
+	 */
+	private static int smallLimit(ASTArena.Kind kind) {
+		switch (kind) {
+		case RELATIONAL_OPERATION:
+			return RelationalOperation.OpType.values().length;
+		case UNARY_OPERATION:
+			return UnaryOperation.OpType.values().length;
+		case BINARY_OPERATION:
+			return BinaryOperation.OpType.values().length;
+		default:
+			// A flag
+			return 2;
+		}
+	}
+
+	private ASTSerializer() {
+	}
+
+	/**
+	 * Write a Program, together with the LineMap for the offsets of its nodes.
+	 * Nodes located by anything else keep their own Positions.
+	 * 
+	 * @param program
+	 * @param lineMap
+	 * @param out
+	 * @throws IOException
+	 */
+	public static void write(Program program, LineMap lineMap, OutputStream out) throws IOException {
+		ASTArena arena = new ASTArena(lineMap, new SymbolInterner());
+		int root = arena.add(program);
+		write(arena, root, lineMap, out);
+	}
+
+	/**
+	 * Write the tree in an arena, whose Locator is the given LineMap.
+	 * 
+	 * @param arena
+	 * @param root    the index of the PROGRAM record
+	 * @param lineMap
+	 * @param out
+	 * @throws IOException
+	 */
+	public static void write(ASTArena arena, int root, LineMap lineMap, OutputStream out) throws IOException {
+		Writer records = new Writer();
+		Map<String, Integer> stringIds = new HashMap<>();
+		List<String> strings = new ArrayList<>();
+
+		int recordCount = 0;
+		int previousStart = 0;
+		int node = 0;
+		while (node < arena.getDataSize()) {
+			ASTArena.Kind kind = arena.getKind(node);
+			records.writeVarint(kind.ordinal());
+			int fieldCount;
+			if (kind == ASTArena.Kind.LIST) {
+				fieldCount = arena.getListSize(node);
+				records.writeVarint(fieldCount);
+				for (int i = 0; i < fieldCount; i++) {
+					records.writeVarint(node - arena.getListElement(node, i));
+				}
+			} else {
+				int start = arena.getStartOffset(node);
+				records.writeSigned(start - previousStart);
+				previousStart = start;
+
+				byte[] roles = ROLES[kind.ordinal()];
+				fieldCount = roles.length;
+				for (int i = 0; i < fieldCount; i++) {
+					int field = arena.getField(node, i);
+					switch (roles[i]) {
+					case CHILD:
+						records.writeVarint((field == ASTArena.NONE) ? 0 : node - field);
+						break;
+					case SMALL:
+						records.writeVarint(field);
+						break;
+					case INT:
+						records.writeSigned(field);
+						break;
+					case STRING:
+						records.writeVarint(stringId(arena.getString(field), stringIds, strings));
+						break;
+					default: // SYMBOL
+						String name = arena.getSymbolInterner().getName(field);
+						records.writeVarint(stringId(name, stringIds, strings));
+						break;
+					}
+				}
+			}
+			// A record is its Kind and start (or length), then its fields
+			node = node + 2 + fieldCount;
+			recordCount = recordCount + 1;
+		}
+
+		Writer header = new Writer();
+		header.writeInt(MAGIC);
+		header.writeVarint(VERSION);
+		header.writeVarint(root);
+
+		header.writeVarint(lineMap.getLineCount());
+		for (int line = 2; line <= lineMap.getLineCount(); line++) {
+			header.writeVarint(lineMap.getLineStart(line) - lineMap.getLineStart(line - 1));
+		}
+
+		header.writeVarint(strings.size());
+		for (String s : strings) {
+			byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+			header.writeVarint(bytes.length);
+			header.write(bytes, 0, bytes.length);
+		}
+
+		header.writeVarint(arena.getPositionCount());
+		for (int i = 0; i < arena.getPositionCount(); i++) {
+			Position position = arena.getPosition(i);
+			header.writeVarint(position.getLine());
+			header.writeVarint(position.getColumn());
+		}
+
+		header.writeVarint(recordCount);
+		header.writeTo(out);
+		records.writeTo(out);
+	}
+
+	private static int stringId(String s, Map<String, Integer> stringIds, List<String> strings) {
+		Integer id = stringIds.get(s);
+		if (id == null) {
+			id = strings.size();
+			stringIds.put(s, id);
+			strings.add(s);
+		}
+		return id;
+	}
+
+	/**
+	 * Read back a Program written by write(). The tree is rebuilt as an
+	 * ASTArena, and the result is a view of it. Every count, index and child
+	 * distance is checked as it is read, so corrupt data is rejected here rather
+	 * than when the views are used.
+	 * 
+	 * @param in      positioned at the start of the data
+	 * @param symbols interns the names of the identifiers
+	 * @return the Program
+	 * @throws IllegalArgumentException if the data is not a serialized Program
+	 *                                  of this version, or is truncated
+	 */
+	public static Program read(ByteBuffer in, SymbolInterner symbols) {
+		try {
+			if (in.getInt() != MAGIC || readVarint(in) != VERSION) {
+				throw new IllegalArgumentException("Not a serialized Program of version " + VERSION);
+			}
+			int root = readVarint(in);
+
+			LineMap lineMap = new LineMap();
+			int lineCount = readCount(in);
+			int lineStart = 0;
+			for (int line = 2; line <= lineCount; line++) {
+				int delta = readVarint(in);
+				if (delta < 0 || lineStart > Integer.MAX_VALUE - delta) {
+					throw new IllegalArgumentException("Bad start of line " + line);
+				}
+				lineStart = lineStart + delta;
+				lineMap.addLineStart(lineStart);
+			}
+			ASTArena arena = new ASTArena(lineMap, symbols);
+
+			// The arena keeps its own table for the lexemes of literals; names are
+			// interned when first used
+			int stringCount = readCount(in);
+			String[] strings = new String[stringCount];
+			for (int i = 0; i < stringCount; i++) {
+				byte[] bytes = new byte[readCount(in)];
+				in.get(bytes);
+				strings[i] = new String(bytes, StandardCharsets.UTF_8);
+			}
+			int[] stringIndices = new int[stringCount];
+			int[] symbolIds = new int[stringCount];
+			for (int i = 0; i < stringCount; i++) {
+				stringIndices[i] = -1;
+				symbolIds[i] = -1;
+			}
+
+			int positionCount = readCount(in);
+			for (int i = 0; i < positionCount; i++) {
+				int line = readVarint(in);
+				arena.addPosition(new Position(line, readVarint(in)));
+			}
+
+			int recordCount = readCount(in);
+			int[] fields = new int[8];
+			int previousStart = 0;
+			// The index of the first int of each record
+			BitSet records = new BitSet();
+			for (int r = 0; r < recordCount; r++) {
+				int ordinal = readIndex(in, KINDS.length);
+				ASTArena.Kind kind = KINDS[ordinal];
+				int node = arena.getDataSize();
+				if (kind == ASTArena.Kind.LIST) {
+					int count = readCount(in);
+					if (count > fields.length) {
+						fields = new int[Math.max(count, fields.length * 2)];
+					}
+					for (int i = 0; i < count; i++) {
+						fields[i] = child(node, readVarint(in), records);
+					}
+					arena.addRecord(kind, count, fields, count);
+				} else {
+					int start = previousStart + readSigned(in);
+					previousStart = start;
+					// A negative start refers to a Position
+					if (start < 0 && -(start + 1) >= positionCount) {
+						throw new IllegalArgumentException("Unknown position " + -(start + 1));
+					}
+
+					byte[] roles = ROLES[ordinal];
+					for (int i = 0; i < roles.length; i++) {
+						switch (roles[i]) {
+						case CHILD:
+							int distance = readVarint(in);
+							fields[i] = (distance == 0) ? ASTArena.NONE : child(node, distance, records);
+							break;
+						case SMALL:
+							fields[i] = readIndex(in, smallLimit(kind));
+							break;
+						case INT:
+							fields[i] = readSigned(in);
+							break;
+						case STRING:
+							int s = readIndex(in, stringCount);
+							if (stringIndices[s] < 0) {
+								stringIndices[s] = arena.addString(strings[s]);
+							}
+							fields[i] = stringIndices[s];
+							break;
+						default: // SYMBOL
+							int name = readIndex(in, stringCount);
+							if (symbolIds[name] < 0) {
+								symbolIds[name] = symbols.intern(strings[name]);
+							}
+							fields[i] = symbolIds[name];
+							break;
+						}
+					}
+					arena.addRecord(kind, start, fields, roles.length);
+				}
+				records.set(node);
+			}
+
+			if (root < 0 || !records.get(root) || arena.getKind(root) != ASTArena.Kind.PROGRAM) {
+				throw new IllegalArgumentException("Root is not a Program");
+			}
+			return arena.getProgram(root);
+		} catch (BufferUnderflowException | ArrayIndexOutOfBoundsException e) {
+			throw new IllegalArgumentException("Truncated or corrupt serialized Program", e);
+		}
+	}
+
+	/**
+	 * @param node     the index of the parent record
+	 * @param distance how far back the child is
+	 * @param records  the indices of the records read so far
+	 * @return the index of the child record
+	 */
+	private static int child(int node, int distance, BitSet records) {
+		if (distance <= 0 || distance > node || !records.get(node - distance)) {
+			throw new IllegalArgumentException("Bad child distance " + distance + " at " + node);
+		}
+		return node - distance;
+	}
+
+	/**
+	 * Read a length in bytes, or a count of items that each take at least one
+	 * byte, so that it cannot be more than the bytes remaining.
+	 */
+	private static int readCount(ByteBuffer in) {
+		int count = readVarint(in);
+		if (count < 0 || count > in.remaining()) {
+			throw new IllegalArgumentException("Count " + count + " is more than the remaining data");
+		}
+		return count;
+	}
+
+	/**
+	 * Read an index that must be less than limit.
+	 */
+	private static int readIndex(ByteBuffer in, int limit) {
+		int index = readVarint(in);
+		if (index < 0 || index >= limit) {
+			throw new IllegalArgumentException("Index " + index + " out of range");
+		}
+		return index;
+	}
+
+	private static int readVarint(ByteBuffer in) {
+		int result = 0;
+		for (int shift = 0; shift < 32; shift += 7) {
+			byte b = in.get();
+			result = result | ((b & 0x7F) << shift);
+			if (b >= 0) {
+				return result;
+			}
+		}
+		throw new IllegalArgumentException("Varint too long");
+	}
+
+	private static int readSigned(ByteBuffer in) {
+		int zigzag = readVarint(in);
+		return (zigzag >>> 1) ^ -(zigzag & 1);
+	}
+
+	/**
+	 * Collects the bytes of one section.
+	 */
+	private static class Writer extends ByteArrayOutputStream {
+		void writeVarint(int value) {
+			while ((value & ~0x7F) != 0) {
+				write((value & 0x7F) | 0x80);
+				value = value >>> 7;
+			}
+			write(value);
+		}
+
+		/**
+		 * Write a value that may be negative, in zigzag form so that small
+		 * magnitudes stay short.
+		 */
+		void writeSigned(int value) {
+			writeVarint((value << 1) ^ (value >> 31));
+		}
+
+		void writeInt(int value) {
+			write(value >>> 24);
+			write(value >>> 16);
+			write(value >>> 8);
+			write(value);
+		}
+	}
+}
@@ -1,21 +1,44 @@
 package edu.depauw.declan.common.ast;
 
+import edu.depauw.declan.common.Locator;
 import edu.depauw.declan.common.Position;
 
 /**
  * Default implementation of ASTNode that keeps track of a starting Position.
+ * The Position is stored as a source offset plus a shared Locator, and is only
+ * computed when getStart() is called.
  * 
  * @author bhoward
  */
 public abstract class AbstractASTNode implements ASTNode {
-	private final Position start;
+	private final int start;
+	private final Locator locator;
 
 	public AbstractASTNode(Position start) {
+		this(0, start);
+	}
+
+	public AbstractASTNode(int start, Locator locator) {
 		this.start = start;
+		this.locator = locator;
 	}
 
 	@Override
 	public Position getStart() {
+		return locator.getPosition(start);
+	}
+
+	/**
+	 * @return the offset in the Source of the starting Token of this node
+	 */
+	public int getStartOffset() {
 		return start;
 	}
+
+	/**
+	 * @return the Locator that converts this node's offset into a Position
+	 */
+	public Locator getLocator() {
+		return locator;
+	}
 }
@@ -1,5 +1,6 @@
 package edu.depauw.declan.common.ast;
 
+import edu.depauw.declan.common.Locator;
 import edu.depauw.declan.common.Position;
 
 /**
@@ -21,7 +22,20 @@ public class Assignment extends AbstractASTNode implements Statement {
 	 * @param rhs
 	 */
 	public Assignment(Position start, Identifier id, Expression rhs) {
-		super(start);
+		this(0, start, id, rhs);
+	}
+
+	/**
+	 * Construct an Assignment ast node starting at the given source offset,
+	 * with the specified left-hand Identifier and right-hand Expression.
+	 * 
+	 * @param start
+	 * @param locator
+	 * @param id
+	 * @param rhs
+	 */
+	public Assignment(int start, Locator locator, Identifier id, Expression rhs) {
+		super(start, locator);
 		this.id = id;
 		this.rhs = rhs;
 	}
@@ -1,5 +1,6 @@
 package edu.depauw.declan.common.ast;
 
+import edu.depauw.declan.common.Locator;
 import edu.depauw.declan.common.Position;
 
 /**
@@ -18,7 +19,19 @@ public class BooleanValue extends AbstractASTNode implements Expression {
 	 * @param value
 	 */
 	public BooleanValue(Position start, boolean value) {
-		super(start);
+		this(0, start, value);
+	}
+
+	/**
+	 * Construct a BooleanValue ast node starting at the given source offset,
+	 * with the specified boolean value.
+	 * 
+	 * @param start
+	 * @param locator
+	 * @param value
+	 */
+	public BooleanValue(int start, Locator locator, boolean value) {
+		super(start, locator);
 		this.value = value;
 	}
 
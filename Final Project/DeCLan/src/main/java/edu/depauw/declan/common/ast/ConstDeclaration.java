@@ -1,5 +1,6 @@
 package edu.depauw.declan.common.ast;
 
+import edu.depauw.declan.common.Locator;
 import edu.depauw.declan.common.Position;
 
 /**
@@ -21,7 +22,20 @@ public class ConstDeclaration extends AbstractASTNode implements Declaration {
 	 * @param value
 	 */
 	public ConstDeclaration(Position start, Identifier identifier, Expression value) {
-		super(start);
+		this(0, start, identifier, value);
+	}
+
+	/**
+	 * Construct a ConstDecl ast node starting at the given source offset, with
+	 * the specified Identifier and Expression.
+	 * 
+	 * @param start
+	 * @param locator
+	 * @param identifier
+	 * @param value
+	 */
+	public ConstDeclaration(int start, Locator locator, Identifier identifier, Expression value) {
+		super(start, locator);
 		this.identifier = identifier;
 		this.value = value;
 	}
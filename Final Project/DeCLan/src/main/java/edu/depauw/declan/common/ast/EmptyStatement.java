@@ -1,5 +1,6 @@
 package edu.depauw.declan.common.ast;
 
+import edu.depauw.declan.common.Locator;
 import edu.depauw.declan.common.Position;
 
 /**
@@ -18,7 +19,17 @@ public class EmptyStatement extends AbstractASTNode implements Statement {
 	 * @param start
 	 */
 	public EmptyStatement(Position start) {
-		super(start);
+		this(0, start);
+	}
+
+	/**
+	 * Construct an EmptyStatement ast node starting at the given source offset.
+	 * 
+	 * @param start
+	 * @param locator
+	 */
+	public EmptyStatement(int start, Locator locator) {
+		super(start, locator);
 	}
 
 	@Override
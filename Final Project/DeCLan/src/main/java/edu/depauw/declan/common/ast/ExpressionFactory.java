@@ -0,0 +1,84 @@
+package edu.depauw.declan.common.ast;
+
+import edu.depauw.declan.common.Locator;
+
+/**
+ * An ExpressionFactory collects factory methods for the Expression nodes that
+ * a parser builds, so that the parser does not have to know whether nodes are
+ * shared. Each node starts at an offset that is converted to a Position by the
+ * given Locator. The parser calls enterScope() and exitScope() around the body
+ * of each procedure, since the same identifier may mean different things
+ * inside and outside it.
+ */
+public interface ExpressionFactory {
+	/**
+	 * Create a BinaryOperation; it starts where its left operand does.
+	 * 
+	 * @param start
+	 * @param locator
+	 * @param left
+	 * @param operator
+	 * @param right
+	 * @return
+	 */
+	BinaryOperation makeBinary(int start, Locator locator, Expression left, BinaryOperation.OpType operator,
+			Expression right);
+
+	/**
+	 * Create a RelationalOperation; it starts where its left operand does.
+	 * 
+	 * @param start
+	 * @param locator
+	 * @param left
+	 * @param operator
+	 * @param right
+	 * @return
+	 */
+	RelationalOperation makeRelational(int start, Locator locator, Expression left,
+			RelationalOperation.OpType operator, Expression right);
+
+	/**
+	 * Create a UnaryOperation.
+	 * 
+	 * @param start
+	 * @param locator
+	 * @param operator
+	 * @param operand
+	 * @return
+	 */
+	UnaryOperation makeUnary(int start, Locator locator, UnaryOperation.OpType operator, Expression operand);
+
+	/**
+	 * Create a NumValue for a literal that the lexer has already decoded.
+	 * 
+	 * @param start
+	 * @param locator
+	 * @param lexeme
+	 * @param value   the value of an integer literal, or the raw bits of a real
+	 * @param real    true if the literal is a real
+	 * @return
+	 */
+	NumValue makeNum(int start, Locator locator, String lexeme, long value, boolean real);
+
+	/**
+	 * Create an Identifier used as an expression (not one being declared, or
+	 * assigned to).
+	 * 
+	 * @param start
+	 * @param locator
+	 * @param lexeme
+	 * @param symbolId
+	 * @return
+	 */
+	Identifier makeIdentifier(int start, Locator locator, String lexeme, int symbolId);
+
+	/**
+	 * Start the body of a procedure.
+	 */
+	void enterScope();
+
+	/**
+	 * End the body of the procedure most recently entered.
+	 */
+	void exitScope();
+}
@@ -2,6 +2,7 @@ package edu.depauw.declan.common.ast;
 
 import java.util.List;
 
+import edu.depauw.declan.common.Locator;
 import edu.depauw.declan.common.Position;
 
 /**
@@ -26,7 +27,20 @@ public class FPSection extends AbstractASTNode {
 	 * @param type
 	 */
 	public FPSection(Position start, List<Identifier> ids, Identifier type) {
-		super(start);
+		this(0, start, ids, type);
+	}
+
+	/**
+	 * Construct an FPSection ast node starting at the given source offset, with
+	 * the given list of Identifiers and type.
+	 * 
+	 * @param start
+	 * @param locator
+	 * @param ids
+	 * @param type
+	 */
+	public FPSection(int start, Locator locator, List<Identifier> ids, Identifier type) {
+		super(start, locator);
 		this.ids = ids;
 		this.type = type;
 	}
@@ -3,6 +3,7 @@ package edu.depauw.declan.common.ast;
 import java.util.List;
 import java.util.Optional;
 
+import edu.depauw.declan.common.Locator;
 import edu.depauw.declan.common.Position;
 
 /**
@@ -37,7 +38,25 @@ public class ForStatement extends AbstractASTNode implements Statement {
 	 */
 	public ForStatement(Position start, Identifier index, Expression from, Expression to, Optional<Expression> step,
 			List<Statement> body) {
-		super(start);
+		this(0, start, index, from, to, step, body);
+	}
+
+	/**
+	 * Construct a ForStatement ast node starting at the given source offset,
+	 * with the specified index Identifier, from and to Expressions, optional
+	 * step Expression, and list of Statements in the body.
+	 * 
+	 * @param start
+	 * @param locator
+	 * @param index
+	 * @param from
+	 * @param to
+	 * @param step
+	 * @param body
+	 */
+	public ForStatement(int start, Locator locator, Identifier index, Expression from, Expression to,
+			Optional<Expression> step, List<Statement> body) {
+		super(start, locator);
 		this.index = index;
 		this.from = from;
 		this.to = to;
@@ -2,6 +2,7 @@ package edu.depauw.declan.common.ast;
 
 import java.util.List;
 
+import edu.depauw.declan.common.Locator;
 import edu.depauw.declan.common.Position;
 
 /**
@@ -22,7 +23,19 @@ public class FormalParameters extends AbstractASTNode {
 	 * @param fpSections
 	 */
 	public FormalParameters(Position start, List<FPSection> fpSections) {
-		super(start);
+		this(0, start, fpSections);
+	}
+
+	/**
+	 * Construct a FormalParameters ast node starting at the given source
+	 * offset, with the specified list of FPSections.
+	 * 
+	 * @param start
+	 * @param locator
+	 * @param fpSections
+	 */
+	public FormalParameters(int start, Locator locator, List<FPSection> fpSections) {
+		super(start, locator);
 		this.fpSections = fpSections;
 	}
 
@@ -0,0 +1,204 @@
+package edu.depauw.declan.common.ast;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+import edu.depauw.declan.common.Locator;
+import edu.depauw.declan.common.Position;
+
+/**
+ * A HashConsingExpressionFactory shares structurally identical expressions
+ * within a scope: asking twice for the same operator applied to the same
+ * operands, the same numeric literal, or the same identifier gives the same
+ * node. Since the operands were made by this factory too, they are compared by
+ * identity, so each request is a single hash lookup. Nodes are only shared
+ * between requests with the same Locator (that is, from the same source), and
+ * never between the body of a procedure and the code around it.
+ * 
+ * A shared node keeps the position of its first occurrence. The offsets of the
+ * others are kept in a side table, so that getOccurrences() can still report
+ * every place a node appears. The tree becomes a DAG, which is fine for the
+ * visitors since nodes are immutable, but a node's own getStart() no longer
+ * says which occurrence is meant. A factory should only be used by one parser
+ * at a time.
+ */
+public class HashConsingExpressionFactory implements ExpressionFactory {
+	/**
+	 * The shared nodes of each scope entered, innermost first
+	 */
+	private final Deque<Map<Key, Expression>> scopes;
+
+	/**
+	 * For each node returned more than once, the number of later occurrences
+	 * followed by their offsets
+	 */
+	private final Map<Expression, int[]> occurrences;
+
+	private int shared;
+
+	public HashConsingExpressionFactory() {
+		this.scopes = new ArrayDeque<>();
+		this.scopes.push(new HashMap<>());
+		this.occurrences = new IdentityHashMap<>();
+		this.shared = 0;
+	}
+
+	@Override
+	public BinaryOperation makeBinary(int start, Locator locator, Expression left, BinaryOperation.OpType operator,
+			Expression right) {
+		Key key = new Key(locator, operator, left, right);
+		BinaryOperation node = (BinaryOperation) lookup(key, start);
+		if (node == null) {
+			node = new BinaryOperation(start, locator, left, operator, right);
+			scopes.peek().put(key, node);
+		}
+		return node;
+	}
+
+	@Override
+	public RelationalOperation makeRelational(int start, Locator locator, Expression left,
+			RelationalOperation.OpType operator, Expression right) {
+		Key key = new Key(locator, operator, left, right);
+		RelationalOperation node = (RelationalOperation) lookup(key, start);
+		if (node == null) {
+			node = new RelationalOperation(start, locator, left, operator, right);
+			scopes.peek().put(key, node);
+		}
+		return node;
+	}
+
+	@Override
+	public UnaryOperation makeUnary(int start, Locator locator, UnaryOperation.OpType operator, Expression operand) {
+		Key key = new Key(locator, operator, operand, null);
+		UnaryOperation node = (UnaryOperation) lookup(key, start);
+		if (node == null) {
+			node = new UnaryOperation(start, locator, operator, operand);
+			scopes.peek().put(key, node);
+		}
+		return node;
+	}
+
+	@Override
+	public NumValue makeNum(int start, Locator locator, String lexeme, long value, boolean real) {
+		// The lexeme decides the value, and is kept for printing
+		Key key = new Key(locator, NumValue.class, lexeme, null);
+		NumValue node = (NumValue) lookup(key, start);
+		if (node == null) {
+			node = new NumValue(start, locator, lexeme, value, real);
+			scopes.peek().put(key, node);
+		}
+		return node;
+	}
+
+	@Override
+	public Identifier makeIdentifier(int start, Locator locator, String lexeme, int symbolId) {
+		Key key = new Key(locator, Identifier.class, lexeme, null);
+		Identifier node = (Identifier) lookup(key, start);
+		if (node == null) {
+			node = new Identifier(start, locator, lexeme, symbolId);
+			scopes.peek().put(key, node);
+		}
+		return node;
+	}
+
+	@Override
+	public void enterScope() {
+		scopes.push(new HashMap<>());
+	}
+
+	@Override
+	public void exitScope() {
+		scopes.pop();
+	}
+
+	/**
+	 * @return the number of requests answered with a node made earlier
+	 */
+	public int getSharedCount() {
+		return shared;
+	}
+
+	/**
+	 * @param node an Expression made by this factory
+	 * @return the positions of every occurrence of the node, in the order they
+	 *         were parsed
+	 */
+	public List<Position> getOccurrences(Expression node) {
+		AbstractASTNode astNode = (AbstractASTNode) node;
+		List<Position> result = new ArrayList<>();
+		result.add(astNode.getStart());
+		int[] later = occurrences.get(node);
+		if (later != null) {
+			for (int i = 1; i <= later[0]; i++) {
+				result.add(astNode.getLocator().getPosition(later[i]));
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Find the node for key in the current scope, recording another occurrence
+	 * of it if there is one.
+	 */
+	private Expression lookup(Key key, int start) {
+		Expression node = scopes.peek().get(key);
+		if (node != null) {
+			int[] later = occurrences.get(node);
+			if (later == null) {
+				later = new int[4];
+				occurrences.put(node, later);
+			} else if (later[0] + 1 == later.length) {
+				later = Arrays.copyOf(later, later.length * 2);
+				occurrences.put(node, later);
+			}
+			later[0] = later[0] + 1;
+			later[later[0]] = start;
+			shared = shared + 1;
+		}
+		return node;
+	}
+
+	/**
+	 * What makes two requests the same: an operator (or, for a leaf, its class)
+	 * and up to two parts, which are operand nodes compared by identity, or
+	 * lexemes compared by value.
+	 */
+	private static class Key {
+		private final Locator locator;
+		private final Object kind;
+		private final Object first;
+		private final Object second;
+
+		Key(Locator locator, Object kind, Object first, Object second) {
+			this.locator = locator;
+			this.kind = kind;
+			this.first = first;
+			this.second = second;
+		}
+
+		@Override
+		public int hashCode() {
+			int hash = System.identityHashCode(locator);
+			hash = 31 * hash + kind.hashCode();
+			hash = 31 * hash + Objects.hashCode(first);
+			return 31 * hash + Objects.hashCode(second);
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof Key)) {
+				return false;
+			}
+			Key other = (Key) obj;
+			return locator == other.locator && kind == other.kind && Objects.equals(first, other.first)
+					&& Objects.equals(second, other.second);
+		}
+	}
+}
@@ -1,6 +1,8 @@
 package edu.depauw.declan.common.ast;
 
+import edu.depauw.declan.common.Locator;
 import edu.depauw.declan.common.Position;
+import edu.depauw.declan.common.SymbolInterner;
 
 /**
  * Abn ASTNode representing an identifier (variable, type, or procedure name).
@@ -9,6 +11,7 @@ import edu.depauw.declan.common.Position;
  */
 public class Identifier extends AbstractASTNode implements Expression {
 	private final String lexeme;
+	private final int symbolId;
 
 	/**
 	 * Construct an Identifier ast node starting at the given source Position, with
@@ -18,14 +21,48 @@ public class Identifier extends AbstractASTNode implements Expression {
 	 * @param lexeme
 	 */
 	public Identifier(Position start, String lexeme) {
-		super(start);
+		this(0, start, lexeme);
+	}
+
+	/**
+	 * Construct an Identifier ast node starting at the given source offset,
+	 * with the specified lexeme giving the name of the identifier.
+	 * 
+	 * @param start
+	 * @param locator
+	 * @param lexeme
+	 */
+	public Identifier(int start, Locator locator, String lexeme) {
+		this(start, locator, lexeme, SymbolInterner.NO_SYMBOL);
+	}
+
+	/**
+	 * Construct an Identifier ast node starting at the given source offset, with
+	 * the specified lexeme and its id in the shared SymbolInterner.
+	 * 
+	 * @param start
+	 * @param locator
+	 * @param lexeme
+	 * @param symbolId
+	 */
+	public Identifier(int start, Locator locator, String lexeme, int symbolId) {
+		super(start, locator);
 		this.lexeme = lexeme;
+		this.symbolId = symbolId;
 	}
 
 	public String getLexeme() {
 		return lexeme;
 	}
 
+	/**
+	 * @return the id of this name in the shared SymbolInterner, suitable for
+	 *         indexing arrays, or SymbolInterner.NO_SYMBOL if it was not interned
+	 */
+	public int getSymbolId() {
+		return symbolId;
+	}
+
 	@Override
 	public void accept(ASTVisitor visitor) {
 		visitor.visit(this);
@@ -2,6 +2,7 @@ package edu.depauw.declan.common.ast;
 
 import java.util.List;
 
+import edu.depauw.declan.common.Locator;
 import edu.depauw.declan.common.Position;
 
 /**
@@ -26,7 +27,21 @@ public class IfStatement extends AbstractASTNode implements Statement {
 	 * @param elseClause
 	 */
 	public IfStatement(Position start, List<Clause> clauses, List<Statement> elseClause) {
-		super(start);
+		this(0, start, clauses, elseClause);
+	}
+
+	/**
+	 * Construct an IfStatement ast node starting at the given source offset,
+	 * with the given list of clauses and (possibly empty) list of statements
+	 * for the else-clause.
+	 * 
+	 * @param start
+	 * @param locator
+	 * @param clauses
+	 * @param elseClause
+	 */
+	public IfStatement(int start, Locator locator, List<Clause> clauses, List<Statement> elseClause) {
+		super(start, locator);
 		this.clauses = clauses;
 		this.elseClause = elseClause;
 	}
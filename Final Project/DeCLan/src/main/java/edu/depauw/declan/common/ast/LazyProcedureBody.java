@@ -0,0 +1,54 @@
+package edu.depauw.declan.common.ast;
+
+import java.util.List;
+import java.util.function.Supplier;
+
+import edu.depauw.declan.common.Locator;
+
+/**
+ * A ProcedureBody whose statements are not parsed until getStatements() is
+ * first called. Until then it only holds a Supplier (normally one that knows
+ * the range of tokens between BEGIN and END), so a procedure that is never
+ * looked into costs no more than its declarations.
+ * 
+ * Any syntax errors in the statements are logged when they are parsed, not
+ * when the rest of the program is.
+ */
+public class LazyProcedureBody extends ProcedureBody {
+	private Supplier<List<Statement>> parser;
+	private List<Statement> statements;
+
+	/**
+	 * Construct a LazyProcedureBody ast node starting at the given source offset,
+	 * with the given list of local declarations, whose statements will be
+	 * produced by the given Supplier.
+	 * 
+	 * @param start
+	 * @param locator
+	 * @param declarations
+	 * @param parser
+	 */
+	public LazyProcedureBody(int start, Locator locator, List<Declaration> declarations,
+			Supplier<List<Statement>> parser) {
+		super(start, locator, declarations, null);
+		this.parser = parser;
+		this.statements = null;
+	}
+
+	/**
+	 * @return true if the statements have been parsed
+	 */
+	public synchronized boolean isParsed() {
+		return statements != null;
+	}
+
+	@Override
+	public synchronized List<Statement> getStatements() {
+		if (statements == null) {
+			statements = parser.get();
+			// The tokens are no longer needed
+			parser = null;
+		}
+		return statements;
+	}
+}
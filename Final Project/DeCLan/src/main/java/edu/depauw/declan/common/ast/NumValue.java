@@ -1,16 +1,20 @@
 package edu.depauw.declan.common.ast;
 
+import edu.depauw.declan.common.Locator;
+import edu.depauw.declan.common.NumLiteral;
 import edu.depauw.declan.common.Position;
 
 /**
- * An ASTNode representing a numeric literal. It is stored here as a lexeme
- * (that is, a String), to avoid the question of what Java numeric type to use
- * to represent it as an actual number.
+ * An ASTNode representing a numeric literal. It keeps the lexeme (that is, a
+ * String) for printing, together with the value decoded by the lexer: a long
+ * for an integer literal, or a double for a real, stored as its raw bits.
  * 
  * @author bhoward
  */
 public class NumValue extends AbstractASTNode implements Expression {
 	private final String lexeme;
+	private final long value;
+	private final boolean real;
 
 	/**
 	 * Construct a NumValue ast node starting at the given source Position, with the
@@ -20,14 +24,64 @@ public class NumValue extends AbstractASTNode implements Expression {
 	 * @param lexeme
 	 */
 	public NumValue(Position start, String lexeme) {
-		super(start);
+		this(0, start, lexeme);
+	}
+
+	/**
+	 * Construct a NumValue ast node starting at the given source offset, with
+	 * the specified lexeme for its textual representation. The value is decoded
+	 * from the lexeme.
+	 * 
+	 * @param start
+	 * @param locator
+	 * @param lexeme
+	 */
+	public NumValue(int start, Locator locator, String lexeme) {
+		this(start, locator, lexeme, NumLiteral.decode(lexeme), NumLiteral.isReal(lexeme));
+	}
+
+	/**
+	 * Construct a NumValue ast node for a literal whose value was decoded by the
+	 * lexer.
+	 * 
+	 * @param start
+	 * @param locator
+	 * @param lexeme
+	 * @param value   the value of an integer literal, or the raw bits of a real
+	 * @param real    true if the literal is a real
+	 */
+	public NumValue(int start, Locator locator, String lexeme, long value, boolean real) {
+		super(start, locator);
 		this.lexeme = lexeme;
+		this.value = value;
+		this.real = real;
 	}
 
 	public String getLexeme() {
 		return lexeme;
 	}
 
+	/**
+	 * @return true if this is a real (rather than integer) literal
+	 */
+	public boolean isReal() {
+		return real;
+	}
+
+	/**
+	 * @return the value of an integer literal
+	 */
+	public long getIntValue() {
+		return value;
+	}
+
+	/**
+	 * @return the value of a real literal
+	 */
+	public double getRealValue() {
+		return Double.longBitsToDouble(value);
+	}
+
 	@Override
 	public void accept(ASTVisitor visitor) {
 		visitor.visit(this);
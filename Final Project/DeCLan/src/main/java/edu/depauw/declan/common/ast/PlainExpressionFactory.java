@@ -0,0 +1,45 @@
+package edu.depauw.declan.common.ast;
+
+import edu.depauw.declan.common.Locator;
+
+/**
+ * A PlainExpressionFactory makes a new node for every request, so each node
+ * appears once in the tree and keeps its own position. This is what a parser
+ * does unless it is given another ExpressionFactory.
+ */
+public class PlainExpressionFactory implements ExpressionFactory {
+	@Override
+	public BinaryOperation makeBinary(int start, Locator locator, Expression left, BinaryOperation.OpType operator,
+			Expression right) {
+		return new BinaryOperation(start, locator, left, operator, right);
+	}
+
+	@Override
+	public RelationalOperation makeRelational(int start, Locator locator, Expression left,
+			RelationalOperation.OpType operator, Expression right) {
+		return new RelationalOperation(start, locator, left, operator, right);
+	}
+
+	@Override
+	public UnaryOperation makeUnary(int start, Locator locator, UnaryOperation.OpType operator, Expression operand) {
+		return new UnaryOperation(start, locator, operator, operand);
+	}
+
+	@Override
+	public NumValue makeNum(int start, Locator locator, String lexeme, long value, boolean real) {
+		return new NumValue(start, locator, lexeme, value, real);
+	}
+
+	@Override
+	public Identifier makeIdentifier(int start, Locator locator, String lexeme, int symbolId) {
+		return new Identifier(start, locator, lexeme, symbolId);
+	}
+
+	@Override
+	public void enterScope() {
+	}
+
+	@Override
+	public void exitScope() {
+	}
+}
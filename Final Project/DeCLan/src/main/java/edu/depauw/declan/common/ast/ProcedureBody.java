@@ -2,6 +2,7 @@ package edu.depauw.declan.common.ast;
 
 import java.util.List;
 
+import edu.depauw.declan.common.Locator;
 import edu.depauw.declan.common.Position;
 
 /**
@@ -27,7 +28,22 @@ public class ProcedureBody extends AbstractASTNode {
 	 * @param returnExpr
 	 */
 	public ProcedureBody(Position start, List<Declaration> declarations, List<Statement> statements) {
-		super(start);
+		this(0, start, declarations, statements);
+	}
+
+	/**
+	 * Construct a ProcedureBody ast node starting at the given source offset,
+	 * with the given lists of local declarations and body statements, plus an
+	 * optional return expression.
+	 * 
+	 * @param start
+	 * @param locator
+	 * @param declarations
+	 * @param statements
+	 * @param returnExpr
+	 */
+	public ProcedureBody(int start, Locator locator, List<Declaration> declarations, List<Statement> statements) {
+		super(start, locator);
 		this.declarations = declarations;
 		this.statements = statements;
 	}
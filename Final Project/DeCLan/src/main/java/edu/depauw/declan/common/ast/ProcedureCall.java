@@ -2,6 +2,7 @@ package edu.depauw.declan.common.ast;
 
 import java.util.List;
 
+import edu.depauw.declan.common.Locator;
 import edu.depauw.declan.common.Position;
 
 /**
@@ -24,7 +25,20 @@ public class ProcedureCall extends AbstractASTNode implements Statement {
 	 * @param arguments
 	 */
 	public ProcedureCall(Position start, Identifier procedureName, List<Expression> arguments) {
-		super(start);
+		this(0, start, procedureName, arguments);
+	}
+
+	/**
+	 * Construct a ProcedureCall ast node starting at the given source offset,
+	 * with the specified procedure name and list of argument Expressions.
+	 * 
+	 * @param start
+	 * @param locator
+	 * @param procedureName
+	 * @param arguments
+	 */
+	public ProcedureCall(int start, Locator locator, Identifier procedureName, List<Expression> arguments) {
+		super(start, locator);
 		this.procedureName = procedureName;
 		this.arguments = arguments;
 	}
@@ -1,5 +1,6 @@
 package edu.depauw.declan.common.ast;
 
+import edu.depauw.declan.common.Locator;
 import edu.depauw.declan.common.Position;
 
 /**
@@ -21,7 +22,20 @@ public class ProcedureDeclaration extends AbstractASTNode implements Declaration
 	 * @param body
 	 */
 	public ProcedureDeclaration(Position start, ProcedureHead head, ProcedureBody body) {
-		super(start);
+		this(0, start, head, body);
+	}
+
+	/**
+	 * Construct a ProcedureDeclaration ast node starting at the given source
+	 * offset, with the given head and body.
+	 * 
+	 * @param start
+	 * @param locator
+	 * @param head
+	 * @param body
+	 */
+	public ProcedureDeclaration(int start, Locator locator, ProcedureHead head, ProcedureBody body) {
+		super(start, locator);
 		this.head = head;
 		this.body = body;
 	}
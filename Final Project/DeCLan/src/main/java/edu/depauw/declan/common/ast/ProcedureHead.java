@@ -1,5 +1,6 @@
 package edu.depauw.declan.common.ast;
 
+import edu.depauw.declan.common.Locator;
 import edu.depauw.declan.common.Position;
 
 /**
@@ -22,7 +23,20 @@ public class ProcedureHead extends AbstractASTNode {
 	 * @param formalParameters
 	 */
 	public ProcedureHead(Position start, Identifier id, FormalParameters formalParameters) {
-		super(start);
+		this(0, start, id, formalParameters);
+	}
+
+	/**
+	 * Construct a ProcedureHead ast node starting at the given source offset,
+	 * with the given procedure name and formal parameters.
+	 * 
+	 * @param start
+	 * @param locator
+	 * @param id
+	 * @param formalParameters
+	 */
+	public ProcedureHead(int start, Locator locator, Identifier id, FormalParameters formalParameters) {
+		super(start, locator);
 		this.id = id;
 		this.formalParameters = formalParameters;
 	}
@@ -3,6 +3,7 @@ package edu.depauw.declan.common.ast;
 import java.util.Collection;
 import java.util.List;
 
+import edu.depauw.declan.common.Locator;
 import edu.depauw.declan.common.Position;
 
 /**
@@ -28,7 +29,22 @@ public class Program extends AbstractASTNode {
 	 * @param statements
 	 */
 	public Program(Position start, List<Declaration> declarations, List<Statement> statements) {
-		super(start);
+		this(0, start, declarations, statements);
+	}
+
+	/**
+	 * Construct a Program ast node starting at the given source offset, with
+	 * the specified Lists (which are expected to be read-only, such as produced
+	 * by {@link java.util.Collections#unmodifiableList
+	 * Collections.unmodifiableList} method) of declarations and statements.
+	 * 
+	 * @param start
+	 * @param locator
+	 * @param declarations
+	 * @param statements
+	 */
+	public Program(int start, Locator locator, List<Declaration> declarations, List<Statement> statements) {
+		super(start, locator);
 		this.declarations = declarations;
 		this.statements = statements;
 	}
@@ -1,5 +1,6 @@
 package edu.depauw.declan.common.ast;
 
+import edu.depauw.declan.common.Locator;
 import edu.depauw.declan.common.Position;
 
 /**
@@ -22,7 +23,21 @@ public class RelationalOperation extends AbstractASTNode implements Expression {
 	 * @param right
 	 */
 	public RelationalOperation(Position start, Expression left, OpType operator, Expression right) {
-		super(start);
+		this(0, start, left, operator, right);
+	}
+
+	/**
+	 * Construct a RelationalOperation ast node starting at the given source
+	 * offset, with the specified left and right subexpressions and operator type.
+	 * 
+	 * @param start
+	 * @param locator
+	 * @param left
+	 * @param operator
+	 * @param right
+	 */
+	public RelationalOperation(int start, Locator locator, Expression left, OpType operator, Expression right) {
+		super(start, locator);
 		this.left = left;
 		this.operator = operator;
 		this.right = right;
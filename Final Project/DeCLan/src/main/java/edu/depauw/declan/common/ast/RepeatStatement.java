@@ -2,6 +2,7 @@ package edu.depauw.declan.common.ast;
 
 import java.util.List;
 
+import edu.depauw.declan.common.Locator;
 import edu.depauw.declan.common.Position;
 
 /**
@@ -25,7 +26,20 @@ public class RepeatStatement extends AbstractASTNode implements Statement {
 	 * @param test
 	 */
 	public RepeatStatement(Position start, List<Statement> body, Expression test) {
-		super(start);
+		this(0, start, body, test);
+	}
+
+	/**
+	 * Construct a RepeatStatement ast node starting at the given source offset,
+	 * with the given list of body statements and test expression.
+	 * 
+	 * @param start
+	 * @param locator
+	 * @param body
+	 * @param test
+	 */
+	public RepeatStatement(int start, Locator locator, List<Statement> body, Expression test) {
+		super(start, locator);
 		this.body = body;
 		this.test = test;
 	}
@@ -1,5 +1,6 @@
 package edu.depauw.declan.common.ast;
 
+import edu.depauw.declan.common.Locator;
 import edu.depauw.declan.common.Position;
 
 /**
@@ -20,7 +21,19 @@ public class StringValue extends AbstractASTNode implements Expression {
 	 * @param contents
 	 */
 	public StringValue(Position start, String contents) {
-		super(start);
+		this(0, start, contents);
+	}
+
+	/**
+	 * Construct a StringValue ast node starting at the given source offset,
+	 * with the given String contents.
+	 * 
+	 * @param start
+	 * @param locator
+	 * @param contents
+	 */
+	public StringValue(int start, Locator locator, String contents) {
+		super(start, locator);
 		this.contents = contents;
 	}
 
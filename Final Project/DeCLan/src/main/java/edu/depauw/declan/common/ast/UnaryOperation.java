@@ -1,5 +1,6 @@
 package edu.depauw.declan.common.ast;
 
+import edu.depauw.declan.common.Locator;
 import edu.depauw.declan.common.Position;
 
 /**
@@ -21,7 +22,20 @@ public class UnaryOperation extends AbstractASTNode implements Expression {
 	 * @param expression
 	 */
 	public UnaryOperation(Position start, OpType operator, Expression expression) {
-		super(start);
+		this(0, start, operator, expression);
+	}
+
+	/**
+	 * Construct a UnaryOperation ast node starting at the given source offset,
+	 * with the specified subexpression and operator type.
+	 * 
+	 * @param start
+	 * @param locator
+	 * @param operator
+	 * @param expression
+	 */
+	public UnaryOperation(int start, Locator locator, OpType operator, Expression expression) {
+		super(start, locator);
 		this.operator = operator;
 		this.expression = expression;
 	}
@@ -2,6 +2,7 @@ package edu.depauw.declan.common.ast;
 
 import java.util.List;
 
+import edu.depauw.declan.common.Locator;
 import edu.depauw.declan.common.Position;
 
 /**
@@ -23,7 +24,20 @@ public class VarDeclaration extends AbstractASTNode implements Declaration {
 	 * @param type
 	 */
 	public VarDeclaration(Position start, List<Identifier> ids, Identifier type) {
-		super(start);
+		this(0, start, ids, type);
+	}
+
+	/**
+	 * Construct a VarDeclaration ast node starting at the given source offset,
+	 * with the given list of identifiers and type.
+	 * 
+	 * @param start
+	 * @param locator
+	 * @param ids
+	 * @param type
+	 */
+	public VarDeclaration(int start, Locator locator, List<Identifier> ids, Identifier type) {
+		super(start, locator);
 		this.ids = ids;
 		this.type = type;
 	}
@@ -2,6 +2,7 @@ package edu.depauw.declan.common.ast;
 
 import java.util.List;
 
+import edu.depauw.declan.common.Locator;
 import edu.depauw.declan.common.Position;
 
 /**
@@ -23,7 +24,19 @@ public class WhileStatement extends AbstractASTNode implements Statement {
 	 * @param clauses
 	 */
 	public WhileStatement(Position start, List<Clause> clauses) {
-		super(start);
+		this(0, start, clauses);
+	}
+
+	/**
+	 * Construct a WhileStatement ast node starting at the given source offset,
+	 * with the given list of body clauses.
+	 * 
+	 * @param start
+	 * @param locator
+	 * @param clauses
+	 */
+	public WhileStatement(int start, Locator locator, List<Clause> clauses) {
+		super(start, locator);
 		this.clauses = clauses;
 	}
 
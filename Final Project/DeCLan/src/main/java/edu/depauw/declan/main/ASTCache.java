@@ -0,0 +1,158 @@
+package edu.depauw.declan.main;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+import edu.depauw.declan.common.LineMap;
+import edu.depauw.declan.common.SymbolInterner;
+import edu.depauw.declan.common.ast.ASTSerializer;
+import edu.depauw.declan.common.ast.Program;
+
+/**
+ * An ASTCache keeps serialized Programs in a directory, one file per source,
+ * named by a hash of the source's contents. A source that has not changed since
+ * it was last parsed can then be loaded with a single mapped read, skipping the
+ * lexer and parser. Since the name depends only on the contents, an edited
+ * source simply misses; old entries are never removed.
+ * 
+ * Entries are written to a temporary file and then moved into place, so a
+ * reader never sees a partly written entry. An entry that cannot be read (for
+ * example, one written by another version) is treated as a miss.
+ */
+public class ASTCache {
+	/**
+	 * The directory used unless another is given
+	 */
+	public static final String DEFAULT_DIRECTORY = ".declan-cache";
+
+	private static final String SUFFIX = ".ast";
+
+	private final Path directory;
+
+	public ASTCache() {
+		this(Paths.get(DEFAULT_DIRECTORY));
+	}
+
+	/**
+	 * @param directory where entries are kept; it is created when first needed
+	 */
+	public ASTCache(Path directory) {
+		this.directory = directory;
+	}
+
+	/**
+	 * Compute the key for a source file, as the SHA-256 hash of its contents in
+	 * hexadecimal.
+	 * 
+	 * @param path
+	 * @return the key
+	 * @throws IOException if the file cannot be read
+	 */
+	public static String hash(Path path) throws IOException {
+		MessageDigest digest;
+		try {
+			digest = MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException e) {
+			// Every Java platform is required to support SHA-256
+			throw new IllegalStateException(e);
+		}
+
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			long size = channel.size();
+			for (long position = 0; position < size; position += Integer.MAX_VALUE) {
+				long length = Math.min(Integer.MAX_VALUE, size - position);
+				digest.update(channel.map(FileChannel.MapMode.READ_ONLY, position, length));
+			}
+		}
+
+		StringBuilder result = new StringBuilder();
+		for (byte b : digest.digest()) {
+			result.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+		}
+		return result.toString();
+	}
+
+	/**
+	 * Serialize a Program, whose start offsets are interpreted by the given
+	 * LineMap. Any procedure bodies not yet parsed are parsed now.
+	 * 
+	 * @param program
+	 * @param lineMap
+	 * @return the bytes of an entry
+	 */
+	public static byte[] serialize(Program program, LineMap lineMap) {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		try {
+			ASTSerializer.write(program, lineMap, out);
+		} catch (IOException e) {
+			// Not possible when writing to memory
+			throw new IllegalStateException(e);
+		}
+		return out.toByteArray();
+	}
+
+	/**
+	 * Load the Program stored under the given key.
+	 * 
+	 * @param key
+	 * @param symbols interns the names of the identifiers in the Program
+	 * @return the Program, or null if there is no usable entry for the key
+	 */
+	public Program load(String key, SymbolInterner symbols) {
+		try (FileChannel channel = FileChannel.open(entry(key), StandardOpenOption.READ)) {
+			MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			return ASTSerializer.read(buffer, symbols);
+		} catch (NoSuchFileException e) {
+			return null;
+		} catch (IOException | IllegalArgumentException e) {
+			System.err.println("Ignoring unreadable cache entry " + entry(key) + ": " + e.getMessage());
+			return null;
+		}
+	}
+
+	/**
+	 * Store an entry under the given key, replacing any earlier one. A failure to
+	 * write is reported but otherwise ignored, since the cache is only an
+	 * optimization.
+	 * 
+	 * @param key
+	 * @param data the bytes of an entry, from serialize()
+	 */
+	public void store(String key, byte[] data) {
+		Path temp = null;
+		try {
+			Files.createDirectories(directory);
+			temp = Files.createTempFile(directory, key, ".tmp");
+			Files.write(temp, data);
+			try {
+				Files.move(temp, entry(key), StandardCopyOption.ATOMIC_MOVE);
+			} catch (AtomicMoveNotSupportedException e) {
+				Files.move(temp, entry(key), StandardCopyOption.REPLACE_EXISTING);
+			}
+		} catch (IOException e) {
+			System.err.println("Unable to write cache entry " + entry(key) + ": " + e.getMessage());
+			if (temp != null) {
+				try {
+					Files.deleteIfExists(temp);
+				} catch (IOException e2) {
+					// Leave it; it will never be read
+				}
+			}
+		}
+	}
+
+	private Path entry(String key) {
+		return directory.resolve(key + SUFFIX);
+	}
+}
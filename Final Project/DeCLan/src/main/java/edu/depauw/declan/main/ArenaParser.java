@@ -0,0 +1,46 @@
+package edu.depauw.declan.main;
+
+import edu.depauw.declan.common.Locator;
+import edu.depauw.declan.common.Parser;
+import edu.depauw.declan.common.SymbolInterner;
+import edu.depauw.declan.common.ast.ASTArena;
+import edu.depauw.declan.common.ast.Program;
+
+/**
+ * An ArenaParser copies the tree from another Parser into an ASTArena, and
+ * returns a view of the copy. The nodes of the original tree can then be
+ * collected; later phases read the compact copy through the usual ASTNode
+ * interfaces.
+ */
+public class ArenaParser implements Parser {
+	private final Parser parser;
+	private final ASTArena arena;
+
+	/**
+	 * @param parser  the Parser that builds the original tree
+	 * @param locator the Locator for start offsets in the tree
+	 * @param symbols
+	 */
+	public ArenaParser(Parser parser, Locator locator, SymbolInterner symbols) {
+		this.parser = parser;
+		this.arena = new ASTArena(locator, symbols);
+	}
+
+	@Override
+	public Program parseProgram() {
+		Program program = parser.parseProgram();
+		return arena.getProgram(arena.add(program));
+	}
+
+	/**
+	 * @return the arena holding the parsed program
+	 */
+	public ASTArena getArena() {
+		return arena;
+	}
+
+	@Override
+	public void close() {
+		parser.close();
+	}
+}
@@ -0,0 +1,91 @@
+package edu.depauw.declan.main;
+
+import edu.depauw.declan.common.ErrorLog;
+import edu.depauw.declan.common.Lexer;
+import edu.depauw.declan.common.LineMap;
+import edu.depauw.declan.common.Parser;
+import edu.depauw.declan.common.SymbolInterner;
+import edu.depauw.declan.common.ast.Program;
+
+/**
+ * A CachedParser looks for the program in an ASTCache before asking another
+ * Parser for it. On a miss, the program that the other Parser returns is stored
+ * in the cache, unless there were errors.
+ * 
+ * Config checks the cache itself before creating a lexer, so that a hit skips
+ * lexing entirely; a CachedParser then just returns the loaded program, and
+ * closes the (unread) Lexer for the source.
+ */
+public class CachedParser implements Parser {
+	private final Parser parser;
+	private final ASTCache cache;
+	private final String key;
+	private final LineMap lineMap;
+	private final SymbolInterner symbols;
+	private final ErrorLog errorLog;
+	private final Lexer lexer;
+	private Program program;
+
+	/**
+	 * @param parser   the Parser to use on a miss
+	 * @param cache
+	 * @param key      the hash of the source, from ASTCache.hash()
+	 * @param lineMap  the LineMap of the source, complete once it has been parsed
+	 * @param symbols
+	 * @param errorLog
+	 */
+	public CachedParser(Parser parser, ASTCache cache, String key, LineMap lineMap, SymbolInterner symbols,
+			ErrorLog errorLog) {
+		this.parser = parser;
+		this.cache = cache;
+		this.key = key;
+		this.lineMap = lineMap;
+		this.symbols = symbols;
+		this.errorLog = errorLog;
+		this.lexer = null;
+		this.program = null;
+	}
+
+	/**
+	 * Construct a CachedParser for a program that has already been loaded.
+	 * 
+	 * @param program
+	 * @param lexer   closed along with this Parser, but otherwise unused
+	 */
+	public CachedParser(Program program, Lexer lexer) {
+		this.parser = null;
+		this.cache = null;
+		this.key = null;
+		this.lineMap = null;
+		this.symbols = null;
+		this.errorLog = null;
+		this.lexer = lexer;
+		this.program = program;
+	}
+
+	@Override
+	public Program parseProgram() {
+		if (program == null) {
+			program = cache.load(key, symbols);
+		}
+		if (program == null) {
+			program = parser.parseProgram();
+
+			// Serializing parses any lazy bodies, which may find more errors
+			byte[] data = ASTCache.serialize(program, lineMap);
+			if (!errorLog.iterator().hasNext()) {
+				cache.store(key, data);
+			}
+		}
+		return program;
+	}
+
+	@Override
+	public void close() {
+		if (parser != null) {
+			parser.close();
+		} else {
+			lexer.close();
+		}
+	}
+}
@@ -1,24 +1,37 @@
 package edu.depauw.declan.main;
 
-import java.io.BufferedReader;
-import java.io.FileNotFoundException;
-import java.io.FileReader;
-import java.io.InputStreamReader;
-import java.io.Reader;
+import java.io.IOException;
 import java.io.StringReader;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Properties;
 
+import edu.depauw.declan.common.BlockReaderSource;
+import edu.depauw.declan.common.ChannelSource;
 import edu.depauw.declan.common.Checker;
+import edu.depauw.declan.common.ConcurrentErrorLog;
+import edu.depauw.declan.common.ErrorLimitException;
 import edu.depauw.declan.common.ErrorLog;
 import edu.depauw.declan.common.Generator;
 import edu.depauw.declan.common.Lexer;
+import edu.depauw.declan.common.LexerCursor;
+import edu.depauw.declan.common.MappedFileSource;
+import edu.depauw.declan.common.OffHeapTokenStore;
 import edu.depauw.declan.common.Parser;
-import edu.depauw.declan.common.ReaderSource;
 import edu.depauw.declan.common.Source;
+import edu.depauw.declan.common.SymbolInterner;
+import edu.depauw.declan.common.TokenBuffer;
+import edu.depauw.declan.common.TokenSequence;
 import edu.depauw.declan.common.ast.ASTVisitor;
+import edu.depauw.declan.common.ast.HashConsingExpressionFactory;
+import edu.depauw.declan.common.ast.Program;
 import edu.depauw.declan.model.ReferenceChecker;
 import edu.depauw.declan.model.ReferenceGenerator;
 import edu.depauw.declan.model.ReferenceInterpreter;
@@ -35,6 +48,7 @@ import edu.depauw.declan.model.ReferenceParser;
 public class Config {
 	private Source source;
 	private ErrorLog errorLog;
+	private SymbolInterner symbols;
 	private Lexer lexer;
 	private Parser parser;
 	private ASTVisitor interpreter;
@@ -62,6 +76,19 @@ public class Config {
 		boolean useModelInterpreter = lookupBoolean(props, "useModelInterpreter");
 		boolean useModelChecker = lookupBoolean(props, "useModelChecker");
 		boolean useModelGenerator = lookupBoolean(props, "useModelGenerator");
+		boolean useTokenBuffer = lookupBoolean(props, "useTokenBuffer");
+		boolean useTableLexer = lookupBoolean(props, "useTableLexer");
+		boolean useParallelLexer = lookupBoolean(props, "useParallelLexer");
+		boolean useLexerCursor = lookupBoolean(props, "useLexerCursor");
+		boolean useOffHeapTokens = lookupBoolean(props, "useOffHeapTokens");
+		boolean useArenaAST = lookupBoolean(props, "useArenaAST");
+		boolean useErrorRecovery = lookupBoolean(props, "useErrorRecovery");
+		boolean useParallelParser = lookupBoolean(props, "useParallelParser");
+		boolean useLazyBodies = lookupBoolean(props, "useLazyBodies");
+		boolean useHashConsing = lookupBoolean(props, "useHashConsing");
+		boolean useAstCache = lookupBoolean(props, "useAstCache");
+		String astCacheDir = props.getProperty("astCacheDir", ASTCache.DEFAULT_DIRECTORY);
+		int maxErrors = lookupInt(props, "maxErrors", 0);
 		String sourceFile = props.getProperty("sourceFile", "");
 		String demoSource = props.getProperty("demoSource", "");
 
@@ -108,6 +135,109 @@ public class Config {
 			argList.remove("--modelGenerator");
 		}
 
+		// if args contains --tableLexer, use the table-driven lexer
+		if (argList.contains("--tableLexer")) {
+			useTableLexer = true;
+			argList.remove("--tableLexer");
+		}
+
+		// if args contains --parallelLexer, lex a named file on all available cores
+		if (argList.contains("--parallelLexer")) {
+			useParallelLexer = true;
+			argList.remove("--parallelLexer");
+		}
+
+		// if args contains --lexerCursor, parse from the table-driven lexer through
+		// its LexerCursor, without creating Token objects
+		if (argList.contains("--lexerCursor")) {
+			useLexerCursor = true;
+			argList.remove("--lexerCursor");
+		}
+
+		// if args contains --offHeapTokens, lex the whole source up front into an
+		// OffHeapTokenStore, for sources too large to hold as heap objects
+		if (argList.contains("--offHeapTokens")) {
+			useOffHeapTokens = true;
+			argList.remove("--offHeapTokens");
+		}
+
+		// if args contains --tokenBuffer, lex the whole source up front into a
+		// TokenBuffer (only applies to MyLexer)
+		if (argList.contains("--tokenBuffer")) {
+			useTokenBuffer = true;
+			argList.remove("--tokenBuffer");
+		}
+
+		// if args contains --arenaAST, copy the parsed tree into a compact ASTArena
+		if (argList.contains("--arenaAST")) {
+			useArenaAST = true;
+			argList.remove("--arenaAST");
+		}
+
+		// if args contains --recover, report every syntax error instead of stopping
+		// at the first (only applies to MyParser)
+		if (argList.contains("--recover")) {
+			useErrorRecovery = true;
+			argList.remove("--recover");
+		}
+
+		// if args contains --parallelParser, parse the top-level procedures on all
+		// available cores (only applies to MyParser)
+		if (argList.contains("--parallelParser")) {
+			useParallelParser = true;
+			argList.remove("--parallelParser");
+		}
+
+		// if args contains --lazyBodies, only parse the statements of a procedure
+		// body when they are first needed
+		if (argList.contains("--lazyBodies")) {
+			useLazyBodies = true;
+			argList.remove("--lazyBodies");
+		}
+
+		// if args contains --hashCons, share repeated subexpressions within each
+		// procedure body (only applies to MyParser; not allowed with
+		// --parallelParser)
+		if (argList.contains("--hashCons")) {
+			useHashConsing = true;
+			argList.remove("--hashCons");
+		}
+
+		// if args contains --astCache, reuse the tree from an earlier parse of an
+		// unchanged named file, and save the tree after parsing a new one
+		if (argList.contains("--astCache")) {
+			useAstCache = true;
+			argList.remove("--astCache");
+		}
+
+		// if args contains --astCacheDir=DIR, keep the cached trees in DIR
+		for (String arg : new ArrayList<>(argList)) {
+			if (arg.startsWith("--astCacheDir=")) {
+				astCacheDir = arg.substring("--astCacheDir=".length());
+				argList.remove(arg);
+			}
+		}
+
+		// if args contains --maxErrors=N, abort compilation after N errors
+		for (String arg : new ArrayList<>(argList)) {
+			if (arg.startsWith("--maxErrors=")) {
+				try {
+					maxErrors = Integer.parseInt(arg.substring("--maxErrors=".length()));
+				} catch (NumberFormatException e) {
+					System.err.println("Invalid error limit: " + arg);
+					System.exit(1);
+				}
+				argList.remove(arg);
+			}
+		}
+
+		// The procedures that a ParallelParser parses on other threads cannot
+		// share nodes through one factory
+		if (useParallelParser && useHashConsing) {
+			System.err.println("--hashCons cannot be used with --parallelParser");
+			System.exit(1);
+		}
+
 		// the first remaining arg, if any, is used as the file name
 		// if "-", use standard input
 		// if none, use the demo source
@@ -116,37 +246,147 @@ public class Config {
 		}
 
 		// Initialize the source
-		Reader reader = null;
 		if (sourceFile.equals("")) {
 			// Use the demo source as input
-			reader = new StringReader(demoSource);
+			source = new BlockReaderSource(new StringReader(demoSource));
 		} else if (sourceFile.equals("-")) {
-			// Special case: use standard input
-			reader = new BufferedReader(new InputStreamReader(System.in));
+			// Special case: stream UTF-8 from standard input
+			source = new ChannelSource(Channels.newChannel(System.in));
 		} else {
+			// Map named regular files directly into memory; stream anything else
+			// (such as a named pipe), which has no size to map
 			try {
-				reader = new BufferedReader(new FileReader(sourceFile));
-			} catch (FileNotFoundException e) {
+				Path path = Paths.get(sourceFile);
+				if (Files.isRegularFile(path)) {
+					source = new MappedFileSource(path);
+				} else {
+					source = new ChannelSource(FileChannel.open(path, StandardOpenOption.READ));
+				}
+			} catch (IOException e) {
 				System.err.println("Unable to open file: " + sourceFile);
 				System.exit(1);
 			}
 		}
-		source = new ReaderSource(reader);
-
-		errorLog = new ErrorLog();
 
-		// Initialize the lexer
-		if (useModelLexer) {
-			lexer = new ReferenceLexer(source, errorLog);
+		// A limit on errors, or lexing in parallel, needs the concurrent log
+		if (maxErrors > 0) {
+			errorLog = new ConcurrentErrorLog(maxErrors);
+		} else if (useParallelLexer) {
+			errorLog = new ConcurrentErrorLog();
 		} else {
-			lexer = new MyLexer(source, errorLog);
+			errorLog = new ErrorLog();
 		}
 
-		// Initialize the parser
-		if (useModelParser) {
-			parser = new ReferenceParser(lexer, errorLog);
-		} else {
-			parser = new MyParser(lexer, errorLog);
+		// Identifier names are interned once and shared by all later phases
+		symbols = new SymbolInterner();
+
+		// Only a named regular file can be hashed to look for its cached tree
+		ASTCache astCache = null;
+		String cacheKey = null;
+		Program cached = null;
+		if (useAstCache && source instanceof MappedFileSource) {
+			astCache = new ASTCache(Paths.get(astCacheDir));
+			try {
+				cacheKey = ASTCache.hash(Paths.get(sourceFile));
+			} catch (IOException e) {
+				System.err.println("Unable to read file: " + sourceFile);
+				System.exit(1);
+			}
+			cached = astCache.load(cacheKey, symbols);
+		}
+
+		// Lexing can start here (all of it, for some lexers), so the error limit
+		// may already be reached
+		try {
+			// Initialize the lexer
+			TokenSequence tokens = null;
+			if (cached != null) {
+				// Nothing will be read, so this lexer never does any work
+				lexer = new MyLexer(source, errorLog, symbols);
+			} else if (useModelLexer) {
+				lexer = new ReferenceLexer(source, errorLog);
+			} else if (useParallelLexer) {
+				// Lex everything now; only a mapped file can be split into chunks
+				if (source instanceof MappedFileSource) {
+					tokens = new ParallelLexer().lex(((MappedFileSource) source).getText(), errorLog, symbols);
+				} else {
+					tokens = new TableLexer(source, errorLog, symbols).lexAll();
+				}
+				source.close();
+				lexer = tokens.lexer();
+			} else if (useOffHeapTokens) {
+				// Lex everything now, straight from the cursor into off-heap memory
+				OffHeapTokenStore store = new OffHeapTokenStore(source.getLineMap(), symbols,
+						OffHeapTokenStore.DEFAULT_SPILL_THRESHOLD);
+				try (LexerCursor cursor = new TableLexer(source, errorLog, symbols).cursor()) {
+					while (cursor.advance()) {
+						store.add(cursor);
+					}
+				}
+				// Closing the parser (or this lexer) closes the store, deleting any
+				// pages spilled to disk
+				tokens = store;
+				lexer = tokens.lexer();
+			} else if (useTableLexer || useLexerCursor) {
+				lexer = new TableLexer(source, errorLog, symbols);
+			} else if (useTokenBuffer) {
+				// Lex everything now; later clients see the buffered tokens
+				MyLexer myLexer = new MyLexer(source, errorLog, symbols);
+				tokens = myLexer.lexAll();
+				myLexer.close();
+				lexer = tokens.lexer();
+			} else {
+				lexer = new MyLexer(source, errorLog, symbols);
+			}
+
+			// Initialize the parser
+			if (cached != null) {
+				parser = new CachedParser(cached, lexer);
+			} else if (useModelParser) {
+				parser = new ReferenceParser(lexer, errorLog);
+			} else if (useParallelParser) {
+				// The procedures are found by scanning all of the tokens first
+				if (tokens == null) {
+					TokenBuffer buffer = new TokenBuffer(source.getLineMap(), symbols);
+					while (lexer.hasNext()) {
+						buffer.add(lexer.next());
+					}
+					lexer.close();
+					tokens = buffer;
+					lexer = tokens.lexer();
+				}
+				parser = new ParallelParser(tokens, errorLog);
+			} else if (tokens != null) {
+				parser = new MyParser(tokens, errorLog);
+			} else if (useLexerCursor && lexer instanceof TableLexer) {
+				// From here on the lexer only produces tokens through the cursor
+				parser = new MyParser(((TableLexer) lexer).cursor(), errorLog);
+			} else {
+				parser = new MyParser(lexer, errorLog, symbols);
+			}
+			if (useErrorRecovery && parser instanceof MyParser) {
+				((MyParser) parser).setErrorRecovery(true);
+			}
+			if (useLazyBodies && parser instanceof MyParser) {
+				((MyParser) parser).setLazyBodies(true);
+			}
+			if (useHashConsing && parser instanceof MyParser) {
+				((MyParser) parser).setExpressionFactory(new HashConsingExpressionFactory());
+			}
+			// A tree with shared nodes keeps only one position for each, so it is not
+			// saved for later runs
+			if (astCache != null && cached == null && !useHashConsing) {
+				parser = new CachedParser(parser, astCache, cacheKey, source.getLineMap(), symbols, errorLog);
+			}
+			if (useArenaAST) {
+				parser = new ArenaParser(parser, source.getLineMap(), symbols);
+			}
+		} catch (ErrorLimitException e) {
+			for (ErrorLog.LogItem item : errorLog) {
+				System.err.println(item);
+			}
+			System.err.println(e.getMessage());
+			System.exit(1);
 		}
 
 		// Initialize the interpreter
@@ -175,6 +415,18 @@ public class Config {
 		return props.containsKey(key) && props.getProperty(key).equalsIgnoreCase("true");
 	}
 
+	private int lookupInt(Properties props, String key, int defaultValue) {
+		if (!props.containsKey(key)) {
+			return defaultValue;
+		}
+		try {
+			return Integer.parseInt(props.getProperty(key).trim());
+		} catch (NumberFormatException e) {
+			System.err.println("Invalid " + key + " property: " + props.getProperty(key) + "; using " + defaultValue);
+			return defaultValue;
+		}
+	}
+
 	public Source getSource() {
 		return source;
 	}
@@ -183,6 +435,10 @@ public class Config {
 		return errorLog;
 	}
 
+	public SymbolInterner getSymbolInterner() {
+		return symbols;
+	}
+
 	public Lexer getLexer() {
 		return lexer;
 	}
@@ -0,0 +1,177 @@
+package edu.depauw.declan.main;
+
+import edu.depauw.declan.common.CharSequenceSource;
+import edu.depauw.declan.common.ErrorLog;
+import edu.depauw.declan.common.LineMap;
+import edu.depauw.declan.common.SymbolInterner;
+import edu.depauw.declan.common.TokenBuffer;
+
+/**
+ * An IncrementalLexer keeps the text of a document (such as an editor buffer)
+ * together with its tokens, and after each edit relexes only as much as
+ * needed, using TableLexer.
+ * 
+ * Relexing starts at the end of the last token that ends before the edit: the
+ * lexer was in its start state there (outside of any comment), and the
+ * characters it looked at to end that token are unchanged. It stops as soon
+ * as it starts a token past the edit at the same place (allowing for the
+ * change in length) as some old token starts, since from there on both runs
+ * see the same characters from the same state. Because a comment is never in
+ * the start state, an edit that opens or closes a nested comment keeps
+ * relexing until the comment structure agrees with the old run again, or to
+ * the end of the text.
+ * 
+ * Errors are only reported for the relexed range; errors logged by earlier
+ * runs are not withdrawn.
+ */
+public class IncrementalLexer {
+	private StringBuilder text;
+	private LineMap lineMap;
+	private TokenBuffer tokens;
+	private SymbolInterner symbols;
+	private ErrorLog errorLog;
+
+	/**
+	 * Construct an IncrementalLexer for the given initial text, lexing all of it.
+	 * 
+	 * @param initialText
+	 * @param errorLog
+	 * @param symbols
+	 */
+	public IncrementalLexer(CharSequence initialText, ErrorLog errorLog, SymbolInterner symbols) {
+		this.text = new StringBuilder(initialText);
+		this.errorLog = errorLog;
+		this.symbols = symbols;
+
+		CharSequenceSource source = new CharSequenceSource(text);
+		this.tokens = new TableLexer(source, errorLog, symbols).lexAll();
+		this.lineMap = source.getLineMap();
+	}
+
+	public CharSequence getText() {
+		return text;
+	}
+
+	public LineMap getLineMap() {
+		return lineMap;
+	}
+
+	public TokenBuffer getTokens() {
+		return tokens;
+	}
+
+	/**
+	 * Replace removedLength characters at the given offset with the inserted text,
+	 * and update the tokens to match.
+	 * 
+	 * @param offset
+	 * @param removedLength
+	 * @param inserted
+	 * @return a description of which tokens were replaced
+	 */
+	public Change edit(int offset, int removedLength, CharSequence inserted) {
+		TokenBuffer old = tokens;
+		int delta = inserted.length() - removedLength;
+		int editEnd = offset + inserted.length();
+
+		text.replace(offset, offset + removedLength, inserted.toString());
+		lineMap = lineMap.splice(offset, removedLength, inserted);
+
+		// Keep the tokens that end before the edit
+		int first = firstEndingAtOrAfter(old, offset);
+		int restart = (first > 0) ? old.getEnd(first - 1) : 0;
+		TokenBuffer result = new TokenBuffer(lineMap, symbols);
+		result.addRange(old, 0, first, 0);
+
+		TableLexer lexer = new TableLexer(new CharSequenceSource(text, restart, lineMap), errorLog, symbols);
+		int oldEnd = old.size();
+		int resync = text.length();
+		while (lexer.scanInto(result)) {
+			int last = result.size() - 1;
+			int start = result.getStart(last);
+			if (start >= editEnd) {
+				int j = old.indexAtOrAfter(start - delta);
+				if (j < old.size() && old.getStart(j) == start - delta) {
+					// Back in step with the old tokens; reuse the rest of them
+					result.truncate(last);
+					oldEnd = j;
+					resync = start;
+					break;
+				}
+			}
+		}
+
+		int newEnd = result.size();
+		result.addRange(old, oldEnd, old.size(), delta);
+		tokens = result;
+		return new Change(first, oldEnd, newEnd, restart, resync);
+	}
+
+	/**
+	 * @param buffer
+	 * @param offset
+	 * @return the index of the first token in buffer that ends at or after offset
+	 */
+	private static int firstEndingAtOrAfter(TokenBuffer buffer, int offset) {
+		int low = 0;
+		int high = buffer.size();
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+			if (buffer.getEnd(mid) < offset) {
+				low = mid + 1;
+			} else {
+				high = mid;
+			}
+		}
+		return low;
+	}
+
+	/**
+	 * A Change describes the result of an edit: tokens firstToken up to (but not
+	 * including) oldEndToken of the previous token stream were replaced by tokens
+	 * firstToken up to newEndToken of the new one, covering the characters from
+	 * startOffset up to endOffset of the new text. Tokens after the change are
+	 * the old ones, shifted by the change in length.
+	 */
+	public static class Change {
+		private final int firstToken;
+		private final int oldEndToken;
+		private final int newEndToken;
+		private final int startOffset;
+		private final int endOffset;
+
+		public Change(int firstToken, int oldEndToken, int newEndToken, int startOffset, int endOffset) {
+			this.firstToken = firstToken;
+			this.oldEndToken = oldEndToken;
+			this.newEndToken = newEndToken;
+			this.startOffset = startOffset;
+			this.endOffset = endOffset;
+		}
+
+		public int getFirstToken() {
+			return firstToken;
+		}
+
+		public int getOldEndToken() {
+			return oldEndToken;
+		}
+
+		public int getNewEndToken() {
+			return newEndToken;
+		}
+
+		public int getStartOffset() {
+			return startOffset;
+		}
+
+		public int getEndOffset() {
+			return endOffset;
+		}
+
+		@Override
+		public String toString() {
+			return "tokens " + firstToken + ".." + oldEndToken + " -> " + firstToken + ".." + newEndToken
+					+ " at offsets " + startOffset + ".." + endOffset;
+		}
+	}
+}
@@ -0,0 +1,310 @@
+package edu.depauw.declan.main;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import edu.depauw.declan.common.ErrorLog;
+import edu.depauw.declan.common.Locator;
+import edu.depauw.declan.common.ParseException;
+import edu.depauw.declan.common.Parser;
+import edu.depauw.declan.common.Position;
+import edu.depauw.declan.common.SymbolInterner;
+import edu.depauw.declan.common.TokenSequence;
+import edu.depauw.declan.common.TokenType;
+import edu.depauw.declan.common.ast.ProcedureDeclaration;
+import edu.depauw.declan.common.ast.Program;
+
+/**
+ * An IncrementalParser keeps the text of a document and its tokens (in an
+ * IncrementalLexer), together with the top-level procedure declarations from
+ * the last parse and the range of tokens each one came from. After an edit,
+ * parseProgram() parses the program again, except that each top-level
+ * procedure whose tokens were not touched by any edit since it was parsed is
+ * reused as is, skipping straight over its tokens. So only the edited
+ * procedures are reparsed, along with the top-level constants, variables and
+ * main body, which are usually short.
+ * 
+ * Parsing a procedure depends only on its own tokens, so reusing it gives the
+ * same tree as parsing it again. Only procedures parsed without errors are
+ * kept, so that errors are reported again by the next parse.
+ * 
+ * The nodes inside a top-level procedure have start offsets relative to the
+ * start of the procedure, and a Locator shared by the whole procedure; when an
+ * edit moves a reused procedure, its Locator is moved instead of its nodes.
+ * (So getStartOffset() of those nodes is relative to the procedure, while
+ * getStart() is correct for the current text.)
+ */
+public class IncrementalParser implements Parser {
+	private final IncrementalLexer lexer;
+	private final ErrorLog errorLog;
+	private boolean recover;
+
+	/**
+	 * The procedures that may be reused, in order of their first tokens
+	 */
+	private List<Entry> procedures;
+
+	private int reused;
+	private int reparsed;
+
+	/**
+	 * Construct an IncrementalParser for the given initial text, lexing all of it.
+	 * Nothing is parsed until parseProgram() is called.
+	 * 
+	 * @param initialText
+	 * @param errorLog
+	 * @param symbols
+	 */
+	public IncrementalParser(CharSequence initialText, ErrorLog errorLog, SymbolInterner symbols) {
+		this.lexer = new IncrementalLexer(initialText, errorLog, symbols);
+		this.errorLog = errorLog;
+		this.recover = false;
+		this.procedures = new ArrayList<>();
+	}
+
+	/**
+	 * Choose whether to recover from syntax errors (see MyParser).
+	 * 
+	 * @param recover
+	 */
+	public void setErrorRecovery(boolean recover) {
+		this.recover = recover;
+	}
+
+	public IncrementalLexer getLexer() {
+		return lexer;
+	}
+
+	/**
+	 * @return the number of top-level procedures reused by the last parse
+	 */
+	public int getReusedCount() {
+		return reused;
+	}
+
+	/**
+	 * @return the number of top-level procedures parsed by the last parse
+	 */
+	public int getReparsedCount() {
+		return reparsed;
+	}
+
+	/**
+	 * Replace removedLength characters at the given offset with the inserted text,
+	 * and update the tokens to match. Procedures whose tokens were replaced will
+	 * be parsed again by the next parseProgram().
+	 * 
+	 * @param offset
+	 * @param removedLength
+	 * @param inserted
+	 * @return a description of which tokens were replaced
+	 */
+	public IncrementalLexer.Change edit(int offset, int removedLength, CharSequence inserted) {
+		IncrementalLexer.Change change = lexer.edit(offset, removedLength, inserted);
+		int shift = change.getNewEndToken() - change.getOldEndToken();
+
+		List<Entry> kept = new ArrayList<>(procedures.size());
+		for (Entry entry : procedures) {
+			if (entry.end <= change.getFirstToken()) {
+				kept.add(entry);
+			} else if (entry.first >= change.getOldEndToken()) {
+				entry.first = entry.first + shift;
+				entry.end = entry.end + shift;
+				kept.add(entry);
+			}
+		}
+		procedures = kept;
+		return change;
+	}
+
+	@Override
+	public Program parseProgram() {
+		ReusingParser parser = new ReusingParser(new AnchoredTokens(lexer.getTokens()));
+		parser.setErrorRecovery(recover);
+		reused = 0;
+		reparsed = 0;
+
+		try {
+			Program program = parser.parseProgram();
+			procedures = parser.parsed;
+			return program;
+		} catch (ParseException e) {
+			if (e.getPartialProgram() != null) {
+				procedures = parser.parsed;
+			}
+			throw e;
+		}
+	}
+
+	@Override
+	public void close() {
+		// The text is held in memory; nothing to close
+	}
+
+	/**
+	 * A MyParser that looks up each top-level procedure before parsing it.
+	 */
+	private class ReusingParser extends MyParser {
+		private final AnchoredTokens tokens;
+
+		/**
+		 * The reusable procedures seen by this parse, in order
+		 */
+		private final List<Entry> parsed;
+
+		/**
+		 * Index in procedures of the next one that may be reused
+		 */
+		private int next;
+
+		ReusingParser(AnchoredTokens tokens) {
+			super(tokens, errorLog);
+			this.tokens = tokens;
+			this.parsed = new ArrayList<>();
+			this.next = 0;
+		}
+
+		@Override
+		ProcedureDeclaration parseProcedure(boolean topLevel) {
+			if (!topLevel) {
+				return super.parseProcedure(topLevel);
+			}
+
+			// Procedures are reached in order, so the lookup only moves forward
+			int first = mark();
+			while (next < procedures.size() && procedures.get(next).first < first) {
+				next = next + 1;
+			}
+			if (next < procedures.size() && procedures.get(next).first == first) {
+				Entry entry = procedures.get(next);
+				entry.anchor.moveTo(tokens.tokens.getStart(first), lexer.getLineMap());
+				skipTo(entry.end);
+				parsed.add(entry);
+				reused = reused + 1;
+				return entry.declaration;
+			}
+
+			Anchor anchor = new Anchor(tokens.tokens.getStart(first), lexer.getLineMap());
+			int errorsBefore = getErrorCount();
+			ProcedureDeclaration declaration;
+			tokens.anchor = anchor;
+			try {
+				declaration = super.parseProcedure(topLevel);
+			} finally {
+				tokens.anchor = null;
+			}
+			reparsed = reparsed + 1;
+
+			if (getErrorCount() == errorsBefore) {
+				parsed.add(new Entry(first, mark(), declaration, anchor));
+			}
+			return declaration;
+		}
+	}
+
+	/**
+	 * A top-level procedure from an earlier parse, which came from tokens first
+	 * up to (but not including) end of the current tokens.
+	 */
+	private static class Entry {
+		private int first;
+		private int end;
+		private final ProcedureDeclaration declaration;
+		private final Anchor anchor;
+
+		Entry(int first, int end, ProcedureDeclaration declaration, Anchor anchor) {
+			this.first = first;
+			this.end = end;
+			this.declaration = declaration;
+			this.anchor = anchor;
+		}
+	}
+
+	/**
+	 * The Locator shared by the nodes of one top-level procedure, whose offsets
+	 * are relative to the start of the procedure.
+	 */
+	private static class Anchor implements Locator {
+		private int offset;
+		private Locator locator;
+
+		Anchor(int offset, Locator locator) {
+			this.offset = offset;
+			this.locator = locator;
+		}
+
+		void moveTo(int offset, Locator locator) {
+			this.offset = offset;
+			this.locator = locator;
+		}
+
+		@Override
+		public Position getPosition(int offset) {
+			return locator.getPosition(this.offset + offset);
+		}
+	}
+
+	/**
+	 * The current tokens, as seen by the parser: while a top-level procedure is
+	 * being parsed, start offsets are relative to its Anchor.
+	 */
+	private static class AnchoredTokens implements TokenSequence {
+		private final TokenSequence tokens;
+		private Anchor anchor;
+
+		AnchoredTokens(TokenSequence tokens) {
+			this.tokens = tokens;
+			this.anchor = null;
+		}
+
+		@Override
+		public int size() {
+			return tokens.size();
+		}
+
+		@Override
+		public SymbolInterner getSymbolInterner() {
+			return tokens.getSymbolInterner();
+		}
+
+		@Override
+		public TokenType getType(int i) {
+			return tokens.getType(i);
+		}
+
+		@Override
+		public int getStart(int i) {
+			return (anchor == null) ? tokens.getStart(i) : tokens.getStart(i) - anchor.offset;
+		}
+
+		@Override
+		public int getLength(int i) {
+			return tokens.getLength(i);
+		}
+
+		@Override
+		public int getSymbolId(int i) {
+			return tokens.getSymbolId(i);
+		}
+
+		@Override
+		public String getLexeme(int i) {
+			return tokens.getLexeme(i);
+		}
+
+		@Override
+		public boolean isReal(int i) {
+			return tokens.isReal(i);
+		}
+
+		@Override
+		public long getIntValue(int i) {
+			return tokens.getIntValue(i);
+		}
+
+		@Override
+		public Locator getLocator(int i) {
+			return (anchor == null) ? tokens.getLocator(i) : anchor;
+		}
+	}
+}
@@ -0,0 +1,349 @@
+package edu.depauw.declan.main;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Arrays;
+
+import edu.depauw.declan.common.TokenType;
+
+/**
+ * Build-time generator for the transition table run by TableLexer. The lexical
+ * rules of Grammar.md (identifiers, decimal, hexadecimal and real literals,
+ * strings, nested comments, and operators) are written out below as a DFA over
+ * a small set of character classes; running main() writes the resulting
+ * tables as the Java source of LexerTables. Rerun it after changing any rule:
+ * 
+ * java edu.depauw.declan.main.LexerTableGenerator [output file]
+ * 
+ * Every state has an action that is taken when the next character has no
+ * transition (or at end of file): accept a token, report an error (at the
+ * start of the token) and carry on from the same character, or finish. The
+ * messages match those of the reference lexer, which never backs up, so the
+ * DFA never needs to back up either.
+ * 
+ * Nested comments need a counter, which a DFA cannot hold, so the transitions
+ * into and out of a comment go through the pseudo-states COMMENT_OPEN and
+ * COMMENT_CLOSE, which TableLexer turns into an increment or decrement of the
+ * comment depth.
+ */
+public class LexerTableGenerator {
+	static final String DEFAULT_OUTPUT = "src/main/java/edu/depauw/declan/main/LexerTables.java";
+
+	// Character classes. Letters are split so that the hex digits A-F, the
+	// exponent marker E, and the hex suffix H can be told apart.
+	static final String[] CLASSES = { "OTHER", "WS", "LETTER", "HEX", "E", "H", "DIGIT", "QUOTE", "LPAR", "RPAR",
+			"STAR", "PERIOD", "PLUS", "MINUS", "COLON", "EQ", "LT", "GT", "HASH", "SLASH", "AMP", "TILDE", "SEMI",
+			"COMMA", "EOF" };
+
+	// States that have a row in the table, followed by the pseudo-states
+	static final String[] STATES = { "START", "BAD", "IDENT", "INT", "HEX_INT", "HEX_END", "REAL", "REAL_E",
+			"REAL_SIGN", "REAL_EXP", "STRING", "STRING_END", "OPEN", "COMMENT", "COMMENT_STAR", "COMMENT_LPAR",
+			"COLON", "ASSIGN", "LT", "LE", "GT", "GE", "CLOSE", "TIMES", "PERIOD", "PLUS", "MINUS", "EQ", "NE",
+			"DIVIDE", "AND", "NOT", "SEMI", "COMMA" };
+	static final String[] PSEUDO_STATES = { "COMMENT_OPEN", "COMMENT_CLOSE" };
+
+	// Actions taken when a state has no transition for the next character
+	static final String[] ACTIONS = { "END", "UNRECOGNIZED", "ACCEPT", "ACCEPT_ID", "ACCEPT_STRING", "ERROR_HEX",
+			"ERROR_EXPONENT", "ERROR_STRING", "ERROR_COMMENT" };
+
+	static final int STOP = -1;
+
+	private final byte[] charClass;
+	private final byte[] next;
+	private final byte[] action;
+	private final TokenType[] accept;
+
+	public LexerTableGenerator() {
+		this.charClass = new byte[128];
+		this.next = new byte[STATES.length * CLASSES.length];
+		this.action = new byte[STATES.length];
+		this.accept = new TokenType[STATES.length];
+		Arrays.fill(next, (byte) STOP);
+
+		buildClasses();
+		buildRules();
+	}
+
+	private void buildClasses() {
+		// Everything not listed is OTHER (class 0)
+		// ASCII whitespace as defined by Character.isWhitespace
+		classify("\t\n\u000B\f\r\u001C\u001D\u001E\u001F ", "WS");
+		classify("abcdefghijklmnopqrstuvwxyzGIJKLMNOPQRSTUVWXYZ", "LETTER");
+		classify("ABCDF", "HEX");
+		classify("E", "E");
+		classify("H", "H");
+		classify("0123456789", "DIGIT");
+		classify("\"", "QUOTE");
+		classify("(", "LPAR");
+		classify(")", "RPAR");
+		classify("*", "STAR");
+		classify(".", "PERIOD");
+		classify("+", "PLUS");
+		classify("-", "MINUS");
+		classify(":", "COLON");
+		classify("=", "EQ");
+		classify("<", "LT");
+		classify(">", "GT");
+		classify("#", "HASH");
+		classify("/", "SLASH");
+		classify("&", "AMP");
+		classify("~", "TILDE");
+		classify(";", "SEMI");
+		classify(",", "COMMA");
+	}
+
+	private void buildRules() {
+		// Whitespace and the first character of each token
+		on("START", "WS", "START");
+		on("START", "LETTER HEX E H", "IDENT");
+		on("START", "DIGIT", "INT");
+		on("START", "QUOTE", "STRING");
+		on("START", "LPAR", "OPEN");
+		on("START", "RPAR", "CLOSE");
+		on("START", "STAR", "TIMES");
+		on("START", "PERIOD", "PERIOD");
+		on("START", "PLUS", "PLUS");
+		on("START", "MINUS", "MINUS");
+		on("START", "COLON", "COLON");
+		on("START", "EQ", "EQ");
+		on("START", "LT", "LT");
+		on("START", "GT", "GT");
+		on("START", "HASH", "NE");
+		on("START", "SLASH", "DIVIDE");
+		on("START", "AMP", "AND");
+		on("START", "TILDE", "NOT");
+		on("START", "SEMI", "SEMI");
+		on("START", "COMMA", "COMMA");
+		on("START", "OTHER", "BAD");
+		stop("START", "END", null);
+		stop("BAD", "UNRECOGNIZED", null);
+
+		// ident -> letter (letter | digit)*
+		on("IDENT", "LETTER HEX E H DIGIT", "IDENT");
+		stop("IDENT", "ACCEPT_ID", null);
+
+		// integer -> digit digit* | digit hexDigit* H
+		on("INT", "DIGIT", "INT");
+		on("INT", "HEX E", "HEX_INT");
+		on("INT", "H", "HEX_END");
+		on("INT", "PERIOD", "REAL");
+		stop("INT", "ACCEPT", TokenType.NUM);
+		on("HEX_INT", "DIGIT HEX E", "HEX_INT");
+		on("HEX_INT", "H", "HEX_END");
+		stop("HEX_INT", "ERROR_HEX", null);
+		stop("HEX_END", "ACCEPT", TokenType.NUM);
+
+		// real -> digit digit* . digit* scaleFactor?
+		// scaleFactor -> E (+ | -)? digit digit*
+		on("REAL", "DIGIT", "REAL");
+		on("REAL", "E", "REAL_E");
+		stop("REAL", "ACCEPT", TokenType.NUM);
+		on("REAL_E", "PLUS MINUS", "REAL_SIGN");
+		on("REAL_E", "DIGIT", "REAL_EXP");
+		stop("REAL_E", "ERROR_EXPONENT", null);
+		on("REAL_SIGN", "DIGIT", "REAL_EXP");
+		stop("REAL_SIGN", "ERROR_EXPONENT", null);
+		on("REAL_EXP", "DIGIT", "REAL_EXP");
+		stop("REAL_EXP", "ACCEPT", TokenType.NUM);
+
+		// string -> " [^"]* "
+		onAllBut("STRING", "QUOTE", "STRING");
+		on("STRING", "QUOTE", "STRING_END");
+		stop("STRING", "ERROR_STRING", null);
+		stop("STRING_END", "ACCEPT_STRING", null);
+
+		// ( or the start of a comment; comments may nest, and "*(" inside a
+		// comment does not open another one
+		on("OPEN", "STAR", "COMMENT_OPEN");
+		stop("OPEN", "ACCEPT", TokenType.LPAR);
+		onAllBut("COMMENT", "", "COMMENT");
+		on("COMMENT", "STAR", "COMMENT_STAR");
+		on("COMMENT", "LPAR", "COMMENT_LPAR");
+		stop("COMMENT", "ERROR_COMMENT", null);
+		onAllBut("COMMENT_STAR", "", "COMMENT");
+		on("COMMENT_STAR", "STAR", "COMMENT_STAR");
+		on("COMMENT_STAR", "RPAR", "COMMENT_CLOSE");
+		stop("COMMENT_STAR", "ERROR_COMMENT", null);
+		onAllBut("COMMENT_LPAR", "", "COMMENT");
+		on("COMMENT_LPAR", "LPAR", "COMMENT_LPAR");
+		on("COMMENT_LPAR", "STAR", "COMMENT_OPEN");
+		stop("COMMENT_LPAR", "ERROR_COMMENT", null);
+
+		// Operators
+		on("COLON", "EQ", "ASSIGN");
+		stop("COLON", "ACCEPT", TokenType.COLON);
+		stop("ASSIGN", "ACCEPT", TokenType.ASSIGN);
+		on("LT", "EQ", "LE");
+		stop("LT", "ACCEPT", TokenType.LT);
+		stop("LE", "ACCEPT", TokenType.LE);
+		on("GT", "EQ", "GE");
+		stop("GT", "ACCEPT", TokenType.GT);
+		stop("GE", "ACCEPT", TokenType.GE);
+		stop("CLOSE", "ACCEPT", TokenType.RPAR);
+		stop("TIMES", "ACCEPT", TokenType.TIMES);
+		stop("PERIOD", "ACCEPT", TokenType.PERIOD);
+		stop("PLUS", "ACCEPT", TokenType.PLUS);
+		stop("MINUS", "ACCEPT", TokenType.MINUS);
+		stop("EQ", "ACCEPT", TokenType.EQ);
+		stop("NE", "ACCEPT", TokenType.NE);
+		stop("DIVIDE", "ACCEPT", TokenType.DIVIDE);
+		stop("AND", "ACCEPT", TokenType.AND);
+		stop("NOT", "ACCEPT", TokenType.NOT);
+		stop("SEMI", "ACCEPT", TokenType.SEMI);
+		stop("COMMA", "ACCEPT", TokenType.COMMA);
+	}
+
+	private void classify(String chars, String className) {
+		for (int i = 0; i < chars.length(); i++) {
+			charClass[chars.charAt(i)] = (byte) indexOf(CLASSES, className);
+		}
+	}
+
+	/**
+	 * Add transitions from the given state to the target on each of the
+	 * space-separated character classes.
+	 */
+	private void on(String state, String classNames, String target) {
+		for (String className : classNames.split(" ")) {
+			next[indexOf(STATES, state) * CLASSES.length + indexOf(CLASSES, className)] = (byte) stateIndex(target);
+		}
+	}
+
+	/**
+	 * Add transitions from the given state to the target on every character class
+	 * except EOF and the space-separated classes listed.
+	 */
+	private void onAllBut(String state, String classNames, String target) {
+		for (String className : CLASSES) {
+			if (!className.equals("EOF") && !Arrays.asList(classNames.split(" ")).contains(className)) {
+				on(state, className, target);
+			}
+		}
+	}
+
+	private void stop(String state, String actionName, TokenType type) {
+		action[indexOf(STATES, state)] = (byte) indexOf(ACTIONS, actionName);
+		accept[indexOf(STATES, state)] = type;
+	}
+
+	private static int stateIndex(String name) {
+		int i = Arrays.asList(PSEUDO_STATES).indexOf(name);
+		if (i >= 0) {
+			return STATES.length + i;
+		}
+		return indexOf(STATES, name);
+	}
+
+	private static int indexOf(String[] names, String name) {
+		int i = Arrays.asList(names).indexOf(name);
+		if (i < 0) {
+			throw new IllegalArgumentException("Unknown name " + name);
+		}
+		return i;
+	}
+
+	byte[] getCharClass() {
+		return charClass;
+	}
+
+	byte[] getNext() {
+		return next;
+	}
+
+	byte[] getAction() {
+		return action;
+	}
+
+	TokenType[] getAccept() {
+		return accept;
+	}
+
+	/**
+	 * Write the tables as the Java source of the LexerTables class.
+	 * 
+	 * @param out
+	 */
+	public void write(PrintWriter out) {
+		out.println("package edu.depauw.declan.main;");
+		out.println();
+		out.println("import edu.depauw.declan.common.TokenType;");
+		out.println();
+		out.println("/**");
+		out.println(" * Transition tables for TableLexer, generated by LexerTableGenerator from the");
+		out.println(" * lexical rules in Grammar.md. Do not edit; change the generator and rerun it.");
+		out.println(" */");
+		out.println("final class LexerTables {");
+		out.println("\tprivate LexerTables() {");
+		out.println("\t}");
+		out.println();
+		writeConstants(out, "Character classes", "CLASS_", CLASSES, 0);
+		out.println("\tstatic final int NUM_CLASSES = " + CLASSES.length + ";");
+		out.println();
+		writeConstants(out, "States", "", STATES, 0);
+		writeConstants(out, "Pseudo-states, which only occur as transition targets", "", PSEUDO_STATES,
+				STATES.length);
+		out.println("\tstatic final int NUM_STATES = " + STATES.length + ";");
+		out.println("\tstatic final int STOP = " + STOP + ";");
+		out.println();
+		writeConstants(out, "Actions taken when a state has no transition", "DO_", ACTIONS, 0);
+
+		out.println("\t/**");
+		out.println("\t * Character class of each ASCII character; others are classified by");
+		out.println("\t * TableLexer.classify().");
+		out.println("\t */");
+		writeBytes(out, "CHAR_CLASS", charClass, 32);
+		out.println();
+		out.println("\t/**");
+		out.println("\t * NEXT[state * NUM_CLASSES + class] is the next state, or STOP.");
+		out.println("\t */");
+		writeBytes(out, "NEXT", next, CLASSES.length);
+		out.println();
+		out.println("\t/**");
+		out.println("\t * ACTION[state] is taken when the state has no transition.");
+		out.println("\t */");
+		writeBytes(out, "ACTION", action, 17);
+		out.println();
+		out.println("\t/**");
+		out.println("\t * ACCEPT_TYPE[state] is the type of token accepted by DO_ACCEPT.");
+		out.println("\t */");
+		out.println("\tstatic final TokenType[] ACCEPT_TYPE = {");
+		for (int state = 0; state < STATES.length; state++) {
+			out.println("\t\t\t" + (accept[state] == null ? "null" : "TokenType." + accept[state]) + ", // "
+					+ STATES[state]);
+		}
+		out.println("\t};");
+		out.println("}");
+	}
+
+	private static void writeConstants(PrintWriter out, String comment, String prefix, String[] names, int first) {
+		out.println("\t// " + comment);
+		for (int i = 0; i < names.length; i++) {
+			out.println("\tstatic final int " + prefix + names[i] + " = " + (first + i) + ";");
+		}
+		out.println();
+	}
+
+	private static void writeBytes(PrintWriter out, String name, byte[] values, int perLine) {
+		out.println("\tstatic final byte[] " + name + " = {");
+		for (int i = 0; i < values.length; i += perLine) {
+			StringBuilder line = new StringBuilder("\t\t\t");
+			for (int j = i; j < Math.min(i + perLine, values.length); j++) {
+				line.append(values[j]).append(",");
+				if (j + 1 < Math.min(i + perLine, values.length)) {
+					line.append(" ");
+				}
+			}
+			out.println(line);
+		}
+		out.println("\t};");
+	}
+
+	public static void main(String[] args) throws IOException {
+		String file = (args.length > 0) ? args[0] : DEFAULT_OUTPUT;
+		try (PrintWriter out = new PrintWriter(Files.newBufferedWriter(Paths.get(file)))) {
+			new LexerTableGenerator().write(out);
+		}
+	}
+}
@@ -0,0 +1,194 @@
+package edu.depauw.declan.main;
+
+import edu.depauw.declan.common.TokenType;
+
+/**
+ * Transition tables for TableLexer, generated by LexerTableGenerator from the
+ * lexical rules in Grammar.md. Do not edit; change the generator and rerun it.
+ */
+final class LexerTables {
+	private LexerTables() {
+	}
+
+	// Character classes
+	static final int CLASS_OTHER = 0;
+	static final int CLASS_WS = 1;
+	static final int CLASS_LETTER = 2;
+	static final int CLASS_HEX = 3;
+	static final int CLASS_E = 4;
+	static final int CLASS_H = 5;
+	static final int CLASS_DIGIT = 6;
+	static final int CLASS_QUOTE = 7;
+	static final int CLASS_LPAR = 8;
+	static final int CLASS_RPAR = 9;
+	static final int CLASS_STAR = 10;
+	static final int CLASS_PERIOD = 11;
+	static final int CLASS_PLUS = 12;
+	static final int CLASS_MINUS = 13;
+	static final int CLASS_COLON = 14;
+	static final int CLASS_EQ = 15;
+	static final int CLASS_LT = 16;
+	static final int CLASS_GT = 17;
+	static final int CLASS_HASH = 18;
+	static final int CLASS_SLASH = 19;
+	static final int CLASS_AMP = 20;
+	static final int CLASS_TILDE = 21;
+	static final int CLASS_SEMI = 22;
+	static final int CLASS_COMMA = 23;
+	static final int CLASS_EOF = 24;
+
+	static final int NUM_CLASSES = 25;
+
+	// States
+	static final int START = 0;
+	static final int BAD = 1;
+	static final int IDENT = 2;
+	static final int INT = 3;
+	static final int HEX_INT = 4;
+	static final int HEX_END = 5;
+	static final int REAL = 6;
+	static final int REAL_E = 7;
+	static final int REAL_SIGN = 8;
+	static final int REAL_EXP = 9;
+	static final int STRING = 10;
+	static final int STRING_END = 11;
+	static final int OPEN = 12;
+	static final int COMMENT = 13;
+	static final int COMMENT_STAR = 14;
+	static final int COMMENT_LPAR = 15;
+	static final int COLON = 16;
+	static final int ASSIGN = 17;
+	static final int LT = 18;
+	static final int LE = 19;
+	static final int GT = 20;
+	static final int GE = 21;
+	static final int CLOSE = 22;
+	static final int TIMES = 23;
+	static final int PERIOD = 24;
+	static final int PLUS = 25;
+	static final int MINUS = 26;
+	static final int EQ = 27;
+	static final int NE = 28;
+	static final int DIVIDE = 29;
+	static final int AND = 30;
+	static final int NOT = 31;
+	static final int SEMI = 32;
+	static final int COMMA = 33;
+
+	// Pseudo-states, which only occur as transition targets
+	static final int COMMENT_OPEN = 34;
+	static final int COMMENT_CLOSE = 35;
+
+	static final int NUM_STATES = 34;
+	static final int STOP = -1;
+
+	// Actions taken when a state has no transition
+	static final int DO_END = 0;
+	static final int DO_UNRECOGNIZED = 1;
+	static final int DO_ACCEPT = 2;
+	static final int DO_ACCEPT_ID = 3;
+	static final int DO_ACCEPT_STRING = 4;
+	static final int DO_ERROR_HEX = 5;
+	static final int DO_ERROR_EXPONENT = 6;
+	static final int DO_ERROR_STRING = 7;
+	static final int DO_ERROR_COMMENT = 8;
+
+	/**
+	 * Character class of each ASCII character; others are classified by
+	 * TableLexer.classify().
+	 */
+	static final byte[] CHAR_CLASS = {
+			0, 0, 0, 0, 0, 0, 0, 0, 0, 1, 1, 1, 1, 1, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 1, 1, 1, 1,
+			1, 0, 7, 18, 0, 0, 20, 0, 8, 9, 10, 12, 23, 13, 11, 19, 6, 6, 6, 6, 6, 6, 6, 6, 6, 6, 14, 22, 16, 15, 17, 0,
+			0, 3, 3, 3, 3, 4, 3, 2, 5, 2, 2, 2, 2, 2, 2, 2, 2, 2, 2, 2, 2, 2, 2, 2, 2, 2, 2, 0, 0, 0, 0, 0,
+			0, 2, 2, 2, 2, 2, 2, 2, 2, 2, 2, 2, 2, 2, 2, 2, 2, 2, 2, 2, 2, 2, 2, 2, 2, 2, 2, 0, 0, 0, 21, 0,
+	};
+
+	/**
+	 * NEXT[state * NUM_CLASSES + class] is the next state, or STOP.
+	 */
+	static final byte[] NEXT = {
+			1, 0, 2, 2, 2, 2, 3, 10, 12, 22, 23, 24, 25, 26, 16, 27, 18, 20, 28, 29, 30, 31, 32, 33, -1,
+			-1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1,
+			-1, -1, 2, 2, 2, 2, 2, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1,
+			-1, -1, -1, 4, 4, 5, 3, -1, -1, -1, -1, 6, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1,
+			-1, -1, -1, 4, 4, 5, 4, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1,
+			-1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1,
+			-1, -1, -1, -1, 7, -1, 6, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1,
+			-1, -1, -1, -1, -1, -1, 9, -1, -1, -1, -1, -1, 8, 8, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1,
+			-1, -1, -1, -1, -1, -1, 9, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1,
+			-1, -1, -1, -1, -1, -1, 9, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1,
+			10, 10, 10, 10, 10, 10, 10, 11, 10, 10, 10, 10, 10, 10, 10, 10, 10, 10, 10, 10, 10, 10, 10, 10, -1,
+			-1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1,
+			-1, -1, -1, -1, -1, -1, -1, -1, -1, -1, 34, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1,
+			13, 13, 13, 13, 13, 13, 13, 13, 15, 13, 14, 13, 13, 13, 13, 13, 13, 13, 13, 13, 13, 13, 13, 13, -1,
+			13, 13, 13, 13, 13, 13, 13, 13, 13, 35, 14, 13, 13, 13, 13, 13, 13, 13, 13, 13, 13, 13, 13, 13, -1,
+			13, 13, 13, 13, 13, 13, 13, 13, 15, 13, 34, 13, 13, 13, 13, 13, 13, 13, 13, 13, 13, 13, 13, 13, -1,
+			-1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, 17, -1, -1, -1, -1, -1, -1, -1, -1, -1,
+			-1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1,
+			-1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, 19, -1, -1, -1, -1, -1, -1, -1, -1, -1,
+			-1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1,
+			-1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, 21, -1, -1, -1, -1, -1, -1, -1, -1, -1,
+			-1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1,
+			-1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1,
+			-1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1,
+			-1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1,
+			-1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1,
+			-1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1,
+			-1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1,
+			-1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1,
+			-1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1,
+			-1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1,
+			-1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1,
+			-1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1,
+			-1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1,
+	};
+
+	/**
+	 * ACTION[state] is taken when the state has no transition.
+	 */
+	static final byte[] ACTION = {
+			0, 1, 3, 2, 5, 2, 2, 6, 6, 2, 7, 4, 2, 8, 8, 8, 2,
+			2, 2, 2, 2, 2, 2, 2, 2, 2, 2, 2, 2, 2, 2, 2, 2, 2,
+	};
+
+	/**
+	 * ACCEPT_TYPE[state] is the type of token accepted by DO_ACCEPT.
+	 */
+	static final TokenType[] ACCEPT_TYPE = {
+			null, // START
+			null, // BAD
+			null, // IDENT
+			TokenType.NUM, // INT
+			null, // HEX_INT
+			TokenType.NUM, // HEX_END
+			TokenType.NUM, // REAL
+			null, // REAL_E
+			null, // REAL_SIGN
+			TokenType.NUM, // REAL_EXP
+			null, // STRING
+			null, // STRING_END
+			TokenType.LPAR, // OPEN
+			null, // COMMENT
+			null, // COMMENT_STAR
+			null, // COMMENT_LPAR
+			TokenType.COLON, // COLON
+			TokenType.ASSIGN, // ASSIGN
+			TokenType.LT, // LT
+			TokenType.LE, // LE
+			TokenType.GT, // GT
+			TokenType.GE, // GE
+			TokenType.RPAR, // CLOSE
+			TokenType.TIMES, // TIMES
+			TokenType.PERIOD, // PERIOD
+			TokenType.PLUS, // PLUS
+			TokenType.MINUS, // MINUS
+			TokenType.EQ, // EQ
+			TokenType.NE, // NE
+			TokenType.DIVIDE, // DIVIDE
+			TokenType.AND, // AND
+			TokenType.NOT, // NOT
+			TokenType.SEMI, // SEMI
+			TokenType.COMMA, // COMMA
+	};
+}
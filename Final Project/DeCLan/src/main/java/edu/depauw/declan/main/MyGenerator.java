@@ -6,6 +6,7 @@ import java.util.List;
 import edu.depauw.declan.common.Checker;
 import edu.depauw.declan.common.ErrorLog;
 import edu.depauw.declan.common.Generator;
+import edu.depauw.declan.common.NumLiteral;
 import edu.depauw.declan.common.ast.Assignment;
 import edu.depauw.declan.common.ast.BinaryOperation;
 import edu.depauw.declan.common.ast.BooleanValue;
@@ -352,20 +353,19 @@ public class MyGenerator implements Generator {
 
 	/**
 	 * Evaluate a numeric literal, which might be floating-point or an integer
-	 * (either hex or decimal).
+	 * (either hex or decimal), from the value decoded by the lexer. Not every
+	 * lexer reports integers that are too large, so they are checked here.
 	 * 
 	 * @param expr
 	 * @return
 	 */
 	private Value evalConstNum(NumValue expr) {
-		String lexeme = expr.getLexeme();
-		if (lexeme.contains(".")) {
-			return new RealValue(Double.parseDouble(lexeme));
-		} else if (lexeme.endsWith("H")) {
-			String hex = lexeme.substring(0, lexeme.length() - 1);
-			return new IntValue(Integer.parseInt(hex, 16));
+		if (expr.isReal()) {
+			return new RealValue(expr.getRealValue());
+		} else if (!NumLiteral.fitsInteger(expr.getIntValue())) {
+			throw new RuntimeException("Integer literal out of range " + expr.getLexeme());
 		} else {
-			return new IntValue(Integer.parseInt(lexeme));
+			return new IntValue((int) expr.getIntValue());
 		}
 	}
 
@@ -2,11 +2,15 @@ package edu.depauw.declan.main;
 
 import java.util.NoSuchElementException;
 
+import edu.depauw.declan.common.CharRun;
 import edu.depauw.declan.common.ErrorLog;
+import edu.depauw.declan.common.FlyweightTokenFactory;
 import edu.depauw.declan.common.Lexer;
-import edu.depauw.declan.common.Position;
 import edu.depauw.declan.common.Source;
+import edu.depauw.declan.common.SymbolInterner;
 import edu.depauw.declan.common.Token;
+import edu.depauw.declan.common.TokenBuffer;
+import edu.depauw.declan.common.TokenFactory;
 import edu.depauw.declan.common.TokenType;
 
 /**
@@ -17,8 +21,16 @@ import edu.depauw.declan.common.TokenType;
 public class MyLexer implements Lexer {
 	private Source source;
 	private ErrorLog errorLog;
+	private SymbolInterner symbols;
+	private TokenFactory tokenFactory;
 	private Token nextToken;
 
+	/**
+	 * When not null, scanNext() appends each token it finds to this buffer
+	 * instead of creating a Token object.
+	 */
+	private TokenBuffer buffer;
+
 	/**
 	 * Construct a Lexer that will read characters from the given Source and log any
 	 * error messages in the given ErrorLog.
@@ -27,12 +39,65 @@ public class MyLexer implements Lexer {
 	 * @param errorLog
 	 */
 	public MyLexer(Source source, ErrorLog errorLog) {
+		this(source, errorLog, new SymbolInterner());
+	}
+
+	/**
+	 * Construct a Lexer that will read characters from the given Source, log any
+	 * error messages in the given ErrorLog, and intern identifier names in the
+	 * given SymbolInterner.
+	 * 
+	 * @param source
+	 * @param errorLog
+	 * @param symbols
+	 */
+	public MyLexer(Source source, ErrorLog errorLog, SymbolInterner symbols) {
+		this(source, errorLog, symbols, new FlyweightTokenFactory(symbols));
+	}
+
+	/**
+	 * Construct a Lexer that will read characters from the given Source, log any
+	 * error messages in the given ErrorLog, intern identifier names in the given
+	 * SymbolInterner, and make its Token objects with the given TokenFactory.
+	 * 
+	 * @param source
+	 * @param errorLog
+	 * @param symbols
+	 * @param tokenFactory
+	 */
+	public MyLexer(Source source, ErrorLog errorLog, SymbolInterner symbols, TokenFactory tokenFactory) {
 		this.source = source;
 		this.errorLog = errorLog;
+		this.symbols = symbols;
+		this.tokenFactory = tokenFactory;
 
 		// Setting nextToken to null is a signal that scanNext() needs to be called
 		// to examine more characters to find the next available Token.
 		this.nextToken = null;
+		this.buffer = null;
+	}
+
+	/**
+	 * Lex all of the remaining tokens of the source into a new TokenBuffer, whose
+	 * offsets are interpreted by the source's LineMap. No Token objects are
+	 * created. The source is not closed.
+	 * 
+	 * @return the filled TokenBuffer
+	 */
+	public TokenBuffer lexAll() {
+		TokenBuffer result = new TokenBuffer(source.getLineMap(), symbols);
+		if (nextToken != null) {
+			// hasNext() already scanned ahead one token
+			result.add(nextToken);
+			nextToken = null;
+		}
+
+		buffer = result;
+		while (scanNext()) {
+			// each call appends one token to buffer
+		}
+		buffer = null;
+		return result;
 	}
 
 	@Override
@@ -75,15 +140,48 @@ public class MyLexer implements Lexer {
 		// TODO add more states here
 	}
 
+	/**
+	 * Record a token of a type where the lexeme is always the same, which started
+	 * at the given offset and ended just before the current character.
+	 * 
+	 * @param type
+	 * @param position
+	 */
+	private void emit(TokenType type, int position) {
+		if (buffer != null) {
+			buffer.add(type, position, source.getOffset() - position);
+		} else {
+			nextToken = tokenFactory.makeToken(type, position, source.getLineMap());
+		}
+	}
+
+	/**
+	 * Record an identifier or keyword token, which started at the given offset and
+	 * ended just before the current character.
+	 * 
+	 * @param lexeme
+	 * @param position
+	 */
+	private void emitId(CharSequence lexeme, int position) {
+		if (buffer != null) {
+			buffer.addId(lexeme, position, source.getOffset() - position);
+		} else {
+			nextToken = tokenFactory.makeIdToken(lexeme, position, source.getLineMap());
+		}
+	}
+
 	/**
 	 * Scan through characters from source, starting with the current one, to find
-	 * the next token. If found, store it in nextToken and leave the source on the
-	 * next character after the token. If no token found, set nextToken to null.
+	 * the next token. If found, store it in nextToken (or append it to buffer) and
+	 * leave the source on the next character after the token. If no token found,
+	 * set nextToken to null.
+	 * 
+	 * @return true if a token was found
 	 */
-	private void scanNext() {
+	private boolean scanNext() {
 		State state = State.INIT;
 		StringBuilder lexeme = new StringBuilder();
-		Position position = null;
+		int position = 0;
 
 		while (!source.atEOF()) {
 			char c = source.current();
@@ -93,29 +191,30 @@ public class MyLexer implements Lexer {
 				// Look for the start of a token
 				if (Character.isWhitespace(c)) {
 					source.advance();
+					// Skip the rest of a run of ASCII whitespace at once
+					source.advanceWhile(CharRun.WHITESPACE, null);
 					continue;
 				} else if (Character.isLetter(c)) {
 					state = State.IDENT;
 					lexeme.append(c);
 					// Record starting position of identifier or keyword token
-					position = source.getPosition();
+					position = source.getOffset();
 					source.advance();
 					continue;
 				} else if (c == ':') {
 					state = State.COLON;
-					position = source.getPosition();
+					position = source.getOffset();
 					source.advance();
 					continue;
 				} else if (c == '=') {
-					position = source.getPosition();
+					position = source.getOffset();
 					source.advance();
-					nextToken = Token.create(TokenType.EQ, position);
-					return;
+					emit(TokenType.EQ, position);
+					return true;
 				} else {
 					// TODO handle other characters here
 
-					position = source.getPosition();
-					errorLog.add("Unrecognized character " + c, position);
+					errorLog.add("Unrecognized character " + c, source.getPosition());
 					source.advance();
 					continue;
 				}
@@ -125,21 +224,22 @@ public class MyLexer implements Lexer {
 				if (Character.isLetterOrDigit(c)) {
 					lexeme.append(c);
 					source.advance();
+					source.advanceWhile(CharRun.WORD, lexeme);
 					continue;
 				} else {
-					nextToken = Token.createId(lexeme.toString(), position);
-					return;
+					emitId(lexeme, position);
+					return true;
 				}
 
 			case COLON:
 				// Check for : vs :=
 				if (c == '=') {
 					source.advance();
-					nextToken = Token.create(TokenType.ASSIGN, position);
-					return;
+					emit(TokenType.ASSIGN, position);
+					return true;
 				} else {
-					nextToken = Token.create(TokenType.COLON, position);
-					return;
+					emit(TokenType.COLON, position);
+					return true;
 				}
 
 				// TODO and more state cases here
@@ -151,19 +251,20 @@ public class MyLexer implements Lexer {
 		case INIT:
 			// No more tokens found
 			nextToken = null;
-			return;
+			return false;
 
 		case IDENT:
 			// Successfully ended an identifier or keyword
-			nextToken = Token.createId(lexeme.toString(), position);
-			return;
+			emitId(lexeme, position);
+			return true;
 
 		case COLON:
 			// Final token was :
-			nextToken = Token.create(TokenType.COLON, position);
-			return;
+			emit(TokenType.COLON, position);
+			return true;
 
 		// TODO handle more state cases here as well
 		}
+		return false;
 	}
 }
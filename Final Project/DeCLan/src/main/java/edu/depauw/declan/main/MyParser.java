@@ -1,56 +1,353 @@
 package edu.depauw.declan.main;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.EnumSet;
 import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Supplier;
 
+import edu.depauw.declan.common.ErrorLimitException;
 import edu.depauw.declan.common.ErrorLog;
 import edu.depauw.declan.common.Lexer;
+import edu.depauw.declan.common.LexerCursor;
+import edu.depauw.declan.common.Locator;
 import edu.depauw.declan.common.ParseException;
 import edu.depauw.declan.common.Parser;
 import edu.depauw.declan.common.Position;
-import edu.depauw.declan.common.Token;
+import edu.depauw.declan.common.SymbolInterner;
+import edu.depauw.declan.common.TokenBuffer;
+import edu.depauw.declan.common.TokenSequence;
 import edu.depauw.declan.common.TokenType;
+import edu.depauw.declan.common.ast.Assignment;
+import edu.depauw.declan.common.ast.BinaryOperation;
+import edu.depauw.declan.common.ast.BooleanValue;
+import edu.depauw.declan.common.ast.Clause;
 import edu.depauw.declan.common.ast.ConstDeclaration;
 import edu.depauw.declan.common.ast.Declaration;
+import edu.depauw.declan.common.ast.EmptyStatement;
+import edu.depauw.declan.common.ast.Expression;
+import edu.depauw.declan.common.ast.ExpressionFactory;
+import edu.depauw.declan.common.ast.FPSection;
+import edu.depauw.declan.common.ast.ForStatement;
+import edu.depauw.declan.common.ast.FormalParameters;
 import edu.depauw.declan.common.ast.Identifier;
-import edu.depauw.declan.common.ast.NumValue;
+import edu.depauw.declan.common.ast.LazyProcedureBody;
+import edu.depauw.declan.common.ast.IfStatement;
+import edu.depauw.declan.common.ast.PlainExpressionFactory;
+import edu.depauw.declan.common.ast.ProcedureBody;
+import edu.depauw.declan.common.ast.ProcedureCall;
+import edu.depauw.declan.common.ast.ProcedureDeclaration;
+import edu.depauw.declan.common.ast.ProcedureHead;
 import edu.depauw.declan.common.ast.Program;
+import edu.depauw.declan.common.ast.RelationalOperation;
+import edu.depauw.declan.common.ast.RepeatStatement;
 import edu.depauw.declan.common.ast.Statement;
+import edu.depauw.declan.common.ast.StringValue;
+import edu.depauw.declan.common.ast.UnaryOperation;
+import edu.depauw.declan.common.ast.VarDeclaration;
+import edu.depauw.declan.common.ast.WhileStatement;
 
 /**
- * A parser for a subset of DeCLan consisting only of integer constant
- * declarations and calls to PrintInt with integer expression arguments. This is
- * starter code for CSC426 Project 2.
+ * A recursive-descent parser for DeCLan, following the grammar in
+ * LargerSubsetGrammar.md.
+ * 
+ * By default, parsing aborts with a ParseException at the first syntax error.
+ * With error recovery turned on, the parser instead logs the error, skips ahead
+ * to a token where parsing can resume (such as ;, END, ELSIF, or PROCEDURE), and
+ * carries on, so that one pass reports every syntax error in the source.
  * 
  * @author bhoward
  */
 public class MyParser implements Parser {
 	private Lexer lexer;
+	private LexerCursor cursor;
 	private ErrorLog errorLog;
 
 	/**
-	 * Holds the current Token from the Lexer, or null if at end of file
+	 * Holds the tokens read so far. When parsing from a Lexer or LexerCursor,
+	 * tokens are copied in as they are needed; when parsing from a
+	 * TokenSequence, it is already full.
+	 */
+	private TokenSequence tokens;
+
+	/**
+	 * The same buffer as tokens, when it is being filled from a Lexer or
+	 * LexerCursor; otherwise null.
+	 */
+	private TokenBuffer buffer;
+
+	/**
+	 * Index in tokens of the current token; equal to tokens.size() when at end of
+	 * file
+	 */
+	private int current;
+
+	/**
+	 * True if syntax errors should be recovered from rather than aborting
+	 */
+	private boolean recover;
+
+	/**
+	 * True if the statements of procedure bodies should only be parsed when they
+	 * are first needed
+	 */
+	private boolean lazyBodies;
+
+	/**
+	 * Where the statements of lazy procedure bodies log their syntax errors, if
+	 * not to errorLog
+	 */
+	private ErrorLog lazyErrorLog;
+
+	/**
+	 * Makes the Expression nodes, possibly sharing them
+	 */
+	private ExpressionFactory expressions;
+
+	/**
+	 * True from a syntax error until the next token is matched; errors found in
+	 * between are not logged, since they are usually caused by the first one
+	 */
+	private boolean panicking;
+
+	/**
+	 * The number of syntax errors logged so far
 	 */
-	private Token current;
+	private int errors;
 
 	/**
-	 * Holds the Position of the current Token, or the most recent one if at end of
-	 * file (or position 0:0 if source file is empty)
+	 * Reused by each call of parseExpression(), which does not call itself
 	 */
-	private Position currentPosition;
+	private final ExpressionStack expressionStack = new ExpressionStack();
 
+	/**
+	 * Construct a Parser that pulls Tokens from the given Lexer as it needs them.
+	 * 
+	 * @param lexer
+	 * @param errorLog
+	 */
 	public MyParser(Lexer lexer, ErrorLog errorLog) {
+		this(lexer, errorLog, new SymbolInterner());
+	}
+
+	/**
+	 * Construct a Parser that pulls Tokens from the given Lexer as it needs them,
+	 * interning identifier names in the given SymbolInterner (normally the same
+	 * one used by the Lexer, so that symbol ids agree).
+	 * 
+	 * @param lexer
+	 * @param errorLog
+	 * @param symbols
+	 */
+	public MyParser(Lexer lexer, ErrorLog errorLog, SymbolInterner symbols) {
 		this.lexer = lexer;
+		this.cursor = null;
+		this.errorLog = errorLog;
+		this.buffer = new TokenBuffer(new Position(0, 0), symbols);
+		this.tokens = buffer;
+		this.current = 0;
+		this.expressions = new PlainExpressionFactory();
+		fill(0);
+	}
+
+	/**
+	 * Construct a Parser that pulls tokens from the given LexerCursor as it needs
+	 * them. Tokens are copied straight into the TokenBuffer without creating
+	 * Token objects, using the cursor's Locator and SymbolInterner.
+	 * 
+	 * @param cursor
+	 * @param errorLog
+	 */
+	public MyParser(LexerCursor cursor, ErrorLog errorLog) {
+		this.lexer = null;
+		this.cursor = cursor;
+		this.errorLog = errorLog;
+		this.buffer = new TokenBuffer(cursor.locator(), cursor.symbols());
+		this.tokens = buffer;
+		this.current = 0;
+		this.expressions = new PlainExpressionFactory();
+		fill(0);
+	}
+
+	/**
+	 * Construct a Parser that reads tokens by index from an already-filled
+	 * TokenSequence (such as a TokenBuffer or an OffHeapTokenStore). Closing the
+	 * Parser closes the TokenSequence.
+	 * 
+	 * @param tokens
+	 * @param errorLog
+	 */
+	public MyParser(TokenSequence tokens, ErrorLog errorLog) {
+		this.lexer = null;
+		this.cursor = null;
 		this.errorLog = errorLog;
-		this.current = null;
-		this.currentPosition = new Position(0, 0);
-		skip();
+		this.buffer = null;
+		this.tokens = tokens;
+		this.current = 0;
+		this.expressions = new PlainExpressionFactory();
+	}
+
+	/**
+	 * Choose whether to recover from syntax errors. When recovering,
+	 * parseProgram() logs each syntax error and resumes parsing at the next
+	 * statement or declaration; if there were any errors, it then throws a
+	 * ParseException holding the partial Program.
+	 * 
+	 * @param recover
+	 */
+	public void setErrorRecovery(boolean recover) {
+		this.recover = recover;
+	}
+
+	/**
+	 * Choose whether to parse procedure bodies lazily. When lazy, each
+	 * ProcedureBody is a LazyProcedureBody that only records where its
+	 * statements are, and parses them (logging any syntax errors in them) on the
+	 * first call of getStatements(). A body whose extent cannot be found by
+	 * counting the statements that END closes is parsed at once as usual.
+	 * 
+	 * @param lazyBodies
+	 */
+	public void setLazyBodies(boolean lazyBodies) {
+		this.lazyBodies = lazyBodies;
+	}
+
+	/**
+	 * Log the syntax errors of lazy procedure bodies to the given ErrorLog
+	 * instead of this parser's, for a parse whose own errors are discarded but
+	 * whose tree may be kept.
+	 * 
+	 * @param lazyErrorLog
+	 */
+	void setLazyErrorLog(ErrorLog lazyErrorLog) {
+		this.lazyErrorLog = lazyErrorLog;
+	}
+
+	/**
+	 * Choose the ExpressionFactory that makes the nodes of expressions (by
+	 * default, a PlainExpressionFactory). With a HashConsingExpressionFactory,
+	 * repeated subexpressions within a procedure body share one node.
+	 * 
+	 * @param expressions
+	 */
+	public void setExpressionFactory(ExpressionFactory expressions) {
+		this.expressions = expressions;
+	}
+
+	/**
+	 * @return the number of syntax errors logged so far
+	 */
+	int getErrorCount() {
+		return errors;
 	}
 
 	@Override
 	public void close() {
-		lexer.close();
+		if (lexer != null) {
+			lexer.close();
+		}
+		if (cursor != null) {
+			cursor.close();
+		}
+		tokens.close();
+	}
+
+	/**
+	 * Make sure that the token at index i has been read, if there is one.
+	 * 
+	 * @param i
+	 * @return true if tokens contains index i
+	 */
+	private boolean fill(int i) {
+		while (tokens.size() <= i) {
+			if (lexer != null && lexer.hasNext()) {
+				buffer.add(lexer.next());
+			} else if (cursor != null && cursor.advance()) {
+				buffer.add(cursor);
+			} else {
+				break;
+			}
+		}
+		return i < tokens.size();
+	}
+
+	/**
+	 * @return the offset of the current token, or the most recent one if at end of
+	 *         file (or 0 if the source file is empty)
+	 */
+	int currentOffset() {
+		if (current < tokens.size()) {
+			return tokens.getStart(current);
+		} else if (current > 0) {
+			return tokens.getStart(current - 1);
+		} else {
+			return 0;
+		}
+	}
+
+	/**
+	 * @return the Locator for currentOffset()
+	 */
+	Locator currentLocator() {
+		if (current < tokens.size()) {
+			return tokens.getLocator(current);
+		} else if (current > 0) {
+			return tokens.getLocator(current - 1);
+		} else {
+			return new Position(0, 0);
+		}
+	}
+
+	/**
+	 * @return the Position of the current token
+	 */
+	Position currentPosition() {
+		return currentLocator().getPosition(currentOffset());
+	}
+
+	/**
+	 * Look ahead k tokens past the current one, without consuming anything.
+	 * 
+	 * @param k
+	 * @return the type of that token, or null if it is past the end of file
+	 */
+	TokenType peek(int k) {
+		if (fill(current + k)) {
+			return tokens.getType(current + k);
+		} else {
+			return null;
+		}
+	}
+
+	/**
+	 * @return a marker for the current token, to be passed to reset()
+	 */
+	int mark() {
+		return current;
+	}
+
+	/**
+	 * Back up (or skip forward) to a token previously returned by mark().
+	 * 
+	 * @param mark
+	 */
+	void reset(int mark) {
+		current = mark;
+	}
+
+	/**
+	 * Skip forward to a token previously returned by mark(), as if the tokens in
+	 * between had been matched (so a syntax error before them no longer
+	 * suppresses the next one).
+	 * 
+	 * @param mark
+	 */
+	void skipTo(int mark) {
+		current = mark;
+		panicking = false;
 	}
 
 	/**
@@ -60,141 +357,1117 @@ public class MyParser implements Parser {
 	 * @return true if the TokenType matches the current token
 	 */
 	boolean willMatch(TokenType type) {
-		return current != null && current.getType() == type;
+		return current < tokens.size() && tokens.getType(current) == type;
 	}
 
+
 	/**
 	 * If the current token has the given type, skip to the next token and return
-	 * the matched token. Otherwise, abort and generate an error message.
+	 * the index of the matched token. Otherwise, abort and generate an error
+	 * message.
 	 * 
 	 * @param type
-	 * @return the matched token if successful
+	 * @return the index of the matched token if successful
 	 */
-	Token match(TokenType type) {
+	int match(TokenType type) {
 		if (willMatch(type)) {
 			return skip();
-		} else if (current == null) {
-			errorLog.add("Expected " + type + ", found end of file", currentPosition);
-		} else {
-			errorLog.add("Expected " + type + ", found " + current.getType(), currentPosition);
 		}
-		throw new ParseException("Parsing aborted");
+		throw expected(type.toString());
+	}
+
+	/**
+	 * Like match(), except that when recovering from errors a missing token is
+	 * reported and parsing carries on as if it had been there. This suits tokens
+	 * such as ; and END, whose absence does not change how the rest is read.
+	 * 
+	 * @param type
+	 * @return the index of the matched token, or -1 if it was missing
+	 */
+	int expect(TokenType type) {
+		if (recover && !willMatch(type)) {
+			expected(type.toString());
+			return -1;
+		}
+		return match(type);
 	}
 
 	/**
-	 * If the current token is null (signifying that there are no more tokens),
-	 * succeed. Otherwise, abort and generate an error message.
+	 * If there are no more tokens, succeed. Otherwise, abort and generate an error
+	 * message.
 	 */
 	void matchEOF() {
-		if (current != null) {
-			errorLog.add("Expected end of file, found " + current.getType(), currentPosition);
-			throw new ParseException("Parsing aborted");
+		if (fill(current)) {
+			throw expected("end of file");
 		}
 	}
 
 	/**
-	 * Skip to the next token and return the skipped token.
+	 * Skip to the next token and return the index of the skipped token.
 	 * 
-	 * @return the skipped token
+	 * @return the index of the skipped token
 	 */
-	Token skip() {
-		Token token = current;
-		if (lexer.hasNext()) {
-			current = lexer.next();
-			currentPosition = current.getPosition();
-		} else {
-			current = null;
-			// keep previous value of currentPosition
+	int skip() {
+		int token = current;
+		if (current < tokens.size()) {
+			current = current + 1;
+			fill(current);
 		}
+		panicking = false;
 		return token;
 	}
 
+	/**
+	 * Log a syntax error at the current token (unless it follows another one
+	 * with nothing matched in between).
+	 * 
+	 * @param what a description of the expected token
+	 * @return an exception to throw if the error should abort the construct
+	 */
+	private ParseException expected(String what) {
+		if (!panicking) {
+			String found = fill(current) ? tokens.getType(current).toString() : "end of file";
+			errors = errors + 1;
+			errorLog.add("Expected " + what + ", found " + found, currentPosition());
+		}
+		panicking = true;
+		return new ParseException("Parsing aborted");
+	}
+
+	/**
+	 * After a syntax error, skip tokens (without ending the panic) until one
+	 * where parsing can resume, or the end of file.
+	 * 
+	 * @param stop
+	 */
+	private void synchronize(Set<TokenType> stop) {
+		while (fill(current) && !stop.contains(tokens.getType(current))) {
+			current = current + 1;
+		}
+	}
+
+	/**
+	 * @param follow
+	 * @param more
+	 * @return a new set of the tokens in follow and more
+	 */
+	private static Set<TokenType> followedBy(Set<TokenType> follow, TokenType... more) {
+		Set<TokenType> result = EnumSet.copyOf(follow);
+		Collections.addAll(result, more);
+		return result;
+	}
+
+	/**
+	 * Tokens at which parsing resumes after an error in a statement; the tokens
+	 * that may follow each enclosing statement sequence are added to these.
+	 */
+	private static final Set<TokenType> STATEMENT_SYNC = EnumSet.of(TokenType.SEMI, TokenType.END, TokenType.ELSIF,
+			TokenType.PROCEDURE);
+
+	/**
+	 * Tokens at which parsing resumes after an error in a declaration
+	 */
+	private static final Set<TokenType> DECLARATION_SYNC = EnumSet.of(TokenType.SEMI, TokenType.CONST, TokenType.VAR,
+			TokenType.PROCEDURE, TokenType.BEGIN, TokenType.END);
+
+	/**
+	 * Tokens at which parsing resumes after an error in formal parameters
+	 */
+	private static final Set<TokenType> PARAMETER_SYNC = EnumSet.of(TokenType.RPAR, TokenType.CONST, TokenType.VAR,
+			TokenType.PROCEDURE, TokenType.BEGIN, TokenType.END);
+
+	/**
+	 * Tokens that may start a non-empty statement
+	 */
+	private static final Set<TokenType> STATEMENT_START = EnumSet.of(TokenType.ID, TokenType.IF, TokenType.WHILE,
+			TokenType.REPEAT, TokenType.FOR);
+
 	// Program -> DeclSequence BEGIN StatementSequence END .
 	@Override
 	public Program parseProgram() {
-		Position start = currentPosition;
+		int start = currentOffset();
+		Locator locator = currentLocator();
 
-		List<Declaration> constDecls = parseDeclSequence();
-		match(TokenType.BEGIN);
-		List<Statement> statements = parseStatementSequence();
-		match(TokenType.END);
-		match(TokenType.PERIOD);
-		matchEOF();
+		List<Declaration> declarations = parseDeclSequence(true);
+		List<Statement> statements = new ArrayList<>();
+		try {
+			expect(TokenType.BEGIN);
+			statements.addAll(parseStatementSequence(STATEMENT_SYNC));
+			while (recover && fill(current) && !willMatch(TokenType.END)) {
+				// Nothing encloses the main body, so a stray ELSIF, UNTIL, etc.
+				// can be dropped and the body resumed after it
+				expected(TokenType.END.toString());
+				current = current + 1;
+				fill(current);
+				statements.addAll(parseStatementSequence(STATEMENT_SYNC));
+			}
+			match(TokenType.END);
+			match(TokenType.PERIOD);
+			matchEOF();
+		} catch (ErrorLimitException e) {
+			// Reaching the limit ends the parse, even when recovering
+			throw e;
+		} catch (ParseException e) {
+			if (!recover) {
+				throw e;
+			}
+		}
 
-		return new Program(start, constDecls, statements);
+		Program program = new Program(start, locator, declarations, Collections.unmodifiableList(statements));
+		if (recover && errors > 0) {
+			throw new ParseException("Parsing failed with " + errors + " syntax error(s)", program);
+		}
+		return program;
 	}
 
-	// DeclSequence -> CONST ConstDeclSequence
-	// DeclSequence ->
+	// DeclSequence -> CONST ConstDeclSequence VAR VariableDeclSequence ProcedureDeclSequence
+	// DeclSequence -> CONST ConstDeclSequence ProcedureDeclSequence
+	// DeclSequence -> VAR VariableDeclSequence ProcedureDeclSequence
+	// DeclSequence -> ProcedureDeclSequence
 	//
 	// ConstDeclSequence -> ConstDecl ; ConstDeclSequence
 	// ConstDeclSequence ->
-	private List<Declaration> parseDeclSequence() {
+	//
+	// VariableDeclSequence -> VariableDecl ; VariableDeclSequence
+	// VariableDeclSequence ->
+	//
+	// ProcedureDeclSequence -> ProcedureDecl ; ProcedureDeclSequence
+	// ProcedureDeclSequence ->
+	private List<Declaration> parseDeclSequence(boolean topLevel) {
 		List<Declaration> declarations = new ArrayList<>();
 
-		if (willMatch(TokenType.CONST)) {
-			skip();
+		do {
+			if (willMatch(TokenType.CONST)) {
+				skip();
+
+				// FIRST(ConstDecl) = ID
+				while (willMatch(TokenType.ID)) {
+					addDeclaration(declarations, this::parseConstDecl);
+				}
+			}
 
-			// FIRST(ConstDecl) = ID
-			while (willMatch(TokenType.ID)) {
-				Declaration constDecl = parseConstDecl();
-				declarations.add(constDecl);
+			if (willMatch(TokenType.VAR)) {
+				skip();
 
-				match(TokenType.SEMI);
+				// FIRST(VariableDecl) = ID
+				while (willMatch(TokenType.ID)) {
+					addDeclaration(declarations, this::parseVariableDecl);
+				}
 			}
-		}
+
+			while (willMatch(TokenType.PROCEDURE)) {
+				addDeclaration(declarations, () -> parseProcedure(topLevel));
+			}
+		} while (recover && misplacedSection());
 
 		// Return a read-only view of the list of Declaration objects
 		return Collections.unmodifiableList(declarations);
 	}
 
-	// ConstDecl -> ident = number
-	private ConstDeclaration parseConstDecl() {
-		Position start = currentPosition;
+	/**
+	 * Parse a declaration and the ; after it, adding it to declarations. When
+	 * recovering, a broken declaration is dropped.
+	 * 
+	 * @param declarations
+	 * @param parser
+	 */
+	private void addDeclaration(List<Declaration> declarations, Supplier<Declaration> parser) {
+		try {
+			declarations.add(parser.get());
+			expect(TokenType.SEMI);
+		} catch (ErrorLimitException e) {
+			throw e;
+		} catch (ParseException e) {
+			if (!recover) {
+				throw e;
+			}
+			synchronize(DECLARATION_SYNC);
+			if (willMatch(TokenType.SEMI)) {
+				skip();
+			}
+		}
+	}
 
-		Token idTok = match(TokenType.ID);
-		Identifier id = new Identifier(idTok.getPosition(), idTok.getLexeme());
+	/**
+	 * When recovering, a CONST or VAR section out of order (perhaps where parsing
+	 * resumed after an error) is reported, and then parsed anyway.
+	 * 
+	 * @return true if there is another section to parse
+	 */
+	private boolean misplacedSection() {
+		if (willMatch(TokenType.CONST) || willMatch(TokenType.VAR)) {
+			expected(TokenType.BEGIN.toString());
+			return true;
+		}
+		return false;
+	}
 
+	// ConstDecl -> ident = ConstExpr
+	//
+	// ConstExpr -> Expression
+	private ConstDeclaration parseConstDecl() {
+		int start = currentOffset();
+		Locator locator = currentLocator();
+
+		Identifier id = parseIdentifier();
 		match(TokenType.EQ);
+		Expression value = parseExpression();
+
+		return new ConstDeclaration(start, locator, id, value);
+	}
+
+	// VariableDecl -> IdentList : Type
+	//
+	// Type -> ident
+	private VarDeclaration parseVariableDecl() {
+		int start = currentOffset();
+		Locator locator = currentLocator();
+
+		List<Identifier> ids = parseIdentList();
+		match(TokenType.COLON);
+		Identifier type = parseIdentifier();
+
+		return new VarDeclaration(start, locator, ids, type);
+	}
+
+	// IdentList -> ident IdentListRest
+	//
+	// IdentListRest -> , ident IdentListRest
+	// IdentListRest ->
+	private List<Identifier> parseIdentList() {
+		List<Identifier> ids = new ArrayList<>();
+		ids.add(parseIdentifier());
+		while (willMatch(TokenType.COMMA)) {
+			skip();
+			ids.add(parseIdentifier());
+		}
+		return Collections.unmodifiableList(ids);
+	}
+
+	private Identifier parseIdentifier() {
+		int idTok = match(TokenType.ID);
+		return new Identifier(tokens.getStart(idTok), tokens.getLocator(idTok), tokens.getLexeme(idTok),
+				tokens.getSymbolId(idTok));
+	}
+
+	/**
+	 * Parse the ProcedureDecl at the current token. IncrementalParser overrides
+	 * this to reuse the top-level procedures that have not been edited.
+	 * 
+	 * @param topLevel true if the procedure is declared by the Program itself,
+	 *                 rather than inside another procedure
+	 * @return the declaration
+	 */
+	ProcedureDeclaration parseProcedure(boolean topLevel) {
+		return parseProcedureDecl();
+	}
+
+	// ProcedureDecl -> ProcedureHead ; ProcedureBody ident
+	private ProcedureDeclaration parseProcedureDecl() {
+		int start = currentOffset();
+		Locator locator = currentLocator();
+
+		ProcedureHead head = parseProcedureHead();
+		expect(TokenType.SEMI);
+		ProcedureBody body = parseProcedureBody();
+
+		int idTok = expect(TokenType.ID);
+		if (idTok >= 0 && !tokens.getLexeme(idTok).equals(head.getId().getLexeme())) {
+			// Reported just after the identifier, as the reference parser does
+			errors = errors + 1;
+			errorLog.add("Mismatched closing identifier " + tokens.getLexeme(idTok), currentPosition());
+		}
+
+		return new ProcedureDeclaration(start, locator, head, body);
+	}
+
+	// ProcedureHead -> PROCEDURE ident FormalParameters
+	private ProcedureHead parseProcedureHead() {
+		int start = currentOffset();
+		Locator locator = currentLocator();
+
+		match(TokenType.PROCEDURE);
+		Identifier id = parseIdentifier();
+
+		int paramStart = currentOffset();
+		Locator paramLocator = currentLocator();
+		FormalParameters formalParameters;
+		try {
+			formalParameters = parseFormalParameters();
+		} catch (ErrorLimitException e) {
+			throw e;
+		} catch (ParseException e) {
+			if (!recover) {
+				throw e;
+			}
+			// Keep the procedure, without its parameters
+			synchronize(PARAMETER_SYNC);
+			if (willMatch(TokenType.RPAR)) {
+				skip();
+			}
+			formalParameters = new FormalParameters(paramStart, paramLocator, Collections.emptyList());
+		}
+
+		return new ProcedureHead(start, locator, id, formalParameters);
+	}
+
+	// FormalParameters -> ( FPSection FPSectionSequence )
+	// FormalParameters -> ( )
+	//
+	// FPSectionSequence -> ; FPSection FPSectionSequence
+	// FPSectionSequence ->
+	private FormalParameters parseFormalParameters() {
+		int start = currentOffset();
+		Locator locator = currentLocator();
+
+		List<FPSection> fpSections = new ArrayList<>();
+		match(TokenType.LPAR);
+		// Anything that cannot start an FPSection is reported as a missing )
+		if (willMatch(TokenType.ID)) {
+			fpSections.add(parseFPSection());
+			while (willMatch(TokenType.SEMI)) {
+				skip();
+				fpSections.add(parseFPSection());
+			}
+		}
+		match(TokenType.RPAR);
+
+		return new FormalParameters(start, locator, Collections.unmodifiableList(fpSections));
+	}
+
+	// FPSection -> IdentList : Type
+	private FPSection parseFPSection() {
+		int start = currentOffset();
+		Locator locator = currentLocator();
+
+		List<Identifier> ids = parseIdentList();
+		match(TokenType.COLON);
+		Identifier type = parseIdentifier();
+
+		return new FPSection(start, locator, ids, type);
+	}
+
+	// ProcedureBody -> DeclSequence BEGIN StatementSequence END
+	//
+	// The body is a new scope for the ExpressionFactory
+	private ProcedureBody parseProcedureBody() {
+		int start = currentOffset();
+		Locator locator = currentLocator();
 
-		Token numTok = match(TokenType.NUM);
-		NumValue num = new NumValue(numTok.getPosition(), numTok.getLexeme());
+		expressions.enterScope();
+		try {
+			List<Declaration> declarations = parseDeclSequence(false);
+			expect(TokenType.BEGIN);
+			if (lazyBodies) {
+				int first = current;
+				int end = findBodyEnd(first);
+				if (end >= 0) {
+					skipTo(end);
+					expect(TokenType.END);
+					// Only capture what the later parse needs, not this parser
+					TokenSequence tokens = this.tokens;
+					ErrorLog errorLog = lazyErrorLog != null ? lazyErrorLog : this.errorLog;
+					boolean recover = this.recover;
+					ExpressionFactory expressions = this.expressions;
+					return new LazyProcedureBody(start, locator, declarations,
+							() -> parseStatementsAt(tokens, errorLog, recover, expressions, first));
+				}
+			}
+			// A body missing its END should not swallow the main program
+			List<Statement> statements = parseStatementSequence(followedBy(STATEMENT_SYNC, TokenType.BEGIN));
+			expect(TokenType.END);
+
+			return new ProcedureBody(start, locator, declarations, statements);
+		} finally {
+			expressions.exitScope();
+		}
+	}
+
+	/**
+	 * Find the END of a procedure body by counting the IF, WHILE and FOR
+	 * statements that END also closes.
+	 * 
+	 * @param first the index of the token after BEGIN
+	 * @return the index of the END, or -1 if a token that cannot be part of a
+	 *         statement (or the end of file) comes first
+	 */
+	private int findBodyEnd(int first) {
+		// The number of structured statements not yet closed by END
+		int open = 0;
+		for (int i = first; fill(i); i++) {
+			switch (tokens.getType(i)) {
+			case IF:
+			case WHILE:
+			case FOR:
+				open = open + 1;
+				break;
+			case END:
+				if (open == 0) {
+					return i;
+				}
+				open = open - 1;
+				break;
+			case BEGIN:
+			case CONST:
+			case VAR:
+			case PROCEDURE:
+			case PERIOD:
+				return -1;
+			default:
+				break;
+			}
+		}
+		return -1;
+	}
 
-		return new ConstDeclaration(start, id, num);
+	/**
+	 * Parse the statements of a lazy procedure body, with a new parser reading
+	 * the same tokens and logging to the same ErrorLog.
+	 * 
+	 * @param tokens
+	 * @param errorLog
+	 * @param recover
+	 * @param expressions
+	 * @param first       the index of the token after BEGIN
+	 * @return the statements
+	 */
+	private static List<Statement> parseStatementsAt(TokenSequence tokens, ErrorLog errorLog, boolean recover,
+			ExpressionFactory expressions, int first) {
+		MyParser parser = new MyParser(tokens, errorLog);
+		parser.setErrorRecovery(recover);
+		parser.setExpressionFactory(expressions);
+		parser.reset(first);
+		expressions.enterScope();
+		try {
+			List<Statement> statements = parser.parseStatementSequence(followedBy(STATEMENT_SYNC, TokenType.BEGIN));
+			parser.expect(TokenType.END);
+			return statements;
+		} finally {
+			expressions.exitScope();
+		}
 	}
 
 	// StatementSequence -> Statement StatementSequenceRest
 	//
 	// StatementSequenceRest -> ; Statement StatementSequenceRest
 	// StatementSequenceRest ->
-	private List<Statement> parseStatementSequence() {
-		// TODO Auto-generated method stub
-		return null;
+	//
+	// The follow set holds the tokens where parsing may resume after an error in
+	// one of the statements: STATEMENT_SYNC plus whatever may end an enclosing
+	// statement sequence.
+	private List<Statement> parseStatementSequence(Set<TokenType> follow) {
+		List<Statement> statements = new ArrayList<>();
+		statements.add(parseStatementOrRecover(follow));
+		while (true) {
+			if (willMatch(TokenType.SEMI)) {
+				skip();
+			} else if (recover && fill(current) && STATEMENT_START.contains(tokens.getType(current))) {
+				// Carry on as if the ; had been there
+				expected(TokenType.SEMI.toString());
+			} else {
+				break;
+			}
+			statements.add(parseStatementOrRecover(follow));
+		}
+
+		// Return a read-only view of the list of Statement objects
+		return Collections.unmodifiableList(statements);
 	}
 
-	// TODO handle the rest of the grammar:
-	//
-	// Statement -> ProcedureCall
+	/**
+	 * Parse a statement; when recovering, a broken statement is replaced by an
+	 * EmptyStatement, and parsing resumes at the next token in follow.
+	 * 
+	 * @param follow
+	 * @return
+	 */
+	private Statement parseStatementOrRecover(Set<TokenType> follow) {
+		int start = currentOffset();
+		Locator locator = currentLocator();
+		try {
+			return parseStatement(follow);
+		} catch (ErrorLimitException e) {
+			throw e;
+		} catch (ParseException e) {
+			if (!recover) {
+				throw e;
+			}
+			synchronize(follow);
+			return new EmptyStatement(start, locator);
+		}
+	}
+
+	// Statement -> Assignment | ProcedureCall | IfStatement | WhileStatement | RepeatStatement | ForStatement
 	// Statement ->
+	private Statement parseStatement(Set<TokenType> follow) {
+		if (willMatch(TokenType.ID)) {
+			if (peek(1) == TokenType.LPAR) {
+				return parseProcedureCall();
+			} else {
+				return parseAssignment();
+			}
+		} else if (willMatch(TokenType.IF)) {
+			return parseIfStatement(follow);
+		} else if (willMatch(TokenType.WHILE)) {
+			return parseWhileStatement(follow);
+		} else if (willMatch(TokenType.REPEAT)) {
+			return parseRepeatStatement(follow);
+		} else if (willMatch(TokenType.FOR)) {
+			return parseForStatement(follow);
+		} else {
+			return new EmptyStatement(currentOffset(), currentLocator());
+		}
+	}
+
+	// Assignment -> ident := Expression
+	private Assignment parseAssignment() {
+		int start = currentOffset();
+		Locator locator = currentLocator();
+
+		Identifier id = parseIdentifier();
+		match(TokenType.ASSIGN);
+		Expression rhs = parseExpression();
+
+		return new Assignment(start, locator, id, rhs);
+	}
+
+	// ProcedureCall -> ident ActualParameters
+	private ProcedureCall parseProcedureCall() {
+		int start = currentOffset();
+		Locator locator = currentLocator();
+
+		Identifier procedureName = parseIdentifier();
+		List<Expression> arguments = parseActualParameters();
+
+		return new ProcedureCall(start, locator, procedureName, arguments);
+	}
+
+	// ActualParameters -> ( ExpList )
+	// ActualParameters -> ( )
 	//
-	// ProcedureCall -> ident ( Expression )
+	// ExpList -> Expression ExpListRest
 	//
-	// Expression -> + Term ExprRest
-	// Expression -> - Term ExprRest
-	// Expression -> Term ExprRest
+	// ExpListRest -> , Expression ExpListRest
+	// ExpListRest ->
+	private List<Expression> parseActualParameters() {
+		List<Expression> arguments = new ArrayList<>();
+		match(TokenType.LPAR);
+		if (!willMatch(TokenType.RPAR)) {
+			arguments.add(parseExpression());
+			while (willMatch(TokenType.COMMA)) {
+				skip();
+				arguments.add(parseExpression());
+			}
+		}
+		match(TokenType.RPAR);
+		return Collections.unmodifiableList(arguments);
+	}
+
+	// IfStatement -> IF Expression THEN StatementSequence ElsifThenSequence ELSE StatementSequence END
+	// IfStatement -> IF Expression THEN StatementSequence ElsifThenSequence END
 	//
-	// ExprRest -> AddOperator Term ExprRest
-	// ExprRest ->
+	// ElsifThenSequence -> ELSIF Expression THEN StatementSequence ElsifThenSequence
+	// ElsifThenSequence ->
+	private Statement parseIfStatement(Set<TokenType> follow) {
+		int start = currentOffset();
+		Locator locator = currentLocator();
+
+		List<Clause> clauses = new ArrayList<>();
+		Set<TokenType> clauseFollow = followedBy(follow, TokenType.ELSE);
+		match(TokenType.IF);
+		boolean complete = parseClause(clauses, TokenType.THEN, clauseFollow);
+		while (willMatch(TokenType.ELSIF)) {
+			skip();
+			complete = parseClause(clauses, TokenType.THEN, clauseFollow) && complete;
+		}
+
+		List<Statement> elseClause = Collections.emptyList();
+		if (willMatch(TokenType.ELSE)) {
+			skip();
+			elseClause = parseStatementSequence(follow);
+		}
+		expect(TokenType.END);
+
+		if (!complete) {
+			return new EmptyStatement(start, locator);
+		}
+		return new IfStatement(start, locator, Collections.unmodifiableList(clauses), elseClause);
+	}
+
+	// WhileStatement -> WHILE Expression DO StatementSequence ElsifDoSequence END
 	//
-	// AddOperator -> + | -
+	// ElsifDoSequence -> ELSIF Expression DO StatementSequence ElsifDoSequence
+	// ElsifDoSequence ->
+	private Statement parseWhileStatement(Set<TokenType> follow) {
+		int start = currentOffset();
+		Locator locator = currentLocator();
+
+		List<Clause> clauses = new ArrayList<>();
+		match(TokenType.WHILE);
+		boolean complete = parseClause(clauses, TokenType.DO, follow);
+		while (willMatch(TokenType.ELSIF)) {
+			skip();
+			complete = parseClause(clauses, TokenType.DO, follow) && complete;
+		}
+		expect(TokenType.END);
+
+		if (!complete) {
+			return new EmptyStatement(start, locator);
+		}
+		return new WhileStatement(start, locator, Collections.unmodifiableList(clauses));
+	}
+
+	/**
+	 * Parse a test, the given separator (THEN or DO), and a statement sequence,
+	 * adding them to clauses. When recovering from an error in the test, the
+	 * statements are still parsed (to keep track of the structure and report
+	 * their errors) but no clause is added.
+	 * 
+	 * @param clauses
+	 * @param separator
+	 * @param follow
+	 * @return true if the clause was added
+	 */
+	private boolean parseClause(List<Clause> clauses, TokenType separator, Set<TokenType> follow) {
+		Expression test = parseExpressionBefore(follow, separator);
+		expect(separator);
+		List<Statement> statements = parseStatementSequence(follow);
+		if (test == null) {
+			return false;
+		}
+		clauses.add(new Clause(test, statements));
+		return true;
+	}
+
+	// RepeatStatement -> REPEAT StatementSequence UNTIL Expression
+	private RepeatStatement parseRepeatStatement(Set<TokenType> follow) {
+		int start = currentOffset();
+		Locator locator = currentLocator();
+
+		match(TokenType.REPEAT);
+		List<Statement> body = parseStatementSequence(followedBy(follow, TokenType.UNTIL));
+		expect(TokenType.UNTIL);
+		Expression test = parseExpression();
+
+		return new RepeatStatement(start, locator, body, test);
+	}
+
+	// ForStatement -> FOR ident := Expression TO Expression BY ConstExpr DO StatementSequence END
+	// ForStatement -> FOR ident := Expression TO Expression DO StatementSequence END
+	private Statement parseForStatement(Set<TokenType> follow) {
+		int start = currentOffset();
+		Locator locator = currentLocator();
+
+		match(TokenType.FOR);
+		Identifier index = parseIdentifier();
+		match(TokenType.ASSIGN);
+		Expression from = parseExpressionBefore(follow, TokenType.TO);
+		expect(TokenType.TO);
+		Expression to = parseExpressionBefore(follow, TokenType.BY, TokenType.DO);
+		Optional<Expression> step = Optional.empty();
+		boolean complete = from != null && to != null;
+		if (willMatch(TokenType.BY)) {
+			skip();
+			Expression stepValue = parseExpressionBefore(follow, TokenType.DO);
+			step = Optional.ofNullable(stepValue);
+			complete = complete && stepValue != null;
+		}
+		expect(TokenType.DO);
+		List<Statement> body = parseStatementSequence(follow);
+		expect(TokenType.END);
+
+		if (!complete) {
+			return new EmptyStatement(start, locator);
+		}
+		return new ForStatement(start, locator, index, from, to, step, body);
+	}
+
+	/**
+	 * Parse an expression that should be followed by one of the given separators.
+	 * When recovering from an error in the expression, skip to a separator (or a
+	 * token in follow) and return null.
+	 * 
+	 * @param follow
+	 * @param separators
+	 * @return the Expression, or null if it had an error
+	 */
+	private Expression parseExpressionBefore(Set<TokenType> follow, TokenType... separators) {
+		try {
+			return parseExpression();
+		} catch (ErrorLimitException e) {
+			throw e;
+		} catch (ParseException e) {
+			if (!recover) {
+				throw e;
+			}
+			synchronize(followedBy(follow, separators));
+			return null;
+		}
+	}
+
+	// Expression -> SimpleExpr
+	// Expression -> SimpleExpr Relation SimpleExpr
+	//
+	// SimpleExpr -> + Term SimpleExprRest
+	// SimpleExpr -> - Term SimpleExprRest
+	// SimpleExpr -> Term SimpleExprRest
+	//
+	// SimpleExprRest -> AddOperator Term SimpleExprRest
+	// SimpleExprRest ->
 	//
 	// Term -> Factor TermRest
 	//
 	// TermRest -> MulOperator Factor TermRest
 	// TermRest ->
 	//
-	// MulOperator -> * | DIV | MOD
-	//
-	// Factor -> number | ident
+	// Factor -> number | string | TRUE | FALSE | ident
 	// Factor -> ( Expression )
+	// Factor -> ~ Factor
+	//
+	// Rather than by one method per rule, these are parsed by operator
+	// precedence, with the operands and pending operators on an explicit
+	// ExpressionStack, so that neither long nor deeply nested expressions use up
+	// the Java stack. The trees, start offsets and syntax errors are the same as
+	// parsing the rules by recursive descent.
+	private Expression parseExpression() {
+		ExpressionStack stack = expressionStack;
+		stack.clear();
+
+		// True at the start of a SimpleExpr, where a sign may appear
+		boolean signAllowed = true;
+		// True once the innermost Expression has its Relation
+		boolean relationSeen = false;
+
+		while (true) {
+			// Prefix operators and opening parentheses, up to a Factor
+			Expression operand = null;
+			while (operand == null) {
+				int start = currentOffset();
+				Locator locator = currentLocator();
+				TokenType type = peek(0);
+				if (signAllowed && type == TokenType.PLUS) {
+					skip();
+					stack.pushPrefix(UnaryOperation.OpType.PLUS, ExpressionStack.ADD, start, locator);
+				} else if (signAllowed && type == TokenType.MINUS) {
+					skip();
+					stack.pushPrefix(UnaryOperation.OpType.MINUS, ExpressionStack.ADD, start, locator);
+				} else if (type == TokenType.NOT) {
+					skip();
+					stack.pushPrefix(UnaryOperation.OpType.NOT, ExpressionStack.NOT, start, locator);
+				} else if (type == TokenType.LPAR) {
+					skip();
+					stack.pushParenthesis(start, locator, relationSeen);
+					relationSeen = false;
+					signAllowed = true;
+					continue;
+				} else {
+					operand = parseFactor();
+					stack.pushOperand(operand, start, locator);
+				}
+				signAllowed = false;
+			}
+
+			// Binary operators and closing parentheses, up to the next operand
+			while (true) {
+				TokenType type = peek(0);
+				int precedence = ExpressionStack.precedence(type);
+				if (precedence == ExpressionStack.RELATION && relationSeen) {
+					// Not part of this Expression
+					precedence = ExpressionStack.PARENTHESIS;
+				}
+
+				if (precedence != ExpressionStack.PARENTHESIS) {
+					stack.reduce(precedence, expressions);
+					skip();
+					stack.pushBinary(ExpressionStack.operator(type), precedence);
+					signAllowed = (precedence == ExpressionStack.RELATION);
+					relationSeen = relationSeen || signAllowed;
+					break;
+				}
+
+				stack.reduce(ExpressionStack.RELATION, expressions);
+				if (!stack.inParentheses()) {
+					return stack.popOperand();
+				}
+				match(TokenType.RPAR);
+				relationSeen = stack.popParenthesis();
+			}
+		}
+	}
+
+	// Relation -> = | # | < | <= | > | >=
+	private static RelationalOperation.OpType relation(TokenType type) {
+		if (type == null) {
+			return null;
+		}
+		switch (type) {
+		case EQ:
+			return RelationalOperation.OpType.EQ;
+		case NE:
+			return RelationalOperation.OpType.NE;
+		case LT:
+			return RelationalOperation.OpType.LT;
+		case LE:
+			return RelationalOperation.OpType.LE;
+		case GT:
+			return RelationalOperation.OpType.GT;
+		case GE:
+			return RelationalOperation.OpType.GE;
+		default:
+			return null;
+		}
+	}
+
+	// AddOperator -> + | - | OR
+	private static BinaryOperation.OpType addOperator(TokenType type) {
+		if (type == null) {
+			return null;
+		}
+		switch (type) {
+		case PLUS:
+			return BinaryOperation.OpType.PLUS;
+		case MINUS:
+			return BinaryOperation.OpType.MINUS;
+		case OR:
+			return BinaryOperation.OpType.OR;
+		default:
+			return null;
+		}
+	}
+
+	// MulOperator -> * | / | DIV | MOD | &
+	private static BinaryOperation.OpType mulOperator(TokenType type) {
+		if (type == null) {
+			return null;
+		}
+		switch (type) {
+		case TIMES:
+			return BinaryOperation.OpType.TIMES;
+		case DIVIDE:
+			return BinaryOperation.OpType.DIVIDE;
+		case DIV:
+			return BinaryOperation.OpType.DIV;
+		case MOD:
+			return BinaryOperation.OpType.MOD;
+		case AND:
+			return BinaryOperation.OpType.AND;
+		default:
+			return null;
+		}
+	}
+
+	// Factor -> number | string | TRUE | FALSE | ident
+	// (the other Factors are handled by parseExpression)
+	private Expression parseFactor() {
+		int start = currentOffset();
+		Locator locator = currentLocator();
+
+		TokenType type = peek(0);
+		if (type == null) {
+			throw expected(TokenType.LPAR.toString());
+		}
+		switch (type) {
+		case NUM:
+			int numTok = skip();
+			return expressions.makeNum(tokens.getStart(numTok), tokens.getLocator(numTok), tokens.getLexeme(numTok),
+					tokens.getIntValue(numTok), tokens.isReal(numTok));
+		case STRING:
+			int stringTok = skip();
+			return new StringValue(start, locator, tokens.getLexeme(stringTok));
+		case TRUE:
+			skip();
+			return new BooleanValue(start, locator, true);
+		case FALSE:
+			skip();
+			return new BooleanValue(start, locator, false);
+		case ID:
+			int idTok = skip();
+			return expressions.makeIdentifier(tokens.getStart(idTok), tokens.getLocator(idTok),
+					tokens.getLexeme(idTok), tokens.getSymbolId(idTok));
+		default:
+			// A ( would have started a parenthesized expression
+			throw expected(TokenType.LPAR.toString());
+		}
+	}
+
+	/**
+	 * The operands and pending operators of the expression being parsed by
+	 * parseExpression(). Each operand is kept with the offset (and Locator) of its
+	 * first token, which is where an operation with it as left operand starts;
+	 * for a parenthesized expression, that is the opening parenthesis. An
+	 * operator waits on the stack until one of no higher precedence, or the end
+	 * of the enclosing parentheses, shows that its right operand is complete.
+	 */
+	private static class ExpressionStack {
+		// Precedences; a sign has the precedence of an AddOperator, since it
+		// applies to the following Term
+		static final int PARENTHESIS = 0;
+		static final int RELATION = 1;
+		static final int ADD = 2;
+		static final int MUL = 3;
+		static final int NOT = 4;
+
+		// The binary operator for each TokenType, and its precedence (or
+		// PARENTHESIS if there is none)
+		private static final Enum<?>[] OPERATORS = new Enum<?>[TokenType.values().length];
+		private static final int[] PRECEDENCES = new int[TokenType.values().length];
+
+		static {
+			for (TokenType type : TokenType.values()) {
+				int i = type.ordinal();
+				if (mulOperator(type) != null) {
+					OPERATORS[i] = mulOperator(type);
+					PRECEDENCES[i] = MUL;
+				} else if (addOperator(type) != null) {
+					OPERATORS[i] = addOperator(type);
+					PRECEDENCES[i] = ADD;
+				} else if (relation(type) != null) {
+					OPERATORS[i] = relation(type);
+					PRECEDENCES[i] = RELATION;
+				}
+			}
+		}
+
+		/**
+		 * @param type the type of a token, or null at end of file
+		 * @return the precedence of the binary operator for type, or PARENTHESIS if
+		 *         it is not a binary operator
+		 */
+		static int precedence(TokenType type) {
+			return (type == null) ? PARENTHESIS : PRECEDENCES[type.ordinal()];
+		}
+
+		/**
+		 * @param type
+		 * @return the OpType of the binary operator for type
+		 */
+		static Enum<?> operator(TokenType type) {
+			return OPERATORS[type.ordinal()];
+		}
+
+		private Expression[] operands = new Expression[16];
+		private int[] operandStarts = new int[16];
+		private Locator[] operandLocators = new Locator[16];
+		private int operandCount;
+
+		// The OpType of each operator (null for a parenthesis), and its start for
+		// a prefix operator or parenthesis. For an operator, flag is true if it is
+		// prefix; for a parenthesis, it saves whether the enclosing Expression
+		// had its Relation.
+		private Enum<?>[] operators = new Enum<?>[16];
+		private int[] precedences = new int[16];
+		private int[] operatorStarts = new int[16];
+		private Locator[] operatorLocators = new Locator[16];
+		private boolean[] flags = new boolean[16];
+		private int operatorCount;
+
+		private int parentheses;
+
+		void clear() {
+			operandCount = 0;
+			operatorCount = 0;
+			parentheses = 0;
+		}
+
+		boolean inParentheses() {
+			return parentheses > 0;
+		}
+
+		void pushOperand(Expression operand, int start, Locator locator) {
+			if (operandCount == operands.length) {
+				int capacity = operandCount * 2;
+				operands = Arrays.copyOf(operands, capacity);
+				operandStarts = Arrays.copyOf(operandStarts, capacity);
+				operandLocators = Arrays.copyOf(operandLocators, capacity);
+			}
+			operands[operandCount] = operand;
+			operandStarts[operandCount] = start;
+			operandLocators[operandCount] = locator;
+			operandCount = operandCount + 1;
+		}
+
+		Expression popOperand() {
+			operandCount = operandCount - 1;
+			return operands[operandCount];
+		}
+
+		void pushPrefix(UnaryOperation.OpType operator, int precedence, int start, Locator locator) {
+			pushOperator(operator, precedence, start, locator, true);
+		}
+
+		void pushBinary(Enum<?> operator, int precedence) {
+			pushOperator(operator, precedence, 0, null, false);
+		}
+
+		void pushParenthesis(int start, Locator locator, boolean relationSeen) {
+			pushOperator(null, PARENTHESIS, start, locator, relationSeen);
+			parentheses = parentheses + 1;
+		}
+
+		/**
+		 * Remove the parenthesis on top of the operator stack, whose contents have
+		 * been reduced to the operand on top, and move the start of that operand to
+		 * the parenthesis.
+		 * 
+		 * @return whether the enclosing Expression had its Relation
+		 */
+		boolean popParenthesis() {
+			operatorCount = operatorCount - 1;
+			parentheses = parentheses - 1;
+			operandStarts[operandCount - 1] = operatorStarts[operatorCount];
+			operandLocators[operandCount - 1] = operatorLocators[operatorCount];
+			return flags[operatorCount];
+		}
+
+		private void pushOperator(Enum<?> operator, int precedence, int start, Locator locator, boolean flag) {
+			if (operatorCount == operators.length) {
+				int capacity = operatorCount * 2;
+				operators = Arrays.copyOf(operators, capacity);
+				precedences = Arrays.copyOf(precedences, capacity);
+				operatorStarts = Arrays.copyOf(operatorStarts, capacity);
+				operatorLocators = Arrays.copyOf(operatorLocators, capacity);
+				flags = Arrays.copyOf(flags, capacity);
+			}
+			operators[operatorCount] = operator;
+			precedences[operatorCount] = precedence;
+			operatorStarts[operatorCount] = start;
+			operatorLocators[operatorCount] = locator;
+			flags[operatorCount] = flag;
+			operatorCount = operatorCount + 1;
+		}
+
+		/**
+		 * Apply the operators on top of the stack, back to the nearest parenthesis,
+		 * that have at least the given precedence, making the new nodes with the
+		 * given factory.
+		 * 
+		 * @param precedence
+		 * @param factory
+		 */
+		void reduce(int precedence, ExpressionFactory factory) {
+			while (operatorCount > 0 && precedences[operatorCount - 1] >= precedence
+					&& precedences[operatorCount - 1] != PARENTHESIS) {
+				operatorCount = operatorCount - 1;
+				Enum<?> operator = operators[operatorCount];
+				Expression right = popOperand();
+				if (flags[operatorCount]) {
+					pushOperand(factory.makeUnary(operatorStarts[operatorCount], operatorLocators[operatorCount],
+							(UnaryOperation.OpType) operator, right), operatorStarts[operatorCount],
+							operatorLocators[operatorCount]);
+				} else {
+					// The operation starts where its left operand does, which stays put
+					int start = operandStarts[operandCount - 1];
+					Locator locator = operandLocators[operandCount - 1];
+					Expression left = operands[operandCount - 1];
+					if (precedences[operatorCount] == RELATION) {
+						operands[operandCount - 1] = factory.makeRelational(start, locator, left,
+								(RelationalOperation.OpType) operator, right);
+					} else {
+						operands[operandCount - 1] = factory.makeBinary(start, locator, left,
+								(BinaryOperation.OpType) operator, right);
+					}
+				}
+			}
+		}
+	}
 }
@@ -0,0 +1,263 @@
+package edu.depauw.declan.main;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+import edu.depauw.declan.common.CharSequenceSource;
+import edu.depauw.declan.common.ErrorLog;
+import edu.depauw.declan.common.LineMap;
+import edu.depauw.declan.common.Position;
+import edu.depauw.declan.common.SymbolInterner;
+import edu.depauw.declan.common.TokenBuffer;
+
+/**
+ * A ParallelLexer lexes a large text (normally the contents of a
+ * MappedFileSource) on a ForkJoinPool, producing exactly the tokens and errors
+ * that a single TableLexer would.
+ * 
+ * A first parallel pass finds the newlines, to build the LineMap and to split
+ * the text into chunks at line starts. Each chunk is then lexed speculatively,
+ * as if the lexer were in its start state at the beginning of the chunk, with
+ * its own SymbolInterner and ErrorLog. That guess is wrong when a chunk starts
+ * inside a comment or string (or a token), so the chunks are stitched
+ * together in order by a sequential lexer that runs only until it starts a
+ * token at the same offset as one of the chunk's tokens: both runs are in the
+ * start state there, so the rest of the chunk can be taken as it is. Usually
+ * this takes no more than one token per chunk; in the worst case (such as a
+ * comment running through several chunks) the sequential lexer covers the
+ * whole range itself.
+ */
+public class ParallelLexer {
+	/**
+	 * Default number of characters in each chunk.
+	 */
+	public static final int DEFAULT_CHUNK_SIZE = 1 << 16;
+
+	private ForkJoinPool pool;
+	private int chunkSize;
+
+	/**
+	 * Construct a ParallelLexer using the common ForkJoinPool and the default
+	 * chunk size.
+	 */
+	public ParallelLexer() {
+		this(ForkJoinPool.commonPool(), DEFAULT_CHUNK_SIZE);
+	}
+
+	/**
+	 * Construct a ParallelLexer that runs on the given pool, splitting its input
+	 * into chunks of about chunkSize characters.
+	 * 
+	 * @param pool
+	 * @param chunkSize
+	 */
+	public ParallelLexer(ForkJoinPool pool, int chunkSize) {
+		this.pool = pool;
+		this.chunkSize = chunkSize;
+	}
+
+	/**
+	 * The speculative result of lexing one chunk: tokens starting from start up
+	 * to (but not including) end, where end is the start of the first token at
+	 * or after the beginning of the next chunk, or the length of the text.
+	 */
+	private static class Chunk {
+		int start;
+		int end;
+		TokenBuffer tokens;
+		ErrorLog errorLog;
+	}
+
+	/**
+	 * Lex all of the given text. Identifiers are interned in the given
+	 * SymbolInterner and errors are added to the given ErrorLog, in the same way
+	 * as by TableLexer.lexAll().
+	 * 
+	 * @param text
+	 * @param errorLog
+	 * @param symbols
+	 * @return the tokens, with a LineMap for the whole text as their Locator
+	 */
+	public TokenBuffer lex(CharSequence text, ErrorLog errorLog, SymbolInterner symbols) {
+		int length = text.length();
+		LineMap lineMap = mapLines(text);
+
+		// Start each chunk at a line start, where it is most likely that the
+		// lexer is in its start state
+		List<Integer> starts = new ArrayList<>();
+		starts.add(0);
+		for (int target = chunkSize; target < length; target += chunkSize) {
+			int line = lineMap.getLine(target);
+			if (lineMap.getLineStart(line) < target && line < lineMap.getLineCount()) {
+				line = line + 1;
+			}
+			int start = lineMap.getLineStart(line);
+			if (start > starts.get(starts.size() - 1) && start < length) {
+				starts.add(start);
+			}
+		}
+
+		List<ForkJoinTask<Chunk>> tasks = new ArrayList<>();
+		for (int i = 0; i < starts.size(); i++) {
+			int start = starts.get(i);
+			int limit = (i + 1 < starts.size()) ? starts.get(i + 1) : length;
+			tasks.add(pool.submit(() -> lexChunk(text, lineMap, start, limit)));
+		}
+		Chunk[] chunks = new Chunk[tasks.size()];
+		for (int i = 0; i < chunks.length; i++) {
+			chunks[i] = tasks.get(i).join();
+		}
+
+		return stitch(text, lineMap, chunks, errorLog, symbols);
+	}
+
+	/**
+	 * Find the start of every line of the text, scanning slices of it in
+	 * parallel.
+	 * 
+	 * @param text
+	 * @return
+	 */
+	LineMap mapLines(CharSequence text) {
+		int length = text.length();
+		List<ForkJoinTask<int[]>> tasks = new ArrayList<>();
+		for (int from = 0; from < length; from += chunkSize) {
+			int start = from;
+			int end = Math.min(from + chunkSize, length);
+			tasks.add(pool.submit(() -> findNewlines(text, start, end)));
+		}
+
+		LineMap lineMap = new LineMap();
+		for (ForkJoinTask<int[]> task : tasks) {
+			int[] newlines = task.join();
+			// newlines[0] holds the count
+			for (int i = 1; i <= newlines[0]; i++) {
+				lineMap.addLineStart(newlines[i] + 1);
+			}
+		}
+		return lineMap;
+	}
+
+	/**
+	 * @param text
+	 * @param start
+	 * @param end
+	 * @return an array whose first element is the number n of newlines in
+	 *         text[start..end), followed by their n offsets
+	 */
+	private static int[] findNewlines(CharSequence text, int start, int end) {
+		int[] result = new int[64];
+		int count = 0;
+		for (int i = start; i < end; i++) {
+			if (text.charAt(i) == '\n') {
+				count = count + 1;
+				if (count == result.length) {
+					result = Arrays.copyOf(result, count * 2);
+				}
+				result[count] = i;
+			}
+		}
+		result[0] = count;
+		return result;
+	}
+
+	private static Chunk lexChunk(CharSequence text, LineMap lineMap, int start, int limit) {
+		Chunk chunk = new Chunk();
+		chunk.start = start;
+		chunk.end = text.length();
+		chunk.errorLog = new ErrorLog();
+		chunk.tokens = new TokenBuffer(lineMap, new SymbolInterner());
+
+		TableLexer lexer = new TableLexer(new CharSequenceSource(text, start, lineMap), chunk.errorLog,
+				chunk.tokens.getSymbolInterner());
+		while (lexer.scanInto(chunk.tokens)) {
+			int last = chunk.tokens.size() - 1;
+			if (chunk.tokens.getStart(last) >= limit) {
+				// This token belongs to the next chunk
+				chunk.end = chunk.tokens.getStart(last);
+				chunk.tokens.truncate(last);
+				break;
+			}
+		}
+		return chunk;
+	}
+
+	/**
+	 * Join the chunks into one TokenBuffer, relexing sequentially wherever a
+	 * chunk's speculative start state was wrong.
+	 */
+	private static TokenBuffer stitch(CharSequence text, LineMap lineMap, Chunk[] chunks, ErrorLog errorLog,
+			SymbolInterner symbols) {
+		TokenBuffer result = new TokenBuffer(lineMap, symbols);
+		int length = text.length();
+
+		// When lexer is null, the sequential lexer would be in its start state at
+		// pos, and all tokens before pos are in result
+		int pos = 0;
+		TableLexer lexer = null;
+		while (lexer != null || pos < length) {
+			if (lexer == null) {
+				Chunk chunk = chunkAt(chunks, pos);
+				int j = chunk.tokens.indexAtOrAfter(pos);
+				if (j < chunk.tokens.size() && chunk.tokens.getStart(j) == pos) {
+					pos = accept(result, chunk, j, errorLog);
+					continue;
+				}
+				lexer = new TableLexer(new CharSequenceSource(text, pos, lineMap), errorLog, symbols);
+			}
+
+			if (!lexer.scanInto(result)) {
+				break;
+			}
+
+			int last = result.size() - 1;
+			int start = result.getStart(last);
+			Chunk chunk = chunkAt(chunks, start);
+			int j = chunk.tokens.indexAtOrAfter(start);
+			if (j < chunk.tokens.size() && chunk.tokens.getStart(j) == start) {
+				// Back in step with the chunk; take the rest of it as lexed
+				result.truncate(last);
+				pos = accept(result, chunk, j, errorLog);
+				lexer = null;
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * @return the last chunk starting at or before the given offset
+	 */
+	private static Chunk chunkAt(Chunk[] chunks, int offset) {
+		int low = 0;
+		int high = chunks.length - 1;
+		while (low < high) {
+			int mid = (low + high + 1) >>> 1;
+			if (chunks[mid].start <= offset) {
+				low = mid;
+			} else {
+				high = mid - 1;
+			}
+		}
+		return chunks[low];
+	}
+
+	/**
+	 * Copy the tokens of the chunk from index j on, and its errors at or after
+	 * the start of token j, into the result.
+	 * 
+	 * @return the end of the chunk
+	 */
+	private static int accept(TokenBuffer result, Chunk chunk, int j, ErrorLog errorLog) {
+		Position from = chunk.tokens.getPosition(j);
+		for (ErrorLog.LogItem item : chunk.errorLog) {
+			if (item.getPosition().compareTo(from) >= 0) {
+				errorLog.add(item.getMessage(), item.getPosition());
+			}
+		}
+		result.addRange(chunk.tokens, j, chunk.tokens.size(), 0);
+		return chunk.end;
+	}
+}
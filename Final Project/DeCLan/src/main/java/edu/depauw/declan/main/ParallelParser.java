@@ -0,0 +1,223 @@
+package edu.depauw.declan.main;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+import edu.depauw.declan.common.ErrorLog;
+import edu.depauw.declan.common.ParseException;
+import edu.depauw.declan.common.TokenSequence;
+import edu.depauw.declan.common.TokenType;
+import edu.depauw.declan.common.ast.ProcedureDeclaration;
+import edu.depauw.declan.common.ast.Program;
+
+/**
+ * A ParallelParser parses the top-level procedure declarations of a program on
+ * a ForkJoinPool, producing exactly the Program and errors that a sequential
+ * MyParser would.
+ * 
+ * A quick pre-scan of the tokens finds where each top-level procedure starts,
+ * by counting PROCEDURE, IF, WHILE and FOR against the ENDs that close them,
+ * up to the BEGIN of the main body. Batches of these procedures are then
+ * parsed speculatively, each with its own ErrorLog, while the program itself
+ * is parsed as usual on the calling thread. When that parse reaches a
+ * top-level procedure that was parsed speculatively without errors, it takes
+ * the result and skips to the end of the procedure; parsing a procedure only
+ * depends on its own tokens, so this is the same tree the sequential parser
+ * would build. Any other procedure (where the pre-scan guessed wrong, or that
+ * has errors) is parsed again in sequence, so every error is logged by this
+ * parser in its usual order. The statements of a lazy procedure body are only
+ * parsed later, so a speculative parse has them log to this parser's ErrorLog.
+ * 
+ * An ExpressionFactory may only be used by one parser at a time, so the
+ * speculative parses always use a PlainExpressionFactory; one set with
+ * setExpressionFactory() only makes the nodes that this parser builds itself.
+ */
+public class ParallelParser extends MyParser {
+	/**
+	 * Default number of tokens of procedures in each batch.
+	 */
+	public static final int DEFAULT_BATCH_SIZE = 1 << 14;
+
+	private final TokenSequence tokens;
+	private final ErrorLog errorLog;
+	private final ForkJoinPool pool;
+	private final int batchSize;
+	private boolean recover;
+	private boolean lazyBodies;
+
+	/**
+	 * The index of the first token of each top-level procedure found by the
+	 * pre-scan, in order
+	 */
+	private int[] starts;
+
+	/**
+	 * The speculative result for each procedure in starts (null if it had
+	 * errors), valid once the corresponding task has been joined
+	 */
+	private Speculation[] results;
+	private ForkJoinTask<?>[] tasks;
+
+	private int accepted;
+
+	/**
+	 * Construct a ParallelParser for an already-filled TokenSequence, using the
+	 * common ForkJoinPool and the default batch size.
+	 * 
+	 * @param tokens
+	 * @param errorLog
+	 */
+	public ParallelParser(TokenSequence tokens, ErrorLog errorLog) {
+		this(tokens, errorLog, ForkJoinPool.commonPool(), DEFAULT_BATCH_SIZE);
+	}
+
+	/**
+	 * Construct a ParallelParser that runs on the given pool, parsing procedures
+	 * in batches of about batchSize tokens.
+	 * 
+	 * @param tokens
+	 * @param errorLog
+	 * @param pool
+	 * @param batchSize
+	 */
+	public ParallelParser(TokenSequence tokens, ErrorLog errorLog, ForkJoinPool pool, int batchSize) {
+		super(tokens, errorLog);
+		this.tokens = tokens;
+		this.errorLog = errorLog;
+		this.pool = pool;
+		this.batchSize = batchSize;
+		this.recover = false;
+		this.lazyBodies = false;
+	}
+
+	@Override
+	public void setErrorRecovery(boolean recover) {
+		super.setErrorRecovery(recover);
+		this.recover = recover;
+	}
+
+	@Override
+	public void setLazyBodies(boolean lazyBodies) {
+		super.setLazyBodies(lazyBodies);
+		this.lazyBodies = lazyBodies;
+	}
+
+	/**
+	 * @return the number of procedures taken from the speculative parses
+	 */
+	int getAcceptedCount() {
+		return accepted;
+	}
+
+	@Override
+	public Program parseProgram() {
+		starts = findProcedures(tokens);
+		results = new Speculation[starts.length];
+		tasks = new ForkJoinTask<?>[starts.length];
+		accepted = 0;
+
+		int from = 0;
+		while (from < starts.length) {
+			int to = from + 1;
+			while (to < starts.length && starts[to] - starts[from] < batchSize) {
+				to = to + 1;
+			}
+			int first = from;
+			int last = to;
+			ForkJoinTask<?> task = pool.submit(() -> speculate(first, last));
+			Arrays.fill(tasks, from, to, task);
+			from = to;
+		}
+
+		return super.parseProgram();
+	}
+
+	@Override
+	ProcedureDeclaration parseProcedure(boolean topLevel) {
+		if (topLevel) {
+			int i = Arrays.binarySearch(starts, mark());
+			if (i >= 0) {
+				tasks[i].join();
+				Speculation speculation = results[i];
+				if (speculation != null) {
+					skipTo(speculation.end);
+					accepted = accepted + 1;
+					return speculation.declaration;
+				}
+			}
+		}
+		return super.parseProcedure(topLevel);
+	}
+
+	/**
+	 * Parse procedures from..to-1 of starts, keeping the ones without errors.
+	 */
+	private void speculate(int from, int to) {
+		MyParser parser = new MyParser(tokens, new ErrorLog());
+		parser.setErrorRecovery(recover);
+		parser.setLazyBodies(lazyBodies);
+		parser.setLazyErrorLog(errorLog);
+		for (int i = from; i < to; i++) {
+			parser.reset(starts[i]);
+			int errorsBefore = parser.getErrorCount();
+			try {
+				ProcedureDeclaration declaration = parser.parseProcedure(true);
+				if (parser.getErrorCount() == errorsBefore) {
+					results[i] = new Speculation(declaration, parser.mark());
+				}
+			} catch (ParseException e) {
+				// Leave it for the sequential parse to report
+			}
+		}
+	}
+
+	/**
+	 * Find the first token of each top-level procedure, assuming the program is
+	 * well-formed.
+	 * 
+	 * @param tokens
+	 * @return the indices of the PROCEDURE tokens, in order
+	 */
+	static int[] findProcedures(TokenSequence tokens) {
+		int[] result = new int[16];
+		int count = 0;
+
+		// The number of PROCEDUREs and structured statements not yet closed by END
+		int open = 0;
+		for (int i = 0; i < tokens.size(); i++) {
+			TokenType type = tokens.getType(i);
+			if (type == TokenType.PROCEDURE) {
+				if (open == 0) {
+					if (count == result.length) {
+						result = Arrays.copyOf(result, count * 2);
+					}
+					result[count] = i;
+					count = count + 1;
+				}
+				open = open + 1;
+			} else if (type == TokenType.IF || type == TokenType.WHILE || type == TokenType.FOR) {
+				open = open + 1;
+			} else if (type == TokenType.END) {
+				open = Math.max(open - 1, 0);
+			} else if (type == TokenType.BEGIN && open == 0) {
+				// The main body; no more declarations
+				break;
+			}
+		}
+		return Arrays.copyOf(result, count);
+	}
+
+	/**
+	 * A procedure parsed without errors, which ended just before token end.
+	 */
+	private static class Speculation {
+		private final ProcedureDeclaration declaration;
+		private final int end;
+
+		Speculation(ProcedureDeclaration declaration, int end) {
+			this.declaration = declaration;
+			this.end = end;
+		}
+	}
+}
@@ -2,6 +2,7 @@ package edu.depauw.declan.main;
 
 import java.util.Properties;
 
+import edu.depauw.declan.common.ErrorLimitException;
 import edu.depauw.declan.common.ErrorLog;
 import edu.depauw.declan.common.Lexer;
 import edu.depauw.declan.common.Token;
@@ -48,6 +49,8 @@ public class Project1 {
 				Token token = lexer.next();
 				System.out.println(token);
 			}
+		} catch (ErrorLimitException ele) {
+			System.err.println(ele.getMessage());
 		}
 		
 		for (ErrorLog.LogItem item : config.getErrorLog()) {
@@ -0,0 +1,228 @@
+package edu.depauw.declan.main;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import edu.depauw.declan.common.ast.Assignment;
+import edu.depauw.declan.common.ast.Clause;
+import edu.depauw.declan.common.ast.Declaration;
+import edu.depauw.declan.common.ast.EmptyStatement;
+import edu.depauw.declan.common.ast.ForStatement;
+import edu.depauw.declan.common.ast.IfStatement;
+import edu.depauw.declan.common.ast.ProcedureCall;
+import edu.depauw.declan.common.ast.ProcedureDeclaration;
+import edu.depauw.declan.common.ast.Program;
+import edu.depauw.declan.common.ast.RepeatStatement;
+import edu.depauw.declan.common.ast.Statement;
+import edu.depauw.declan.common.ast.StatementVisitor;
+import edu.depauw.declan.common.ast.WhileStatement;
+
+/**
+ * Find the procedures of a Program that can be called, directly or indirectly,
+ * from its main body. Only the bodies of reachable procedures are looked into,
+ * so with lazily parsed bodies (see MyParser.setLazyBodies()) the statements
+ * of dead procedures are never parsed.
+ * 
+ * A call refers to the nearest procedure of that name declared in an enclosing
+ * scope: the body of the calling procedure, then the procedures around it, and
+ * finally the program. Since expressions cannot call procedures in this
+ * subset, only ProcedureCall statements are followed.
+ */
+public class ReachableProcedures {
+	private final Set<ProcedureDeclaration> reachable;
+	private final List<ProcedureDeclaration> unreachable;
+
+	/**
+	 * Find the reachable procedures of the given program.
+	 * 
+	 * @param program
+	 */
+	public ReachableProcedures(Program program) {
+		this.reachable = new LinkedHashSet<>();
+
+		// Procedures whose bodies have yet to be searched, each with its scope
+		Deque<Scope> pending = new ArrayDeque<>();
+		Scope global = new Scope(null, program.getDeclarations());
+		searchCalls(global, program.getStatements(), pending);
+		while (!pending.isEmpty()) {
+			Scope scope = pending.pop();
+			searchCalls(scope, scope.procedure.getBody().getStatements(), pending);
+		}
+
+		this.unreachable = new ArrayList<>();
+		collectUnreachable(program.getDeclarations());
+	}
+
+	/**
+	 * @return the procedures that may be called, in the order they were found
+	 */
+	public Set<ProcedureDeclaration> getReachable() {
+		return reachable;
+	}
+
+	/**
+	 * @return the procedures that can never be called, in source order (a
+	 *         procedure nested in a dead one is not listed separately)
+	 */
+	public List<ProcedureDeclaration> getUnreachable() {
+		return unreachable;
+	}
+
+	/**
+	 * @param procedure
+	 * @return true if the procedure may be called
+	 */
+	public boolean isReachable(ProcedureDeclaration procedure) {
+		return reachable.contains(procedure);
+	}
+
+	private void searchCalls(Scope scope, Collection<Statement> statements, Deque<Scope> pending) {
+		List<String> names = new ArrayList<>();
+		CallCollector collector = new CallCollector(names);
+		for (Statement statement : statements) {
+			statement.acceptResult(collector);
+		}
+		for (String name : names) {
+			Scope callee = scope.lookup(name);
+			if (callee != null && reachable.add(callee.procedure)) {
+				pending.push(callee);
+			}
+		}
+	}
+
+	private void collectUnreachable(List<Declaration> declarations) {
+		for (Declaration declaration : declarations) {
+			if (declaration instanceof ProcedureDeclaration) {
+				ProcedureDeclaration procedure = (ProcedureDeclaration) declaration;
+				if (reachable.contains(procedure)) {
+					collectUnreachable(procedure.getBody().getDeclarations());
+				} else {
+					unreachable.add(procedure);
+				}
+			}
+		}
+	}
+
+	/**
+	 * The procedures declared in one declaration sequence, together with the
+	 * procedure whose body it is (null for the program).
+	 */
+	private static class Scope {
+		private final Scope parent;
+		private final ProcedureDeclaration procedure;
+		private final List<Declaration> declarations;
+		private Map<String, ProcedureDeclaration> procedures;
+
+		Scope(Scope parent, List<Declaration> declarations) {
+			this(parent, null, declarations);
+		}
+
+		Scope(Scope parent, ProcedureDeclaration procedure, List<Declaration> declarations) {
+			this.parent = parent;
+			this.procedure = procedure;
+			this.declarations = declarations;
+			this.procedures = null;
+		}
+
+		/**
+		 * @param name
+		 * @return the scope of the body of the procedure the name refers to, or
+		 *         null if it is not a declared procedure (such as PrintInt)
+		 */
+		Scope lookup(String name) {
+			for (Scope scope = this; scope != null; scope = scope.parent) {
+				ProcedureDeclaration found = scope.procedures().get(name);
+				if (found != null) {
+					// The callee's body is nested in the scope declaring it
+					return new Scope(scope, found, found.getBody().getDeclarations());
+				}
+			}
+			return null;
+		}
+
+		private Map<String, ProcedureDeclaration> procedures() {
+			if (procedures == null) {
+				procedures = new HashMap<>();
+				for (Declaration declaration : declarations) {
+					if (declaration instanceof ProcedureDeclaration) {
+						ProcedureDeclaration procedure = (ProcedureDeclaration) declaration;
+						procedures.putIfAbsent(procedure.getHead().getId().getLexeme(), procedure);
+					}
+				}
+			}
+			return procedures;
+		}
+	}
+
+	/**
+	 * Collects the names of the procedures called by a statement, including in
+	 * the statements nested in it.
+	 */
+	private static class CallCollector implements StatementVisitor<Void> {
+		private final List<String> names;
+
+		CallCollector(List<String> names) {
+			this.names = names;
+		}
+
+		private void visitAll(List<Statement> statements) {
+			for (Statement statement : statements) {
+				statement.acceptResult(this);
+			}
+		}
+
+		@Override
+		public Void visitResult(EmptyStatement emptyStatement) {
+			return null;
+		}
+
+		@Override
+		public Void visitResult(ProcedureCall procedureCall) {
+			names.add(procedureCall.getProcedureName().getLexeme());
+			return null;
+		}
+
+		@Override
+		public Void visitResult(Assignment assignment) {
+			return null;
+		}
+
+		@Override
+		public Void visitResult(IfStatement ifStatement) {
+			for (Clause clause : ifStatement.getClauses()) {
+				visitAll(clause.getStatements());
+			}
+			if (ifStatement.getElseClause() != null) {
+				visitAll(ifStatement.getElseClause());
+			}
+			return null;
+		}
+
+		@Override
+		public Void visitResult(WhileStatement whileStatement) {
+			for (Clause clause : whileStatement.getClauses()) {
+				visitAll(clause.getStatements());
+			}
+			return null;
+		}
+
+		@Override
+		public Void visitResult(RepeatStatement repeatStatement) {
+			visitAll(repeatStatement.getBody());
+			return null;
+		}
+
+		@Override
+		public Void visitResult(ForStatement forStatement) {
+			visitAll(forStatement.getBody());
+			return null;
+		}
+	}
+}
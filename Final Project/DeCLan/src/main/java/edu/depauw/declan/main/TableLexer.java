@@ -0,0 +1,487 @@
+package edu.depauw.declan.main;
+
+import static edu.depauw.declan.main.LexerTables.*;
+
+import java.util.NoSuchElementException;
+
+import edu.depauw.declan.common.CharRun;
+import edu.depauw.declan.common.ErrorLog;
+import edu.depauw.declan.common.Lexer;
+import edu.depauw.declan.common.LexerCursor;
+import edu.depauw.declan.common.LineMap;
+import edu.depauw.declan.common.Locator;
+import edu.depauw.declan.common.NumLiteral;
+import edu.depauw.declan.common.ReservedWords;
+import edu.depauw.declan.common.Source;
+import edu.depauw.declan.common.SymbolInterner;
+import edu.depauw.declan.common.Token;
+import edu.depauw.declan.common.TokenBuffer;
+import edu.depauw.declan.common.TokenType;
+
+/**
+ * A complete DeCLan lexer (including hexadecimal and real literals and nested
+ * comments) that runs the DFA in LexerTables instead of a hand-written switch.
+ * Each character costs one lookup in CHAR_CLASS (for ASCII) and one in NEXT;
+ * the per-state action is only consulted when a token ends. Tokens and error
+ * messages are the same as those of the reference lexer.
+ */
+public class TableLexer implements Lexer {
+	/**
+	 * The CharRun, if any, that each state loops on, so that the source may skip
+	 * it in bulk instead of running the DFA on each character. Runs are tried
+	 * from the largest down; one only applies if every character in it leads
+	 * back to the same state.
+	 */
+	private static final CharRun[] RUNS = new CharRun[NUM_STATES];
+
+	static {
+		CharRun[] candidates = { CharRun.COMMENT_TEXT, CharRun.WORD, CharRun.DIGITS, CharRun.WHITESPACE };
+		for (int state = 0; state < NUM_STATES; state++) {
+			for (CharRun run : candidates) {
+				if (loopsOn(state, run)) {
+					RUNS[state] = run;
+					break;
+				}
+			}
+		}
+	}
+
+	private Source source;
+	private ErrorLog errorLog;
+	private SymbolInterner symbols;
+	private LineMap lineMap;
+	private StringBuilder lexeme;
+	private Token nextToken;
+
+	/**
+	 * When not null, tokens are appended to this buffer instead of being stored in
+	 * nextToken.
+	 */
+	private TokenBuffer buffer;
+
+	/**
+	 * When not null (and buffer is null), tokens are stored in the fields of this
+	 * cursor instead of in nextToken.
+	 */
+	private Cursor cursor;
+
+	/**
+	 * Construct a Lexer that will read characters from the given Source and log any
+	 * error messages in the given ErrorLog.
+	 * 
+	 * @param source
+	 * @param errorLog
+	 */
+	public TableLexer(Source source, ErrorLog errorLog) {
+		this(source, errorLog, new SymbolInterner());
+	}
+
+	/**
+	 * Construct a Lexer that will read characters from the given Source, log any
+	 * error messages in the given ErrorLog, and intern identifier names in the
+	 * given SymbolInterner.
+	 * 
+	 * @param source
+	 * @param errorLog
+	 * @param symbols
+	 */
+	public TableLexer(Source source, ErrorLog errorLog, SymbolInterner symbols) {
+		this.source = source;
+		this.errorLog = errorLog;
+		this.symbols = symbols;
+		this.lineMap = source.getLineMap();
+		this.lexeme = new StringBuilder();
+		this.nextToken = null;
+		this.buffer = null;
+		this.cursor = null;
+	}
+
+	/**
+	 * Lex all of the remaining tokens of the source into a new TokenBuffer, whose
+	 * offsets are interpreted by the source's LineMap. No Token objects are
+	 * created. The source is not closed.
+	 * 
+	 * @return the filled TokenBuffer
+	 */
+	public TokenBuffer lexAll() {
+		TokenBuffer result = new TokenBuffer(lineMap, symbols);
+		if (nextToken != null) {
+			// hasNext() already scanned ahead one token
+			result.add(nextToken);
+			nextToken = null;
+		}
+
+		while (scanInto(result)) {
+			// each call appends one token
+		}
+		return result;
+	}
+
+	/**
+	 * Scan the next token and append it to the given buffer.
+	 * 
+	 * @param tokens
+	 * @return false if there were no more tokens
+	 */
+	boolean scanInto(TokenBuffer tokens) {
+		buffer = tokens;
+		int size = tokens.size();
+		scanNext();
+		buffer = null;
+		return tokens.size() > size;
+	}
+
+	/**
+	 * Switch this lexer to producing tokens through a LexerCursor, which is
+	 * returned. Each call to the cursor's advance() scans one token into the
+	 * cursor's fields (sharing this lexer's lexeme buffer), without allocating a
+	 * Token. After this, the lexer should only be used through the cursor.
+	 * 
+	 * @return the cursor
+	 */
+	public LexerCursor cursor() {
+		if (cursor == null) {
+			cursor = new Cursor();
+		}
+		return cursor;
+	}
+
+	@Override
+	public boolean hasNext() {
+		if (nextToken == null) {
+			scanNext();
+		}
+
+		return nextToken != null;
+	}
+
+	@Override
+	public Token next() {
+		if (nextToken == null) {
+			scanNext();
+		}
+
+		if (nextToken == null) {
+			throw new NoSuchElementException("No more tokens");
+		}
+
+		Token result = nextToken;
+		nextToken = null;
+		return result;
+	}
+
+	@Override
+	public void close() {
+		source.close();
+	}
+
+	/**
+	 * @param state
+	 * @param run
+	 * @return true if every character of run leads from state back to itself
+	 */
+	private static boolean loopsOn(int state, CharRun run) {
+		for (char c = 0; c < 128; c++) {
+			if (run.contains(c) && NEXT[state * NUM_CLASSES + CHAR_CLASS[c]] != state) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * @param state
+	 * @return the CharRun that the given state skips in bulk, or null
+	 */
+	static CharRun runFor(int state) {
+		return RUNS[state];
+	}
+
+	/**
+	 * Find the character class of a non-ASCII character, following the same
+	 * Character methods as the reference lexer.
+	 * 
+	 * @param c
+	 * @return
+	 */
+	static int classify(char c) {
+		if (Character.isLetter(c)) {
+			return CLASS_LETTER;
+		} else if (Character.isDigit(c)) {
+			return CLASS_DIGIT;
+		} else if (Character.isWhitespace(c)) {
+			return CLASS_WS;
+		} else {
+			return CLASS_OTHER;
+		}
+	}
+
+	/**
+	 * Run the DFA from the current character of source to find the next token. If
+	 * found, store it in nextToken (or append it to buffer) and leave the source
+	 * on the next character after the token. If no token found, set nextToken to
+	 * null.
+	 */
+	private void scanNext() {
+		int state = START;
+		int start = 0;
+		int depth = 0;
+
+		while (true) {
+			CharRun run = RUNS[state];
+			if (run != null) {
+				// Skip ahead to the next character that leaves this state; the text of
+				// whitespace and comments is not needed
+				source.advanceWhile(run, (state == START || state == COMMENT) ? null : lexeme);
+			}
+
+			if (state == START) {
+				// Whitespace and comments are skipped by returning to START
+				start = source.getOffset();
+				lexeme.setLength(0);
+			}
+
+			char c = 0;
+			int charClass;
+			if (source.atEOF()) {
+				charClass = CLASS_EOF;
+			} else {
+				c = source.current();
+				charClass = (c < 128) ? CHAR_CLASS[c] : classify(c);
+			}
+
+			int next = NEXT[state * NUM_CLASSES + charClass];
+			if (next == STOP) {
+				if (stop(state, start)) {
+					return;
+				}
+				// An error was logged; continue with the same character
+				state = START;
+				continue;
+			}
+
+			lexeme.append(c);
+			source.advance();
+
+			if (next >= NUM_STATES) {
+				if (next == COMMENT_OPEN) {
+					depth = depth + 1;
+					next = COMMENT;
+				} else {
+					depth = depth - 1;
+					next = (depth == 0) ? START : COMMENT;
+				}
+			}
+			state = next;
+		}
+	}
+
+	/**
+	 * Take the action for a state with no transition on the current character.
+	 * 
+	 * @param state
+	 * @param start offset of the start of the token
+	 * @return true if scanning is finished (nextToken is set, or null at end of
+	 *         file), false if an error was logged and scanning should continue
+	 */
+	private boolean stop(int state, int start) {
+		switch (ACTION[state]) {
+		case DO_END:
+			nextToken = null;
+			return true;
+
+		case DO_ACCEPT:
+			if (ACCEPT_TYPE[state] == TokenType.NUM) {
+				acceptNum(start);
+			} else if (buffer != null) {
+				buffer.add(ACCEPT_TYPE[state], start, source.getOffset() - start);
+			} else if (cursor != null) {
+				cursor.set(ACCEPT_TYPE[state], start, SymbolInterner.NO_SYMBOL);
+			} else {
+				nextToken = Token.create(ACCEPT_TYPE[state], start, lineMap);
+			}
+			return true;
+
+		case DO_ACCEPT_ID:
+			if (buffer != null) {
+				buffer.addId(lexeme, start, source.getOffset() - start);
+			} else if (cursor != null) {
+				TokenType type = ReservedWords.lookup(lexeme);
+				if (type != null) {
+					cursor.set(type, start, SymbolInterner.NO_SYMBOL);
+				} else {
+					cursor.set(TokenType.ID, start, symbols.intern(lexeme));
+				}
+			} else {
+				nextToken = Token.createId(lexeme, start, lineMap, symbols);
+			}
+			return true;
+
+		case DO_ACCEPT_STRING:
+			acceptString(start);
+			return true;
+
+		case DO_UNRECOGNIZED:
+			error("Unrecognized character " + lexeme.charAt(0), start);
+			return false;
+
+		case DO_ERROR_HEX:
+			error("Unterminated hex literal " + lexeme + atEnd(), start);
+			return false;
+
+		case DO_ERROR_EXPONENT:
+			error("Missing exponent in real literal " + lexeme + atEnd(), start);
+			return false;
+
+		case DO_ERROR_STRING:
+			error("Unterminated string literal" + atEnd(), start);
+			return false;
+
+		case DO_ERROR_COMMENT:
+			error("Unterminated comment" + atEnd(), start);
+			return false;
+
+		default:
+			throw new IllegalStateException("Unknown lexer action " + ACTION[state]);
+		}
+	}
+
+	/**
+	 * Decode the numeric literal in lexeme and accept it, logging an error (but
+	 * still producing the token) if its value is out of range.
+	 * 
+	 * @param start
+	 */
+	private void acceptNum(int start) {
+		boolean real = NumLiteral.isReal(lexeme);
+		long value;
+		if (real) {
+			double d = NumLiteral.decodeReal(lexeme);
+			if (Double.isInfinite(d)) {
+				error("Real literal out of range " + lexeme, start);
+			}
+			value = Double.doubleToRawLongBits(d);
+		} else {
+			value = NumLiteral.decodeInteger(lexeme);
+			if (!NumLiteral.fitsInteger(value)) {
+				error("Integer literal out of range " + lexeme, start);
+			}
+		}
+
+		if (buffer != null) {
+			buffer.addNum(lexeme, start, source.getOffset() - start, value, real);
+		} else if (cursor != null) {
+			cursor.set(TokenType.NUM, start, SymbolInterner.NO_SYMBOL);
+			cursor.value = value;
+			cursor.real = real;
+		} else {
+			nextToken = Token.createNum(lexeme.toString(), start, lineMap, value, real);
+		}
+	}
+
+	/**
+	 * Accept the string literal in lexeme, whose contents are everything but the
+	 * surrounding quotes.
+	 * 
+	 * @param start
+	 */
+	private void acceptString(int start) {
+		if (buffer != null) {
+			buffer.addLiteral(TokenType.STRING, lexeme.subSequence(1, lexeme.length() - 1), start,
+					source.getOffset() - start);
+		} else if (cursor != null) {
+			// Strip the quotes in place, so the cursor can share the buffer
+			lexeme.setLength(lexeme.length() - 1);
+			lexeme.deleteCharAt(0);
+			cursor.set(TokenType.STRING, start, SymbolInterner.NO_SYMBOL);
+		} else {
+			nextToken = Token.createString(lexeme.substring(1, lexeme.length() - 1), start, lineMap);
+		}
+	}
+
+	private String atEnd() {
+		return source.atEOF() ? " at end of file" : "";
+	}
+
+	private void error(String message, int start) {
+		errorLog.add(message, lineMap.getPosition(start));
+	}
+
+	/**
+	 * The single, reused LexerCursor of this lexer.
+	 */
+	private class Cursor implements LexerCursor {
+		private TokenType type;
+		private int start;
+		private int length;
+		private int symbolId;
+		private long value;
+		private boolean real;
+
+		private void set(TokenType type, int start, int symbolId) {
+			this.type = type;
+			this.start = start;
+			this.length = source.getOffset() - start;
+			this.symbolId = symbolId;
+			this.value = 0;
+			this.real = false;
+		}
+
+		@Override
+		public boolean advance() {
+			type = null;
+			scanNext();
+			return type != null;
+		}
+
+		@Override
+		public TokenType type() {
+			return type;
+		}
+
+		@Override
+		public int startOffset() {
+			return start;
+		}
+
+		@Override
+		public int length() {
+			return length;
+		}
+
+		@Override
+		public int symbolId() {
+			return symbolId;
+		}
+
+		@Override
+		public CharSequence lexeme() {
+			return lexeme;
+		}
+
+		@Override
+		public long numValue() {
+			return value;
+		}
+
+		@Override
+		public boolean isReal() {
+			return real;
+		}
+
+		@Override
+		public Locator locator() {
+			return lineMap;
+		}
+
+		@Override
+		public SymbolInterner symbols() {
+			return symbols;
+		}
+
+		@Override
+		public void close() {
+			TableLexer.this.close();
+		}
+	}
+}
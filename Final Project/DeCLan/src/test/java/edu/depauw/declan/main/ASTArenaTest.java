@@ -0,0 +1,205 @@
+package edu.depauw.declan.main;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import edu.depauw.declan.common.CharSequenceSource;
+import edu.depauw.declan.common.ErrorLog;
+import edu.depauw.declan.common.PostfixPrintVisitor;
+import edu.depauw.declan.common.Source;
+import edu.depauw.declan.common.SymbolInterner;
+import edu.depauw.declan.common.ast.ASTArena;
+import edu.depauw.declan.common.ast.ASTNode;
+import edu.depauw.declan.common.ast.Assignment;
+import edu.depauw.declan.common.ast.BinaryOperation;
+import edu.depauw.declan.common.ast.ForStatement;
+import edu.depauw.declan.common.ast.Program;
+import edu.depauw.declan.common.ast.Statement;
+import edu.depauw.declan.model.ReferenceInterpreter;
+import edu.depauw.declan.model.ReferenceLexer;
+import edu.depauw.declan.model.ReferenceParser;
+
+class ASTArenaTest {
+	private static final String PROGRAM = "CONST six = 6; seven = 7;\n"
+			+ "VAR answer, temp : INTEGER;\n"
+			+ "PROCEDURE Display(answer: INTEGER; a, b: INTEGER; x: REAL);\n"
+			+ "  VAR i, temp : INTEGER;\n"
+			+ "  BEGIN\n"
+			+ "    temp := answer;\n"
+			+ "    FOR i := a TO b BY -1 DO\n"
+			+ "      PrintInt(temp); PrintLn();\n"
+			+ "      WHILE temp > i DO temp := temp - 1\n"
+			+ "      ELSIF temp < i DO temp := temp + 1\n"
+			+ "      END\n"
+			+ "    END;\n"
+			+ "    IF TRUE & (temp = b) THEN PrintString(\"ok\") ELSE ; END;\n"
+			+ "    PrintReal(x / 2.); PrintLn()\n"
+			+ "  END Display;\n"
+			+ "BEGIN\n"
+			+ "  answer := +0;\n"
+			+ "  temp := -0;\n"
+			+ "  REPEAT\n"
+			+ "    answer := -(-answer - temp);\n"
+			+ "    temp := temp + seven MOD 0AH;\n"
+			+ "  UNTIL answer >= +six * seven;\n"
+			+ "  Display(answer, seven, six, 3.14159265);\n"
+			+ "  FOR temp := 1 TO 3 DO PrintInt(temp) END;\n"
+			+ "  PrintInt(answer); PrintLn()\n"
+			+ "END.\n";
+
+	@Test
+	void testViewRunsLikeOriginal() {
+		Program original = parse(PROGRAM);
+		ASTArena arena = new ASTArena(new CharSequenceSource(PROGRAM).getLineMap(), new SymbolInterner());
+		Program view = arena.getProgram(arena.add(original));
+
+		assertEquals(run(original), run(view));
+		assertEquals(starts(original), starts(view));
+	}
+
+	@Test
+	void testViewIdentity() {
+		ASTArena arena = new ASTArena(new CharSequenceSource(PROGRAM).getLineMap(), new SymbolInterner());
+		int node = arena.add(parse(PROGRAM));
+		Program view = arena.getProgram(node);
+
+		// However a node is reached, it is the same object
+		assertSame(view, arena.getProgram(node));
+		Statement first = view.getStatements().iterator().next();
+		assertSame(first, arena.getProgram(node).getStatements().iterator().next());
+		Assignment assignment = (Assignment) first;
+		assertSame(assignment.getRhs(), assignment.getRhs());
+		assertSame(assignment.getId(), ((Assignment) view.getStatements().iterator().next()).getId());
+	}
+
+	@Test
+	void testViewsNotRetained() throws InterruptedException {
+		ASTArena arena = new ASTArena(new CharSequenceSource(PROGRAM).getLineMap(), new SymbolInterner());
+		int node = arena.add(parse(PROGRAM));
+		run(arena.getProgram(node));
+
+		// After a full traversal, take a weak reference to the view of every
+		// record (the others are not ASTNodes)
+		List<WeakReference<ASTNode>> views = new ArrayList<>();
+		for (int i = 0; i < arena.getDataSize(); i++) {
+			try {
+				views.add(new WeakReference<>(arena.getNode(i)));
+			} catch (IllegalArgumentException e) {
+				// Not the index of a node record
+			}
+		}
+		assertTrue(views.size() > 50);
+
+		// Once nothing else refers to them, the arena does not keep them alive
+		for (int attempt = 0; attempt < 20 && !allCleared(views); attempt++) {
+			System.gc();
+			Thread.sleep(10);
+		}
+		assertTrue(allCleared(views));
+		// New views are made as needed
+		assertEquals(run(parse(PROGRAM)), run(arena.getProgram(node)));
+	}
+
+	@Test
+	void testCopyOfView() {
+		ASTArena arena = new ASTArena(new CharSequenceSource(PROGRAM).getLineMap(), new SymbolInterner());
+		int node = arena.add(parse(PROGRAM));
+		ASTArena copy = new ASTArena(arena.getLocator(), arena.getSymbolInterner());
+		int copyNode = copy.add(arena.getProgram(node));
+
+		assertEquals(arena.getDataSize(), copy.getDataSize());
+		assertEquals(run(arena.getProgram(node)), run(copy.getProgram(copyNode)));
+	}
+
+	@Test
+	void testBuilder() {
+		String input = "BEGIN\n  x := 1 + y;\n  FOR x := 1 TO 2 DO END\nEND.";
+		Source source = new CharSequenceSource(input);
+		// The line map is filled in as the source is read
+		new TableLexer(source, new ErrorLog()).lexAll();
+		ASTArena arena = new ASTArena(source.getLineMap(), new SymbolInterner());
+
+		int one = arena.numValue(13, "1", 1, false);
+		int sum = arena.binaryOperation(13, one, BinaryOperation.OpType.PLUS, arena.identifier(17, "y"));
+		int assignment = arena.assignment(8, arena.identifier(8, "x"), sum);
+		int loop = arena.forStatement(22, arena.identifier(26, "x"), arena.numValue(31, "1", 1, false),
+				arena.numValue(36, "2", 2, false), ASTArena.NONE, arena.list());
+		int program = arena.program(0, arena.list(), arena.list(assignment, loop));
+
+		assertEquals(ASTArena.Kind.PROGRAM, arena.getKind(program));
+		assertEquals(ASTArena.Kind.BINARY_OPERATION, arena.getKind(sum));
+		assertEquals(2, arena.getListSize(arena.getField(program, 1)));
+
+		List<Statement> statements = new ArrayList<>(arena.getProgram(program).getStatements());
+		Assignment a = (Assignment) statements.get(0);
+		assertEquals("x", a.getId().getLexeme());
+		assertEquals(2, a.getStart().getLine());
+		assertEquals(3, a.getStart().getColumn());
+		assertEquals(arena.getStart(sum), a.getRhs().getStart());
+		assertEquals(BinaryOperation.OpType.PLUS, ((BinaryOperation) a.getRhs()).getOperator());
+
+		ForStatement f = (ForStatement) statements.get(1);
+		assertFalse(f.getStep().isPresent());
+		assertTrue(f.getBody().isEmpty());
+
+		assertEquals(String.format("1%n0%nADD%n"), print(arena.getNode(sum)));
+	}
+
+	private static Program parse(String input) {
+		ErrorLog errorLog = new ErrorLog();
+		try (ReferenceParser parser = new ReferenceParser(new ReferenceLexer(new CharSequenceSource(input), errorLog),
+				errorLog)) {
+			return parser.parseProgram();
+		}
+	}
+
+	/**
+	 * @param program
+	 * @return the output of interpreting the given program
+	 */
+	private static String run(Program program) {
+		PrintStream saved = System.out;
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try {
+			System.setOut(new PrintStream(bytes, true));
+			program.accept(new ReferenceInterpreter(new ErrorLog()));
+		} finally {
+			System.setOut(saved);
+		}
+		return bytes.toString();
+	}
+
+	private static String print(ASTNode node) {
+		StringWriter out = new StringWriter();
+		node.accept(new PostfixPrintVisitor(new PrintWriter(out)));
+		return out.toString();
+	}
+
+	private static List<String> starts(Program program) {
+		List<String> result = new ArrayList<>();
+		program.getDeclarations().forEach(d -> result.add(d.getStart().toString()));
+		program.getStatements().forEach(s -> result.add(s.getStart().toString()));
+		return result;
+	}
+
+	private static boolean allCleared(List<WeakReference<ASTNode>> views) {
+		for (WeakReference<ASTNode> view : views) {
+			if (view.get() != null) {
+				return false;
+			}
+		}
+		return true;
+	}
+}
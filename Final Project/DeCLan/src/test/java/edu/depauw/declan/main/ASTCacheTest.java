@@ -0,0 +1,315 @@
+package edu.depauw.declan.main;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.junit.Test;
+
+import edu.depauw.declan.common.CharSequenceSource;
+import edu.depauw.declan.common.Checker;
+import edu.depauw.declan.common.ErrorLog;
+import edu.depauw.declan.common.ParseException;
+import edu.depauw.declan.common.PostfixPrintVisitor;
+import edu.depauw.declan.common.Source;
+import edu.depauw.declan.common.SymbolInterner;
+import edu.depauw.declan.common.ast.ASTArena;
+import edu.depauw.declan.common.ast.ASTSerializer;
+import edu.depauw.declan.common.ast.Program;
+import edu.depauw.declan.model.ReferenceChecker;
+import edu.depauw.declan.model.ReferenceIndexer;
+
+class ASTCacheTest {
+	private static final String PROGRAM = "CONST six = 6; big = 2000000000; half = 0.5;\n"
+			+ "VAR answer, i : INTEGER; x : REAL; done : BOOLEAN;\n"
+			+ "PROCEDURE Show(n : INTEGER; r : REAL);\n"
+			+ "  VAR j : INTEGER;\n"
+			+ "  BEGIN\n"
+			+ "    FOR j := n TO 1 BY -1 DO PrintInt(j) END;\n"
+			+ "    FOR j := 1 TO n DO r := r * half END;\n"
+			+ "    ASSERT(~done OR (n # 0), \"caf\u00e9\")\n"
+			+ "  END Show;\n"
+			+ "BEGIN\n"
+			+ "  answer := six * 7 - 1; x := 1.5E3;\n"
+			+ "  IF answer < 0 THEN ; ELSIF answer = 0 THEN answer := 1 ELSE done := TRUE END;\n"
+			+ "  WHILE i < 10 DO i := i + 1 ELSIF i > 20 DO i := i - 1 END;\n"
+			+ "  REPEAT i := i DIV 2 UNTIL i <= 0;\n"
+			+ "  Show(answer MOD big, x)\n"
+			+ "END.\n";
+
+	@Test
+	void testRoundTrip() {
+		Source source = new CharSequenceSource(PROGRAM);
+		Program program = new MyParser(new TableLexer(source, new ErrorLog()).lexAll(), new ErrorLog())
+				.parseProgram();
+		Program copy = ASTSerializer.read(ByteBuffer.wrap(ASTCache.serialize(program, source.getLineMap())),
+				new SymbolInterner());
+		assertEquals(index(program), index(copy));
+		assertEquals(print(program), print(copy));
+	}
+
+	@Test
+	void testGeneratedRoundTrip() {
+		String input = generate(new Random(42));
+		Source source = new CharSequenceSource(input);
+		Program program = new MyParser(new TableLexer(source, new ErrorLog()).lexAll(), new ErrorLog())
+				.parseProgram();
+		byte[] data = ASTCache.serialize(program, source.getLineMap());
+		Program copy = ASTSerializer.read(ByteBuffer.wrap(data), new SymbolInterner());
+		assertEquals(index(program), index(copy));
+
+		// Less than half the size of the same records as four-byte ints in an arena
+		ASTArena arena = new ASTArena(source.getLineMap(), new SymbolInterner());
+		arena.add(program);
+		assertTrue(data.length < 2 * arena.getDataSize());
+	}
+
+	@Test
+	void testCorruptData() {
+		Source source = new CharSequenceSource(PROGRAM);
+		Program program = new MyParser(new TableLexer(source, new ErrorLog()).lexAll(), new ErrorLog())
+				.parseProgram();
+		byte[] data = ASTCache.serialize(program, source.getLineMap());
+		for (int length : new int[] { 0, 3, 8, data.length / 2, data.length - 1 }) {
+			try {
+				ASTSerializer.read(ByteBuffer.wrap(Arrays.copyOf(data, length)), new SymbolInterner());
+				fail("Read truncated data of length " + length);
+			} catch (IllegalArgumentException e) {
+				// expected
+			}
+		}
+
+		data[4] = (byte) (ASTSerializer.VERSION + 1);
+		try {
+			ASTSerializer.read(ByteBuffer.wrap(data), new SymbolInterner());
+			fail("Read data of another version");
+		} catch (IllegalArgumentException e) {
+			// expected
+		}
+	}
+
+	@Test
+	void testCorruptFields() {
+		int bool = ASTArena.Kind.BOOLEAN_VALUE.ordinal();
+		int unary = ASTArena.Kind.UNARY_OPERATION.ordinal();
+		int list = ASTArena.Kind.LIST.ordinal();
+		int v = ASTSerializer.VERSION;
+
+		// Strings of negative length, and longer than the data
+		assertCorrupt(v, 0, 1, 1, -1);
+		assertCorrupt(v, 0, 1, 1, Integer.MAX_VALUE, 'a');
+		// Too many records for the data
+		assertCorrupt(v, 0, 1, 0, 0, 1000, bool, 0, 1);
+
+		// A list whose element is a negative distance back, the list itself, after
+		// it, or inside the BOOLEAN_VALUE record before it
+		assertCorrupt(v, 3, 1, 0, 0, 2, bool, 0, 1, list, 1, -1);
+		assertCorrupt(v, 3, 1, 0, 0, 2, bool, 0, 1, list, 1, 0);
+		assertCorrupt(v, 3, 1, 0, 0, 2, bool, 0, 1, list, 1, 4);
+		assertCorrupt(v, 3, 1, 0, 0, 2, bool, 0, 1, list, 1, 1);
+
+		// An operator, a flag, a Kind and a start Position out of range
+		assertCorrupt(v, 3, 1, 0, 0, 2, bool, 0, 1, unary, 0, 99, 3);
+		assertCorrupt(v, 0, 1, 0, 0, 1, bool, 0, 5);
+		assertCorrupt(v, 0, 1, 0, 0, 1, 99, 0, 1);
+		assertCorrupt(v, 0, 1, 0, 0, 1, bool, 1, 1);
+
+		// A root that is not the start of a record
+		assertCorrupt(v, 1, 1, 0, 0, 1, bool, 0, 1);
+	}
+
+	@Test
+	void testLoadedProgramGenerates() throws IOException {
+		Source source = new CharSequenceSource(PROGRAM);
+		Program program = new MyParser(new TableLexer(source, new ErrorLog()).lexAll(), new ErrorLog())
+				.parseProgram();
+		Path directory = Files.createTempDirectory("astcache");
+		try {
+			ASTCache cache = new ASTCache(directory);
+			cache.store("key", ASTCache.serialize(program, source.getLineMap()));
+			Program loaded = cache.load("key", new SymbolInterner());
+			assertEquals(generate(program), generate(loaded));
+		} finally {
+			delete(directory);
+		}
+	}
+
+	@Test
+	void testCacheHitAndMiss() throws IOException {
+		Path directory = Files.createTempDirectory("astcache");
+		try {
+			Path file = directory.resolve("test.decl");
+			Files.writeString(file, PROGRAM);
+			String[] args = { "--tableLexer", "--astCache", "--astCacheDir=" + directory.resolve("cache"), file.toString() };
+
+			Config first = new Config(args);
+			assertTrue(first.getParser() instanceof CachedParser);
+			String expected = index(first.getParser().parseProgram());
+			first.getParser().close();
+			assertEquals(1, entries(directory.resolve("cache")).size());
+
+			// A hit never reads the source
+			Config second = new Config(args);
+			Program program = second.getParser().parseProgram();
+			assertEquals(expected, index(program));
+			assertFalse(second.getSource().atEOF());
+			second.getParser().close();
+
+			// An edited source misses, and is cached separately
+			Files.writeString(file, PROGRAM.replace("answer := six", "answer := 1 + six"));
+			Config third = new Config(args);
+			String edited = index(third.getParser().parseProgram());
+			third.getParser().close();
+			assertFalse(expected.equals(edited));
+			assertEquals(2, entries(directory.resolve("cache")).size());
+		} finally {
+			delete(directory);
+		}
+	}
+
+	@Test
+	void testUnusableEntries() throws IOException {
+		Path directory = Files.createTempDirectory("astcache");
+		try {
+			ASTCache cache = new ASTCache(directory);
+			assertNull(cache.load("missing", new SymbolInterner()));
+
+			// Saved output only comes from reporting the corrupt entry
+			Files.write(directory.resolve("corrupt.ast"), new byte[] { 1, 2, 3, 4, 5 });
+			PrintStream saved = System.err;
+			try {
+				System.setErr(new PrintStream(new ByteArrayOutputStream()));
+				assertNull(cache.load("corrupt", new SymbolInterner()));
+			} finally {
+				System.setErr(saved);
+			}
+
+			// A program with errors is not stored
+			Source source = new CharSequenceSource("BEGIN x := END.");
+			ErrorLog errorLog = new ErrorLog();
+			MyParser parser = new MyParser(new TableLexer(source, errorLog).lexAll(), errorLog);
+			parser.setErrorRecovery(true);
+			try {
+				new CachedParser(parser, cache, "broken", source.getLineMap(), new SymbolInterner(), errorLog)
+						.parseProgram();
+			} catch (ParseException e) {
+				// expected, unless the parser recovered
+			}
+			assertNull(cache.load("broken", new SymbolInterner()));
+		} finally {
+			delete(directory);
+		}
+	}
+
+	/**
+	 * @return a program of procedures with many statements
+	 */
+	private static String generate(Random random) {
+		String[] operands = { "i", "n", "1", "2", "k" };
+		String[] operators = { " + ", " * ", " - ", " DIV " };
+		StringBuilder text = new StringBuilder("VAR i, k : INTEGER; b : BOOLEAN;\n");
+		for (int p = 0; p < 20; p++) {
+			text.append("PROCEDURE P").append(p).append("(n : INTEGER);\n  BEGIN\n");
+			for (int s = 0; s < 50; s++) {
+				StringBuilder expression = new StringBuilder(operands[random.nextInt(operands.length)]);
+				for (int e = random.nextInt(3); e >= 0; e--) {
+					expression.append(operators[random.nextInt(operators.length)])
+							.append(operands[random.nextInt(operands.length)]);
+				}
+				if (random.nextBoolean()) {
+					text.append("    i := ").append(expression).append(";\n");
+				} else {
+					text.append("    IF ").append(expression).append(" < k THEN b := ~b END;\n");
+				}
+			}
+			text.append("    P").append(random.nextInt(20)).append("(i)\n  END P").append(p).append(";\n");
+		}
+		text.append("BEGIN\n  P0(1)\nEND.\n");
+		return text.toString();
+	}
+
+	/**
+	 * Check that the magic number followed by the given varints is rejected.
+	 */
+	private static void assertCorrupt(int... varints) {
+		ByteBuffer data = ByteBuffer.allocate(4 + 5 * varints.length);
+		data.putInt(ASTSerializer.MAGIC);
+		for (int value : varints) {
+			while ((value & ~0x7F) != 0) {
+				data.put((byte) ((value & 0x7F) | 0x80));
+				value = value >>> 7;
+			}
+			data.put((byte) value);
+		}
+		data.flip();
+		try {
+			ASTSerializer.read(data, new SymbolInterner());
+			fail("Read corrupt data " + Arrays.toString(varints));
+		} catch (IllegalArgumentException e) {
+			// expected
+		}
+	}
+
+	/**
+	 * Check and then generate code for the program, as Project6 does.
+	 */
+	private static String generate(Program program) {
+		ErrorLog errorLog = new ErrorLog();
+		Checker checker = new ReferenceChecker(errorLog);
+		program.accept(checker);
+		return new MyGenerator(errorLog, checker).generate(program).toString();
+	}
+
+	private static List<Path> entries(Path directory) throws IOException {
+		try (Stream<Path> files = Files.list(directory)) {
+			return files.filter(f -> f.toString().endsWith(".ast")).collect(Collectors.toList());
+		}
+	}
+
+	private static void delete(Path directory) throws IOException {
+		try (Stream<Path> files = Files.walk(directory)) {
+			for (Path f : files.sorted(Comparator.reverseOrder()).collect(Collectors.toList())) {
+				Files.delete(f);
+			}
+		}
+	}
+
+	/**
+	 * @return the declarations and uses of every identifier, with positions, as
+	 *         printed by the ReferenceIndexer
+	 */
+	private static String index(Program program) {
+		PrintStream saved = System.out;
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try {
+			System.setOut(new PrintStream(bytes, true));
+			program.accept(new ReferenceIndexer(new ErrorLog()));
+		} finally {
+			System.setOut(saved);
+		}
+		return bytes.toString();
+	}
+
+	private static String print(Program program) {
+		StringWriter out = new StringWriter();
+		program.accept(new PostfixPrintVisitor(new PrintWriter(out)));
+		return out.toString();
+	}
+}
@@ -0,0 +1,142 @@
+package edu.depauw.declan.main;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+import org.junit.Test;
+
+import edu.depauw.declan.common.ByteBufferText;
+import edu.depauw.declan.common.CharRun;
+import edu.depauw.declan.common.CharSequenceSource;
+import edu.depauw.declan.common.ErrorLog;
+import edu.depauw.declan.common.Lexer;
+import edu.depauw.declan.common.MappedFileSource;
+import edu.depauw.declan.common.ReaderSource;
+import edu.depauw.declan.common.Source;
+
+class CharRunTest {
+
+	@Test
+	void testContains() {
+		for (char c = 0; c < 256; c++) {
+			boolean ascii = c < 128;
+			assertEquals(ascii && Character.isWhitespace(c), CharRun.WHITESPACE.contains(c));
+			assertEquals(ascii && Character.isLetterOrDigit(c), CharRun.WORD.contains(c));
+			assertEquals(ascii && Character.isDigit(c), CharRun.DIGITS.contains(c));
+			assertEquals(ascii && c != '(' && c != '*', CharRun.COMMENT_TEXT.contains(c));
+		}
+		assertFalse(CharRun.WORD.contains('\u00E9'));
+	}
+
+	@Test
+	void testEndMatchesScalar() {
+		Random random = new Random(426);
+		String alphabet = " \t\n\r(*)abcXYZ0129_\"\u00E9";
+		for (int trial = 0; trial < 2000; trial++) {
+			byte[] bytes = new byte[random.nextInt(100)];
+			for (int i = 0; i < bytes.length; i++) {
+				// Mostly long runs of one character, to get past the word-at-a-time tests
+				char c = alphabet.charAt(random.nextInt(alphabet.length()));
+				bytes[i] = (byte) (random.nextInt(4) == 0 || i == 0 ? c : bytes[i - 1]);
+			}
+			int from = bytes.length == 0 ? 0 : random.nextInt(bytes.length);
+			for (ByteOrder order : new ByteOrder[] { ByteOrder.BIG_ENDIAN, ByteOrder.LITTLE_ENDIAN }) {
+				ByteBuffer buffer = ByteBuffer.wrap(bytes).order(order);
+				for (CharRun run : CharRun.values()) {
+					int expected = from;
+					while (expected < bytes.length && run.contains((char) (bytes[expected] & 0xFF))) {
+						expected++;
+					}
+					assertEquals(expected, run.end(buffer, from, bytes.length));
+				}
+
+				int newline = from;
+				while (newline < bytes.length && bytes[newline] != '\n') {
+					newline++;
+				}
+				assertEquals(newline, CharRun.nextNewline(buffer, from, bytes.length));
+			}
+		}
+	}
+
+	@Test
+	void testRunsForStates() {
+		assertEquals(CharRun.WHITESPACE, TableLexer.runFor(LexerTables.START));
+		assertEquals(CharRun.WORD, TableLexer.runFor(LexerTables.IDENT));
+		assertEquals(CharRun.DIGITS, TableLexer.runFor(LexerTables.INT));
+		assertEquals(CharRun.COMMENT_TEXT, TableLexer.runFor(LexerTables.COMMENT));
+	}
+
+	@Test
+	void testBulkSources() throws IOException {
+		StringBuilder input = new StringBuilder();
+		for (int i = 0; i < 20; i++) {
+			input.append("(* a comment that goes on\n  for ").append(i).append(" lines (* nested *) ) *)\n");
+			input.append("                                        identifier").append(i);
+			input.append(" := 1234567890123 + 3.25E+1;\t\t\"a string literal\"\r\n");
+		}
+		input.append("(* unterminated ");
+		String text = input.toString();
+		byte[] bytes = text.getBytes(StandardCharsets.ISO_8859_1);
+
+		Path file = Files.createTempFile("declan", ".dcl");
+		try {
+			Files.write(file, bytes);
+			compareLexers(text, new MappedFileSource(file));
+		} finally {
+			Files.delete(file);
+		}
+		compareLexers(text, new CharSequenceSource(new ByteBufferText(ByteBuffer.wrap(bytes), 0, bytes.length)));
+	}
+
+	@Test
+	void testBulkUTF8() throws IOException {
+		// Runs that stop at multi-byte characters, with lines after them
+		StringBuilder input = new StringBuilder();
+		for (int i = 0; i < 20; i++) {
+			input.append("(* caf\u00e9 \u2192 \ud83d\ude00 comment\n  for ").append(i).append(" lines *)\n");
+			input.append("      x\u00e9").append(i).append(" := \"\u00fc\u00fc string\";  \u00e9\u00e9 12\n");
+		}
+		input.append("(* unterminated ");
+		String text = input.toString();
+
+		Path file = Files.createTempFile("declan", ".dcl");
+		try {
+			Files.write(file, text.getBytes(StandardCharsets.UTF_8));
+			compareLexers(text, new MappedFileSource(file));
+		} finally {
+			Files.delete(file);
+		}
+	}
+
+	/**
+	 * Check that TableLexer finds the same tokens and errors in the given Source
+	 * as it does reading the same text one character at a time.
+	 *
+	 * @param input
+	 * @param source
+	 */
+	private static void compareLexers(String input, Source source) {
+		ErrorLog expectedLog = new ErrorLog();
+		ErrorLog actualLog = new ErrorLog();
+		try (Lexer expected = new TableLexer(new ReaderSource(new StringReader(input)), expectedLog);
+				Lexer actual = new TableLexer(source, actualLog)) {
+			while (expected.hasNext()) {
+				assertTrue("Not enough tokens", actual.hasNext());
+				assertEquals(expected.next(), actual.next());
+			}
+			assertFalse("Too many tokens", actual.hasNext());
+		}
+		assertEquals(expectedLog.iterator().next(), actualLog.iterator().next());
+	}
+}
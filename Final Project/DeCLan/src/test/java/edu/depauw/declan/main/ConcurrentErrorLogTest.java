@@ -0,0 +1,121 @@
+package edu.depauw.declan.main;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.stream.IntStream;
+
+import org.junit.Test;
+
+import edu.depauw.declan.common.ConcurrentErrorLog;
+import edu.depauw.declan.common.ErrorLimitException;
+import edu.depauw.declan.common.ErrorLog;
+import edu.depauw.declan.common.Position;
+
+class ConcurrentErrorLogTest {
+
+	@Test
+	void testSameAsErrorLog() {
+		ErrorLog expected = new ErrorLog();
+		ErrorLog actual = new ConcurrentErrorLog();
+		String[] messages = { "c", "a", "b", "a again", "d" };
+		Position[] positions = { new Position(3, 1), new Position(1, 5), new Position(2, 7), new Position(1, 5),
+				new Position(1, 1) };
+		for (int i = 0; i < messages.length; i++) {
+			expected.add(messages[i], positions[i]);
+			actual.add(messages[i], positions[i]);
+		}
+		assertEquals(toList(expected), toList(actual));
+	}
+
+	@Test
+	void testManyThreads() {
+		ErrorLog log = new ConcurrentErrorLog();
+		IntStream.range(0, 8).parallel().forEach(t -> {
+			for (int i = 0; i < 1000; i++) {
+				log.add("error " + i, new Position(i + 1, t + 1));
+			}
+		});
+
+		List<ErrorLog.LogItem> items = toList(log);
+		assertEquals(8000, items.size());
+		for (int i = 1; i < items.size(); i++) {
+			assertTrue(items.get(i - 1).getPosition().compareTo(items.get(i).getPosition()) < 0);
+		}
+	}
+
+	@Test
+	void testLimit() {
+		ErrorLog log = new ConcurrentErrorLog(3);
+		log.add("one", new Position(1, 1));
+		log.add("two", new Position(2, 1));
+		try {
+			log.add("three", new Position(3, 1));
+			fail("Expected the error limit to be reached");
+		} catch (ErrorLimitException e) {
+			// expected
+		}
+		try {
+			log.add("four", new Position(4, 1));
+			fail("Expected the error limit to be reached");
+		} catch (ErrorLimitException e) {
+			// expected
+		}
+		assertEquals(3, toList(log).size());
+	}
+
+	@Test
+	void testDuplicatesNotCounted() {
+		ErrorLog log = new ConcurrentErrorLog(3);
+		log.add("one", new Position(1, 1));
+		log.add("one again", new Position(1, 1));
+		log.add("two", new Position(2, 1));
+		log.add("two again", new Position(2, 1));
+		try {
+			log.add("three", new Position(3, 1));
+			fail("Expected the error limit to be reached");
+		} catch (ErrorLimitException e) {
+			// expected
+		}
+		List<ErrorLog.LogItem> items = toList(log);
+		assertEquals(3, items.size());
+		assertEquals("one", items.get(0).getMessage());
+	}
+
+	@Test
+	void testMaxErrorsProperty() {
+		Properties props = new Properties();
+		props.setProperty("demoSource", "BEGIN END.");
+		props.setProperty("maxErrors", "3");
+		assertTrue(new Config(new String[0], props).getErrorLog() instanceof ConcurrentErrorLog);
+
+		// A malformed limit is reported, and there is no limit
+		props.setProperty("maxErrors", "three");
+		PrintStream saved = System.err;
+		ByteArrayOutputStream err = new ByteArrayOutputStream();
+		Config config;
+		try {
+			System.setErr(new PrintStream(err, true));
+			config = new Config(new String[0], props);
+		} finally {
+			System.setErr(saved);
+		}
+		assertFalse(config.getErrorLog() instanceof ConcurrentErrorLog);
+		assertTrue(err.toString(), err.toString().contains("Invalid maxErrors property: three"));
+	}
+
+	private static List<ErrorLog.LogItem> toList(ErrorLog log) {
+		List<ErrorLog.LogItem> result = new ArrayList<>();
+		for (ErrorLog.LogItem item : log) {
+			result.add(item);
+		}
+		return result;
+	}
+}
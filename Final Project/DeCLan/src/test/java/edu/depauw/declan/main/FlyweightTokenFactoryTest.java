@@ -0,0 +1,64 @@
+package edu.depauw.declan.main;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import edu.depauw.declan.common.CharSequenceSource;
+import edu.depauw.declan.common.ErrorLog;
+import edu.depauw.declan.common.FlyweightTokenFactory;
+import edu.depauw.declan.common.Lexer;
+import edu.depauw.declan.common.LineMap;
+import edu.depauw.declan.common.Position;
+import edu.depauw.declan.common.SymbolInterner;
+import edu.depauw.declan.common.Token;
+import edu.depauw.declan.common.TokenFactory;
+import edu.depauw.declan.common.TokenType;
+
+class FlyweightTokenFactoryTest {
+
+	@Test
+	void testSameAsStaticFactories() {
+		String input = "CONST x = y;\n  x := y : z\nEND";
+		SymbolInterner symbols = new SymbolInterner();
+		try (Lexer expected = new MyLexer(new CharSequenceSource(input), new ErrorLog());
+				Lexer actual = new MyLexer(new CharSequenceSource(input), new ErrorLog(), symbols,
+						new FlyweightTokenFactory(symbols))) {
+			while (expected.hasNext()) {
+				assertTrue("Not enough tokens", actual.hasNext());
+				Token token = expected.next();
+				Token flyweight = actual.next();
+				assertEquals(token, flyweight);
+				assertEquals(token.getSymbolId(), flyweight.getSymbolId());
+			}
+			assertFalse("Too many tokens", actual.hasNext());
+		}
+	}
+
+	@Test
+	void testShared() {
+		LineMap lineMap = new LineMap();
+		lineMap.addLineStart(10);
+		SymbolInterner symbols = new SymbolInterner();
+		TokenFactory factory = new FlyweightTokenFactory(symbols);
+
+		Token first = factory.makeIdToken("count", 0, lineMap);
+		Token second = factory.makeIdToken(new StringBuilder("count"), 12, lineMap);
+		assertSame(first.getLexeme(), second.getLexeme());
+		assertEquals(first.getSymbolId(), second.getSymbolId());
+		assertEquals(new Position(1, 1), first.getPosition());
+		assertEquals(new Position(2, 3), second.getPosition());
+
+		Token keyword = factory.makeIdToken("WHILE", 3, lineMap);
+		assertEquals(TokenType.WHILE, keyword.getType());
+		assertNull(keyword.getLexeme());
+		assertEquals(SymbolInterner.NO_SYMBOL, keyword.getSymbolId());
+
+		Token semi = factory.makeToken(TokenType.SEMI, 11, lineMap);
+		assertEquals(Token.create(TokenType.SEMI, 11, lineMap), semi);
+	}
+}
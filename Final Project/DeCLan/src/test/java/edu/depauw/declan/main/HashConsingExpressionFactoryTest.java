@@ -0,0 +1,149 @@
+package edu.depauw.declan.main;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import edu.depauw.declan.common.CharSequenceSource;
+import edu.depauw.declan.common.ErrorLog;
+import edu.depauw.declan.common.Position;
+import edu.depauw.declan.common.PostfixPrintVisitor;
+import edu.depauw.declan.common.TokenBuffer;
+import edu.depauw.declan.common.ast.Assignment;
+import edu.depauw.declan.common.ast.BinaryOperation;
+import edu.depauw.declan.common.ast.Expression;
+import edu.depauw.declan.common.ast.ExpressionFactory;
+import edu.depauw.declan.common.ast.HashConsingExpressionFactory;
+import edu.depauw.declan.common.ast.ProcedureDeclaration;
+import edu.depauw.declan.common.ast.Program;
+import edu.depauw.declan.common.ast.Statement;
+
+class HashConsingExpressionFactoryTest {
+	private static final String PROGRAM = "VAR i, offset, x : INTEGER;\n"
+			+ "PROCEDURE P();\n"
+			+ "  VAR offset : INTEGER;\n"
+			+ "  BEGIN\n"
+			+ "    x := i * 2 + offset;\n"
+			+ "    x := i * 2 + offset\n"
+			+ "  END P;\n"
+			+ "BEGIN\n"
+			+ "  x := i * 2 + offset;\n"
+			+ "  x := (i * 2) + offset;\n"
+			+ "  x := i * 2 - offset;\n"
+			+ "  P()\n"
+			+ "END.\n";
+
+	@Test
+	void testSharesWithinScope() {
+		HashConsingExpressionFactory factory = new HashConsingExpressionFactory();
+		Program program = parse(PROGRAM, factory);
+		List<Expression> main = rhs(program.getStatements());
+		assertSame(main.get(0), main.get(1));
+
+		// i * 2 is shared by a different sum
+		BinaryOperation difference = (BinaryOperation) main.get(2);
+		assertNotSame(main.get(0), difference);
+		assertSame(((BinaryOperation) main.get(0)).getLeft(), difference.getLeft());
+
+		// Each occurrence is still known; the parenthesized one starts at its (
+		assertEquals(List.of(new Position(9, 8), new Position(10, 8)), factory.getOccurrences(main.get(0)));
+		assertEquals(List.of(new Position(9, 8), new Position(10, 9), new Position(11, 8)),
+				factory.getOccurrences(difference.getLeft()));
+	}
+
+	@Test
+	void testNotSharedAcrossScopes() {
+		HashConsingExpressionFactory factory = new HashConsingExpressionFactory();
+		Program program = parse(PROGRAM, factory);
+		ProcedureDeclaration p = (ProcedureDeclaration) program.getDeclarations().get(1);
+		List<Expression> inner = rhs(p.getBody().getStatements());
+		List<Expression> main = rhs(program.getStatements());
+
+		assertSame(inner.get(0), inner.get(1));
+		// The offset inside P is a different variable
+		assertNotSame(inner.get(0), main.get(0));
+	}
+
+	@Test
+	void testSameTreeAsUnshared() {
+		Random random = new Random(42);
+		String input = generate(random);
+		HashConsingExpressionFactory factory = new HashConsingExpressionFactory();
+		assertEquals(print(parse(input, null)), print(parse(input, factory)));
+		assertTrue(factory.getSharedCount() > 1000);
+	}
+
+	@Test
+	void testSameTreeWithLazyBodies() {
+		String input = generate(new Random(7));
+		ErrorLog errorLog = new ErrorLog();
+		MyParser parser = new MyParser(lex(input), errorLog);
+		parser.setLazyBodies(true);
+		parser.setExpressionFactory(new HashConsingExpressionFactory());
+		assertEquals(print(parse(input, null)), print(parser.parseProgram()));
+	}
+
+	/**
+	 * @return a program of procedures whose bodies repeat a few expressions
+	 */
+	private static String generate(Random random) {
+		String[] operands = { "i", "n", "1", "2", "offset" };
+		String[] operators = { " + ", " * ", " - ", " DIV " };
+		StringBuilder text = new StringBuilder("VAR i, offset : INTEGER; b : BOOLEAN;\n");
+		for (int p = 0; p < 20; p++) {
+			text.append("PROCEDURE P").append(p).append("(n : INTEGER);\n  BEGIN\n");
+			for (int s = 0; s < 50; s++) {
+				StringBuilder expression = new StringBuilder(operands[random.nextInt(operands.length)]);
+				for (int k = random.nextInt(3); k >= 0; k--) {
+					expression.append(operators[random.nextInt(operators.length)])
+							.append(operands[random.nextInt(operands.length)]);
+				}
+				if (random.nextBoolean()) {
+					text.append("    i := -(").append(expression).append(");\n");
+				} else {
+					text.append("    b := ~(").append(expression).append(" < offset);\n");
+				}
+			}
+			text.append("    i := i\n  END P").append(p).append(";\n");
+		}
+		text.append("BEGIN\n  P0(1)\nEND.\n");
+		return text.toString();
+	}
+
+	private static List<Expression> rhs(Iterable<Statement> statements) {
+		List<Expression> result = new ArrayList<>();
+		for (Statement statement : statements) {
+			if (statement instanceof Assignment) {
+				result.add(((Assignment) statement).getRhs());
+			}
+		}
+		return result;
+	}
+
+	private static Program parse(String input, ExpressionFactory factory) {
+		MyParser parser = new MyParser(lex(input), new ErrorLog());
+		if (factory != null) {
+			parser.setExpressionFactory(factory);
+		}
+		return parser.parseProgram();
+	}
+
+	private static TokenBuffer lex(String input) {
+		return new TableLexer(new CharSequenceSource(input), new ErrorLog()).lexAll();
+	}
+
+	private static String print(Program program) {
+		StringWriter out = new StringWriter();
+		program.accept(new PostfixPrintVisitor(new PrintWriter(out)));
+		return out.toString();
+	}
+}
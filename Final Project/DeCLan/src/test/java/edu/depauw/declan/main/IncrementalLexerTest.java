@@ -0,0 +1,95 @@
+package edu.depauw.declan.main;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import edu.depauw.declan.common.CharSequenceSource;
+import edu.depauw.declan.common.ErrorLog;
+import edu.depauw.declan.common.SymbolInterner;
+import edu.depauw.declan.common.TokenBuffer;
+
+class IncrementalLexerTest {
+	private static final String PROGRAM = "CONST six = 6; seven = 7;\n"
+			+ "VAR x : INTEGER; r : REAL;\n"
+			+ "(* nested (* comment *) here *)\n"
+			+ "BEGIN\n"
+			+ "  x := 0ABH + six * seven; r := 1.5E+3;\n"
+			+ "  PrintString(\"done (* not a comment *)\")\n"
+			+ "END.\n";
+
+	@Test
+	void testEditInsideIdentifier() {
+		IncrementalLexer lexer = new IncrementalLexer(PROGRAM, new ErrorLog(), new SymbolInterner());
+		int offset = PROGRAM.indexOf("seven");
+		IncrementalLexer.Change change = lexer.edit(offset + 2, 1, "xx");
+		checkAgainstFullLex(lexer);
+
+		// Only the identifier itself was relexed
+		assertEquals(change.getFirstToken() + 1, change.getOldEndToken());
+		assertEquals(change.getFirstToken() + 1, change.getNewEndToken());
+		assertEquals("sexxen", lexer.getTokens().getLexeme(change.getFirstToken()));
+	}
+
+	@Test
+	void testOpenAndCloseComment() {
+		IncrementalLexer lexer = new IncrementalLexer(PROGRAM, new ErrorLog(), new SymbolInterner());
+		int offset = PROGRAM.indexOf("BEGIN");
+
+		// An unclosed comment swallows the rest of the program
+		IncrementalLexer.Change change = lexer.edit(offset, 0, "(* ");
+		checkAgainstFullLex(lexer);
+		assertEquals(change.getFirstToken(), change.getNewEndToken());
+		assertEquals(lexer.getText().length(), change.getEndOffset());
+
+		// Closing it again brings back the tokens after the comment
+		int close = lexer.getText().toString().indexOf(";", offset) + 1;
+		change = lexer.edit(close, 0, " *)");
+		checkAgainstFullLex(lexer);
+		assertEquals(lexer.getTokens().size(), change.getNewEndToken());
+
+		// Removing the inner close of the nested comment makes it unterminated
+		int inner = lexer.getText().toString().indexOf("comment *)") + 8;
+		lexer.edit(inner, 2, "");
+		checkAgainstFullLex(lexer);
+	}
+
+	@Test
+	void testRandomEdits() {
+		String[] pieces = { "x", "1", "E", "H", ".", " ", "\n", "(*", "*)", "\"", ":=", "END", "+", "(", ")", "*" };
+		Random random = new Random(426);
+		IncrementalLexer lexer = new IncrementalLexer(PROGRAM, new ErrorLog(), new SymbolInterner());
+		for (int n = 0; n < 2000; n++) {
+			int length = lexer.getText().length();
+			int offset = random.nextInt(length + 1);
+			int removed = random.nextInt(Math.min(3, length - offset) + 1);
+			String inserted = (random.nextInt(4) == 0) ? "" : pieces[random.nextInt(pieces.length)];
+			lexer.edit(offset, removed, inserted);
+			checkAgainstFullLex(lexer);
+		}
+	}
+
+	/**
+	 * Check that the tokens and line map of the IncrementalLexer agree with lexing
+	 * its current text from scratch.
+	 * 
+	 * @param lexer
+	 */
+	private void checkAgainstFullLex(IncrementalLexer lexer) {
+		CharSequenceSource source = new CharSequenceSource(lexer.getText());
+		TokenBuffer expected = new TableLexer(source, new ErrorLog()).lexAll();
+		TokenBuffer actual = lexer.getTokens();
+
+		assertEquals(expected.size(), actual.size());
+		for (int i = 0; i < expected.size(); i++) {
+			assertEquals(expected.getType(i), actual.getType(i));
+			assertEquals(expected.getStart(i), actual.getStart(i));
+			assertEquals(expected.getLength(i), actual.getLength(i));
+			assertEquals(expected.getLexeme(i), actual.getLexeme(i));
+			assertEquals(expected.getPosition(i), actual.getPosition(i));
+		}
+		assertEquals(source.getLineMap().getLineCount(), lexer.getLineMap().getLineCount());
+	}
+}
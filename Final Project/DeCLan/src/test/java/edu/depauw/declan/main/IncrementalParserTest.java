@@ -0,0 +1,183 @@
+package edu.depauw.declan.main;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import edu.depauw.declan.common.CharSequenceSource;
+import edu.depauw.declan.common.ErrorLog;
+import edu.depauw.declan.common.ParseException;
+import edu.depauw.declan.common.SymbolInterner;
+import edu.depauw.declan.common.ast.Declaration;
+import edu.depauw.declan.common.ast.Program;
+import edu.depauw.declan.model.ReferenceIndexer;
+
+class IncrementalParserTest {
+	private static final String PROGRAM = "CONST six = 6; seven = 7;\n"
+			+ "VAR answer, temp : INTEGER;\n"
+			+ "PROCEDURE First(a, b: INTEGER);\n"
+			+ "  VAR i : INTEGER;\n"
+			+ "  BEGIN\n"
+			+ "    FOR i := a TO b DO PrintInt(i) END\n"
+			+ "  END First;\n"
+			+ "PROCEDURE Second(x: REAL);\n"
+			+ "  PROCEDURE Inner(); BEGIN PrintLn() END Inner;\n"
+			+ "  BEGIN\n"
+			+ "    IF x > 1.0 THEN PrintReal(x / 2.) ELSE Inner() END\n"
+			+ "  END Second;\n"
+			+ "PROCEDURE Third();\n"
+			+ "  BEGIN\n"
+			+ "    WHILE temp < seven DO temp := temp + 1 END;\n"
+			+ "    answer := temp * six\n"
+			+ "  END Third;\n"
+			+ "BEGIN\n"
+			+ "  temp := 0;\n"
+			+ "  First(six, seven); Second(3.5); Third();\n"
+			+ "  PrintInt(answer)\n"
+			+ "END.\n";
+
+	@Test
+	void testReusesUntouchedProcedures() {
+		IncrementalParser parser = new IncrementalParser(PROGRAM, new ErrorLog(), new SymbolInterner());
+		List<Declaration> before = parser.parseProgram().getDeclarations();
+		assertEquals(3, parser.getReparsedCount());
+		assertEquals(0, parser.getReusedCount());
+
+		int offset = PROGRAM.indexOf("1.0");
+		parser.edit(offset, 3, "10.0");
+		Program program = parser.parseProgram();
+		List<Declaration> after = program.getDeclarations();
+		assertEquals(1, parser.getReparsedCount());
+		assertEquals(2, parser.getReusedCount());
+
+		// Declarations are the two constants, the variables, then the procedures
+		assertSame(before.get(3), after.get(3));
+		assertNotSame(before.get(4), after.get(4));
+		assertSame(before.get(5), after.get(5));
+		assertEquals(index(fullParse(parser.getLexer().getText())), index(program));
+	}
+
+	@Test
+	void testPositionsAfterInsertedLines() {
+		IncrementalParser parser = new IncrementalParser(PROGRAM, new ErrorLog(), new SymbolInterner());
+		parser.parseProgram();
+
+		int offset = PROGRAM.indexOf("VAR answer");
+		parser.edit(offset, 0, "(* two\nnew lines *)\n");
+		Program program = parser.parseProgram();
+		assertEquals(3, parser.getReusedCount());
+
+		String expected = index(fullParse(parser.getLexer().getText()));
+		assertEquals(expected, index(program));
+		assertEquals(5, program.getDeclarations().get(3).getStart().getLine());
+	}
+
+	@Test
+	void testErrorsReportedAgain() {
+		IncrementalParser parser = new IncrementalParser(PROGRAM, new ErrorLog(), new SymbolInterner());
+		parser.setErrorRecovery(true);
+		parser.parseProgram();
+
+		int offset = PROGRAM.indexOf("temp * six");
+		parser.edit(offset + "temp".length(), 2, "");
+		for (int i = 0; i < 2; i++) {
+			try {
+				parser.parseProgram();
+				fail("Expected a ParseException");
+			} catch (ParseException pe) {
+				assertEquals(1, parser.getReparsedCount());
+				assertEquals(2, parser.getReusedCount());
+			}
+		}
+
+		parser.edit(offset + "temp".length(), 0, " +");
+		Program program = parser.parseProgram();
+		assertEquals(1, parser.getReparsedCount());
+		assertEquals(index(fullParse(parser.getLexer().getText())), index(program));
+	}
+
+	@Test
+	void testRandomEdits() {
+		String[] fragments = { "", "\n", " ", ";", "END", "END First;", "BEGIN", "PROCEDURE P();", "(*", "*)",
+				"x := 1", "(", ")", "+", "IF", "THEN", "Second" };
+		Random random = new Random(42);
+		IncrementalParser parser = new IncrementalParser(PROGRAM, new ErrorLog(), new SymbolInterner());
+		parser.setErrorRecovery(true);
+		parser.parseProgram();
+
+		for (int i = 0; i < 500; i++) {
+			CharSequence text = parser.getLexer().getText();
+			int offset = random.nextInt(text.length() + 1);
+			int removed = random.nextInt(Math.min(4, text.length() - offset) + 1);
+			parser.edit(offset, removed, fragments[random.nextInt(fragments.length)]);
+
+			text = parser.getLexer().getText();
+			assertEquals("After edit " + i + " giving\n" + text, index(fullParse(text)), index(parse(parser)));
+
+			if (random.nextInt(5) == 0) {
+				// Start again, so the text does not drift too far from a program
+				parser = new IncrementalParser(PROGRAM, new ErrorLog(), new SymbolInterner());
+				parser.setErrorRecovery(true);
+				parser.parseProgram();
+			}
+		}
+	}
+
+	/**
+	 * @return the Program parsed by parser, the partial Program if there were
+	 *         errors, or null if there is none
+	 */
+	private static Program parse(IncrementalParser parser) {
+		try {
+			return parser.parseProgram();
+		} catch (ParseException pe) {
+			return pe.getPartialProgram();
+		}
+	}
+
+	private static Program fullParse(CharSequence text) {
+		ErrorLog errorLog = new ErrorLog();
+		TableLexer lexer = new TableLexer(new CharSequenceSource(text), errorLog);
+		MyParser parser = new MyParser(lexer.lexAll(), errorLog);
+		parser.setErrorRecovery(true);
+		try {
+			return parser.parseProgram();
+		} catch (ParseException pe) {
+			return pe.getPartialProgram();
+		}
+	}
+
+	/**
+	 * @return the declarations and uses of every identifier, with positions, as
+	 *         printed by the ReferenceIndexer, followed by the semantic errors
+	 */
+	private static String index(Program program) {
+		if (program == null) {
+			return "no program";
+		}
+		PrintStream saved = System.out;
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		ErrorLog errorLog = new ErrorLog();
+		try {
+			System.setOut(new PrintStream(bytes, true));
+			program.accept(new ReferenceIndexer(errorLog));
+		} catch (RuntimeException e) {
+			System.out.println(e.getClass().getSimpleName());
+		} finally {
+			System.setOut(saved);
+		}
+		StringBuilder result = new StringBuilder(bytes.toString());
+		for (ErrorLog.LogItem item : errorLog) {
+			result.append(item.getMessage()).append(" at ").append(item.getPosition()).append('\n');
+		}
+		return result.toString();
+	}
+}
@@ -0,0 +1,198 @@
+package edu.depauw.declan.main;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import edu.depauw.declan.common.CharSequenceSource;
+import edu.depauw.declan.common.ErrorLog;
+import edu.depauw.declan.common.ParseException;
+import edu.depauw.declan.common.TokenBuffer;
+import edu.depauw.declan.common.ast.Declaration;
+import edu.depauw.declan.common.ast.LazyProcedureBody;
+import edu.depauw.declan.common.ast.ProcedureDeclaration;
+import edu.depauw.declan.common.ast.Program;
+import edu.depauw.declan.model.ReferenceIndexer;
+
+class LazyProcedureBodyTest {
+	private static final String PROGRAM = "VAR total : INTEGER;\n"
+			+ "PROCEDURE Used(n : INTEGER);\n"
+			+ "  PROCEDURE Helper(); BEGIN total := total + 1 END Helper;\n"
+			+ "  PROCEDURE Unused(); BEGIN Used(0) END Unused;\n"
+			+ "  BEGIN\n"
+			+ "    IF n > 0 THEN WHILE n > 0 DO Helper(); n := n - 1 END ELSE Helper() END\n"
+			+ "  END Used;\n"
+			+ "PROCEDURE Dead();\n"
+			+ "  BEGIN FOR total := 1 TO 10 DO AlsoDead() END\n"
+			+ "  END Dead;\n"
+			+ "PROCEDURE AlsoDead(); BEGIN Dead() END AlsoDead;\n"
+			+ "PROCEDURE Helper(); BEGIN REPEAT Dead() UNTIL TRUE END Helper;\n"
+			+ "BEGIN\n"
+			+ "  Used(3); PrintInt(total)\n"
+			+ "END.\n";
+
+	@Test
+	void testBodiesParsedOnDemand() {
+		Program program = parseLazy(PROGRAM, new ErrorLog(), false);
+		ProcedureDeclaration used = procedure(program.getDeclarations(), "Used");
+		LazyProcedureBody body = (LazyProcedureBody) used.getBody();
+		assertFalse(body.isParsed());
+		assertEquals(1, body.getStatements().size());
+		assertTrue(body.isParsed());
+		assertEquals(index(parseEager(PROGRAM, new ErrorLog(), false)), index(program));
+	}
+
+	@Test
+	void testDeadProceduresNotParsed() {
+		Program program = parseLazy(PROGRAM, new ErrorLog(), false);
+		ReachableProcedures procedures = new ReachableProcedures(program);
+
+		List<String> dead = new ArrayList<>();
+		for (ProcedureDeclaration procedure : procedures.getUnreachable()) {
+			dead.add(procedure.getHead().getId().getLexeme());
+			assertFalse(((LazyProcedureBody) procedure.getBody()).isParsed());
+		}
+		// The inner Helper shadows the outer one, which would call Dead
+		assertEquals(List.of("Unused", "Dead", "AlsoDead", "Helper"), dead);
+
+		ProcedureDeclaration used = procedure(program.getDeclarations(), "Used");
+		assertTrue(procedures.isReachable(used));
+		assertTrue(procedures.isReachable(procedure(used.getBody().getDeclarations(), "Helper")));
+		assertEquals(2, procedures.getReachable().size());
+	}
+
+	@Test
+	void testErrorsLoggedOnDemand() {
+		String input = PROGRAM.replace("AlsoDead() END", "AlsoDead( END");
+		ErrorLog errorLog = new ErrorLog();
+		Program program = parseLazy(input, errorLog, true);
+		assertEquals(0, messages(errorLog).size());
+
+		ProcedureDeclaration dead = procedure(program.getDeclarations(), "Dead");
+		dead.getBody().getStatements();
+		ErrorLog eagerLog = new ErrorLog();
+		try {
+			parseEager(input, eagerLog, true);
+		} catch (ParseException pe) {
+			// Expected; the errors are compared below
+		}
+		assertEquals(messages(eagerLog), messages(errorLog));
+	}
+
+	@Test
+	void testUnbalancedBodyParsedAtOnce() {
+		// With the END missing, the body runs into the next PROCEDURE
+		String input = PROGRAM.replace("  END Dead;\n", "");
+		ErrorLog lazyLog = new ErrorLog();
+		ErrorLog eagerLog = new ErrorLog();
+		assertEquals(index(partial(input, eagerLog, false)), index(partial(input, lazyLog, true)));
+		assertEquals(messages(eagerLog), messages(lazyLog));
+		assertTrue(messages(lazyLog).size() > 0);
+	}
+
+	@Test
+	void testRandomMutations() {
+		Random random = new Random(42);
+		String[] fragments = { "", ";", "END", "BEGIN", "IF", "WHILE", "FOR", "REPEAT", "UNTIL", "(", "x :=" };
+		for (int i = 0; i < 300; i++) {
+			StringBuilder input = new StringBuilder(PROGRAM);
+			int offset = random.nextInt(input.length());
+			int removed = random.nextInt(Math.min(6, input.length() - offset) + 1);
+			input.replace(offset, offset + removed, " " + fragments[random.nextInt(fragments.length)] + " ");
+			String text = input.toString();
+
+			// Once every body has been parsed, the trees are the same if there are no
+			// errors; otherwise the lazy parse recovers at the END of a broken body,
+			// so only the presence of errors has to agree
+			ErrorLog lazyLog = new ErrorLog();
+			ErrorLog eagerLog = new ErrorLog();
+			String eager = index(partial(text, eagerLog, false));
+			String lazy = index(partial(text, lazyLog, true));
+			if (eagerLog.iterator().hasNext()) {
+				assertTrue("For mutation " + i + ":\n" + text, lazyLog.iterator().hasNext());
+			} else {
+				assertEquals("For mutation " + i + ":\n" + text, eager, lazy);
+				assertEquals("For mutation " + i + ":\n" + text, List.of(), messages(lazyLog));
+			}
+		}
+	}
+
+	private static ProcedureDeclaration procedure(List<Declaration> declarations, String name) {
+		for (Declaration declaration : declarations) {
+			if (declaration instanceof ProcedureDeclaration
+					&& ((ProcedureDeclaration) declaration).getHead().getId().getLexeme().equals(name)) {
+				return (ProcedureDeclaration) declaration;
+			}
+		}
+		throw new AssertionError("No procedure " + name);
+	}
+
+	private static Program parseLazy(String input, ErrorLog errorLog, boolean recover) {
+		MyParser parser = new MyParser(lex(input), errorLog);
+		parser.setErrorRecovery(recover);
+		parser.setLazyBodies(true);
+		return parser.parseProgram();
+	}
+
+	private static Program parseEager(String input, ErrorLog errorLog, boolean recover) {
+		MyParser parser = new MyParser(lex(input), errorLog);
+		parser.setErrorRecovery(recover);
+		return parser.parseProgram();
+	}
+
+	/**
+	 * Parse with error recovery, returning the partial Program if there were
+	 * errors (or null if there is none).
+	 */
+	private static Program partial(String input, ErrorLog errorLog, boolean lazy) {
+		MyParser parser = new MyParser(lex(input), errorLog);
+		parser.setErrorRecovery(true);
+		parser.setLazyBodies(lazy);
+		try {
+			return parser.parseProgram();
+		} catch (ParseException pe) {
+			return pe.getPartialProgram();
+		}
+	}
+
+	private static TokenBuffer lex(String input) {
+		return new TableLexer(new CharSequenceSource(input), new ErrorLog()).lexAll();
+	}
+
+	/**
+	 * @return the declarations and uses of every identifier, with positions, as
+	 *         printed by the ReferenceIndexer (which looks into every body)
+	 */
+	private static String index(Program program) {
+		if (program == null) {
+			return "no program";
+		}
+		PrintStream saved = System.out;
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try {
+			System.setOut(new PrintStream(bytes, true));
+			program.accept(new ReferenceIndexer(new ErrorLog()));
+		} catch (RuntimeException e) {
+			System.out.println(e.getClass().getSimpleName());
+		} finally {
+			System.setOut(saved);
+		}
+		return bytes.toString();
+	}
+
+	private static List<String> messages(ErrorLog errorLog) {
+		List<String> result = new ArrayList<>();
+		for (ErrorLog.LogItem item : errorLog) {
+			result.add(item.getMessage() + " at " + item.getPosition());
+		}
+		return result;
+	}
+}
@@ -0,0 +1,94 @@
+package edu.depauw.declan.main;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.management.ManagementFactory;
+
+import org.junit.Test;
+
+import edu.depauw.declan.common.CharSequenceSource;
+import edu.depauw.declan.common.ErrorLog;
+import edu.depauw.declan.common.LexerCursor;
+import edu.depauw.declan.common.SymbolInterner;
+import edu.depauw.declan.common.TokenBuffer;
+import edu.depauw.declan.common.TokenType;
+
+class LexerCursorTest {
+
+	@Test
+	void testMatchesLexAll() {
+		String input = "CONST x = 42; r = 3.5E+1;\n(* comment *) BEGIN PrintString(\"hi\"); x := x + 0FH END.";
+		TokenBuffer expected = new TableLexer(new CharSequenceSource(input), new ErrorLog()).lexAll();
+
+		SymbolInterner symbols = new SymbolInterner();
+		try (LexerCursor cursor = new TableLexer(new CharSequenceSource(input), new ErrorLog(), symbols).cursor()) {
+			for (int i = 0; i < expected.size(); i++) {
+				assertTrue("Not enough tokens", cursor.advance());
+				assertEquals(expected.getType(i), cursor.type());
+				assertEquals(expected.getStart(i), cursor.startOffset());
+				assertEquals(expected.getLength(i), cursor.length());
+				if (cursor.type() == TokenType.ID) {
+					assertEquals(expected.getLexeme(i), symbols.getName(cursor.symbolId()));
+				} else {
+					assertEquals(SymbolInterner.NO_SYMBOL, cursor.symbolId());
+				}
+				if (cursor.type() == TokenType.NUM || cursor.type() == TokenType.STRING) {
+					assertEquals(expected.getLexeme(i), cursor.lexeme().toString());
+				}
+				if (cursor.type() == TokenType.NUM) {
+					assertEquals(expected.isReal(i), cursor.isReal());
+					assertEquals(expected.getIntValue(i), cursor.numValue());
+				}
+			}
+			assertFalse("Too many tokens", cursor.advance());
+		}
+	}
+
+	@Test
+	void testParserOnCursor() {
+		String input = "CONST a = 1; b = 0AH;";
+		MyParser parser = new MyParser(new TableLexer(new CharSequenceSource(input), new ErrorLog()).cursor(),
+				new ErrorLog());
+		assertEquals(TokenType.CONST, parser.peek(0));
+		assertEquals(TokenType.NUM, parser.peek(3));
+		parser.skip();
+		assertTrue(parser.willMatch(TokenType.ID));
+		assertEquals(TokenType.SEMI, parser.peek(7));
+	}
+
+	@Test
+	void testNoAllocationPerToken() {
+		StringBuilder input = new StringBuilder();
+		for (int i = 0; i < 20000; i++) {
+			input.append("IF count < 100 THEN total := total + count * 2; x := \"ok\" (* again *) END;\n");
+		}
+
+		// Map the lines first, so that only the lexer is measured
+		CharSequenceSource lines = new CharSequenceSource(input);
+		while (!lines.atEOF()) {
+			lines.advance();
+		}
+		LexerCursor cursor = new TableLexer(new CharSequenceSource(input, 0, lines.getLineMap()), new ErrorLog())
+				.cursor();
+
+		// Warm up the SymbolInterner with the names used
+		for (int i = 0; i < 100; i++) {
+			cursor.advance();
+		}
+
+		com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory
+				.getThreadMXBean();
+		long thread = Thread.currentThread().getId();
+		long before = threads.getThreadAllocatedBytes(thread);
+		int count = 0;
+		while (cursor.advance()) {
+			count = count + 1;
+		}
+		long allocated = threads.getThreadAllocatedBytes(thread) - before;
+
+		// Allow for a little fixed overhead, but nothing per token
+		assertTrue("Allocated " + allocated + " bytes for " + count + " tokens", allocated < count / 100);
+	}
+}
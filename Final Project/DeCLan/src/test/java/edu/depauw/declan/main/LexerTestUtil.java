@@ -6,6 +6,7 @@ import static org.junit.Assert.assertTrue;
 
 import java.io.StringReader;
 import java.util.Iterator;
+import java.util.function.BiFunction;
 
 import edu.depauw.declan.common.ErrorLog;
 import edu.depauw.declan.common.Lexer;
@@ -24,13 +25,25 @@ public class LexerTestUtil {
 	 * @param input
 	 */
 	static void compareToModel(String input) {
+		compareToModel(input, MyLexer::new);
+	}
+
+	/**
+	 * Run the given input through both the Lexer built by the given constructor
+	 * and the ReferenceLexer, checking that they produce the same Tokens and error
+	 * messages.
+	 * 
+	 * @param input
+	 * @param lexerConstructor
+	 */
+	static void compareToModel(String input, BiFunction<Source, ErrorLog, Lexer> lexerConstructor) {
 		Source mySource = new ReaderSource(new StringReader(input));
 		Source modelSource = new ReaderSource(new StringReader(input));
 
 		ErrorLog myErrorLog = new ErrorLog();
 		ErrorLog modelErrorLog = new ErrorLog();
 
-		try (Lexer myLexer = new MyLexer(mySource, myErrorLog);
+		try (Lexer myLexer = lexerConstructor.apply(mySource, myErrorLog);
 			 Lexer modelLexer = new ReferenceLexer(modelSource, modelErrorLog)) {
 			while (modelLexer.hasNext()) {
 				assertTrue("Not enough tokens", myLexer.hasNext());
@@ -0,0 +1,110 @@
+package edu.depauw.declan.main;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.List;
+
+import org.junit.Test;
+
+import edu.depauw.declan.common.CharSequenceSource;
+import edu.depauw.declan.common.Checker;
+import edu.depauw.declan.common.ErrorLog;
+import edu.depauw.declan.common.SymbolInterner;
+import edu.depauw.declan.common.ast.ASTArena;
+import edu.depauw.declan.common.ast.Program;
+import edu.depauw.declan.common.icode.ICode;
+import edu.depauw.declan.model.ReferenceChecker;
+
+class MyGeneratorTest {
+	/**
+	 * The demo program of Project6
+	 */
+	private static final String DEMO = "CONST six = 6; seven = 7;\n"
+			+ "VAR answer, temp : INTEGER;\n"
+			+ "PROCEDURE Display(answer: INTEGER; a, b: INTEGER; x: REAL);\n"
+			+ "  VAR i, temp : INTEGER;\n"
+			+ "  BEGIN\n"
+			+ "    temp := answer;\n"
+			+ "    FOR i := a TO b BY -1 DO\n"
+			+ "      PrintInt(temp); PrintLn();\n"
+			+ "      WHILE temp > i DO temp := temp - 1\n"
+			+ "      ELSIF temp < i DO temp := temp + 1\n"
+			+ "      END\n"
+			+ "    END;\n"
+			+ "    ASSERT(~(temp # b), \"something went wrong\");\n"
+			+ "    PrintReal(x / 2.); PrintLn()\n"
+			+ "  END Display;\n"
+			+ "BEGIN\n"
+			+ "  answer := +0;\n"
+			+ "  temp := -0;\n"
+			+ "  REPEAT\n"
+			+ "    answer := -(-answer - temp);\n"
+			+ "    temp := temp + seven MOD 0AH;\n"
+			+ "  UNTIL answer >= +six * seven;\n"
+			+ "  PrintString(\"The answer is \");\n"
+			+ "  Display(answer, seven, six, 3.14159265);\n"
+			+ "  PrintInt(answer); PrintLn();\n"
+			+ "  PrintInt(temp); PrintLn();\n"
+			+ "END.\n";
+
+	@Test
+	void testArenaProgram() {
+		Program original = parse(DEMO);
+		ASTArena arena = new ASTArena(new CharSequenceSource(DEMO).getLineMap(), new SymbolInterner());
+		Program view = arena.getProgram(arena.add(original));
+		assertEquals(generate(original).toString(), generate(view).toString());
+	}
+
+	@Test
+	void testLargestLiterals() {
+		List<ICode> code = generate("BEGIN PrintInt(2147483647); PrintInt(7FFFFFFFH) END.");
+		assertEquals(2, count(code, "2147483647"));
+	}
+
+	@Test
+	void testLiteralOutOfRange() {
+		for (String literal : new String[] { "2147483648", "0FFFFFFFFH", "99999999999999999999" }) {
+			try {
+				generate("BEGIN PrintInt(" + literal + ") END.");
+				fail("Generated code for " + literal);
+			} catch (RuntimeException e) {
+				assertTrue(e.getMessage(), e.getMessage().contains("out of range"));
+			}
+		}
+	}
+
+	private static List<ICode> generate(String input) {
+		return generate(parse(input));
+	}
+
+	/**
+	 * Check and then generate code for the program, as Project6 does.
+	 */
+	private static List<ICode> generate(Program program) {
+		ErrorLog errorLog = new ErrorLog();
+		Checker checker = new ReferenceChecker(errorLog);
+		program.accept(checker);
+		return new MyGenerator(errorLog, checker).generate(program);
+	}
+
+	/**
+	 * Parse with the TableLexer, which still produces a token for a literal that
+	 * it reports as out of range.
+	 */
+	private static Program parse(String input) {
+		return new MyParser(new TableLexer(new CharSequenceSource(input), new ErrorLog()).lexAll(), new ErrorLog())
+				.parseProgram();
+	}
+
+	private static int count(List<ICode> code, String text) {
+		int result = 0;
+		for (ICode instr : code) {
+			if (instr.toString().contains(text)) {
+				result = result + 1;
+			}
+		}
+		return result;
+	}
+}
@@ -0,0 +1,187 @@
+package edu.depauw.declan.main;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import edu.depauw.declan.common.CharSequenceSource;
+import edu.depauw.declan.common.ConcurrentErrorLog;
+import edu.depauw.declan.common.ErrorLimitException;
+import edu.depauw.declan.common.ErrorLog;
+import edu.depauw.declan.common.ParseException;
+import edu.depauw.declan.common.PostfixPrintVisitor;
+import edu.depauw.declan.common.ast.Assignment;
+import edu.depauw.declan.common.ast.Program;
+import edu.depauw.declan.common.ast.Statement;
+
+class MyParserRecoveryTest {
+
+	@Test
+	void testReportsEveryError() {
+		String input = "CONST a = ; b = 2; c 3;\n"
+				+ "VAR x, : INTEGER; y : INTEGER;\n"
+				+ "BEGIN\n"
+				+ "  x := 1 +;\n"
+				+ "  y := (2;\n"
+				+ "  PrintInt(b)\n"
+				+ "END.";
+		ErrorLog errorLog = new ErrorLog();
+		ParseException pe = parseExpectingErrors(input, errorLog);
+
+		assertEquals(List.of("Expected LPAR, found SEMI at 1:11", "Expected EQ, found NUM at 1:22",
+				"Expected ID, found COLON at 2:8", "Expected LPAR, found SEMI at 4:11",
+				"Expected RPAR, found SEMI at 5:10"), messages(errorLog));
+		assertEquals(0, pe.getStackTrace().length);
+
+		// The good declarations and statements are kept
+		Program partial = pe.getPartialProgram();
+		assertNotNull(partial);
+		assertEquals(2, partial.getDeclarations().size());
+		assertEquals(3, partial.getStatements().size());
+	}
+
+	@Test
+	void testWithoutRecovery() {
+		String input = "CONST a = ; b = 2; c 3; BEGIN END.";
+		ErrorLog errorLog = new ErrorLog();
+		try (MyParser parser = new MyParser(new TableLexer(new CharSequenceSource(input), errorLog), errorLog)) {
+			parser.parseProgram();
+			fail("Expected a ParseException");
+		} catch (ParseException pe) {
+			assertNull(pe.getPartialProgram());
+		}
+		assertEquals(List.of("Expected LPAR, found SEMI at 1:11"), messages(errorLog));
+	}
+
+	@Test
+	void testMissingParameterList() {
+		// Only an identifier can start an FPSection; anything else is a missing )
+		String[] inputs = { "PROCEDURE i( BEGIN END i; BEGIN END.", "PROCEDURE i(; BEGIN END i; BEGIN END.",
+				"PROCEDURE i(VAR a : INTEGER); BEGIN END i; BEGIN END." };
+		String[] expected = { "Expected RPAR, found BEGIN at 1:14", "Expected RPAR, found SEMI at 1:13",
+				"Expected RPAR, found VAR at 1:13" };
+		for (int i = 0; i < inputs.length; i++) {
+			ErrorLog errorLog = new ErrorLog();
+			try (MyParser parser = new MyParser(new TableLexer(new CharSequenceSource(inputs[i]), errorLog),
+					errorLog)) {
+				parser.parseProgram();
+				fail("Expected a ParseException");
+			} catch (ParseException pe) {
+				// expected
+			}
+			assertEquals(List.of(expected[i]), messages(errorLog));
+		}
+
+		// With recovery, the procedure is kept without its parameters
+		ErrorLog errorLog = new ErrorLog();
+		ParseException pe = parseExpectingErrors("PROCEDURE i( BEGIN END i; BEGIN i() END.", errorLog);
+		assertEquals(List.of("Expected RPAR, found BEGIN at 1:14"), messages(errorLog));
+		assertEquals(1, pe.getPartialProgram().getDeclarations().size());
+	}
+
+	@Test
+	void testStructuredStatements() {
+		String input = "PROCEDURE P(a INTEGER; b: REAL);\n"
+				+ "  VAR z : INTEGER;\n"
+				+ "  BEGIN z := ; PrintInt(z) END P;\n"
+				+ "BEGIN\n"
+				+ "  IF a = THEN a := 1 ELSIF a > 2 THEN a := ) ELSE a := 3 END;\n"
+				+ "  WHILE DO a := 1 END;\n"
+				+ "  REPEAT a := 1 UNTIL ;\n"
+				+ "  a := 4\n"
+				+ "END.";
+		ErrorLog errorLog = new ErrorLog();
+		ParseException pe = parseExpectingErrors(input, errorLog);
+
+		assertEquals(List.of("Expected COLON, found ID at 1:15", "Expected LPAR, found SEMI at 3:14",
+				"Expected LPAR, found THEN at 5:10", "Expected LPAR, found RPAR at 5:44",
+				"Expected LPAR, found DO at 6:9", "Expected LPAR, found SEMI at 7:23"), messages(errorLog));
+
+		// The procedure survives without its parameters, and the last assignment
+		// is still in its place
+		Program partial = pe.getPartialProgram();
+		assertEquals(1, partial.getDeclarations().size());
+		List<Statement> statements = new ArrayList<>(partial.getStatements());
+		assertEquals(4, statements.size());
+		assertEquals(8, ((Assignment) statements.get(3)).getStart().getLine());
+	}
+
+	@Test
+	void testMissingAndStrayTokens() {
+		String input = "BEGIN x := 1 y := 2 ELSIF z := 3 END.";
+		ErrorLog errorLog = new ErrorLog();
+		ParseException pe = parseExpectingErrors(input, errorLog);
+
+		assertEquals(List.of("Expected SEMI, found ID at 1:14", "Expected END, found ELSIF at 1:21"),
+				messages(errorLog));
+		for (Statement statement : pe.getPartialProgram().getStatements()) {
+			assertTrue(statement instanceof Assignment);
+		}
+		assertEquals(3, pe.getPartialProgram().getStatements().size());
+	}
+
+	@Test
+	void testErrorLimit() {
+		// Five errors, in declarations, statements and expressions, with a limit of three
+		String input = "CONST a = ; b = 2; c 3;\n"
+				+ "BEGIN\n"
+				+ "  x := 1 +;\n"
+				+ "  y := (2;\n"
+				+ "  IF a = THEN a := 1 END\n"
+				+ "END.";
+		ErrorLog errorLog = new ConcurrentErrorLog(3);
+		MyParser parser = new MyParser(new TableLexer(new CharSequenceSource(input), errorLog), errorLog);
+		parser.setErrorRecovery(true);
+		try {
+			parser.parseProgram();
+			fail("Expected the error limit to be reached");
+		} catch (ErrorLimitException e) {
+			// expected
+		}
+		assertEquals(List.of("Expected LPAR, found SEMI at 1:11", "Expected EQ, found NUM at 1:22",
+				"Expected LPAR, found SEMI at 3:11"), messages(errorLog));
+		assertEquals(3, parser.getErrorCount());
+	}
+
+	@Test
+	void testValidProgram() {
+		String input = "CONST six = 6; seven = 7;\n"
+				+ "BEGIN PrintInt(seven - six); PrintInt(2 * (six + seven) MOD six) END.";
+		ErrorLog errorLog = new ErrorLog();
+		MyParser parser = new MyParser(new TableLexer(new CharSequenceSource(input), errorLog), errorLog);
+		parser.setErrorRecovery(true);
+		StringWriter out = new StringWriter();
+		parser.parseProgram().accept(new PostfixPrintVisitor(new PrintWriter(out)));
+
+		assertEquals(String.format("7%n6%nSUBTRACT%nPRINT%n2%n6%n7%nADD%nMULTIPLY%n6%nREMAINDER%nPRINT%n"), out.toString());
+		assertTrue(messages(errorLog).isEmpty());
+	}
+
+	private static ParseException parseExpectingErrors(String input, ErrorLog errorLog) {
+		try (MyParser parser = new MyParser(new TableLexer(new CharSequenceSource(input), errorLog), errorLog)) {
+			parser.setErrorRecovery(true);
+			parser.parseProgram();
+		} catch (ParseException pe) {
+			return pe;
+		}
+		fail("Expected a ParseException");
+		return null;
+	}
+
+	private static List<String> messages(ErrorLog errorLog) {
+		List<String> result = new ArrayList<>();
+		for (ErrorLog.LogItem item : errorLog) {
+			result.add(item.getMessage() + " at " + item.getPosition());
+		}
+		return result;
+	}
+}
@@ -18,7 +18,13 @@ import edu.depauw.declan.common.Parser;
 import edu.depauw.declan.common.PostfixPrintVisitor;
 import edu.depauw.declan.common.ReaderSource;
 import edu.depauw.declan.common.Source;
+import edu.depauw.declan.common.ast.BinaryOperation;
+import edu.depauw.declan.common.ast.BooleanValue;
+import edu.depauw.declan.common.ast.Expression;
+import edu.depauw.declan.common.ast.NumValue;
+import edu.depauw.declan.common.ast.ProcedureCall;
 import edu.depauw.declan.common.ast.Program;
+import edu.depauw.declan.common.ast.UnaryOperation;
 import edu.depauw.declan.model.ReferenceLexer;
 import edu.depauw.declan.model.ReferenceParser;
 
@@ -60,6 +66,84 @@ class MyParserTest {
 		compareToModel(input);
 	}
 
+	@Test
+	void testPrecedence() {
+		String input = "VAR a, b, c : INTEGER; p, q : BOOLEAN; BEGIN p := -a + b * c < a DIV b OR c; "
+				+ "q := ~p & (a # b) OR ~~q; p := (a * (b - (c + a)) >= +b) = (b MOD c <= a / b); "
+				+ "q := a - b - c > a * b * c & p END.";
+		compareToModel(input);
+	}
+
+	@Test
+	void testExpressionErrors() {
+		compareToModel("VAR a : INTEGER; BEGIN a := (a + ) * 2 END.");
+		compareToModel("VAR a : INTEGER; BEGIN a := a < a < a END.");
+		compareToModel("VAR a : INTEGER; BEGIN a := ((a) END.");
+		compareToModel("VAR a : INTEGER; BEGIN a := a * -a END.");
+	}
+
+	@Test
+	void testLongExpression() {
+		// Left-associative, so the tree is as deep as the expression is long
+		int terms = 100000;
+		StringBuilder input = new StringBuilder("BEGIN PrintInt(1");
+		for (int i = 0; i < terms; i++) {
+			input.append(i % 3 == 0 ? " - 2" : " + 1");
+		}
+		input.append(") END.");
+
+		Expression expression = parseArgument(input.toString());
+		int depth = 0;
+		while (expression instanceof BinaryOperation) {
+			BinaryOperation operation = (BinaryOperation) expression;
+			assertTrue(operation.getRight() instanceof NumValue);
+			expression = operation.getLeft();
+			depth = depth + 1;
+		}
+		assertEquals(terms, depth);
+	}
+
+	@Test
+	void testDeeplyNestedExpression() {
+		int depth = 100000;
+		StringBuilder input = new StringBuilder("BEGIN PrintInt(");
+		for (int i = 0; i < depth; i++) {
+			input.append("~(1 * (");
+		}
+		input.append("TRUE");
+		for (int i = 0; i < 2 * depth; i++) {
+			input.append(')');
+		}
+		input.append(") END.");
+
+		Expression expression = parseArgument(input.toString());
+		for (int i = 0; i < depth; i++) {
+			UnaryOperation not = (UnaryOperation) expression;
+			assertEquals(UnaryOperation.OpType.NOT, not.getOperator());
+			BinaryOperation operation = (BinaryOperation) not.getExpression();
+			assertEquals(BinaryOperation.OpType.TIMES, operation.getOperator());
+			// Columns count from 1, after "BEGIN PrintInt("
+			assertEquals(16 + 7 * i, not.getStart().getColumn());
+			assertEquals(18 + 7 * i, operation.getStart().getColumn());
+			expression = operation.getRight();
+		}
+		assertTrue(expression instanceof BooleanValue);
+	}
+
+	/**
+	 * @param input a program whose body is a single procedure call
+	 * @return the first argument of the call
+	 */
+	private static Expression parseArgument(String input) {
+		ErrorLog errorLog = new ErrorLog();
+		Lexer lexer = new ReferenceLexer(new ReaderSource(new StringReader(input)), errorLog);
+		try (Parser parser = new MyParser(lexer, errorLog)) {
+			Program program = parser.parseProgram();
+			ProcedureCall call = (ProcedureCall) program.getStatements().iterator().next();
+			return call.getArguments().get(0);
+		}
+	}
+
 	/**
 	 * Run the same input through both MyParser and the ReferenceParser (provided in
 	 * the .jar file in the libs folder). Assertions check that they produce the
@@ -0,0 +1,111 @@
+package edu.depauw.declan.main;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import edu.depauw.declan.common.CharSequenceSource;
+import edu.depauw.declan.common.ErrorLog;
+import edu.depauw.declan.common.Lexer;
+import edu.depauw.declan.common.LexerCursor;
+import edu.depauw.declan.common.OffHeapTokenStore;
+import edu.depauw.declan.common.Source;
+import edu.depauw.declan.common.SymbolInterner;
+import edu.depauw.declan.common.TokenBuffer;
+import edu.depauw.declan.common.TokenType;
+
+class OffHeapTokenStoreTest {
+
+	@Test
+	void testMatchesTokenBuffer() {
+		String input = "CONST x = 42; r = 3.5E+1;\n(* comment *) BEGIN PrintString(\"hi\"); x := x + 0FH END.";
+		TokenBuffer expected = new TableLexer(new CharSequenceSource(input), new ErrorLog()).lexAll();
+		try (OffHeapTokenStore store = fill(input, Long.MAX_VALUE, OffHeapTokenStore.DEFAULT_PAGE_BITS)) {
+			assertSame(expected, store);
+			assertFalse(store.hasSpilled());
+		}
+	}
+
+	@Test
+	void testSpill() {
+		StringBuilder input = new StringBuilder("CONST\n");
+		for (int i = 0; i < 500; i++) {
+			input.append("  c").append(i % 37).append(" = ").append(i).append(".5;\n");
+		}
+		input.append("BEGIN PrintString(\"");
+		for (int i = 0; i < 200; i++) {
+			input.append("a long string spread over several pages ");
+		}
+		input.append("\") END.");
+
+		// Small pages, most of them in the temporary file
+		TokenBuffer expected = new TableLexer(new CharSequenceSource(input), new ErrorLog()).lexAll();
+		try (OffHeapTokenStore store = fill(input, 256, 6)) {
+			assertSame(expected, store);
+			assertTrue(store.hasSpilled());
+			assertTrue(store.getAllocatedBytes() >= 16L * store.size());
+		}
+	}
+
+	@Test
+	void testParserOnStore() {
+		String input = "CONST a = 1; b = 0AH;";
+		try (OffHeapTokenStore store = fill(input, 0, 6)) {
+			MyParser parser = new MyParser(store, new ErrorLog());
+			assertEquals(TokenType.CONST, parser.peek(0));
+			assertEquals(TokenType.NUM, parser.peek(3));
+			parser.skip();
+			assertTrue(parser.willMatch(TokenType.ID));
+			assertEquals(TokenType.SEMI, parser.peek(7));
+		}
+	}
+
+	@Test
+	void testParserClosesStore() {
+		OffHeapTokenStore store = fill("CONST a = 1; b = 0AH;", 0, 6);
+		assertTrue(store.hasSpilled());
+		try (MyParser parser = new MyParser(store, new ErrorLog())) {
+			assertEquals(TokenType.CONST, parser.peek(0));
+		}
+		assertTrue(store.isClosed());
+
+		store = fill("CONST a = 1;", 0, 6);
+		store.lexer().close();
+		assertTrue(store.isClosed());
+	}
+
+	private static OffHeapTokenStore fill(CharSequence input, long spillThreshold, int pageBits) {
+		Source source = new CharSequenceSource(input);
+		SymbolInterner symbols = new SymbolInterner();
+		OffHeapTokenStore store = new OffHeapTokenStore(source.getLineMap(), symbols, spillThreshold, pageBits);
+		try (LexerCursor cursor = new TableLexer(source, new ErrorLog(), symbols).cursor()) {
+			while (cursor.advance()) {
+				store.add(cursor);
+			}
+		}
+		return store;
+	}
+
+	private static void assertSame(TokenBuffer expected, OffHeapTokenStore actual) {
+		assertEquals(expected.size(), actual.size());
+		for (int i = 0; i < expected.size(); i++) {
+			assertEquals(expected.getType(i), actual.getType(i));
+			assertEquals(expected.getStart(i), actual.getStart(i));
+			assertEquals(expected.getLength(i), actual.getLength(i));
+			assertEquals(expected.getLexeme(i), actual.getLexeme(i));
+			assertEquals(expected.isReal(i), actual.isReal(i));
+			assertEquals(expected.getIntValue(i), actual.getIntValue(i));
+			assertEquals(expected.getPosition(i), actual.getPosition(i));
+		}
+
+		Lexer lexer = expected.lexer();
+		Lexer stored = actual.lexer();
+		while (lexer.hasNext()) {
+			assertTrue("Not enough tokens", stored.hasNext());
+			assertEquals(lexer.next(), stored.next());
+		}
+		assertFalse("Too many tokens", stored.hasNext());
+	}
+}
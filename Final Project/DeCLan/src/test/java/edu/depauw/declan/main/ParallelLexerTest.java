@@ -0,0 +1,84 @@
+package edu.depauw.declan.main;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Iterator;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.Test;
+
+import edu.depauw.declan.common.CharSequenceSource;
+import edu.depauw.declan.common.ErrorLog;
+import edu.depauw.declan.common.SymbolInterner;
+import edu.depauw.declan.common.TokenBuffer;
+
+class ParallelLexerTest {
+	private static final String PROGRAM = "CONST six = 6; seven = 7;\n"
+			+ "VAR x : INTEGER; r : REAL;\n"
+			+ "(* a comment\n  spanning (* nested *) lines *)\n"
+			+ "BEGIN\n"
+			+ "  x := 0ABH + six * seven; r := 1.5E+3;\n"
+			+ "  PrintString(\"a string\nwith a newline (* and no comment\");\n"
+			+ "  bad ! 1AG 2.E\n"
+			+ "END.\n";
+
+	@Test
+	void testSmallChunks() {
+		for (int chunkSize = 1; chunkSize <= 40; chunkSize++) {
+			compareToSequential(PROGRAM, chunkSize);
+		}
+	}
+
+	@Test
+	void testLongProgram() {
+		StringBuilder input = new StringBuilder();
+		for (int i = 0; i < 200; i++) {
+			input.append(PROGRAM);
+		}
+		compareToSequential(input.toString(), 100);
+		compareToSequential(input.toString(), 1000);
+	}
+
+	@Test
+	void testUnterminatedComment() {
+		compareToSequential(PROGRAM + "(* (* *) never closed\n" + PROGRAM, 16);
+		compareToSequential("\"" + PROGRAM, 16);
+	}
+
+	@Test
+	void testEmpty() {
+		compareToSequential("", 16);
+		compareToSequential("\n\n  \n", 1);
+	}
+
+	private void compareToSequential(String input, int chunkSize) {
+		ErrorLog expectedLog = new ErrorLog();
+		SymbolInterner expectedSymbols = new SymbolInterner();
+		TokenBuffer expected = new TableLexer(new CharSequenceSource(input), expectedLog, expectedSymbols).lexAll();
+
+		ErrorLog actualLog = new ErrorLog();
+		SymbolInterner actualSymbols = new SymbolInterner();
+		ForkJoinPool pool = new ForkJoinPool(4);
+		try {
+			TokenBuffer actual = new ParallelLexer(pool, chunkSize).lex(input, actualLog, actualSymbols);
+
+			assertEquals(expected.size(), actual.size());
+			for (int i = 0; i < expected.size(); i++) {
+				assertEquals(expected.getToken(i), actual.getToken(i));
+				assertEquals(expected.getLength(i), actual.getLength(i));
+				assertEquals(expected.getSymbolId(i), actual.getSymbolId(i));
+			}
+		} finally {
+			pool.shutdown();
+		}
+
+		Iterator<ErrorLog.LogItem> actualItems = actualLog.iterator();
+		for (ErrorLog.LogItem item : expectedLog) {
+			assertTrue("Not enough error items", actualItems.hasNext());
+			assertEquals(item, actualItems.next());
+		}
+		assertFalse("Too many error items", actualItems.hasNext());
+	}
+}
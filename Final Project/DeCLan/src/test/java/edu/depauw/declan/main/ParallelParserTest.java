@@ -0,0 +1,221 @@
+package edu.depauw.declan.main;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.Test;
+
+import edu.depauw.declan.common.CharSequenceSource;
+import edu.depauw.declan.common.ErrorLog;
+import edu.depauw.declan.common.ParseException;
+import edu.depauw.declan.common.TokenBuffer;
+import edu.depauw.declan.common.ast.HashConsingExpressionFactory;
+import edu.depauw.declan.common.ast.Program;
+import edu.depauw.declan.model.ReferenceIndexer;
+
+class ParallelParserTest {
+	private static final ForkJoinPool POOL = new ForkJoinPool(4);
+
+	@Test
+	void testFindProcedures() {
+		String input = "CONST c = 1;\n"
+				+ "PROCEDURE A(); PROCEDURE B(); BEGIN IF c = 1 THEN END END B; BEGIN B() END A;\n"
+				+ "PROCEDURE C(); BEGIN WHILE c < 1 DO FOR c := 1 TO 2 DO END END END C;\n"
+				+ "BEGIN A(); C() END.";
+		TokenBuffer tokens = lex(input);
+		int a = tokens.indexAtOrAfter(input.indexOf("PROCEDURE A"));
+		int c = tokens.indexAtOrAfter(input.indexOf("PROCEDURE C"));
+		assertArrayEquals(new int[] { a, c }, ParallelParser.findProcedures(tokens));
+	}
+
+	@Test
+	void testMatchesSequential() {
+		String input = generate(200, new Random(42));
+		Result parallel = parseParallel(input, false);
+		assertEquals(200, parallel.accepted);
+		assertEquals(parseSequential(input, false), parallel.toString());
+	}
+
+	@Test
+	void testErrorsMatchSequential() {
+		String input = generate(100, new Random(7));
+		// Break a few of the procedures
+		input = input.replace("\n  END Proc5;", "; count :=\n  END Proc5;").replace("END Proc17", "END Proc71")
+				.replace("PROCEDURE Proc40(n :", "PROCEDURE Proc40(n");
+		Result parallel = parseParallel(input, true);
+		assertEquals(parseSequential(input, true), parallel.toString());
+		assertEquals(3, parallel.errors.size());
+		assertEquals(97, parallel.accepted);
+	}
+
+	@Test
+	void testLazyBodyErrors() {
+		// The broken body is only parsed when the indexer reaches it, after the
+		// speculative parse has accepted its procedure
+		String input = generate(100, new Random(7)).replace("\n  END Proc5;", "; count :=\n  END Proc5;");
+		Result parallel = parseParallel(input, true, true);
+		assertEquals(parseSequential(input, true, true), parallel.toString());
+		assertEquals(List.of("Expected LPAR, found END at 63:3"), parallel.errors);
+		assertEquals(100, parallel.accepted);
+	}
+
+	@Test
+	void testExpressionFactory() {
+		// Only the main body is built by the factory; the procedures are taken
+		// from the speculative parses
+		String input = generate(50, new Random(3)).replace("PrintInt(total)",
+				"PrintInt(total DIV 100); PrintInt(total DIV 100)");
+		ErrorLog errorLog = new ErrorLog();
+		ParallelParser parser = new ParallelParser(lex(input), errorLog, POOL, 50);
+		HashConsingExpressionFactory factory = new HashConsingExpressionFactory();
+		parser.setExpressionFactory(factory);
+		// VAR total and the 50 procedures
+		assertEquals(51, parser.parseProgram().getDeclarations().size());
+		assertEquals(50, parser.getAcceptedCount());
+		// The second total DIV 100, with its total and its 100
+		assertEquals(3, factory.getSharedCount());
+	}
+
+	@Test
+	void testRandomMutations() {
+		Random random = new Random(42);
+		String program = generate(20, random);
+		String[] fragments = { "", ";", "END", "BEGIN", "PROCEDURE", "IF", "WHILE", "FOR", "(", ")", "x" };
+		for (int i = 0; i < 300; i++) {
+			StringBuilder input = new StringBuilder(program);
+			for (int k = 0; k < 3; k++) {
+				int offset = random.nextInt(input.length());
+				int removed = random.nextInt(Math.min(6, input.length() - offset) + 1);
+				input.replace(offset, offset + removed, " " + fragments[random.nextInt(fragments.length)] + " ");
+			}
+			String text = input.toString();
+			boolean recover = random.nextBoolean();
+			assertEquals("For mutation " + i + ":\n" + text, parseSequential(text, recover),
+					parseParallel(text, recover).toString());
+		}
+	}
+
+	/**
+	 * @return a program with the given number of top-level procedures, some of
+	 *         them with a nested procedure
+	 */
+	private static String generate(int procedures, Random random) {
+		StringBuilder text = new StringBuilder("VAR total : INTEGER;\n");
+		for (int p = 0; p < procedures; p++) {
+			text.append("PROCEDURE Proc").append(p).append("(n : INTEGER);\n");
+			text.append("  VAR count, i : INTEGER;\n");
+			if (random.nextInt(4) == 0) {
+				text.append("  PROCEDURE Inner(); BEGIN IF n > 0 THEN count := 0 END END Inner;\n");
+			}
+			text.append("  BEGIN\n");
+			text.append("    count := ").append(random.nextInt(10)).append(";\n");
+			text.append("    FOR i := 1 TO n DO\n");
+			text.append("      WHILE count < i DO count := count + ").append(random.nextInt(5))
+					.append(" ELSIF count > i DO count := count - 1 END\n");
+			text.append("    END;\n");
+			text.append("    REPEAT count := count DIV 2 UNTIL count < 1;\n");
+			text.append("    total := total + count\n");
+			text.append("  END Proc").append(p).append(";\n");
+		}
+		text.append("BEGIN\n");
+		for (int p = 0; p < procedures; p++) {
+			text.append("  Proc").append(p).append("(").append(p).append(");\n");
+		}
+		text.append("  PrintInt(total)\nEND.\n");
+		return text.toString();
+	}
+
+	private static TokenBuffer lex(String input) {
+		return new TableLexer(new CharSequenceSource(input), new ErrorLog()).lexAll();
+	}
+
+	private static class Result {
+		String index;
+		List<String> errors;
+		int accepted;
+
+		@Override
+		public String toString() {
+			return index + errors;
+		}
+	}
+
+	/**
+	 * Parse in batches of about 50 tokens, so that there are many of them.
+	 */
+	private static Result parseParallel(String input, boolean recover) {
+		return parseParallel(input, recover, false);
+	}
+
+	private static Result parseParallel(String input, boolean recover, boolean lazy) {
+		ErrorLog errorLog = new ErrorLog();
+		ParallelParser parser = new ParallelParser(lex(input), errorLog, POOL, 50);
+		parser.setErrorRecovery(recover);
+		parser.setLazyBodies(lazy);
+		Result result = new Result();
+		result.index = index(parse(parser));
+		result.errors = messages(errorLog);
+		result.accepted = parser.getAcceptedCount();
+		return result;
+	}
+
+	private static String parseSequential(String input, boolean recover) {
+		return parseSequential(input, recover, false);
+	}
+
+	private static String parseSequential(String input, boolean recover, boolean lazy) {
+		ErrorLog errorLog = new ErrorLog();
+		MyParser parser = new MyParser(lex(input), errorLog);
+		parser.setErrorRecovery(recover);
+		parser.setLazyBodies(lazy);
+		return index(parse(parser)) + messages(errorLog);
+	}
+
+	/**
+	 * @return the Program, the partial Program if there were errors, or the
+	 *         exception message if there is none
+	 */
+	private static Object parse(MyParser parser) {
+		try {
+			return parser.parseProgram();
+		} catch (ParseException pe) {
+			return (pe.getPartialProgram() != null) ? pe.getPartialProgram() : pe.getMessage();
+		}
+	}
+
+	/**
+	 * @return the declarations and uses of every identifier, with positions, as
+	 *         printed by the ReferenceIndexer
+	 */
+	private static String index(Object parsed) {
+		if (!(parsed instanceof Program)) {
+			return parsed.toString();
+		}
+		PrintStream saved = System.out;
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try {
+			System.setOut(new PrintStream(bytes, true));
+			((Program) parsed).accept(new ReferenceIndexer(new ErrorLog()));
+		} catch (RuntimeException e) {
+			System.out.println(e.getClass().getSimpleName());
+		} finally {
+			System.setOut(saved);
+		}
+		return bytes.toString();
+	}
+
+	private static List<String> messages(ErrorLog errorLog) {
+		List<String> result = new ArrayList<>();
+		for (ErrorLog.LogItem item : errorLog) {
+			result.add(item.getMessage() + " at " + item.getPosition());
+		}
+		return result;
+	}
+}
@@ -0,0 +1,37 @@
+package edu.depauw.declan.main;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.Map;
+
+import org.junit.Test;
+
+import edu.depauw.declan.common.ReservedWords;
+import edu.depauw.declan.common.TokenType;
+
+class ReservedWordsTest {
+
+	@Test
+	void testAllReservedWords() {
+		for (Map.Entry<String, TokenType> entry : TokenType.reserved.entrySet()) {
+			assertEquals(entry.getValue(), ReservedWords.lookup(entry.getKey()));
+		}
+	}
+
+	@Test
+	void testIdentifiers() {
+		String[] ids = { "x", "B", "BEGINS", "BEGIM", "AEGIN", "begin", "DO1", "TD", "OF", "REPEAR", "PROCEDURES",
+				"ELSIE", "VOID", "WHILE0", "T1", "\u00C9ND" };
+		for (String id : ids) {
+			assertNull(id, ReservedWords.lookup(id));
+		}
+	}
+
+	@Test
+	void testRange() {
+		String input = "xxENDxx";
+		assertEquals(TokenType.END, ReservedWords.lookup(input, 2, 3));
+		assertNull(ReservedWords.lookup(input, 1, 4));
+	}
+}
@@ -0,0 +1,163 @@
+package edu.depauw.declan.main;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.StringReader;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.Test;
+
+import edu.depauw.declan.common.BlockReaderSource;
+import edu.depauw.declan.common.ChannelSource;
+import edu.depauw.declan.common.CharSequenceSource;
+import edu.depauw.declan.common.MappedFileSource;
+import edu.depauw.declan.common.ReaderSource;
+import edu.depauw.declan.common.Source;
+
+class SourceTest {
+
+	@Test
+	void testEmptySource() throws IOException {
+		compareToReader("");
+	}
+
+	@Test
+	void testSingleLine() throws IOException {
+		compareToReader("BEGIN PrintInt(42) END.");
+	}
+
+	@Test
+	void testMultipleLines() throws IOException {
+		compareToReader("CONST a = 1;\n\nBEGIN\r\n\tPrintInt(a)\nEND.\n");
+	}
+
+	@Test
+	void testBlockBoundaries() {
+		String input = "VAR x : INTEGER;\nBEGIN\n  x := 1\nEND.\n";
+		for (int blockSize = 1; blockSize <= input.length() + 1; blockSize++) {
+			try (Source expected = new ReaderSource(new StringReader(input));
+				 Source actual = new BlockReaderSource(new StringReader(input), blockSize)) {
+				compareSources(expected, actual);
+			}
+		}
+	}
+
+	@Test
+	void testChannelUTF8() {
+		// Two-, three- and four-byte sequences, split across every block boundary
+		String input = "(* caf\u00e9 \u2192 \ud83d\ude00 *)\nPrintString(\"\u00fc\u00fc\")\n";
+		byte[] bytes = input.getBytes(StandardCharsets.UTF_8);
+		for (int blockSize = 1; blockSize <= bytes.length + 1; blockSize++) {
+			try (Source expected = new ReaderSource(new StringReader(input));
+				 Source actual = new ChannelSource(Channels.newChannel(new ByteArrayInputStream(bytes)), blockSize)) {
+				compareSources(expected, actual);
+			}
+		}
+	}
+
+	@Test
+	void testChannelMalformed() {
+		// A stray continuation byte, a truncated sequence before ASCII, and a
+		// truncated sequence at the end of input
+		byte[] bytes = { 'a', (byte) 0x80, 'b', (byte) 0xe2, (byte) 0x86, 'c', (byte) 0xc3 };
+		try (Source expected = new ReaderSource(
+				new InputStreamReader(new ByteArrayInputStream(bytes), StandardCharsets.UTF_8));
+			 Source actual = new ChannelSource(Channels.newChannel(new ByteArrayInputStream(bytes)), 4)) {
+			compareSources(expected, actual);
+		}
+	}
+
+	@Test
+	void testMappedUTF8() throws IOException {
+		// Multi-byte sequences in a string, an identifier and a comment, then the
+		// malformed bytes from testChannelMalformed
+		String input = "VAR caf\u00e9 : INTEGER;\n(* \u2192 \ud83d\ude00 *)\nPrintString(\"\u00fc\u00fc\")\n";
+		byte[] text = input.getBytes(StandardCharsets.UTF_8);
+		byte[] malformed = { 'a', (byte) 0x80, 'b', (byte) 0xe2, (byte) 0x86, 'c', (byte) 0xc3 };
+		byte[] bytes = new byte[text.length + malformed.length];
+		System.arraycopy(text, 0, bytes, 0, text.length);
+		System.arraycopy(malformed, 0, bytes, text.length, malformed.length);
+
+		Path file = Files.createTempFile("declan", ".dcl");
+		try {
+			Files.write(file, bytes);
+			try (Source expected = new ReaderSource(
+					new InputStreamReader(new ByteArrayInputStream(bytes), StandardCharsets.UTF_8));
+				 Source actual = new MappedFileSource(file)) {
+				compareSources(expected, actual);
+			}
+			try (MappedFileSource source = new MappedFileSource(file)) {
+				assertEquals(new String(bytes, StandardCharsets.UTF_8), source.getText().toString());
+			}
+		} finally {
+			Files.delete(file);
+		}
+	}
+
+	/**
+	 * Write the given input to a temporary file, then check that a
+	 * MappedFileSource and a ChannelSource over that file, as well as a
+	 * BlockReaderSource and a CharSequenceSource over the text, produce the same
+	 * sequence of characters and Positions as a ReaderSource over the same text.
+	 * 
+	 * @param input
+	 * @throws IOException
+	 */
+	private void compareToReader(String input) throws IOException {
+		Path file = Files.createTempFile("declan", ".dcl");
+		try {
+			Files.write(file, input.getBytes(StandardCharsets.US_ASCII));
+			try (Source expected = new ReaderSource(new StringReader(input));
+				 Source actual = new MappedFileSource(file)) {
+				compareSources(expected, actual);
+			}
+			try (Source expected = new ReaderSource(new StringReader(input));
+				 Source actual = new ChannelSource(FileChannel.open(file))) {
+				compareSources(expected, actual);
+			}
+			try (Source expected = new ReaderSource(new StringReader(input));
+				 Source actual = new BlockReaderSource(new StringReader(input))) {
+				compareSources(expected, actual);
+			}
+			try (Source expected = new ReaderSource(new StringReader(input));
+				 Source actual = new CharSequenceSource(input)) {
+				compareSources(expected, actual);
+			}
+		} finally {
+			Files.delete(file);
+		}
+	}
+
+	/**
+	 * Step through both Sources together, checking that they agree on every
+	 * character and Position, and that they reach the end at the same time. Also
+	 * check that the LineMap of the actual Source maps each offset back to the
+	 * same Position.
+	 * 
+	 * @param expected
+	 * @param actual
+	 */
+	static void compareSources(Source expected, Source actual) {
+		while (!expected.atEOF()) {
+			assertFalse("Not enough characters", actual.atEOF());
+			assertEquals(expected.getPosition(), actual.getPosition());
+			assertEquals(expected.getOffset(), actual.getOffset());
+			assertEquals(actual.getPosition(), actual.getLineMap().getPosition(actual.getOffset()));
+			assertEquals(expected.current(), actual.current());
+			expected.advance();
+			actual.advance();
+		}
+		assertTrue("Too many characters", actual.atEOF());
+		assertEquals(expected.getPosition(), actual.getPosition());
+		assertEquals(actual.getPosition(), actual.getLineMap().getPosition(actual.getOffset()));
+	}
+}
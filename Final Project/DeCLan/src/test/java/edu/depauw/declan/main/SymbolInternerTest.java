@@ -0,0 +1,57 @@
+package edu.depauw.declan.main;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.io.StringReader;
+
+import org.junit.Test;
+
+import edu.depauw.declan.common.ErrorLog;
+import edu.depauw.declan.common.ReaderSource;
+import edu.depauw.declan.common.Source;
+import edu.depauw.declan.common.SymbolInterner;
+import edu.depauw.declan.common.Token;
+import edu.depauw.declan.common.TokenType;
+
+class SymbolInternerTest {
+
+	@Test
+	void testDenseIds() {
+		SymbolInterner symbols = new SymbolInterner();
+		assertEquals(0, symbols.intern("x"));
+		assertEquals(1, symbols.intern("count"));
+		assertEquals(0, symbols.intern(new StringBuilder("x")));
+		assertEquals(1, symbols.intern("a count b", 2, 5));
+		assertEquals(2, symbols.size());
+		assertEquals("count", symbols.getName(1));
+		assertEquals(SymbolInterner.NO_SYMBOL, symbols.lookup("y"));
+	}
+
+	@Test
+	void testGrowth() {
+		SymbolInterner symbols = new SymbolInterner();
+		for (int i = 0; i < 1000; i++) {
+			assertEquals(i, symbols.intern("v" + i));
+		}
+		for (int i = 0; i < 1000; i++) {
+			assertEquals(i, symbols.lookup("v" + i));
+			assertEquals("v" + i, symbols.getName(i));
+		}
+	}
+
+	@Test
+	void testSharedLexemes() {
+		SymbolInterner symbols = new SymbolInterner();
+		Source source = new ReaderSource(new StringReader("x := x + y; END x"));
+		MyLexer lexer = new MyLexer(source, new ErrorLog(), symbols);
+
+		Token first = lexer.next();
+		lexer.next(); // :=
+		Token second = lexer.next();
+		assertEquals(TokenType.ID, first.getType());
+		assertEquals(first.getSymbolId(), second.getSymbolId());
+		assertSame(first.getLexeme(), second.getLexeme());
+		assertEquals(symbols.lookup("x"), first.getSymbolId());
+	}
+}
@@ -0,0 +1,114 @@
+package edu.depauw.declan.main;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+import edu.depauw.declan.common.CharSequenceSource;
+import edu.depauw.declan.common.ErrorLog;
+import edu.depauw.declan.common.Lexer;
+import edu.depauw.declan.common.Token;
+import edu.depauw.declan.common.TokenBuffer;
+
+class TableLexerTest {
+
+	@Test
+	void testTablesAreCurrent() {
+		LexerTableGenerator generator = new LexerTableGenerator();
+		assertArrayEquals(generator.getCharClass(), LexerTables.CHAR_CLASS);
+		assertArrayEquals(generator.getNext(), LexerTables.NEXT);
+		assertArrayEquals(generator.getAction(), LexerTables.ACTION);
+		assertArrayEquals(generator.getAccept(), LexerTables.ACCEPT_TYPE);
+	}
+
+	@Test
+	void testBasics() {
+		compare("This is test1");
+		compare("BEGIN BY CONST DIV DO ELSE ELSIF END FALSE FOR IF\n"
+				+ "MOD OR PROCEDURE REPEAT RETURN THEN TO TRUE UNTIL VAR WHILE");
+		compare("0 11 9999 0123456789");
+		compare("\"\" \"testing\" \"!@#$%^&(*)-_=+\" \"two\nlines\"");
+		compare("(* this is a comment *) ((**)) (***) (* * ) *)");
+		compare("<<=>>=:=:()=#+-*/&~;,.");
+		compare("PROCEDURE a(b:INTEGER,VAR c:REAL):BOOLEAN;\n\t(* body goes here *)\nBEGIN a(42,3+14)END.\n");
+	}
+
+	@Test
+	void testNumbers() {
+		compare("0H 9H 0ABCDEFH 1H2 1ABH.");
+		compare("0. 1.2 345.678 01.E23 4.5E+6 7.8E-09 12.3.4 5.. 1.5E3H 1.2e5");
+	}
+
+	@Test
+	void testNestedComments() {
+		compare("(**((***))**) (* \"(*\" *)\n\" *) (*(*(*(*here*)*)there*)*)everywhere");
+		compare("(* *(* *) *) x (* ((* *) *)x (* *(*) *)*) y");
+		compare("(* (*) *) x");
+	}
+
+	@Test
+	void testErrorRecovery() {
+		compare("bad! &\"unclosed!");
+		compare("`!@$%^_{}[]|\\'ok?(**");
+		compare("1F+2E-3.4E*5.E-D6");
+		compare("1AG 1E. 1.EH 1.E+ 3 x_y");
+		compare("1E5");
+		compare("0.E+");
+		compare("a(*b");
+	}
+
+	@Test
+	void testNonAscii() {
+		compare("a\u00e9b \u0663.5 x\u2003y\u0085z\u00a0w \u000b\u001c");
+	}
+
+	@Test
+	void testDecodedNumbers() {
+		String input = "42 0FFH 3.14E+2 \u0663.5 2147483647";
+		ErrorLog errorLog = new ErrorLog();
+		TokenBuffer tokens = new TableLexer(new CharSequenceSource(input), errorLog).lexAll();
+		assertEquals(5, tokens.size());
+		assertEquals(42, tokens.getIntValue(0));
+		assertEquals(255, tokens.getIntValue(1));
+		assertTrue(tokens.isReal(2));
+		assertEquals(314.0, tokens.getRealValue(2), 0.0);
+		assertEquals(3.5, tokens.getRealValue(3), 0.0);
+		assertFalse(tokens.isReal(4));
+		assertEquals(Integer.MAX_VALUE, tokens.getIntValue(4));
+		assertFalse(errorLog.iterator().hasNext());
+
+		try (Lexer lexer = new TableLexer(new CharSequenceSource(input), new ErrorLog())) {
+			for (int i = 0; i < tokens.size(); i++) {
+				Token token = lexer.next();
+				assertEquals(tokens.isReal(i), token.isReal());
+				assertEquals(tokens.getIntValue(i), token.getIntValue());
+			}
+		}
+	}
+
+	@Test
+	void testNumberOutOfRange() {
+		ErrorLog errorLog = new ErrorLog();
+		TokenBuffer tokens = new TableLexer(new CharSequenceSource("2147483648 0FFFFFFFFH 1.0E400 99999999999999999999"),
+				errorLog).lexAll();
+		assertEquals(4, tokens.size());
+		List<String> messages = new ArrayList<>();
+		for (ErrorLog.LogItem item : errorLog) {
+			messages.add(item.getMessage());
+		}
+		assertEquals(Arrays.asList("Integer literal out of range 2147483648",
+				"Integer literal out of range 0FFFFFFFFH", "Real literal out of range 1.0E400",
+				"Integer literal out of range 99999999999999999999"), messages);
+	}
+
+	private void compare(String input) {
+		LexerTestUtil.compareToModel(input, TableLexer::new);
+	}
+}
@@ -0,0 +1,91 @@
+package edu.depauw.declan.main;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.StringReader;
+
+import org.junit.Test;
+
+import edu.depauw.declan.common.ErrorLog;
+import edu.depauw.declan.common.Lexer;
+import edu.depauw.declan.common.Position;
+import edu.depauw.declan.common.ReaderSource;
+import edu.depauw.declan.common.Source;
+import edu.depauw.declan.common.SymbolInterner;
+import edu.depauw.declan.common.TokenBuffer;
+import edu.depauw.declan.common.TokenType;
+import edu.depauw.declan.model.ReferenceLexer;
+
+class TokenBufferTest {
+
+	@Test
+	void testLexAllMatchesIterator() {
+		String input = "CONST x = y;\n  x := y : z\nEND";
+		TokenBuffer tokens = new MyLexer(new ReaderSource(new StringReader(input)), new ErrorLog()).lexAll();
+
+		try (Lexer lexer = new MyLexer(new ReaderSource(new StringReader(input)), new ErrorLog())) {
+			for (int i = 0; i < tokens.size(); i++) {
+				assertTrue("Not enough tokens", lexer.hasNext());
+				assertEquals(lexer.next(), tokens.getToken(i));
+			}
+			assertFalse("Too many tokens", lexer.hasNext());
+		}
+	}
+
+	@Test
+	void testExtents() {
+		TokenBuffer tokens = new MyLexer(new ReaderSource(new StringReader("x  :=\nCONST")), new ErrorLog())
+				.lexAll();
+		assertEquals(3, tokens.size());
+		assertEquals(TokenType.ID, tokens.getType(0));
+		assertEquals(TokenType.ASSIGN, tokens.getType(1));
+		assertEquals(3, tokens.getStart(1));
+		assertEquals(2, tokens.getLength(1));
+		assertEquals(TokenType.CONST, tokens.getType(2));
+		assertEquals(5, tokens.getLength(2));
+		assertEquals(new Position(2, 1), tokens.getPosition(2));
+		assertEquals(SymbolInterner.NO_SYMBOL, tokens.getSymbolId(2));
+		assertNull(tokens.getLexeme(2));
+	}
+
+	@Test
+	void testCopiedTokens() {
+		String input = "CONST a = 123; s = \"hi\"; BEGIN PrintInt(a + 45) END.";
+		Source source = new ReaderSource(new StringReader(input));
+		TokenBuffer tokens = new TokenBuffer(source.getLineMap(), new SymbolInterner());
+		try (Lexer lexer = new ReferenceLexer(source, new ErrorLog())) {
+			while (lexer.hasNext()) {
+				tokens.add(lexer.next());
+			}
+		}
+
+		try (Lexer lexer = new ReferenceLexer(new ReaderSource(new StringReader(input)), new ErrorLog())) {
+			Lexer buffered = tokens.lexer();
+			while (lexer.hasNext()) {
+				assertTrue("Not enough tokens", buffered.hasNext());
+				assertEquals(lexer.next(), buffered.next());
+			}
+			assertFalse("Too many tokens", buffered.hasNext());
+		}
+	}
+
+	@Test
+	void testLookahead() {
+		TokenBuffer tokens = new MyLexer(new ReaderSource(new StringReader("CONST x = y")), new ErrorLog())
+				.lexAll();
+		MyParser parser = new MyParser(tokens, new ErrorLog());
+		assertEquals(TokenType.CONST, parser.peek(0));
+		assertEquals(TokenType.EQ, parser.peek(2));
+		assertNull(parser.peek(4));
+
+		int mark = parser.mark();
+		parser.skip();
+		parser.skip();
+		assertTrue(parser.willMatch(TokenType.EQ));
+		parser.reset(mark);
+		assertTrue(parser.willMatch(TokenType.CONST));
+	}
+}
@@ -47,6 +47,7 @@ public class Config {
 	public Config(String[] args) {
 		List<String> argList = Arrays.asList(args);
 		boolean useModel = false;
+		boolean useFlyweight = false;
 
 		// if first arg is --model, use the model implementations
 		if (argList.size() > 0 && argList.get(0).equals("--model")) {
@@ -54,6 +55,13 @@ public class Config {
 			useModel = true;
 		}
 
+		// if next arg is --flyweight, share the parts of tokens other than their
+		// positions
+		if (argList.size() > 0 && argList.get(0).equals("--flyweight")) {
+			argList = argList.subList(1, argList.size());
+			useFlyweight = true;
+		}
+
 		// Initialize the source
 		Reader reader = null;
 		if (argList.size() > 0) {
@@ -78,7 +86,11 @@ public class Config {
 		source = new edu.depauw.declan.model.SourceImpl(reader);
 
 		// Initialize the token factory
-		tokenFactory = new edu.depauw.declan.model.TokenFactoryImpl();
+		if (useFlyweight) {
+			tokenFactory = new FlyweightTokenFactory();
+		} else {
+			tokenFactory = new edu.depauw.declan.model.TokenFactoryImpl();
+		}
 
 		// Initialize the lexer
 		if (useModel) {
@@ -0,0 +1,115 @@
+package edu.depauw.declan;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import edu.depauw.declan.common.Position;
+import edu.depauw.declan.common.Token;
+import edu.depauw.declan.common.TokenFactory;
+import edu.depauw.declan.common.TokenType;
+
+/**
+ * A TokenFactory that shares everything about a token except its position.
+ * Operators, punctuation and keywords use one shared Kind per TokenType, and
+ * each identifier uses one shared Kind per name, so a token of any of these
+ * types only holds a reference and its line and column packed into a long.
+ * The Position object is only created again when getPosition() is called.
+ * Numeric and string literals get a Kind of their own.
+ * 
+ * A factory should only be used by one lexer at a time.
+ */
+public class FlyweightTokenFactory implements TokenFactory {
+	private static final Kind[] FIXED;
+
+	static {
+		TokenType[] types = TokenType.values();
+		FIXED = new Kind[types.length];
+		for (TokenType type : types) {
+			FIXED[type.ordinal()] = new Kind(type, null);
+		}
+	}
+
+	private final Map<String, Kind> names = new HashMap<>();
+
+	@Override
+	public Token makeToken(TokenType type, Position position) {
+		return new PackedToken(FIXED[type.ordinal()], position);
+	}
+
+	@Override
+	public Token makeIdToken(String lexeme, Position position) {
+		TokenType type = TokenType.reserved.get(lexeme);
+		if (type != null) {
+			return new PackedToken(FIXED[type.ordinal()], position);
+		}
+
+		Kind kind = names.get(lexeme);
+		if (kind == null) {
+			kind = new Kind(TokenType.ID, lexeme);
+			names.put(lexeme, kind);
+		}
+		return new PackedToken(kind, position);
+	}
+
+	@Override
+	public Token makeNumToken(String lexeme, Position position) {
+		return new PackedToken(new Kind(TokenType.NUM, lexeme), position);
+	}
+
+	@Override
+	public Token makeStringToken(String lexeme, Position position) {
+		return new PackedToken(new Kind(TokenType.STRING, lexeme), position);
+	}
+
+	/**
+	 * The parts of a Token other than its position, which may be shared by any
+	 * number of tokens.
+	 */
+	private static final class Kind {
+		final TokenType type;
+		final String lexeme;
+
+		Kind(TokenType type, String lexeme) {
+			this.type = type;
+			this.lexeme = lexeme;
+		}
+	}
+
+	/**
+	 * A Token made of a shared Kind and a line and column packed into one long.
+	 */
+	private static final class PackedToken implements Token {
+		private final Kind kind;
+		private final long position;
+
+		PackedToken(Kind kind, Position position) {
+			this.kind = kind;
+			this.position = ((long) position.getLine() << 32) | (position.getColumn() & 0xFFFFFFFFL);
+		}
+
+		@Override
+		public TokenType getType() {
+			return kind.type;
+		}
+
+		@Override
+		public String getLexeme() {
+			return kind.lexeme;
+		}
+
+		@Override
+		public Position getPosition() {
+			return new Position((int) (position >>> 32), (int) position);
+		}
+
+		@Override
+		public String toString() {
+			StringBuilder result = new StringBuilder(kind.type.toString());
+			if (kind.lexeme != null) {
+				result.append(" ").append(kind.lexeme);
+			}
+			result.append(" ").append(getPosition());
+			return result.toString();
+		}
+	}
+}